@@ -18,6 +18,9 @@
 
 package org.kurento.client;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
 import org.kurento.client.internal.client.DefaultContinuation;
 import org.kurento.client.internal.client.RemoteObject;
 import org.kurento.client.internal.client.RemoteObjectInvocationHandler;
@@ -88,21 +91,25 @@ public class AbstractBuilder<T> {
    *
    **/
   public void buildAsync(final Continuation<T> continuation) {
+    DefaultContinuation.notifyWhenComplete(buildAsync(), continuation);
+  }
 
-    manager.create(clazz.getSimpleName(), props, genericProperties,
-        new DefaultContinuation<RemoteObject>(continuation) {
+  /**
+   * Builds an object asynchronously using the builder design pattern.
+   *
+   * @return a future completed with the object when it is ready
+   *
+   **/
+  public CompletableFuture<T> buildAsync() {
+
+    return manager.createWithKurentoObjectAsync(clazz, props, genericProperties)
+        .thenApply(new Function<RemoteObject, T>() {
           @SuppressWarnings("unchecked")
           @Override
-          public void onSuccess(RemoteObject remoteObject) {
-            try {
-              continuation.onSuccess(
-                  (T) RemoteObjectInvocationHandler.newProxy(remoteObject, manager, clazz));
-            } catch (Exception e) {
-              log.warn("[Continuation] error invoking onSuccess implemented by client", e);
-            }
+          public T apply(RemoteObject remoteObject) {
+            return (T) remoteObject.getKurentoObject();
           }
         });
-
   }
 
   public AbstractBuilder<T> withProperties(Properties properties) {
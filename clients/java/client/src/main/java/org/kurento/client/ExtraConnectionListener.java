@@ -0,0 +1,95 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client;
+
+import org.kurento.jsonrpc.client.JsonRpcClient;
+import org.kurento.jsonrpc.client.JsonRpcWSConnectionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listener of a connection used in addition to the main one. The state of the client is reported
+ * by the main connection, so the application is only told when an extra connection is lost for
+ * good. Meanwhile, requests of its media pipelines are sent through the main connection.
+ */
+class ExtraConnectionListener implements JsonRpcWSConnectionListener {
+
+  private static final Logger log = LoggerFactory.getLogger(ExtraConnectionListener.class);
+
+  private final String name;
+  private final Handler disconnectedHandler;
+  private volatile JsonRpcClient connection;
+
+  ExtraConnectionListener(String name, Handler disconnectedHandler) {
+    this.name = name;
+    this.disconnectedHandler = disconnectedHandler;
+  }
+
+  void setConnection(JsonRpcClient connection) {
+    this.connection = connection;
+  }
+
+  @Override
+  public void connected() {
+    log.debug("Extra connection {} established", name);
+  }
+
+  @Override
+  public void connectionFailed() {
+    log.warn("Extra connection {} could not be established", name);
+  }
+
+  @Override
+  public void disconnected() {
+
+    if (connection.isClosedByUser()) {
+      return;
+    }
+
+    log.warn("Extra connection {} lost", name);
+
+    if (disconnectedHandler != null) {
+      disconnectedHandler.run();
+    }
+  }
+
+  @Override
+  public void reconnected(boolean sameServer) {
+    log.debug("Extra connection {} recovered (same server: {})", name, sameServer);
+  }
+
+  @Override
+  public void reconnecting() {
+    log.debug("Extra connection {} interrupted. Reconnecting", name);
+  }
+
+  static Handler disconnectedHandler(final KurentoConnectionListener listener) {
+
+    if (listener == null) {
+      return null;
+    }
+
+    return new Handler() {
+      @Override
+      public void run() {
+        listener.disconnected();
+      }
+    };
+  }
+
+}
@@ -20,7 +20,11 @@ package org.kurento.client;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import jakarta.annotation.PreDestroy;
 
@@ -33,6 +37,9 @@ import org.kurento.commons.exception.KurentoException;
 import org.kurento.jsonrpc.client.AbstractJsonRpcClientWebSocket;
 import org.kurento.jsonrpc.client.JsonRpcClient;
 import org.kurento.jsonrpc.client.JsonRpcClientNettyWebSocket;
+import org.kurento.jsonrpc.client.JsonRpcMetrics;
+import org.kurento.jsonrpc.client.NettyTransportResources;
+import org.kurento.jsonrpc.client.WireTracer;
 import org.kurento.jsonrpc.message.Request;
 import org.kurento.jsonrpc.message.Response;
 import org.slf4j.Logger;
@@ -57,10 +64,33 @@ public class KurentoClient {
 
   private static final long WARN_CONNECTION_TIME = 5000;
 
+  private static final int DEFAULT_CONNECTIONS =
+      PropertiesManager.getProperty("kurento.client.connections", 1);
+
+  private static final boolean METRICS_ENABLED =
+      PropertiesManager.getProperty("kurento.client.metrics", false);
+
+  private static final boolean PROPERTY_CACHE_ENABLED =
+      PropertiesManager.getProperty("kurento.client.propertyCache", false);
+
+  private static final long PROPERTY_CACHE_TTL =
+      PropertiesManager.getProperty("kurento.client.propertyCacheTtl", 5000L);
+
+  private static final boolean AUTO_BATCH_ENABLED =
+      PropertiesManager.getProperty("kurento.client.autoBatch", false);
+
+  private static final long AUTO_BATCH_WINDOW =
+      PropertiesManager.getProperty("kurento.client.autoBatchWindow", 1000L);
+
+  private static final int AUTO_BATCH_MAX_OPERATIONS =
+      PropertiesManager.getProperty("kurento.client.autoBatchMaxOperations", 100);
+
   private static Logger log = LoggerFactory.getLogger(KurentoClient.class);
 
   protected RomManager manager;
 
+  private RomClientJsonRpcClient romClient;
+
   private long requesTimeout =
       PropertiesManager.getProperty("kurento.client.requestTimeout", 10000);
 
@@ -73,6 +103,8 @@ public class KurentoClient {
 
   private JsonRpcClient client;
 
+  private List<JsonRpcClient> extraConnections;
+
   private static KmsUrlLoader kmsUrlLoader;
 
   private String label;
@@ -128,7 +160,8 @@ public class KurentoClient {
     log.debug("Connecting to kms in {}", websocketUrl);
     JsonRpcClientNettyWebSocket client = new JsonRpcClientNettyWebSocket(websocketUrl);
     configureJsonRpcClient(client);
-    return new KurentoClient(client);
+    return new KurentoClient(client,
+        createExtraConnections(websocketUrl, null, DEFAULT_CONNECTIONS, null), true);
   }
 
   protected static void configureJsonRpcClient(AbstractJsonRpcClientWebSocket client) {
@@ -138,6 +171,33 @@ public class KurentoClient {
     client.setSendCloseMessage(true);
   }
 
+  /**
+   * Creates the connections used in addition to the main one when the client is configured with
+   * several connections. They join the session of the main connection, so they don't close it.
+   *
+   * @param disconnectedHandler
+   *          invoked when an extra connection is lost and can't be recovered, or null
+   */
+  private static List<JsonRpcClient> createExtraConnections(String websocketUrl,
+      NettyTransportResources transportResources, int numConnections,
+      Handler disconnectedHandler) {
+
+    List<JsonRpcClient> connections = new ArrayList<>();
+    for (int i = 1; i < numConnections; i++) {
+      ExtraConnectionListener listener =
+          new ExtraConnectionListener("conn" + i, disconnectedHandler);
+      JsonRpcClientNettyWebSocket connection =
+          new JsonRpcClientNettyWebSocket(websocketUrl, listener, null, transportResources);
+      listener.setConnection(connection);
+      configureJsonRpcClient(connection);
+      // Distinguishes its messages in logs and in the wire trace shared with the main client
+      updateLabel(connection, "conn" + i);
+      connection.setSendCloseMessage(false);
+      connections.add(connection);
+    }
+    return connections;
+  }
+
   public static KurentoClient create(String websocketUrl, KurentoConnectionListener listener) {
     return create(websocketUrl, listener, new Properties());
   }
@@ -151,11 +211,33 @@ public class KurentoClient {
 
   public static KurentoClient create(String websocketUrl, KurentoConnectionListener listener,
       Properties properties) {
+    return create(websocketUrl, listener, properties, null);
+  }
+
+  /**
+   * Creates a client whose connection uses the Netty event loop of the given transport resources.
+   * Several clients can share the same resources, so the number of I/O threads doesn't grow with
+   * the number of clients.
+   *
+   * @param websocketUrl
+   *          The URL of the media server
+   * @param transportResources
+   *          Resources shared with other clients, or null to use a dedicated event loop
+   * @return The client
+   */
+  public static KurentoClient create(String websocketUrl,
+      NettyTransportResources transportResources) {
+    return create(websocketUrl, null, new Properties(), transportResources);
+  }
+
+  public static KurentoClient create(String websocketUrl, KurentoConnectionListener listener,
+      Properties properties, NettyTransportResources transportResources) {
     log.debug("Connecting to KMS in {}", websocketUrl);
     JsonRpcClientNettyWebSocket client = new JsonRpcClientNettyWebSocket(websocketUrl,
-        JsonRpcConnectionListenerKurento.create(listener));
+        JsonRpcConnectionListenerKurento.create(listener), null, transportResources);
     configureJsonRpcClient(client);
-    return new KurentoClient(client);
+    return new KurentoClient(client, createExtraConnections(websocketUrl, transportResources,
+        DEFAULT_CONNECTIONS, ExtraConnectionListener.disconnectedHandler(listener)), true);
   }
 
   protected static KurentoClient create(String kmsWsUri, Properties properties,
@@ -163,6 +245,27 @@ public class KurentoClient {
       final Handler reconnectingHandler, final Handler disconnectedHandler,
       final ReconnectedHandler reconnectedHandler, Long tryReconnectingMaxTime,
       Long connectionTimeout) {
+    return create(kmsWsUri, properties, connectedHandler, connectionFailedHandler,
+        reconnectingHandler, disconnectedHandler, reconnectedHandler, tryReconnectingMaxTime,
+        connectionTimeout, null);
+  }
+
+  protected static KurentoClient create(String kmsWsUri, Properties properties,
+      final Handler connectedHandler, final Handler connectionFailedHandler,
+      final Handler reconnectingHandler, final Handler disconnectedHandler,
+      final ReconnectedHandler reconnectedHandler, Long tryReconnectingMaxTime,
+      Long connectionTimeout, NettyTransportResources transportResources) {
+    return create(kmsWsUri, properties, connectedHandler, connectionFailedHandler,
+        reconnectingHandler, disconnectedHandler, reconnectedHandler, tryReconnectingMaxTime,
+        connectionTimeout, transportResources, null);
+  }
+
+  protected static KurentoClient create(String kmsWsUri, Properties properties,
+      final Handler connectedHandler, final Handler connectionFailedHandler,
+      final Handler reconnectingHandler, final Handler disconnectedHandler,
+      final ReconnectedHandler reconnectedHandler, Long tryReconnectingMaxTime,
+      Long connectionTimeout, NettyTransportResources transportResources,
+      Integer numConnections) {
 
     String clientId = null;
     if (kmsWsUri == null) {
@@ -174,7 +277,8 @@ public class KurentoClient {
 
     log.debug("Connecting to KMS in {}", kmsWsUri);
 
-    JsonRpcClientNettyWebSocket client = new JsonRpcClientNettyWebSocket(kmsWsUri);
+    JsonRpcClientNettyWebSocket client = new JsonRpcClientNettyWebSocket(kmsWsUri, null, null,
+        transportResources);
 
     if (connectionTimeout != null) {
       client.setConnectionTimeout(connectionTimeout.intValue());
@@ -231,7 +335,19 @@ public class KurentoClient {
       client.setTryReconnectingMaxTime(tryReconnectingMaxTime);
     }
 
-    kurentoClient = new KurentoClient(client);
+    List<JsonRpcClient> extraConnections = createExtraConnections(kmsWsUri, transportResources,
+        numConnections != null ? numConnections : DEFAULT_CONNECTIONS, disconnectedHandler);
+    for (JsonRpcClient connection : extraConnections) {
+      if (connectionTimeout != null) {
+        connection.setConnectionTimeout(connectionTimeout.intValue());
+      }
+      if (tryReconnectingMaxTime != null) {
+        ((AbstractJsonRpcClientWebSocket) connection)
+            .setTryReconnectingMaxTime(tryReconnectingMaxTime);
+      }
+    }
+
+    kurentoClient = new KurentoClient(client, extraConnections, true);
 
     if (clientId != null) {
       kurentoClient.setId(clientId);
@@ -245,18 +361,52 @@ public class KurentoClient {
   }
 
   protected KurentoClient(JsonRpcClient client, boolean overrideClientTimeouts) {
+    this(client, Collections.<JsonRpcClient> emptyList(), overrideClientTimeouts);
+  }
+
+  /**
+   * Creates a client that stripes its requests over the main client and the extra connections.
+   * All requests of a media pipeline are sent through the same connection.
+   */
+  protected KurentoClient(JsonRpcClient client, List<JsonRpcClient> extraConnections,
+      boolean overrideClientTimeouts) {
     this.client = client;
-    this.manager = new RomManager(new RomClientJsonRpcClient(client));
-    if (overrideClientTimeouts) {
-      client.setRequestTimeout(requesTimeout);
-      client.setConnectionTimeout((int) connectionTimeout);
+    this.extraConnections = extraConnections;
+    this.romClient = new RomClientJsonRpcClient(client, extraConnections);
+    this.manager = new RomManager(romClient);
+    List<JsonRpcClient> allClients = new ArrayList<>();
+    allClients.add(client);
+    allClients.addAll(extraConnections);
+    if (METRICS_ENABLED) {
+      setMetrics(new KurentoClientMetrics());
+    }
+    if (PROPERTY_CACHE_ENABLED) {
+      setPropertyCache(new PropertyCache(PROPERTY_CACHE_TTL));
+    }
+    if (AUTO_BATCH_ENABLED) {
+      enableAutoBatch(AUTO_BATCH_WINDOW, AUTO_BATCH_MAX_OPERATIONS);
     }
     if (client instanceof AbstractJsonRpcClientWebSocket) {
-      ((AbstractJsonRpcClientWebSocket) client).enableHeartbeat(KEEPALIVE_TIME);
+      // A single trace for all connections
+      WireTracer wireTracer = ((AbstractJsonRpcClientWebSocket) client).getWireTracer();
+      for (JsonRpcClient connection : extraConnections) {
+        if (connection instanceof AbstractJsonRpcClientWebSocket) {
+          ((AbstractJsonRpcClientWebSocket) connection).setWireTracer(wireTracer);
+        }
+      }
+    }
+    for (JsonRpcClient c : allClients) {
+      if (overrideClientTimeouts) {
+        c.setRequestTimeout(requesTimeout);
+        c.setConnectionTimeout((int) connectionTimeout);
+      }
+      if (c instanceof AbstractJsonRpcClientWebSocket) {
+        ((AbstractJsonRpcClientWebSocket) c).enableHeartbeat(KEEPALIVE_TIME);
+      }
     }
     try {
       long start = System.currentTimeMillis();
-      client.connect();
+      connectAll(client, extraConnections);
       long duration = System.currentTimeMillis() - start;
 
       if (duration > WARN_CONNECTION_TIME) {
@@ -268,6 +418,33 @@ public class KurentoClient {
     }
   }
 
+  /**
+   * Connects the main client and then the extra connections, which join the session the server has
+   * assigned to the main client.
+   */
+  private static void connectAll(JsonRpcClient client, List<JsonRpcClient> extraConnections)
+      throws IOException {
+
+    if (extraConnections.isEmpty() || !(client instanceof AbstractJsonRpcClientWebSocket)) {
+      client.connect();
+      for (JsonRpcClient connection : extraConnections) {
+        connection.connect();
+      }
+      return;
+    }
+
+    ((AbstractJsonRpcClientWebSocket) client).connectWithSession();
+    String sessionId = client.getSession().getSessionId();
+
+    for (JsonRpcClient connection : extraConnections) {
+      if (connection instanceof AbstractJsonRpcClientWebSocket) {
+        ((AbstractJsonRpcClientWebSocket) connection).connectWithSession(sessionId);
+      } else {
+        connection.connect();
+      }
+    }
+  }
+
   /**
    * Creates a new {@link MediaPipeline} in the media server.
    *
@@ -291,6 +468,15 @@ public class KurentoClient {
     new AbstractBuilder<MediaPipeline>(MediaPipeline.class, manager).buildAsync(cont);
   }
 
+  /**
+   * Creates a new {@link MediaPipeline} in the media server without blocking.
+   *
+   * @return A future completed with the media pipeline when it has been created
+   */
+  public CompletableFuture<MediaPipeline> createMediaPipelineAsync() {
+    return new AbstractBuilder<MediaPipeline>(MediaPipeline.class, manager).buildAsync();
+  }
+
   public MediaPipeline createMediaPipeline(Transaction tx) {
     return new AbstractBuilder<MediaPipeline>(MediaPipeline.class, manager).build(tx);
   }
@@ -383,12 +569,89 @@ public class KurentoClient {
   public void setLabel(String label) {
     this.label = label;
     updateLabel(client, label);
+    for (int i = 0; i < extraConnections.size(); i++) {
+      String connectionLabel = "conn" + (i + 1);
+      updateLabel(extraConnections.get(i),
+          label == null ? connectionLabel : label + ":" + connectionLabel);
+    }
+  }
+
+  /**
+   * Returns the number of WebSocket connections used by this client.
+   */
+  public int getNumConnections() {
+    return extraConnections.size() + 1;
   }
 
   public String getLabel() {
     return label;
   }
 
+  /**
+   * Sets where the measures of all the connections of this client are reported. By default,
+   * nothing is measured, unless the property {@code kurento.client.metrics} is true. In that case,
+   * a {@link KurentoClientMetrics} is used.
+   *
+   * @param metrics
+   *          the metrics, or null to stop measuring
+   */
+  public void setMetrics(JsonRpcMetrics metrics) {
+    client.setMetrics(metrics);
+    for (JsonRpcClient connection : extraConnections) {
+      connection.setMetrics(metrics);
+    }
+  }
+
+  public JsonRpcMetrics getMetrics() {
+    return client.getMetrics();
+  }
+
+  /**
+   * Sets the cache used to read properties of remote objects without a request to the media
+   * server. By default, properties are not cached, unless the property
+   * {@code kurento.client.propertyCache} is true. In that case, a cache whose values expire after
+   * {@code kurento.client.propertyCacheTtl} milliseconds (5000 by default) is used.
+   *
+   * @param propertyCache
+   *          the cache, or null to read every property from the media server
+   */
+  public void setPropertyCache(PropertyCache propertyCache) {
+    manager.setPropertyCache(propertyCache);
+  }
+
+  public PropertyCache getPropertyCache() {
+    return manager.getPropertyCache();
+  }
+
+  /**
+   * Enables implicit batching of async invocations: the ones made through {@code *Async} methods
+   * or with a {@link Continuation}. Invocations of objects of the same media pipeline made within
+   * the window are sent to the media server in a single transaction, and each one is completed
+   * with its own result or error, so a failed invocation doesn't affect the others. Synchronous
+   * invocations are never delayed, but they send the pending invocations of their pipeline first.
+   *
+   * Auto-batching is disabled by default, unless the property {@code kurento.client.autoBatch} is
+   * true. In that case, the window is {@code kurento.client.autoBatchWindow} microseconds (1000 by
+   * default) and transactions have at most {@code kurento.client.autoBatchMaxOperations}
+   * operations (100 by default).
+   *
+   * @param windowMicros
+   *          time in microseconds that an invocation waits for others to be sent with
+   * @param maxOperations
+   *          maximum number of operations of a transaction
+   */
+  public void enableAutoBatch(long windowMicros, int maxOperations) {
+    romClient.enableAutoBatch(windowMicros, maxOperations);
+  }
+
+  public void disableAutoBatch() {
+    romClient.disableAutoBatch();
+  }
+
+  public boolean isAutoBatchEnabled() {
+    return romClient.isAutoBatchEnabled();
+  }
+
   private static void updateLabel(JsonRpcClient client, String label) {
     String clientLabel = "KurentoClient";
     if (label != null) {
@@ -1,6 +1,8 @@
 
 package org.kurento.client;
 
+import org.kurento.jsonrpc.client.NettyTransportResources;
+
 public class KurentoClientBuilder {
 
   private Properties properties;
@@ -15,6 +17,10 @@ public class KurentoClientBuilder {
   private Long tryReconnectingMaxTime;
   private Long connectionTimeout;
 
+  private NettyTransportResources transportResources;
+
+  private Integer connections;
+
   public KurentoClientBuilder() {
   }
 
@@ -63,10 +69,32 @@ public class KurentoClientBuilder {
     return this;
   }
 
+  /**
+   * Makes the client share the Netty event loop of the given resources with other clients. If not
+   * set, the client creates its own event loop.
+   */
+  public KurentoClientBuilder setTransportResources(NettyTransportResources transportResources) {
+    this.transportResources = transportResources;
+    return this;
+  }
+
+  /**
+   * Sets the number of WebSocket connections to the media server. Requests are striped across them
+   * by media pipeline, so big responses of a pipeline don't delay the requests of others. If not
+   * set, the property {@code kurento.client.connections} is used (1 by default).
+   */
+  public KurentoClientBuilder setConnections(int connections) {
+    if (connections < 1) {
+      throw new IllegalArgumentException("At least one connection is needed: " + connections);
+    }
+    this.connections = connections;
+    return this;
+  }
+
   public KurentoClient connect() {
     return KurentoClient.create(kmsWsUri, properties, connectedHandler, connectionFailedHandler,
         reconnectingHandler, disconnectedHandler, reconnectedHandler, tryReconnectingMaxTime,
-        connectionTimeout);
+        connectionTimeout, transportResources, connections);
   }
 
 }
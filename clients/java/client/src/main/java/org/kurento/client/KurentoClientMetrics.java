@@ -0,0 +1,47 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client;
+
+import org.kurento.client.internal.transport.jsonrpc.RomJsonRpcConstants;
+import org.kurento.jsonrpc.client.DefaultJsonRpcMetrics;
+import org.kurento.jsonrpc.message.Request;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Metrics of a {@link KurentoClient}. Invocations are recorded per operation, with names like
+ * {@code invoke:processOffer}, and the other requests per method ({@code create},
+ * {@code release}, {@code transaction}...).
+ */
+public class KurentoClientMetrics extends DefaultJsonRpcMetrics {
+
+  @Override
+  protected String getOperationName(Request<?> request) {
+    if (RomJsonRpcConstants.INVOKE_METHOD.equals(request.getMethod())
+        && request.getParams() instanceof JsonObject) {
+      JsonElement operation = ((JsonObject) request.getParams())
+          .get(RomJsonRpcConstants.INVOKE_OPERATION_NAME);
+      if (operation != null && operation.isJsonPrimitive()) {
+        return request.getMethod() + ":" + operation.getAsString();
+      }
+    }
+    return request.getMethod();
+  }
+
+}
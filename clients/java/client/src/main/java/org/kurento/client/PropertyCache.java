@@ -0,0 +1,99 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.kurento.client.internal.client.RemoteObjectInvocationHandler;
+
+/**
+ * Client-side cache of the properties of remote objects, enabled with
+ * {@link KurentoClient#setPropertyCache(PropertyCache)} or the property
+ * {@code kurento.client.propertyCache}.
+ *
+ * <p>
+ * Only properties of classes generated from the module definitions are cached:
+ * <ul>
+ * <li>Final properties, like the media pipeline or the parent of an element, never expire.</li>
+ * <li>Read-only properties with a {@code <Property>Changed} event, like the media state, are
+ * updated with the events received by the listeners of the object, and expire after the TTL.</li>
+ * </ul>
+ * Writable properties are always read from the server, as other clients can change them.
+ * A TTL of zero or less keeps the values until they are invalidated.
+ */
+public class PropertyCache {
+
+  private final long ttlNanos;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  private volatile long generation;
+
+  public PropertyCache(long ttlMillis) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+  }
+
+  public long getTtlMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public void recordHit() {
+    hits.increment();
+  }
+
+  public void recordMiss() {
+    misses.increment();
+  }
+
+  /**
+   * Values cached before the last call to {@link #invalidateAll()} are not used.
+   */
+  public long getGeneration() {
+    return generation;
+  }
+
+  public boolean isExpired(long cachedAtNanos, long nowNanos) {
+    return ttlNanos > 0 && nowNanos - cachedAtNanos >= ttlNanos;
+  }
+
+  /**
+   * Discards the cached properties of all objects, so they are read again from the server.
+   */
+  public synchronized void invalidateAll() {
+    generation++;
+  }
+
+  /**
+   * Discards the cached properties of an object, so they are read again from the server.
+   */
+  public void invalidate(KurentoObject object) {
+    RemoteObjectInvocationHandler.getFor(object).getRemoteObject().invalidateCachedProperties();
+  }
+
+}
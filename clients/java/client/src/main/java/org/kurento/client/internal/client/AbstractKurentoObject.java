@@ -0,0 +1,194 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.client;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.kurento.client.Continuation;
+import org.kurento.client.Event;
+import org.kurento.client.EventListener;
+import org.kurento.client.GenericMediaEvent;
+import org.kurento.client.KurentoObject;
+import org.kurento.client.ListenerSubscription;
+import org.kurento.client.TFuture;
+import org.kurento.client.Transaction;
+import org.kurento.jsonrpc.Props;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Base class of the implementations generated by the Kurento maven plugin for remote classes.
+ *
+ * Generated subclasses know at build time the names of the parameters, the return types and the
+ * event classes of every method, so they call the {@link RemoteObject} directly instead of going
+ * through a {@link java.lang.reflect.Proxy} and a {@link RemoteObjectInvocationHandler}. A handler
+ * is still kept to be shared by both kinds of objects in equality checks and transactions.
+ */
+public abstract class AbstractKurentoObject implements KurentoObject {
+
+  private final RemoteObjectInvocationHandler handler;
+
+  protected AbstractKurentoObject(RemoteObject remoteObject, RomManager manager) {
+    this.handler = new RemoteObjectInvocationHandler(remoteObject, manager);
+  }
+
+  RemoteObjectInvocationHandler getHandler() {
+    return handler;
+  }
+
+  protected RemoteObject getRemoteObject() {
+    return handler.getRemoteObject();
+  }
+
+  @Override
+  public boolean isCommited() {
+    return getRemoteObject().isCommited();
+  }
+
+  @Override
+  public void waitCommited() throws InterruptedException {
+    getRemoteObject().waitCommited();
+  }
+
+  @Override
+  public void whenCommited(Continuation<?> continuation) {
+    getRemoteObject().whenCommited(continuation);
+  }
+
+  @Override
+  public void whenCommited(Continuation<?> continuation, Executor executor) {
+    getRemoteObject().whenCommited(continuation, executor);
+  }
+
+  @Override
+  public void release() {
+    getRemoteObject().release();
+  }
+
+  @Override
+  public void release(Continuation<Void> continuation) {
+    getRemoteObject().release(continuation);
+  }
+
+  @Override
+  public void release(Transaction tx) {
+    getRemoteObject().release(tx);
+  }
+
+  @Override
+  public String getId() {
+    return (String) getRemoteObject().invoke("getId", null, (Type) String.class);
+  }
+
+  @Override
+  public Object invoke(String method, Props params, Type returnType) {
+    return getRemoteObject().invoke(method, params, returnType);
+  }
+
+  protected void invoke(String method, Props params, Type returnType, Continuation<?> cont) {
+    getRemoteObject().invoke(method, params, returnType, cont);
+  }
+
+  @SuppressWarnings("unchecked")
+  protected <T> TFuture<T> invoke(String method, Props params, Type returnType, Transaction tx) {
+    return (TFuture<T>) getRemoteObject().invoke(method, params, returnType, tx);
+  }
+
+  @SuppressWarnings("unchecked")
+  protected <T> CompletableFuture<T> invokeAsync(String method, Props params, Type returnType) {
+    return (CompletableFuture<T>) getRemoteObject().invokeAsync(method, params, returnType);
+  }
+
+  protected Object getCached(CachedProperty property) {
+    return getRemoteObject().getCachedProperty(property);
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  protected void getCached(CachedProperty property, Continuation<?> cont) {
+    DefaultContinuation.notifyWhenComplete(getRemoteObject().getCachedPropertyAsync(property),
+        (Continuation) cont);
+  }
+
+  @SuppressWarnings("unchecked")
+  protected <T> CompletableFuture<T> getCachedAsync(CachedProperty property) {
+    return (CompletableFuture<T>) getRemoteObject().getCachedPropertyAsync(property);
+  }
+
+  @Override
+  public <T extends Event> ListenerSubscription addEventListener(String type,
+      EventListener<T> listener, Class<T> eventType) {
+    Class<? extends Event> eventClass = eventType != null ? eventType : GenericMediaEvent.class;
+    return getRemoteObject().addEventListener(type, newEventListener(eventClass, listener));
+  }
+
+  protected ListenerSubscription subscribe(String eventName, Class<? extends Event> eventClass,
+      EventListener<?> listener) {
+    return getRemoteObject().addEventListener(eventName, newEventListener(eventClass, listener));
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  protected void subscribe(String eventName, Class<? extends Event> eventClass,
+      EventListener<?> listener, Continuation<ListenerSubscription> cont) {
+    getRemoteObject().addEventListener(eventName, newEventListener(eventClass, listener),
+        (Continuation) cont);
+  }
+
+  @Override
+  public void removeEventListener(ListenerSubscription listener) {
+    getRemoteObject().removeEventListener((ListenerSubscriptionImpl) listener);
+  }
+
+  protected void unsubscribe(ListenerSubscription listener, Continuation<Void> cont) {
+    getRemoteObject().removeEventListener((ListenerSubscriptionImpl) listener, cont);
+  }
+
+  private RemoteObjectEventListener newEventListener(final Class<? extends Event> eventClass,
+      final EventListener<?> listener) {
+    return new RemoteObjectEventListener() {
+      @Override
+      public void onEvent(String eventType, JsonObject data) {
+        handler.propagateEventTo(AbstractKurentoObject.this, eventClass, data, listener);
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return handler.toString();
+  }
+
+  @Override
+  public int hashCode() {
+    return handler.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof KurentoObject)) {
+      return false;
+    }
+    return handler.equals(obj);
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.client;
+
+import java.lang.reflect.Type;
+
+/**
+ * A property of a remote class that can be kept in the {@link org.kurento.client.PropertyCache}.
+ * Generated classes declare one for each cacheable property, with what they know from the module
+ * definition.
+ */
+public final class CachedProperty {
+
+  final String getter;
+  final Type type;
+  final boolean immutable;
+  final String eventType;
+  final String eventProperty;
+
+  private CachedProperty(String getter, Type type, boolean immutable, String eventType,
+      String eventProperty) {
+    this.getter = getter;
+    this.type = type;
+    this.immutable = immutable;
+    this.eventType = eventType;
+    this.eventProperty = eventProperty;
+  }
+
+  /**
+   * A final property, whose value never changes.
+   */
+  public static CachedProperty immutable(String getter, Type type) {
+    return new CachedProperty(getter, type, true, null, null);
+  }
+
+  /**
+   * A read-only property whose new value is sent in the given property of an event.
+   */
+  public static CachedProperty eventBacked(String getter, Type type, String eventType,
+      String eventProperty) {
+    return new CachedProperty(getter, type, false, eventType, eventProperty);
+  }
+
+  @Override
+  public String toString() {
+    return getter;
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.client;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+import org.kurento.client.PropertyCache;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Cached property values of one remote object.
+ */
+class CachedValues {
+
+  static final class Entry {
+
+    final Object value;
+    final PropertyCache cache;
+    final long generation;
+    final long cachedAt;
+
+    Entry(Object value, PropertyCache cache, long cachedAt) {
+      this.value = value;
+      this.cache = cache;
+      this.generation = cache.getGeneration();
+      this.cachedAt = cachedAt;
+    }
+  }
+
+  private final ConcurrentMap<String, Entry> values = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, CachedProperty> propertiesByEvent =
+      new ConcurrentHashMap<>(2);
+
+  /**
+   * Returns the entry of the property if it can be used, or null if the property must be read
+   * from the server.
+   */
+  Entry get(CachedProperty property, PropertyCache cache) {
+
+    Entry entry = values.get(property.getter);
+
+    if (entry == null || entry.cache != cache || entry.generation != cache.getGeneration()
+        || !property.immutable && cache.isExpired(entry.cachedAt, System.nanoTime())) {
+      return null;
+    }
+    return entry;
+  }
+
+  /**
+   * Stores the value read from the server with a request sent at the given time. A value received
+   * in an event after the request was sent is kept, as it is newer.
+   */
+  void put(final CachedProperty property, final Object value, final PropertyCache cache,
+      final long requestedAt) {
+
+    if (property.eventType != null) {
+      propertiesByEvent.putIfAbsent(property.eventType, property);
+    }
+
+    values.compute(property.getter, new BiFunction<String, Entry, Entry>() {
+      @Override
+      public Entry apply(String getter, Entry entry) {
+        if (entry != null && entry.cache == cache && entry.generation == cache.getGeneration()
+            && entry.cachedAt - requestedAt > 0) {
+          return entry;
+        }
+        return new Entry(value, cache, System.nanoTime());
+      }
+    });
+  }
+
+  void invalidateAll() {
+    values.clear();
+  }
+
+  /**
+   * Updates the property whose value is carried by the event, if it has been read before.
+   */
+  void onEvent(String eventType, JsonObject data, PropertyCache cache, RomManager manager) {
+
+    CachedProperty property = propertiesByEvent.get(eventType);
+    if (property == null) {
+      return;
+    }
+
+    JsonElement value = data.get(property.eventProperty);
+    if (value == null) {
+      return;
+    }
+
+    values.put(property.getter, new Entry(manager.getCodecs().readValue(value,
+        property.eventProperty, property.type), cache, System.nanoTime()));
+  }
+
+}
@@ -17,6 +17,10 @@
 
 package org.kurento.client.internal.client;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+
 import org.kurento.client.Continuation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,4 +46,33 @@ public abstract class DefaultContinuation<F> implements Continuation<F> {
     }
   }
 
+  /**
+   * Notifies the outcome of the future to the continuation.
+   */
+  public static <F> void notifyWhenComplete(CompletableFuture<F> future,
+      final Continuation<F> cont) {
+
+    future.whenComplete(new BiConsumer<F, Throwable>() {
+      @Override
+      public void accept(F result, Throwable cause) {
+        if (cause == null) {
+          try {
+            cont.onSuccess(result);
+          } catch (Exception e) {
+            log.warn("[Continuation] error invoking onSuccess implemented by client", e);
+          }
+        } else {
+          if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+          }
+          try {
+            cont.onError(cause);
+          } catch (Exception e) {
+            log.warn("[Continuation] error invoking onError implemented by client", e);
+          }
+        }
+      }
+    });
+  }
+
 }
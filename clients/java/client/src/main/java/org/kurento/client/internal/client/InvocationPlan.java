@@ -0,0 +1,171 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.client;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.kurento.client.Event;
+import org.kurento.client.internal.ParamAnnotationUtils;
+import org.kurento.client.internal.server.EventSubscription;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * What {@link RemoteObjectInvocationHandler} needs to know to dispatch a call to a method of a
+ * remote class interface: parameter names, return types and event classes. It is computed the
+ * first time the method is invoked and cached with the interface that declares it, so it can be
+ * collected with the class loader of the interface.
+ */
+final class InvocationPlan {
+
+  enum Dispatch {
+    REMOTE_OBJECT, GENERIC_INVOKE, GENERIC_ADD_LISTENER, GENERIC_REMOVE_LISTENER, RELEASE,
+    ADD_EVENT_LISTENER, REMOVE_EVENT_LISTENER, INVOKE
+  }
+
+  private static final String ASYNC_SUFFIX = "Async";
+
+  private static final Set<String> REMOTE_OBJECT_METHODS = ImmutableSet.of("isCommited",
+      "waitCommited", "whenCommited", "beginTransaction");
+
+  private static final ClassValue<ConcurrentMap<Method, InvocationPlan>> PLANS =
+      new ClassValue<ConcurrentMap<Method, InvocationPlan>>() {
+        @Override
+        protected ConcurrentMap<Method, InvocationPlan> computeValue(Class<?> clazz) {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
+  final Dispatch dispatch;
+  final String methodName;
+
+  // Method of RemoteObject to be called for REMOTE_OBJECT methods
+  final Method remoteObjectMethod;
+
+  // Parameter names for calls without continuation or transaction, with a continuation as last
+  // parameter and with a transaction as first parameter
+  final List<String> paramNames;
+  final List<String> contParamNames;
+  final List<String> txParamNames;
+
+  final Type returnType;
+  final Type contType;
+  final Type txType;
+  final String asyncMethodName;
+  final Type asyncType;
+
+  final Class<? extends Event> eventClass;
+  final String eventName;
+
+  static InvocationPlan of(Method method) {
+    ConcurrentMap<Method, InvocationPlan> plans = PLANS.get(method.getDeclaringClass());
+    InvocationPlan plan = plans.get(method);
+    if (plan == null) {
+      plan = new InvocationPlan(method);
+      InvocationPlan previous = plans.putIfAbsent(method, plan);
+      if (previous != null) {
+        plan = previous;
+      }
+    }
+    return plan;
+  }
+
+  private InvocationPlan(Method method) {
+
+    methodName = method.getName();
+
+    Method roMethod = null;
+    Class<? extends Event> subscriptionEvent = null;
+    EventSubscription eventSubscription = method.getAnnotation(EventSubscription.class);
+
+    if (REMOTE_OBJECT_METHODS.contains(methodName)) {
+      dispatch = Dispatch.REMOTE_OBJECT;
+      try {
+        roMethod = RemoteObject.class.getMethod(methodName, method.getParameterTypes());
+      } catch (NoSuchMethodException e) {
+        throw new IllegalStateException("Method " + methodName + " undefined in RemoteObject", e);
+      }
+    } else if (methodName.equals("invoke")) {
+      dispatch = Dispatch.GENERIC_INVOKE;
+    } else if (methodName.equals("addEventListener")) {
+      dispatch = Dispatch.GENERIC_ADD_LISTENER;
+    } else if (methodName.equals("removeEventListener")) {
+      dispatch = Dispatch.GENERIC_REMOVE_LISTENER;
+    } else if (methodName.equals("release")) {
+      dispatch = Dispatch.RELEASE;
+    } else if (eventSubscription != null) {
+      subscriptionEvent = eventSubscription.value();
+      if (methodName.startsWith("add")) {
+        dispatch = Dispatch.ADD_EVENT_LISTENER;
+      } else if (methodName.startsWith("remove")) {
+        dispatch = Dispatch.REMOVE_EVENT_LISTENER;
+      } else {
+        throw new IllegalStateException("Method " + methodName + " undefined for events");
+      }
+    } else {
+      dispatch = Dispatch.INVOKE;
+    }
+
+    remoteObjectMethod = roMethod;
+    eventClass = subscriptionEvent;
+    eventName = subscriptionEvent == null ? null
+        : subscriptionEvent.getSimpleName().substring(0,
+            subscriptionEvent.getSimpleName().length() - "Event".length());
+
+    List<String> names = ParamAnnotationUtils.getParamNames(method);
+    int numParams = names.size();
+    paramNames = Collections.unmodifiableList(names);
+    contParamNames = numParams > 0 ? paramNames.subList(0, numParams - 1)
+        : Collections.<String> emptyList();
+    txParamNames = numParams > 0 ? paramNames.subList(1, numParams)
+        : Collections.<String> emptyList();
+
+    returnType = method.getGenericReturnType();
+
+    Type[] paramTypes = method.getGenericParameterTypes();
+    contType = numParams > 0 ? typeArgument(paramTypes[numParams - 1]) : null;
+
+    Type futureType = typeArgument(returnType);
+    txType = futureType != null ? futureType : Void.class;
+
+    if (method.getReturnType() == CompletableFuture.class && methodName.endsWith(ASYNC_SUFFIX)) {
+      asyncMethodName = methodName.substring(0, methodName.length() - ASYNC_SUFFIX.length());
+      asyncType = futureType;
+    } else {
+      asyncMethodName = null;
+      asyncType = null;
+    }
+  }
+
+  private static Type typeArgument(Type type) {
+    if (type instanceof ParameterizedType) {
+      return ((ParameterizedType) type).getActualTypeArguments()[0];
+    }
+    return null;
+  }
+
+}
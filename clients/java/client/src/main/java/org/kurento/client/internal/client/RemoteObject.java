@@ -20,11 +20,14 @@ package org.kurento.client.internal.client;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.function.Function;
 
 import org.kurento.client.Continuation;
 import org.kurento.client.KurentoObject;
+import org.kurento.client.PropertyCache;
 import org.kurento.client.TFuture;
 import org.kurento.client.Transaction;
 import org.kurento.client.TransactionExecutionException;
@@ -36,6 +39,7 @@ import org.kurento.client.internal.client.operation.ReleaseOperation;
 import org.kurento.client.internal.client.operation.SubscriptionOperation;
 import org.kurento.client.internal.client.operation.UnsubscriptionOperation;
 import org.kurento.client.internal.transport.serialization.ParamsFlattener;
+import org.kurento.jsonrpc.JsonUtils;
 import org.kurento.jsonrpc.Props;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +47,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
+import com.google.gson.JsonObject;
 
 public class RemoteObject {
 
@@ -59,7 +64,7 @@ public class RemoteObject {
   private ObjectStatus objectStatus;
   private final RomManager manager;
 
-  private KurentoObject kurentoObject;
+  private volatile KurentoObject kurentoObject;
 
   private volatile CountDownLatch readyLatch;
   private Continuation<Object> whenContinuation;
@@ -72,17 +77,30 @@ public class RemoteObject {
 
   private TransactionExecutionException transactionException;
 
+  private volatile CachedValues cachedValues;
+
   public RemoteObject(String objectRef, String type, RomManager manager) {
     this(objectRef, type, true, manager);
   }
 
   public RemoteObject(String objectRef, String type, boolean created, RomManager manager) {
+    this(objectRef, type, created, manager, true);
+  }
+
+  /**
+   * Creates a remote object that is not registered in the manager, so it can be registered once its
+   * Kurento object is set.
+   */
+  RemoteObject(String objectRef, String type, boolean created, RomManager manager,
+      boolean register) {
     this.objectRef = objectRef;
     this.manager = manager;
     this.type = type;
     this.objectStatus = created ? ObjectStatus.CREATED : ObjectStatus.NOT_COMMITED;
 
-    this.manager.registerObject(objectRef, this);
+    if (register) {
+      this.manager.registerObject(objectRef, this);
+    }
   }
 
   public boolean isCommited() {
@@ -196,24 +214,107 @@ public class RemoteObject {
     return op.getFuture();
   }
 
-  @SuppressWarnings("rawtypes")
+  @SuppressWarnings({ "rawtypes", "unchecked" })
   public void invoke(String method, Props params, final Type type, final Continuation cont) {
+    DefaultContinuation.notifyWhenComplete(invokeAsync(method, params, type), cont);
+  }
+
+  /**
+   * Invokes a method without blocking. The returned future completes with the unflattened result.
+   */
+  public CompletableFuture<Object> invokeAsync(String method, Props params, final Type type) {
 
     checkCreated();
 
+    if (method.equals("getId")) {
+      return CompletableFuture.<Object> completedFuture(objectRef);
+    }
+
     Type flattenType = FLATTENER.calculateFlattenType(type);
 
-    manager.invoke(objectRef, method, params, flattenType, new DefaultContinuation<Object>(cont) {
-      @SuppressWarnings("unchecked")
-      @Override
-      public void onSuccess(Object result) {
-        try {
-          cont.onSuccess(FLATTENER.unflattenValue("return", type, result, manager));
-        } catch (Exception e) {
-          log.warn("[Continuation] error invoking onSuccess implemented by client", e);
+    return manager.invokeAsync(objectRef, method, params, flattenType)
+        .thenApply(new Function<Object, Object>() {
+          @Override
+          public Object apply(Object result) {
+            return FLATTENER.unflattenValue("return", type, result, manager);
+          }
+        });
+  }
+
+  /**
+   * Reads a property through the property cache of the manager. The server is invoked if the
+   * cache is disabled or has no valid value.
+   */
+  public Object getCachedProperty(CachedProperty property) {
+
+    PropertyCache cache = manager.getPropertyCache();
+    if (cache == null) {
+      return invoke(property.getter, null, property.type);
+    }
+
+    checkCreated();
+
+    CachedValues values = getCachedValues();
+    CachedValues.Entry entry = values.get(property, cache);
+    if (entry != null) {
+      cache.recordHit();
+      return entry.value;
+    }
+
+    cache.recordMiss();
+    long requestedAt = System.nanoTime();
+    Object value = invoke(property.getter, null, property.type);
+    values.put(property, value, cache, requestedAt);
+    return value;
+  }
+
+  public CompletableFuture<Object> getCachedPropertyAsync(final CachedProperty property) {
+
+    final PropertyCache cache = manager.getPropertyCache();
+    if (cache == null) {
+      return invokeAsync(property.getter, null, property.type);
+    }
+
+    checkCreated();
+
+    final CachedValues values = getCachedValues();
+    CachedValues.Entry entry = values.get(property, cache);
+    if (entry != null) {
+      cache.recordHit();
+      return CompletableFuture.completedFuture(entry.value);
+    }
+
+    cache.recordMiss();
+    final long requestedAt = System.nanoTime();
+    return invokeAsync(property.getter, null, property.type)
+        .thenApply(new Function<Object, Object>() {
+          @Override
+          public Object apply(Object value) {
+            values.put(property, value, cache, requestedAt);
+            return value;
+          }
+        });
+  }
+
+  public void invalidateCachedProperties() {
+    CachedValues values = cachedValues;
+    if (values != null) {
+      values.invalidateAll();
+    }
+  }
+
+  private CachedValues getCachedValues() {
+    CachedValues values = cachedValues;
+    if (values == null) {
+      synchronized (this) {
+        values = cachedValues;
+        if (values == null) {
+          values = new CachedValues();
+          cachedValues = values;
         }
       }
-    });
+    }
+    return values;
   }
 
   public void release() {
@@ -324,6 +425,25 @@ public class RemoteObject {
   }
 
   public void fireEvent(String type, Props data) {
+    fireEvent(type, JsonUtils.toJsonObject(data));
+  }
+
+  /**
+   * Delivers an event to the listeners of the given type. The data is kept as received, so each
+   * listener decodes it straight into its event class.
+   */
+  public void fireEvent(String type, JsonObject data) {
+
+    CachedValues values = cachedValues;
+    PropertyCache cache = manager.getPropertyCache();
+    if (values != null && cache != null) {
+      try {
+        values.onEvent(type, data, cache, manager);
+      } catch (Exception e) {
+        log.warn("Exception updating cached properties of object {} with event {}",
+            this.getObjectRef(), type, e);
+      }
+    }
 
     Collection<RemoteObjectEventListener> typeListeners;
     synchronized (this.listeners) {
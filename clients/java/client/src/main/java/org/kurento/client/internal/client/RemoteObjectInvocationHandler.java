@@ -19,49 +19,72 @@ package org.kurento.client.internal.client;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
-import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.Optional;
 
 import org.kurento.client.Continuation;
 import org.kurento.client.Event;
 import org.kurento.client.EventListener;
-import org.kurento.client.GenericMediaElement;
 import org.kurento.client.GenericMediaEvent;
 import org.kurento.client.KurentoObject;
 import org.kurento.client.Transaction;
 import org.kurento.client.internal.ParamAnnotationUtils;
-import org.kurento.client.internal.server.EventSubscription;
+import org.kurento.client.internal.transport.serialization.KurentoCodec;
 import org.kurento.client.internal.transport.serialization.ParamsFlattener;
+import org.kurento.commons.exception.KurentoException;
+import org.kurento.jsonrpc.JsonUtils;
 import org.kurento.jsonrpc.Props;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.ImmutableSet;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 
 public class RemoteObjectInvocationHandler extends DefaultInvocationHandler {
 
   private static final Logger log = LoggerFactory.getLogger(RemoteObjectInvocationHandler.class);
 
-  private static final Set<String> REMOTE_OBJECT_METHODS = ImmutableSet.of("isCommited",
-      "waitCommited", "whenCommited", "beginTransaction");
+  private static final String IMPL_PACKAGE = ".internal.impl.";
+
+  private static final String IMPL_SUFFIX = "Impl";
+
+  // Constructors of the implementations generated for each remote class, if any
+  private static final ClassValue<Optional<Constructor<?>>> IMPL_CONSTRUCTORS =
+      new ClassValue<Optional<Constructor<?>>>() {
+    @Override
+    protected Optional<Constructor<?>> computeValue(Class<?> clazz) {
+      return findImplConstructor(clazz);
+    }
+  };
 
   private RemoteObject remoteObject;
   private final RomManager manager;
 
+  /**
+   * Creates the client object for a remote object. The implementation generated for the remote
+   * class is used when it is available, and a dynamic proxy otherwise.
+   */
   @SuppressWarnings("unchecked")
   public static <E> E newProxy(RemoteObject remoteObject, RomManager manager, Class<E> clazz) {
 
-    RemoteObjectInvocationHandler handler = new RemoteObjectInvocationHandler(remoteObject,
-        manager);
+    KurentoObject kurentoObject;
 
-    KurentoObject kurentoObject = (KurentoObject) Proxy.newProxyInstance(clazz.getClassLoader(),
-        new Class[] { clazz }, handler);
+    Optional<Constructor<?>> implConstructor = IMPL_CONSTRUCTORS.get(clazz);
+    if (implConstructor.isPresent()) {
+      try {
+        kurentoObject = (KurentoObject) implConstructor.get().newInstance(remoteObject, manager);
+      } catch (ReflectiveOperationException e) {
+        throw new KurentoException("Exception creating implementation of " + clazz.getName(), e);
+      }
+    } else {
+      RemoteObjectInvocationHandler handler = new RemoteObjectInvocationHandler(remoteObject,
+          manager);
+      kurentoObject = (KurentoObject) Proxy.newProxyInstance(clazz.getClassLoader(),
+          new Class[] { clazz }, handler);
+    }
 
     remoteObject.setKurentoObject(kurentoObject);
 
@@ -69,10 +92,40 @@ public class RemoteObjectInvocationHandler extends DefaultInvocationHandler {
   }
 
   public static RemoteObjectInvocationHandler getFor(Object object) {
+    if (object instanceof AbstractKurentoObject) {
+      return ((AbstractKurentoObject) object).getHandler();
+    }
     return (RemoteObjectInvocationHandler) Proxy.getInvocationHandler(object);
   }
 
-  private RemoteObjectInvocationHandler(RemoteObject remoteObject, RomManager manager) {
+  private static Optional<Constructor<?>> findImplConstructor(Class<?> clazz) {
+
+    if (!clazz.isInterface()) {
+      return Optional.empty();
+    }
+
+    String implName = clazz.getPackage().getName() + IMPL_PACKAGE + clazz.getSimpleName()
+        + IMPL_SUFFIX;
+
+    try {
+      Class<?> implClass = Class.forName(implName, true, clazz.getClassLoader());
+      if (!clazz.isAssignableFrom(implClass)
+          || !AbstractKurentoObject.class.isAssignableFrom(implClass)) {
+        log.warn("Class {} doesn't implement {}. A proxy will be used", implName, clazz.getName());
+        return Optional.empty();
+      }
+      return Optional.<Constructor<?>> of(
+          implClass.getConstructor(RemoteObject.class, RomManager.class));
+    } catch (ClassNotFoundException e) {
+      log.debug("No generated implementation found for {}. A proxy will be used", clazz.getName());
+      return Optional.empty();
+    } catch (NoSuchMethodException e) {
+      log.warn("Class {} has no suitable constructor. A proxy will be used", implName);
+      return Optional.empty();
+    }
+  }
+
+  RemoteObjectInvocationHandler(RemoteObject remoteObject, RomManager manager) {
     this.remoteObject = remoteObject;
     this.manager = manager;
   }
@@ -80,63 +133,49 @@ public class RemoteObjectInvocationHandler extends DefaultInvocationHandler {
   @Override
   public Object internalInvoke(final Object proxy, Method method, Object[] args) throws Throwable {
 
-    String methodName = method.getName();
-    if (REMOTE_OBJECT_METHODS.contains(methodName)) {
-      Method remoteObjectMethod = findMethod(remoteObject, methodName, args);
-      return remoteObjectMethod.invoke(remoteObject, args);
-    }
+    InvocationPlan plan = InvocationPlan.of(method);
 
-    Continuation<?> cont = null;
-    Transaction tx = null;
-    List<String> paramNames = Collections.emptyList();
-
-    switch (method.getName()) {
-    case "invoke":
+    switch (plan.dispatch) {
+      case REMOTE_OBJECT:
+        return plan.remoteObjectMethod.invoke(remoteObject, args);
+      case GENERIC_INVOKE:
         return genericMediaElementInvoke(args);
-    case "addEventListener":
-        return genericSubscribeEventListener((String) args[0], proxy, args, cont, tx);
-    case "removeEventListener":
-        return unsubscribeEventListener(null, args, null, null, cont, tx);
-    default:
+      case GENERIC_ADD_LISTENER:
+        return genericSubscribeEventListener((String) args[0], proxy, args, null, null);
+      case GENERIC_REMOVE_LISTENER:
+        return unsubscribeEventListener(args, null, null);
+      default:
         log.trace("Invoking method {} on object {}", method, proxy);
 
-        if (args != null && args.length > 0) {
+        Continuation<?> cont = null;
+        Transaction tx = null;
+        List<String> paramNames = plan.paramNames;
 
-            paramNames = ParamAnnotationUtils.getParamNames(method);
+        if (args != null && args.length > 0) {
 
-            if (args[args.length - 1] instanceof Continuation) {
+          if (args[args.length - 1] instanceof Continuation) {
 
-                cont = (Continuation<?>) args[args.length - 1];
-                args = Arrays.copyOf(args, args.length - 1);
-                paramNames = paramNames.subList(0, paramNames.size() - 1);
+            cont = (Continuation<?>) args[args.length - 1];
+            args = Arrays.copyOf(args, args.length - 1);
+            paramNames = plan.contParamNames;
 
-            } else if (args != null && args.length > 0 && args[0] instanceof Transaction) {
+          } else if (args[0] instanceof Transaction) {
 
-                tx = (Transaction) args[0];
-                args = Arrays.copyOfRange(args, 1, args.length);
-                paramNames = paramNames.subList(1, paramNames.size());
-            }
+            tx = (Transaction) args[0];
+            args = Arrays.copyOfRange(args, 1, args.length);
+            paramNames = plan.txParamNames;
+          }
         }
 
-        if (methodName.equals("release")) {
-
+        switch (plan.dispatch) {
+          case RELEASE:
             return release(cont, tx);
-
-        } else if (method.getAnnotation(EventSubscription.class) != null) {
-
-            EventSubscription eventSubscription = method.getAnnotation(EventSubscription.class);
-
-            if (methodName.startsWith("add")) {
-                return subscribeEventListener(proxy, args, methodName, eventSubscription.value(), cont, tx);
-            } else if (methodName.startsWith("remove")) {
-                return unsubscribeEventListener(proxy, args, methodName, eventSubscription.value(), cont, tx);
-            } else {
-                throw new IllegalStateException("Method " + methodName + " undefined for events");
-            }
-
-        } else {
-
-            return invoke(method, paramNames, args, cont, tx);
+          case ADD_EVENT_LISTENER:
+            return subscribeEventListener(proxy, args, plan.eventName, plan.eventClass, cont, tx);
+          case REMOVE_EVENT_LISTENER:
+            return unsubscribeEventListener(args, cont, tx);
+          default:
+            return invoke(plan, paramNames, args, cont, tx);
         }
     }
   }
@@ -157,34 +196,27 @@ public class RemoteObjectInvocationHandler extends DefaultInvocationHandler {
     return remoteObject.invoke(methodName, props, type);
   }
 
-  private Object invoke(Method method, List<String> paramNames, Object[] args, Continuation<?> cont,
-      Transaction tx) {
+  private Object invoke(InvocationPlan plan, List<String> paramNames, Object[] args,
+      Continuation<?> cont, Transaction tx) {
 
     Props props = ParamAnnotationUtils.extractProps(paramNames, args);
 
     if (cont != null) {
 
-      Type[] paramTypes = method.getGenericParameterTypes();
-      ParameterizedType contType = (ParameterizedType) paramTypes[paramTypes.length - 1];
-      Type returnType = contType.getActualTypeArguments()[0];
-      remoteObject.invoke(method.getName(), props, returnType, cont);
+      remoteObject.invoke(plan.methodName, props, plan.contType, cont);
       return null;
 
     } else if (tx != null) {
 
-      Type returnType = method.getGenericReturnType();
+      return remoteObject.invoke(plan.methodName, props, plan.txType, tx);
 
-      if (returnType instanceof ParameterizedType) {
-        ParameterizedType futureType = (ParameterizedType) returnType;
-        Type methodReturnType = futureType.getActualTypeArguments()[0];
-        return remoteObject.invoke(method.getName(), props, methodReturnType, tx);
-      } else {
-        return remoteObject.invoke(method.getName(), props, Void.class, tx);
-      }
+    } else if (plan.asyncMethodName != null) {
+
+      return remoteObject.invokeAsync(plan.asyncMethodName, props, plan.asyncType);
 
     } else {
 
-      return remoteObject.invoke(method.getName(), props, method.getGenericReturnType());
+      return remoteObject.invoke(plan.methodName, props, plan.returnType);
     }
   }
 
@@ -201,15 +233,12 @@ public class RemoteObjectInvocationHandler extends DefaultInvocationHandler {
   }
 
   @SuppressWarnings("unchecked")
-  private Object subscribeEventListener(final Object proxy, final Object[] args, String methodName,
+  private Object subscribeEventListener(final Object proxy, final Object[] args, String eventName,
       final Class<? extends Event> eventClass, Continuation<?> cont, Transaction tx) {
 
-    String eventName = eventClass.getSimpleName().substring(0,
-        eventClass.getSimpleName().length() - "Event".length());
-
     RemoteObjectEventListener listener = new RemoteObjectEventListener() {
       @Override
-      public void onEvent(String eventType, Props data) {
+      public void onEvent(String eventType, JsonObject data) {
         propagateEventTo(proxy, eventClass, data, (EventListener<?>) args[0]);
       }
     };
@@ -231,7 +260,7 @@ public class RemoteObjectInvocationHandler extends DefaultInvocationHandler {
 	
 		RemoteObjectEventListener listener = new RemoteObjectEventListener() {
 			@Override
-			public void onEvent(String eventType, Props data) {
+			public void onEvent(String eventType, JsonObject data) {
 				Class<? extends Event> realEventType = GenericMediaEvent.class;
 				if (args.length > 1) {
 					realEventType = (Class<Event>) args[2];
@@ -251,9 +280,7 @@ public class RemoteObjectInvocationHandler extends DefaultInvocationHandler {
 	}
 
   @SuppressWarnings("unchecked")
-  private Object unsubscribeEventListener(final Object proxy, final Object[] args,
-      String methodName, final Class<? extends Event> eventClass, Continuation<?> cont,
-      Transaction tx) {
+  private Object unsubscribeEventListener(Object[] args, Continuation<?> cont, Transaction tx) {
 
     ListenerSubscriptionImpl listenerSubscription = (ListenerSubscriptionImpl) args[0];
     if (cont != null) {
@@ -268,8 +295,8 @@ public class RemoteObjectInvocationHandler extends DefaultInvocationHandler {
   }
 
   @SuppressWarnings({ "unchecked", "rawtypes" })
-  protected void propagateEventTo(Object object, Class<? extends Event> eventClass, Props data,
-      EventListener<?> listener) {
+  protected void propagateEventTo(Object object, Class<? extends Event> eventClass,
+      JsonObject data, EventListener<?> listener) {
 
     // TODO Optimize this to create only one event for all listeners
 
@@ -277,15 +304,26 @@ public class RemoteObjectInvocationHandler extends DefaultInvocationHandler {
 
       log.debug("Event class '" + eventClass.getSimpleName() + " Data: " + data);
 
-      Constructor<?> constructor = eventClass.getConstructors()[0];
+      data.addProperty("source", ((KurentoObject) object).getId());
 
-      data.add("source", ((KurentoObject) object).getId());
+      Event event;
 
-      Object[] params = ParamsFlattener.getInstance().unflattenParams(
-          constructor.getParameterAnnotations(), constructor.getGenericParameterTypes(), data,
-          manager);
+      KurentoCodec<? extends Event> codec = manager.getCodecs().getCodec(eventClass);
+
+      if (codec != null) {
 
-      Event event = (Event) constructor.newInstance(params);
+        event = codec.decode(data);
+
+      } else {
+
+        Constructor<?> constructor = eventClass.getConstructors()[0];
+
+        Object[] params = ParamsFlattener.getInstance().unflattenParams(
+            constructor.getParameterAnnotations(), constructor.getGenericParameterTypes(),
+            JsonUtils.fromJson(data, Props.class), manager);
+
+        event = (Event) constructor.newInstance(params);
+      }
 
       ((EventListener) listener).onEvent(event);
 
@@ -19,6 +19,7 @@ package org.kurento.client.internal.client;
 
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.kurento.client.Continuation;
 import org.kurento.client.internal.client.operation.Operation;
@@ -32,6 +33,23 @@ public interface RomClient {
   public abstract String create(String remoteClassName, Props constructorParams, Props genericProps,
       Continuation<String> cont);
 
+  /**
+   * Creates a remote object without blocking the calling thread. The default implementation calls
+   * {@link #create(String, Props, Props)}, so it blocks; implementations able to send requests
+   * asynchronously should override it.
+   */
+  public default CompletableFuture<String> createAsync(String remoteClassName,
+      Props constructorParams, Props genericProps) {
+
+    CompletableFuture<String> future = new CompletableFuture<>();
+    try {
+      future.complete(create(remoteClassName, constructorParams, genericProps));
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
   public abstract <E> E invoke(String objectRef, String methodName, Props params, Class<E> clazz);
 
   public abstract Object invoke(String objectRef, String operationName, Props operationParams,
@@ -40,6 +58,23 @@ public interface RomClient {
   public abstract Object invoke(String objectRef, String operationName, Props operationParams,
       Type type, Continuation<?> cont);
 
+  /**
+   * Invokes an operation of a remote object without blocking the calling thread. The default
+   * implementation calls {@link #invoke(String, String, Props, Type)}, so it blocks;
+   * implementations able to send requests asynchronously should override it.
+   */
+  public default CompletableFuture<Object> invokeAsync(String objectRef, String operationName,
+      Props operationParams, Type type) {
+
+    CompletableFuture<Object> future = new CompletableFuture<>();
+    try {
+      future.complete(invoke(objectRef, operationName, operationParams, type));
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
   public abstract void release(String objectRef);
 
   public abstract void release(String objectRef, Continuation<Void> cont);
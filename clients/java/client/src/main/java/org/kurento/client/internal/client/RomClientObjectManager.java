@@ -20,11 +20,11 @@ package org.kurento.client.internal.client;
 import java.util.concurrent.ConcurrentMap;
 
 import org.kurento.client.internal.transport.serialization.ObjectRefsManager;
-import org.kurento.jsonrpc.Props;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.MapMaker;
+import com.google.gson.JsonObject;
 
 public class RomClientObjectManager implements RomEventHandler, ObjectRefsManager {
 
@@ -43,7 +43,7 @@ public class RomClientObjectManager implements RomEventHandler, ObjectRefsManage
   }
 
   @Override
-  public void processEvent(String objectRef, String subscription, String type, Props data) {
+  public void processEvent(String objectRef, String subscription, String type, JsonObject data) {
 
     RemoteObject object = objects.get(objectRef);
 
@@ -62,6 +62,15 @@ public class RomClientObjectManager implements RomEventHandler, ObjectRefsManage
     this.objects.put(objectRef, remoteObject);
   }
 
+  /**
+   * Registers the object only if there isn't another one registered with the same reference.
+   *
+   * @return the object previously registered, or null if the given one has been registered
+   */
+  public RemoteObject registerObjectIfAbsent(String objectRef, RemoteObject remoteObject) {
+    return this.objects.putIfAbsent(objectRef, remoteObject);
+  }
+
   public void releaseObject(String objectRef) {
     this.objects.remove(objectRef);
   }
@@ -19,12 +19,16 @@ package org.kurento.client.internal.client;
 
 import java.lang.reflect.Type;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 import org.kurento.client.Continuation;
+import org.kurento.client.PropertyCache;
 import org.kurento.client.Transaction;
 import org.kurento.client.internal.TransactionImpl;
 import org.kurento.client.internal.client.operation.MediaObjectCreationOperation;
 import org.kurento.client.internal.client.operation.Operation;
+import org.kurento.client.internal.transport.serialization.KurentoCodecs;
 import org.kurento.client.internal.transport.serialization.ObjectRefsManager;
 import org.kurento.client.internal.transport.serialization.ParamsFlattener;
 import org.kurento.jsonrpc.Props;
@@ -39,6 +43,8 @@ public class RomManager implements ObjectRefsManager {
 
   private final RomClientObjectManager manager;
   private final RomClient client;
+  private final KurentoCodecs codecs = new KurentoCodecs(this);
+  private volatile PropertyCache propertyCache;
 
   public RomManager(RomClient client) {
     this.client = client;
@@ -48,88 +54,135 @@ public class RomManager implements ObjectRefsManager {
     }
   }
 
-  // FIXME: Improve concurrency
-  public synchronized RemoteObject create(String remoteClassName, Props constructorParams,
+  /**
+   * Creates an object in the server. The request is sent without holding any lock, so objects can
+   * be created concurrently from several threads.
+   */
+  public RemoteObject create(String remoteClassName, Props constructorParams,
       Props genericProps) {
-	  
-	if(remoteClassName.equals("GenericMediaElement")) {
-		remoteClassName = (String) constructorParams.removeProp("mediaElementClassName");
-	}
-	  
-    String objectRef = client.create(remoteClassName, constructorParams, genericProps);
-
-    return new RemoteObject(objectRef, remoteClassName, this);
+    return createRemoteObject(remoteClassName, constructorParams, genericProps, null);
   }
 
-  public synchronized RemoteObject create(String remoteClassName, Props constructorParams,
+  public RemoteObject create(String remoteClassName, Props constructorParams,
       Props genericProps, Transaction tx) {
-
-    TransactionImpl txImpl = (TransactionImpl) tx;
-
-    RemoteObject remoteObject = new RemoteObject(txImpl.nextObjectRef(), remoteClassName, false,
-        this);
-
-    MediaObjectCreationOperation op = new MediaObjectCreationOperation(remoteClassName,
-        constructorParams, genericProps, remoteObject);
-
-    txImpl.addOperation(op);
-
-    return remoteObject;
-
+    return createRemoteObject(remoteClassName, constructorParams, genericProps, tx, null);
   }
 
-  public synchronized RemoteObject create(String remoteClassName) {
+  public RemoteObject create(String remoteClassName) {
     return create(remoteClassName, (Props) null, null);
   }
 
-  public synchronized void create(final String remoteClassName, final Props constructorParams,
+  public void create(final String remoteClassName, final Props constructorParams,
       Props genericProps, final Continuation<RemoteObject> cont) {
+    DefaultContinuation.notifyWhenComplete(
+        createAsync(remoteClassName, constructorParams, genericProps), cont);
+  }
 
-    client.create(remoteClassName, constructorParams, genericProps, new Continuation<String>() {
-      @Override
-      public void onSuccess(String objectRef) {
-        try {
-          cont.onSuccess(new RemoteObject(objectRef, remoteClassName, RomManager.this));
-        } catch (Exception e) {
-          log.warn("[Continuation] error invoking onSuccess implemented by client", e);
-        }
-      }
+  public CompletableFuture<RemoteObject> createAsync(final String remoteClassName,
+      Props constructorParams, Props genericProps) {
+    return createRemoteObjectAsync(remoteClassName, constructorParams, genericProps, null);
+  }
 
-      @Override
-      public void onError(Throwable cause) {
-        try {
-          cont.onError(cause);
-        } catch (Exception e) {
-          log.warn("[Continuation] error invoking onError implemented by client", e);
-        }
-      }
-    });
+  /**
+   * Creates an object asynchronously, with its Kurento object already set when the future is
+   * completed.
+   */
+  public CompletableFuture<RemoteObject> createWithKurentoObjectAsync(Class<?> clazz,
+      Props props, Props genericProps) {
+    return createRemoteObjectAsync(clazz.getSimpleName(), props, genericProps, clazz);
   }
 
-  public synchronized void create(String remoteClassName, Continuation<RemoteObject> cont) {
+  public void create(String remoteClassName, Continuation<RemoteObject> cont) {
     create(remoteClassName, null, null, cont);
   }
 
   @Override
-  public synchronized Object getObject(String objectRef) {
+  public Object getObject(String objectRef) {
     return manager.getObject(objectRef);
   }
 
+  /**
+   * Returns the Kurento object with the given reference, creating it if it isn't known by this
+   * client. If several threads create the same object concurrently, all of them obtain the one
+   * registered first.
+   */
   @SuppressWarnings("unchecked")
-  public synchronized <T> T getById(String objectRef, Class<T> clazz) {
+  public <T> T getById(String objectRef, Class<T> clazz) {
 
-    RemoteObject remoteObject = (RemoteObject) this.getObject(objectRef);
+    RemoteObject remoteObject = manager.getRemoteObject(objectRef);
 
     if (remoteObject == null) {
 
       clazz = obtainConcreteClass(objectRef, clazz);
 
-      remoteObject = new RemoteObject(objectRef, clazz.getSimpleName(), this);
+      remoteObject = publish(
+          new RemoteObject(objectRef, clazz.getSimpleName(), true, this, false), clazz);
+    }
+
+    return (T) remoteObject.getKurentoObject();
+  }
+
+  private RemoteObject createRemoteObject(String remoteClassName, Props constructorParams,
+      Props genericProps, Class<?> clazz) {
+
+    remoteClassName = resolveClassName(remoteClassName, constructorParams);
+
+    String objectRef = client.create(remoteClassName, constructorParams, genericProps);
+
+    return publish(new RemoteObject(objectRef, remoteClassName, true, this, false), clazz);
+  }
+
+  private RemoteObject createRemoteObject(String remoteClassName, Props constructorParams,
+      Props genericProps, Transaction tx, Class<?> clazz) {
+
+    TransactionImpl txImpl = (TransactionImpl) tx;
+
+    RemoteObject remoteObject = publish(
+        new RemoteObject(txImpl.nextObjectRef(), remoteClassName, false, this, false), clazz);
+
+    MediaObjectCreationOperation op = new MediaObjectCreationOperation(remoteClassName,
+        constructorParams, genericProps, remoteObject);
 
+    txImpl.addOperation(op);
+
+    return remoteObject;
+  }
+
+  private CompletableFuture<RemoteObject> createRemoteObjectAsync(final String remoteClassName,
+      Props constructorParams, Props genericProps, final Class<?> clazz) {
+
+    return client.createAsync(remoteClassName, constructorParams, genericProps)
+        .thenApply(new Function<String, RemoteObject>() {
+          @Override
+          public RemoteObject apply(String objectRef) {
+            return publish(new RemoteObject(objectRef, remoteClassName, true, RomManager.this,
+                false), clazz);
+          }
+        });
+  }
+
+  private String resolveClassName(String remoteClassName, Props constructorParams) {
+    if (remoteClassName.equals("GenericMediaElement")) {
+      return (String) constructorParams.removeProp("mediaElementClassName");
+    }
+    return remoteClassName;
+  }
+
+  /**
+   * Registers a new remote object after setting its Kurento object, so other threads never find it
+   * without one. If another object has been registered with the same reference in the meantime,
+   * that one is returned instead.
+   */
+  private RemoteObject publish(RemoteObject remoteObject, Class<?> clazz) {
+
+    if (clazz != null) {
       RemoteObjectInvocationHandler.newProxy(remoteObject, this, clazz);
     }
 
-    return (T) remoteObject.getKurentoObject();
+    RemoteObject previous = manager.registerObjectIfAbsent(remoteObject.getObjectRef(),
+        remoteObject);
+
+    return previous != null ? previous : remoteObject;
   }
 
   @SuppressWarnings("unchecked")
@@ -145,7 +198,7 @@ public class RomManager implements ObjectRefsManager {
     }
   }
 
-  public synchronized void registerObject(String objectRef, RemoteObject remoteObject) {
+  public void registerObject(String objectRef, RemoteObject remoteObject) {
     this.manager.registerObject(objectRef, remoteObject);
   }
 
@@ -167,6 +220,11 @@ public class RomManager implements ObjectRefsManager {
     return client.invoke(objectRef, operationName, operationParams, type, cont);
   }
 
+  public CompletableFuture<Object> invokeAsync(String objectRef, String operationName,
+      Props operationParams, Type type) {
+    return client.invokeAsync(objectRef, operationName, operationParams, type);
+  }
+
   public void release(String objectRef) {
     client.release(objectRef);
     manager.releaseObject(objectRef);
@@ -210,6 +268,18 @@ public class RomManager implements ObjectRefsManager {
     return manager;
   }
 
+  public KurentoCodecs getCodecs() {
+    return codecs;
+  }
+
+  public PropertyCache getPropertyCache() {
+    return propertyCache;
+  }
+
+  public void setPropertyCache(PropertyCache propertyCache) {
+    this.propertyCache = propertyCache;
+  }
+
   public void transaction(List<Operation> operations) {
     for (Operation op : operations) {
       op.setManager(this);
@@ -240,26 +310,14 @@ public class RomManager implements ObjectRefsManager {
     return client;
   }
 
-  public synchronized RemoteObject createWithKurentoObject(Class<?> clazz, Props props,
+  public RemoteObject createWithKurentoObject(Class<?> clazz, Props props,
       Props genericProps, Transaction transaction) {
-
-    RemoteObject remoteObject = this.create(clazz.getSimpleName(), props, genericProps,
-        transaction);
-
-    RemoteObjectInvocationHandler.newProxy(remoteObject, this, clazz);
-
-    return remoteObject;
+    return createRemoteObject(clazz.getSimpleName(), props, genericProps, transaction, clazz);
   }
 
-  public synchronized RemoteObject createWithKurentoObject(Class<?> clazz, Props props,
+  public RemoteObject createWithKurentoObject(Class<?> clazz, Props props,
       Props genericProps) {
-
-    RemoteObject remoteObject = this.create(clazz.getSimpleName(), props, genericProps);
-
-    RemoteObjectInvocationHandler.newProxy(remoteObject, this, clazz);
-
-    return remoteObject;
-
+    return createRemoteObject(clazz.getSimpleName(), props, genericProps, clazz);
   }
 
 }
@@ -22,6 +22,7 @@ import org.kurento.commons.SecretGenerator;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.collect.Maps;
 
 public class RemoteObjectManager implements ObjectRefsManager {
 
@@ -60,15 +61,15 @@ public class RemoteObjectManager implements ObjectRefsManager {
   }
 
   private SecretGenerator secretGenerator = new SecretGenerator();
-  private BiMap<String, ObjectHolder> remoteObjects = HashBiMap.create();
+  private BiMap<String, ObjectHolder> remoteObjects = Maps.synchronizedBiMap(HashBiMap
+      .<String, ObjectHolder> create());
 
   public String putObject(Object object) {
+    ObjectHolder holder = new ObjectHolder(object);
     String nextSecret;
     do {
       nextSecret = secretGenerator.nextSecret();
-    } while (remoteObjects.get(nextSecret) != null);
-
-    remoteObjects.put(nextSecret, new ObjectHolder(object));
+    } while (remoteObjects.putIfAbsent(nextSecret, holder) != null);
 
     return nextSecret;
   }
@@ -0,0 +1,231 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.transport.jsonrpc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.kurento.client.internal.transport.jsonrpc.RomClientJsonRpcClient.RequestAndResponseType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Coalesces invocations of objects of the same media pipeline into transactions.
+ *
+ * The first invocation added to the empty batch of a pipeline starts a window of the configured
+ * duration. The batch is sent when the window ends, as soon as it reaches the maximum number of
+ * operations, or before any other request of the pipeline is sent, whatever happens first. Batches
+ * of a pipeline are taken while holding its monitor and sent while holding its send lock, so they
+ * are sent in the same order they were filled, and adding invocations doesn't wait for a send.
+ */
+class InvocationBatcher {
+
+  interface BatchSender {
+
+    void sendBatch(List<BatchedInvocation> invocations);
+  }
+
+  static class BatchedInvocation {
+
+    final RequestAndResponseType reqres;
+    final CompletableFuture<Object> future = new CompletableFuture<>();
+
+    BatchedInvocation(RequestAndResponseType reqres) {
+      this.reqres = reqres;
+    }
+  }
+
+  private static class PipelineBatch {
+
+    private final Lock sendLock = new ReentrantLock();
+
+    private List<BatchedInvocation> invocations;
+    private ScheduledFuture<?> flushTask;
+
+    private List<BatchedInvocation> take() {
+      if (flushTask != null) {
+        flushTask.cancel(false);
+        flushTask = null;
+      }
+      List<BatchedInvocation> taken = invocations;
+      invocations = null;
+      return taken;
+    }
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(InvocationBatcher.class);
+
+  private final BatchSender sender;
+  private final ScheduledExecutorService scheduler;
+  private final long windowMicros;
+  private final int maxOperations;
+
+  private final ConcurrentMap<String, PipelineBatch> batches = new ConcurrentHashMap<>();
+
+  /**
+   * @param scheduler
+   *          executor that sends the batches whose window ends
+   * @param windowMicros
+   *          maximum time, in microseconds, that an invocation waits for other invocations of the
+   *          same pipeline
+   * @param maxOperations
+   *          maximum number of operations of a transaction
+   */
+  InvocationBatcher(BatchSender sender, ScheduledExecutorService scheduler, long windowMicros,
+      int maxOperations) {
+    Preconditions.checkArgument(windowMicros > 0, "Batch window must be positive: %s",
+        windowMicros);
+    Preconditions.checkArgument(maxOperations > 1,
+        "Batches must allow more than one operation: %s", maxOperations);
+    this.sender = sender;
+    this.scheduler = scheduler;
+    this.windowMicros = windowMicros;
+    this.maxOperations = maxOperations;
+  }
+
+  /**
+   * Adds an invocation to the batch of a pipeline.
+   *
+   * @return a future completed with the result of the invocation
+   */
+  CompletableFuture<Object> add(String pipelineRef, RequestAndResponseType reqres) {
+
+    BatchedInvocation invocation = new BatchedInvocation(reqres);
+
+    PipelineBatch batch = batches.get(pipelineRef);
+    if (batch == null) {
+      PipelineBatch newBatch = new PipelineBatch();
+      batch = batches.putIfAbsent(pipelineRef, newBatch);
+      if (batch == null) {
+        batch = newBatch;
+      }
+    }
+
+    List<BatchedInvocation> full = null;
+
+    synchronized (batch) {
+      if (batch.invocations == null) {
+        batch.invocations = new ArrayList<>();
+      }
+      batch.invocations.add(invocation);
+
+      if (batch.invocations.size() >= maxOperations) {
+        full = batch.take();
+        batch.sendLock.lock();
+      } else if (batch.flushTask == null) {
+        final PipelineBatch scheduledBatch = batch;
+        try {
+          batch.flushTask = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+              flush(scheduledBatch);
+            }
+          }, windowMicros, TimeUnit.MICROSECONDS);
+        } catch (RejectedExecutionException e) {
+          // Auto-batching is being disabled, so nothing would flush this invocation later
+          full = batch.take();
+          batch.sendLock.lock();
+        }
+      }
+    }
+
+    if (full != null) {
+      send(batch, full);
+    }
+
+    return invocation.future;
+  }
+
+  /**
+   * Sends the invocations waiting in the batch of a pipeline, if any.
+   */
+  void flush(String pipelineRef) {
+    PipelineBatch batch = batches.get(pipelineRef);
+    if (batch != null) {
+      flush(batch);
+    }
+  }
+
+  void flushAll() {
+    for (PipelineBatch batch : batches.values()) {
+      flush(batch);
+    }
+  }
+
+  /**
+   * Sends the invocations waiting for a pipeline and forgets its batch. Used when the pipeline is
+   * released.
+   */
+  void remove(String pipelineRef) {
+    PipelineBatch batch = batches.remove(pipelineRef);
+    if (batch != null) {
+      flush(batch);
+    }
+  }
+
+  long getWindowMicros() {
+    return windowMicros;
+  }
+
+  int getMaxOperations() {
+    return maxOperations;
+  }
+
+  private void flush(PipelineBatch batch) {
+
+    List<BatchedInvocation> invocations;
+    synchronized (batch) {
+      invocations = batch.take();
+      // Also taken when there is nothing to send, to wait for a batch that is being sent
+      batch.sendLock.lock();
+    }
+
+    if (invocations != null) {
+      send(batch, invocations);
+    } else {
+      batch.sendLock.unlock();
+    }
+  }
+
+  // Called holding the send lock of the batch, which is released once the invocations are sent
+  private void send(PipelineBatch batch, List<BatchedInvocation> invocations) {
+    try {
+      sender.sendBatch(invocations);
+    } catch (Exception e) {
+      log.warn("Exception sending batch of {} invocations", invocations.size(), e);
+      for (BatchedInvocation invocation : invocations) {
+        invocation.future.completeExceptionally(e);
+      }
+    } finally {
+      batch.sendLock.unlock();
+    }
+  }
+
+}
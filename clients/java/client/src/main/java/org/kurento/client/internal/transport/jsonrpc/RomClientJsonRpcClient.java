@@ -43,10 +43,20 @@ import static org.kurento.client.internal.transport.jsonrpc.RomJsonRpcConstants.
 import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
 
 import org.kurento.client.Continuation;
 import org.kurento.client.TransactionExecutionException;
+import org.kurento.client.TransactionNotExecutedException;
 import org.kurento.client.internal.client.DefaultContinuation;
 import org.kurento.client.internal.client.RomClient;
 import org.kurento.client.internal.client.RomEventHandler;
@@ -59,7 +69,12 @@ import org.kurento.jsonrpc.JsonRpcErrorException;
 import org.kurento.jsonrpc.JsonUtils;
 import org.kurento.jsonrpc.Props;
 import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.client.AbstractJsonRpcClientWebSocket;
 import org.kurento.jsonrpc.client.JsonRpcClient;
+import org.kurento.jsonrpc.client.RequestReplayPolicy;
+import org.kurento.jsonrpc.client.ServerRequestOrderingKey;
+import org.kurento.jsonrpc.internal.JsonRpcConstants;
+import org.kurento.jsonrpc.internal.client.ClientScheduler;
 import org.kurento.jsonrpc.message.Request;
 import org.kurento.jsonrpc.message.Response;
 import org.slf4j.Logger;
@@ -67,6 +82,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Function;
 import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -86,10 +102,164 @@ public class RomClientJsonRpcClient implements RomClient {
 
   private static final Logger log = LoggerFactory.getLogger(RomClientJsonRpcClient.class);
 
+  private static final String CREATE_MEDIA_PIPELINE_PARAM = "mediaPipeline";
+
+  private static final long CONNECT_RETRY_MILLIS = 1000;
+
+  // Property getters don't change the state of the media server, so they can be sent again
+  private static final RequestReplayPolicy REPLAY_POLICY = new RequestReplayPolicy() {
+    @Override
+    public boolean isIdempotent(Request<?> request) {
+      if (!INVOKE_METHOD.equals(request.getMethod())
+          || !(request.getParams() instanceof JsonObject)) {
+        return false;
+      }
+      JsonElement operation = ((JsonObject) request.getParams()).get(INVOKE_OPERATION_NAME);
+      return operation != null && operation.isJsonPrimitive()
+          && operation.getAsString().startsWith("get");
+    }
+  };
+
+  @SuppressWarnings("serial")
+  private static final Type TRANSACTION_RESPONSE_TYPE =
+      new TypeToken<List<Response<JsonElement>>>() {
+      }.getType();
+
   private final JsonRpcClient client;
+  private final JsonRpcClient[] connections;
+  private final AtomicBoolean[] joiningSession;
+  // Connection attempt in progress or last made for each connection
+  private final AtomicReferenceArray<CompletableFuture<Void>> connecting;
+
+  private volatile InvocationBatcher batcher;
+  private ScheduledExecutorService batchFlushExec;
 
   public RomClientJsonRpcClient(JsonRpcClient client) {
+    this(client, Collections.<JsonRpcClient> emptyList());
+  }
+
+  /**
+   * Creates a client that stripes requests over several connections to the same media server.
+   *
+   * Requests are sent through the connection chosen by the media pipeline of the object they
+   * target, so all requests of a pipeline are sent through the same connection, in order, while
+   * big responses of other pipelines don't delay them. All connections share the session of the
+   * main client, and events are accepted from any of them. Events are queued in the dispatcher of
+   * the main client, so events of the same object are processed in order whatever connection they
+   * arrive on. Requests not related to a pipeline are sent through the main client.
+   *
+   * A connection that is not connected when one of its pipelines sends a request is connected in
+   * the background, and the requests of its pipelines are sent through the main client until it
+   * joins the session. Requests sent just before it joins can then be processed at the same time as
+   * the first ones sent through it, so connections should be connected beforehand, as
+   * {@code KurentoClient} does.
+   *
+   * A pipeline is never moved to another connection while its own one is recovered, as its
+   * requests could then arrive out of order: extra WebSocket connections hold the requests issued
+   * while they reconnect, and send them once they are connected again (see
+   * {@link AbstractJsonRpcClientWebSocket#enableRequestReplay()}). Only the pipelines of a
+   * connection closed by the application are moved to the main client, for good.
+   *
+   * @param client
+   *          main client, which owns the session
+   * @param extraConnections
+   *          additional clients connected to the same media server
+   */
+  public RomClientJsonRpcClient(JsonRpcClient client, List<JsonRpcClient> extraConnections) {
     this.client = client;
+    this.connections = new JsonRpcClient[extraConnections.size() + 1];
+    this.connections[0] = client;
+    for (int i = 0; i < extraConnections.size(); i++) {
+      this.connections[i + 1] = extraConnections.get(i);
+    }
+    this.joiningSession = new AtomicBoolean[connections.length];
+    this.connecting = new AtomicReferenceArray<>(connections.length);
+    for (int i = 0; i < connections.length; i++) {
+      connections[i].setRequestReplayPolicy(REPLAY_POLICY);
+      joiningSession[i] = new AtomicBoolean();
+      if (i > 0 && connections[i] instanceof AbstractJsonRpcClientWebSocket) {
+        AbstractJsonRpcClientWebSocket connection = (AbstractJsonRpcClientWebSocket) connections[i];
+        if (!connection.isRequestReplayEnabled()) {
+          connection.enableRequestReplay();
+        }
+        // Events of an object can arrive through any connection, so they wait in the same queue
+        if (client instanceof AbstractJsonRpcClientWebSocket) {
+          connection.setServerRequestDispatcher(
+              ((AbstractJsonRpcClientWebSocket) client).getServerRequestDispatcher());
+        }
+      }
+    }
+  }
+
+  public int getNumConnections() {
+    return connections.length;
+  }
+
+  /**
+   * Enables coalescing of async invocations into transactions. Invocations of objects of the same
+   * media pipeline made within the given window are sent together in a single transaction request,
+   * which is sent earlier if it reaches the maximum number of operations or if another request of
+   * the pipeline has to be sent. The media server answers each operation separately, so each
+   * invocation is completed with its own result or error. Auto-batching is disabled by default.
+   *
+   * @param windowMicros
+   *          time in microseconds that an invocation waits for others to be sent with
+   * @param maxOperations
+   *          maximum number of operations of a transaction
+   */
+  public void enableAutoBatch(long windowMicros, int maxOperations) {
+
+    InvocationBatcher previous;
+    synchronized (this) {
+      if (batchFlushExec == null) {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+            new ThreadFactoryBuilder().setNameFormat("RomClient-batchFlush-%d").setDaemon(true)
+                .build());
+        executor.setRemoveOnCancelPolicy(true);
+        batchFlushExec = executor;
+      }
+
+      previous = batcher;
+      batcher = new InvocationBatcher(new InvocationBatcher.BatchSender() {
+        @Override
+        public void sendBatch(List<InvocationBatcher.BatchedInvocation> invocations) {
+          RomClientJsonRpcClient.this.sendBatch(invocations);
+        }
+      }, batchFlushExec, windowMicros, maxOperations);
+    }
+
+    if (previous != null) {
+      previous.flushAll();
+    }
+  }
+
+  public void disableAutoBatch() {
+
+    InvocationBatcher previous;
+    ScheduledExecutorService executor;
+    synchronized (this) {
+      previous = batcher;
+      executor = batchFlushExec;
+      batcher = null;
+      batchFlushExec = null;
+    }
+
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+    if (previous != null) {
+      previous.flushAll();
+    }
+  }
+
+  /**
+   * Returns whether async invocations are coalesced into transactions.
+   *
+   * @return true if auto-batching has been enabled
+   * @see #enableAutoBatch(long, int)
+   */
+  public boolean isAutoBatchEnabled() {
+    return batcher != null;
   }
 
   // Operations
@@ -117,6 +287,24 @@ public class RomClientJsonRpcClient implements RomClient {
     return sendRequest(reqres.request, reqres.responseType, null, cont);
   }
 
+  @Override
+  public CompletableFuture<Object> invokeAsync(String objectRef, String operationName,
+      Props operationParams, Type type) {
+
+    RequestAndResponseType reqres = createInvokeRequest(objectRef, operationName, operationParams,
+        type, false);
+
+    InvocationBatcher currentBatcher = batcher;
+    if (currentBatcher != null) {
+      String pipelineRef = getPipelineRef(reqres.request.getParams());
+      if (pipelineRef != null) {
+        return currentBatcher.add(pipelineRef, reqres);
+      }
+    }
+
+    return this.<Object, Object> sendRequestAsync(reqres.request, reqres.responseType, null);
+  }
+
   @Override
   public String subscribe(String objectRef, String type) {
     return subscribe(objectRef, type, null);
@@ -157,6 +345,16 @@ public class RomClientJsonRpcClient implements RomClient {
     return this.<String, String> sendRequest(reqres.request, reqres.responseType, null, cont);
   }
 
+  @Override
+  public CompletableFuture<String> createAsync(String remoteClassName, Props constructorParams,
+      Props genericProperties) {
+
+    RequestAndResponseType reqres = createCreateRequest(remoteClassName, constructorParams,
+        genericProperties, false);
+
+    return this.<String, String> sendRequestAsync(reqres.request, reqres.responseType, null);
+  }
+
   @Override
   public void release(String objectRef) {
     release(objectRef, null);
@@ -167,6 +365,12 @@ public class RomClientJsonRpcClient implements RomClient {
 
     RequestAndResponseType reqres = createReleaseRequest(objectRef);
     sendRequest(reqres.request, reqres.responseType, null, cont);
+
+    InvocationBatcher currentBatcher = batcher;
+    if (currentBatcher != null && objectRef.indexOf('/') < 0) {
+      // Released pipelines don't need a batch anymore
+      currentBatcher.remove(objectRef);
+    }
   }
 
   // Other methods
@@ -174,14 +378,38 @@ public class RomClientJsonRpcClient implements RomClient {
   @Override
   public void addRomEventHandler(final RomEventHandler eventHandler) {
 
-    this.client.setServerRequestHandler(new DefaultJsonRpcHandler<JsonObject>() {
+    // Events of the same remote object are processed in the order they are received
+    ServerRequestOrderingKey orderingKey = new ServerRequestOrderingKey() {
+      @Override
+      public Object getKey(Request<JsonElement> request) {
+        JsonElement params = request.getParams();
+        if (params instanceof JsonObject) {
+          JsonElement value = ((JsonObject) params).get("value");
+          if (value instanceof JsonObject) {
+            JsonElement objectRef = ((JsonObject) value).get(ONEVENT_OBJECT);
+            if (objectRef != null && objectRef.isJsonPrimitive()) {
+              return objectRef.getAsString();
+            }
+          }
+        }
+        return null;
+      }
+    };
+
+    DefaultJsonRpcHandler<JsonObject> eventJsonRpcHandler = new DefaultJsonRpcHandler<JsonObject>() {
 
       @Override
       public void handleRequest(Transaction transaction, Request<JsonObject> request)
           throws Exception {
         processEvent(eventHandler, request);
       }
-    });
+    };
+
+    // The server sends the events through the connection last used by the session
+    for (JsonRpcClient connection : connections) {
+      connection.setServerRequestOrderingKey(orderingKey);
+      connection.setServerRequestHandler(eventJsonRpcHandler);
+    }
   }
 
   private void processEvent(RomEventHandler eventHandler, Request<JsonObject> request) {
@@ -200,8 +428,10 @@ public class RomClientJsonRpcClient implements RomClient {
       subscription = params.get(ONEVENT_SUBSCRIPTION).getAsString();
     }
     String type = params.get(ONEVENT_TYPE).getAsString();
-    JsonObject jsonData = (JsonObject) params.get(ONEVENT_DATA);
-    Props data = JsonUtils.fromJson(jsonData, Props.class);
+    JsonObject data = (JsonObject) params.get(ONEVENT_DATA);
+    if (data == null) {
+      data = new JsonObject();
+    }
 
     eventHandler.processEvent(objectRef, subscription, type, data);
   }
@@ -209,8 +439,12 @@ public class RomClientJsonRpcClient implements RomClient {
   @Override
   public void destroy() {
     log.debug("Destroying RomClientJsonRpc");
+    disableAutoBatch();
     try {
-      client.close();
+      // The main client is closed last, as it closes the session
+      for (int i = connections.length - 1; i >= 0; i--) {
+        connections[i].close();
+      }
     } catch (IOException e) {
       throw new RuntimeException("Exception while closing JsonRpcClient", e);
     }
@@ -220,49 +454,319 @@ public class RomClientJsonRpcClient implements RomClient {
   private <P, R> R sendRequest(Request<JsonObject> request, final Type responseType,
       final Function<P, R> processor, final Continuation<R> cont) {
 
+    flushBatch(request.getParams());
+
     try {
 
       if (cont == null) {
 
-        return processReqResult(responseType, processor,
-            client.sendRequest(request.getMethod(), request.getParams(), JsonElement.class));
+        return processReqResult(responseType, processor, connectionFor(request.getParams())
+            .sendRequest(request.getMethod(), request.getParams(), JsonElement.class));
 
       }
 
-      client.sendRequest(request.getMethod(), request.getParams(),
-          new org.kurento.jsonrpc.client.Continuation<JsonElement>() {
+      DefaultContinuation.notifyWhenComplete(
+          this.<P, R> sendRequestAsync(request, responseType, processor), cont);
 
-            @SuppressWarnings({ "rawtypes" })
+      return null;
+
+    } catch (IOException e) {
+      String messageError = "Error connecting with server";
+      log.error(messageError, e);
+      throw new KurentoServerTransportException(messageError, e);
+    } catch (JsonRpcErrorException e) {
+      throw new KurentoServerException(e.getError());
+    }
+  }
+
+  private <P, R> CompletableFuture<R> sendRequestAsync(Request<JsonObject> request,
+      final Type responseType, final Function<P, R> processor) {
+
+    flushBatch(request.getParams());
+
+    return connectionFor(request.getParams())
+        .sendRequestAsync(request.getMethod(), request.getParams())
+        .thenApply(new java.util.function.Function<JsonElement, R>() {
+          @Override
+          public R apply(JsonElement reqResult) {
+            return processReqResult(responseType, processor, reqResult);
+          }
+        });
+  }
+
+  /**
+   * Sends the invocations waiting for the pipeline of a request before the request itself, so
+   * requests of a pipeline are sent in the same order they were made.
+   */
+  private void flushBatch(JsonObject params) {
+    InvocationBatcher currentBatcher = batcher;
+    if (currentBatcher != null) {
+      String pipelineRef = getPipelineRef(params);
+      if (pipelineRef != null) {
+        currentBatcher.flush(pipelineRef);
+      }
+    }
+  }
+
+  private void sendBatch(final List<InvocationBatcher.BatchedInvocation> invocations) {
+
+    if (invocations.size() == 1) {
+      // A transaction is not worth it for a single invocation
+      final InvocationBatcher.BatchedInvocation invocation = invocations.get(0);
+      Request<JsonObject> request = invocation.reqres.request;
+      connectionFor(request.getParams())
+          .sendRequestAsync(request.getMethod(), request.getParams())
+          .whenComplete(new BiConsumer<JsonElement, Throwable>() {
             @Override
-            public void onSuccess(JsonElement reqResult) {
+            public void accept(JsonElement result, Throwable cause) {
+              if (cause != null) {
+                invocation.future.completeExceptionally(unwrap(cause));
+              } else {
+                completeInvocation(invocation, result);
+              }
+            }
+          });
+      return;
+    }
+
+    JsonArray opJsons = new JsonArray();
+    for (int i = 0; i < invocations.size(); i++) {
+      Request<JsonObject> request = invocations.get(i).reqres.request;
+      request.setId(i);
+      opJsons.add(JsonUtils.toJsonElement(request));
+    }
 
-              R methodResult = processReqResult(responseType, processor, reqResult);
-              try {
-                ((Continuation) cont).onSuccess(methodResult);
-              } catch (Exception e) {
-                log.warn("[Continuation] error invoking OnSuccess implemented by client", e);
+    JsonObject params = new JsonObject();
+    params.add(TRANSACTION_OPERATIONS, opJsons);
+
+    connectionFor(params).sendRequestAsync(TRANSACTION_METHOD, params)
+        .whenComplete(new BiConsumer<JsonElement, Throwable>() {
+          @Override
+          public void accept(JsonElement result, Throwable cause) {
+            if (cause != null) {
+              for (InvocationBatcher.BatchedInvocation invocation : invocations) {
+                invocation.future.completeExceptionally(unwrap(cause));
               }
+            } else {
+              processBatchResponse(invocations, result);
+            }
+          }
+        });
+  }
+
+  // Unlike in explicit transactions, an error only fails the invocation it belongs to
+  private void processBatchResponse(List<InvocationBatcher.BatchedInvocation> invocations,
+      JsonElement result) {
+
+    List<Response<JsonElement>> responses;
+    try {
+      responses = processReqResult(TRANSACTION_RESPONSE_TYPE, null, result);
+    } catch (RuntimeException e) {
+      for (InvocationBatcher.BatchedInvocation invocation : invocations) {
+        invocation.future.completeExceptionally(e);
+      }
+      return;
+    }
+
+    // Operations were sent with their index as id
+    List<Response<JsonElement>> responsesById = new ArrayList<>(
+        Collections.<Response<JsonElement>> nCopies(invocations.size(), null));
+    if (responses != null) {
+      for (Response<JsonElement> response : responses) {
+        if (response != null && response.getId() != null && response.getId() >= 0
+            && response.getId() < invocations.size()) {
+          responsesById.set(response.getId(), response);
+        }
+      }
+    }
+
+    for (int i = 0; i < invocations.size(); i++) {
+      InvocationBatcher.BatchedInvocation invocation = invocations.get(i);
+      Response<JsonElement> response = responsesById.get(i);
+      if (response == null) {
+        invocation.future.completeExceptionally(
+            new TransactionNotExecutedException("Operation not executed by the media server"));
+      } else if (response.isError()) {
+        invocation.future.completeExceptionally(new JsonRpcErrorException(response.getError()));
+      } else {
+        completeInvocation(invocation, response.getResult());
+      }
+    }
+  }
+
+  private void completeInvocation(InvocationBatcher.BatchedInvocation invocation,
+      JsonElement result) {
+    try {
+      invocation.future.complete(
+          this.<Object, Object> processReqResult(invocation.reqres.responseType, null, result));
+    } catch (RuntimeException e) {
+      invocation.future.completeExceptionally(e);
+    }
+  }
+
+  private static Throwable unwrap(Throwable cause) {
+    if (cause instanceof CompletionException && cause.getCause() != null) {
+      return cause.getCause();
+    }
+    return cause;
+  }
+
+  private JsonRpcClient connectionFor(JsonObject params) {
+
+    if (connections.length == 1) {
+      return client;
+    }
+
+    String sessionId = client.getSession() != null ? client.getSession().getSessionId() : null;
+    String pipelineRef = getPipelineRef(params);
+    if (sessionId == null || pipelineRef == null) {
+      // Other connections can't be used until the server has assigned a session to the client
+      return client;
+    }
+
+    int index = Math.floorMod(pipelineRef.hashCode(), connections.length);
+    JsonRpcClient connection = connections[index];
+
+    if (connection == client || connection.isClosedByUser()) {
+      return client;
+    }
+
+    if (connection.getSession() == null) {
+      // Its requests are sent through the main client until it is connected
+      connectToSession(index, sessionId);
+      return client;
+    }
+
+    if (!sessionId.equals(connection.getSession().getSessionId())) {
+      // Reconnected to a new session after a restart of the media server. Requests carry the
+      // session id, so they can follow the connect request on this connection
+      joinSession(index, sessionId);
+    }
+
+    return connection;
+  }
+
+  /**
+   * Connects in the background a connection that has not been connected yet to the session of the
+   * main client, so the thread sending a request never waits for it. Only one connection attempt
+   * is made at a time for each connection, and a failed one is not repeated before
+   * {@link #CONNECT_RETRY_MILLIS}.
+   */
+  private void connectToSession(final int index, final String sessionId) {
+
+    CompletableFuture<Void> previous = connecting.get(index);
+    if (previous != null && !previous.isDone()) {
+      return;
+    }
+
+    final CompletableFuture<Void> attempt = new CompletableFuture<>();
+    if (!connecting.compareAndSet(index, previous, attempt)) {
+      return;
+    }
+
+    final JsonRpcClient connection = connections[index];
+
+    ClientScheduler.getDefault().scheduleBlocking(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          if (connection instanceof AbstractJsonRpcClientWebSocket) {
+            ((AbstractJsonRpcClientWebSocket) connection).connectWithSession(sessionId);
+          } else {
+            connection.connect();
+          }
+          attempt.complete(null);
+        } catch (IOException | RuntimeException e) {
+          log.warn("Connection {} could not connect to session {}", index, sessionId, e);
+          // Kept pending for a while, so requests don't start a new attempt immediately
+          ClientScheduler.getDefault().schedule(new Runnable() {
+            @Override
+            public void run() {
+              attempt.completeExceptionally(e);
+            }
+          }, CONNECT_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+      }
+    }, 0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Makes a connection join the session of the main client.
+   */
+  private void joinSession(final int index, final String sessionId) {
+
+    if (!joiningSession[index].compareAndSet(false, true)) {
+      return;
+    }
+
+    final JsonRpcClient connection = connections[index];
+
+    log.debug("Connection {} joining session {}", index, sessionId);
+
+    try {
+      connection.setSessionId(sessionId);
+      connection.sendRequest(JsonRpcConstants.METHOD_CONNECT, null,
+          new org.kurento.jsonrpc.client.Continuation<JsonElement>() {
+            @Override
+            public void onSuccess(JsonElement result) {
+              joiningSession[index].set(false);
             }
 
             @Override
             public void onError(Throwable cause) {
-              try {
-                cont.onError(cause);
-              } catch (Exception e) {
-                log.warn("[Continuation] error invoking onError implemented by client", e);
-              }
+              log.warn("Connection {} could not join session {}", index, sessionId, cause);
+              joiningSession[index].set(false);
             }
           });
+    } catch (RuntimeException e) {
+      log.warn("Connection {} could not join session {}", index, sessionId, e);
+      joiningSession[index].set(false);
+    }
+  }
 
+  /**
+   * Returns the reference of the media pipeline a request is related to. Object refs of media
+   * elements are prefixed by the ref of their pipeline.
+   */
+  private String getPipelineRef(JsonObject params) {
+
+    if (params == null) {
       return null;
+    }
 
-    } catch (IOException e) {
-      String messageError = "Error connecting with server";
-      log.error(messageError, e);
-      throw new KurentoServerTransportException(messageError, e);
-    } catch (JsonRpcErrorException e) {
-      throw new KurentoServerException(e.getError());
+    String objectRef = null;
+
+    JsonElement object = params.get(INVOKE_OBJECT);
+    JsonElement constructorParams = params.get(CREATE_CONSTRUCTOR_PARAMS);
+    JsonElement operations = params.get(TRANSACTION_OPERATIONS);
+
+    if (object != null && object.isJsonPrimitive()) {
+      objectRef = object.getAsString();
+    } else if (constructorParams instanceof JsonObject) {
+      JsonElement pipeline = ((JsonObject) constructorParams).get(CREATE_MEDIA_PIPELINE_PARAM);
+      if (pipeline != null && pipeline.isJsonPrimitive()) {
+        objectRef = pipeline.getAsString();
+      }
+    } else if (operations instanceof JsonArray) {
+      for (JsonElement operation : (JsonArray) operations) {
+        if (operation instanceof JsonObject) {
+          JsonElement opParams = ((JsonObject) operation).get(JsonRpcConstants.PARAMS_PROPERTY);
+          if (opParams instanceof JsonObject) {
+            objectRef = getPipelineRef((JsonObject) opParams);
+            if (objectRef != null) {
+              return objectRef;
+            }
+          }
+        }
+      }
     }
+
+    if (objectRef == null) {
+      return null;
+    }
+
+    int slash = objectRef.indexOf('/');
+    return slash < 0 ? objectRef : objectRef.substring(0, slash);
   }
 
   @SuppressWarnings("unchecked")
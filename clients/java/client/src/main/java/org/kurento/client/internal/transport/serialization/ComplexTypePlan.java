@@ -0,0 +1,207 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.transport.serialization;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.kurento.client.internal.ModuleName;
+import org.kurento.client.internal.ParamAnnotationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Throwables;
+
+/**
+ * Accessors of a complex type, built once per class with method handles: the bean properties
+ * read when an object is flattened, and the constructor used to create it when it is unflattened.
+ */
+final class ComplexTypePlan {
+
+  private static final Logger log = LoggerFactory.getLogger(ComplexTypePlan.class);
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+  private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class,
+      Object[].class);
+
+  private static final ClassValue<ComplexTypePlan> PLANS = new ClassValue<ComplexTypePlan>() {
+    @Override
+    protected ComplexTypePlan computeValue(Class<?> clazz) {
+      return new ComplexTypePlan(clazz);
+    }
+  };
+
+  private final Class<?> clazz;
+  private final String moduleName;
+
+  private final String[] propNames;
+  private final MethodHandle[] getters;
+
+  private final MethodHandle constructor;
+  private final List<String> constructorParamNames;
+  private final Type[] constructorParamTypes;
+
+  static ComplexTypePlan of(Class<?> clazz) {
+    return PLANS.get(clazz);
+  }
+
+  private ComplexTypePlan(Class<?> clazz) {
+
+    this.clazz = clazz;
+
+    ModuleName name = clazz.getAnnotation(ModuleName.class);
+    this.moduleName = name != null ? name.value() : null;
+
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+    List<String> names = new ArrayList<>();
+    List<MethodHandle> handles = new ArrayList<>();
+    for (Method method : clazz.getMethods()) {
+
+      String propName = getPropertyName(method);
+      if (propName == null) {
+        continue;
+      }
+
+      try {
+        handles.add(lookup.unreflect(method).asType(GETTER_TYPE));
+        names.add(propName);
+      } catch (IllegalAccessException e) {
+        log.warn("Property '{}' of class {} can't be accessed", propName, clazz.getName(), e);
+      }
+    }
+    this.propNames = names.toArray(new String[names.size()]);
+    this.getters = handles.toArray(new MethodHandle[handles.size()]);
+
+    Constructor<?>[] constructors = clazz.getConstructors();
+    if (constructors.length > 0) {
+      Constructor<?> c = constructors[0];
+      this.constructorParamNames = ParamAnnotationUtils.getParamNames(c);
+      this.constructorParamTypes = getParamTypes(c);
+      this.constructor = unreflectConstructor(lookup, c);
+    } else {
+      this.constructorParamNames = null;
+      this.constructorParamTypes = null;
+      this.constructor = null;
+    }
+  }
+
+  private static String getPropertyName(Method method) {
+
+    if (method.getParameterCount() > 0 || Modifier.isStatic(method.getModifiers())) {
+      return null;
+    }
+
+    String methodName = method.getName();
+    String propName;
+    if (methodName.startsWith("is")) {
+      propName = methodName.substring(2);
+    } else if (methodName.startsWith("get") && !methodName.equals("getClass")) {
+      propName = methodName.substring(3);
+    } else {
+      return null;
+    }
+
+    if (propName.isEmpty()) {
+      return null;
+    }
+    return Character.toLowerCase(propName.charAt(0)) + propName.substring(1);
+  }
+
+  private static Type[] getParamTypes(Constructor<?> c) {
+
+    Class<?>[] parameterTypes = c.getParameterTypes();
+    Type[] parameterGenericTypes = c.getGenericParameterTypes();
+
+    Type[] types = new Type[parameterTypes.length];
+    for (int i = 0; i < types.length; i++) {
+      // Generic types (for example, a java.util.List<java.lang.String>) are kept
+      types[i] = parameterGenericTypes[i] instanceof ParameterizedType ? parameterGenericTypes[i]
+          : parameterTypes[i];
+    }
+    return types;
+  }
+
+  private MethodHandle unreflectConstructor(MethodHandles.Lookup lookup, Constructor<?> c) {
+    try {
+      return lookup.unreflectConstructor(c)
+          .asSpreader(Object[].class, c.getParameterCount()).asType(CONSTRUCTOR_TYPE);
+    } catch (IllegalAccessException e) {
+      log.warn("Constructor of class {} can't be accessed", clazz.getName(), e);
+      return null;
+    }
+  }
+
+  String getTypeName() {
+    return clazz.getSimpleName();
+  }
+
+  String getModuleName() {
+    return moduleName;
+  }
+
+  int getNumProperties() {
+    return propNames.length;
+  }
+
+  String getPropertyName(int index) {
+    return propNames[index];
+  }
+
+  Object getPropertyValue(int index, Object object) throws Exception {
+    try {
+      return (Object) getters[index].invokeExact(object);
+    } catch (Throwable t) {
+      Throwables.throwIfInstanceOf(t, Exception.class);
+      Throwables.throwIfUnchecked(t);
+      throw new RuntimeException(t);
+    }
+  }
+
+  List<String> getConstructorParamNames() {
+    return constructorParamNames;
+  }
+
+  Type[] getConstructorParamTypes() {
+    return constructorParamTypes;
+  }
+
+  Object newInstance(Object[] params) throws Exception {
+    if (constructor == null) {
+      throw new IllegalStateException("Class " + clazz.getName() + " has no public constructor");
+    }
+    try {
+      return (Object) constructor.invokeExact(params);
+    } catch (Throwable t) {
+      Throwables.throwIfInstanceOf(t, Exception.class);
+      Throwables.throwIfUnchecked(t);
+      throw new RuntimeException(t);
+    }
+  }
+
+}
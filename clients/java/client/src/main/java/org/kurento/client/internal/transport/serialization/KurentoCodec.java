@@ -0,0 +1,89 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.transport.serialization;
+
+import java.lang.reflect.Type;
+
+import org.kurento.client.internal.server.ProtocolException;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Base class of the codecs generated for events and complex types. They build the typed object
+ * directly from the JSON sent by the media server, without going through {@code Props} nor
+ * reflection.
+ *
+ * <p>
+ * Messages are already parsed into trees by the JSON-RPC client, so codecs only decode the
+ * {@link JsonObject}. Values are never sent back to the server through a codec.
+ */
+public abstract class KurentoCodec<T> {
+
+  protected final KurentoCodecs codecs;
+
+  protected KurentoCodec(KurentoCodecs codecs) {
+    this.codecs = codecs;
+  }
+
+  public abstract T decode(JsonObject json);
+
+  protected Object readValue(JsonObject json, String name, Type type) {
+    return codecs.readValue(json.get(name), name, type);
+  }
+
+  protected String readString(JsonObject json, String name) {
+    JsonElement value = json.get(name);
+    return isNull(value) ? null : value.getAsString();
+  }
+
+  protected boolean readBoolean(JsonObject json, String name) {
+    return readRequired(json, name).getAsBoolean();
+  }
+
+  protected int readInt(JsonObject json, String name) {
+    return readRequired(json, name).getAsInt();
+  }
+
+  protected long readLong(JsonObject json, String name) {
+    return readRequired(json, name).getAsLong();
+  }
+
+  protected float readFloat(JsonObject json, String name) {
+    return readRequired(json, name).getAsFloat();
+  }
+
+  protected double readDouble(JsonObject json, String name) {
+    return readRequired(json, name).getAsDouble();
+  }
+
+  // Primitive properties are required: a missing one is an error, not a default value
+  private static JsonElement readRequired(JsonObject json, String name) {
+    JsonElement value = json.get(name);
+    if (isNull(value)) {
+      throw new ProtocolException("Required property '" + name + "' is missing");
+    }
+    return value;
+  }
+
+  static boolean isNull(JsonElement value) {
+    return value == null || value.isJsonNull();
+  }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.transport.serialization;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.kurento.client.internal.server.ProtocolException;
+import org.kurento.commons.exception.KurentoException;
+import org.kurento.jsonrpc.JsonUtils;
+import org.kurento.jsonrpc.Props;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Codecs generated for the events and complex types of the modules, bound to the manager used to
+ * resolve the remote objects they reference. The codec of a class is looked up by naming
+ * convention ({@code <package>.internal.codec.<SimpleName>Codec}), so the classes of elements
+ * and filters modules, that share their package with the core, are found too.
+ */
+public class KurentoCodecs {
+
+  private static final Logger log = LoggerFactory.getLogger(KurentoCodecs.class);
+
+  private static final String CODEC_PACKAGE = ".internal.codec.";
+  private static final String CODEC_SUFFIX = "Codec";
+
+  private static final String MODULE_PROPERTY = "__module__";
+  private static final String TYPE_PROPERTY = "__type__";
+
+  private static final ClassValue<Optional<Constructor<?>>> CODEC_CONSTRUCTORS =
+      new ClassValue<Optional<Constructor<?>>>() {
+    @Override
+    protected Optional<Constructor<?>> computeValue(Class<?> clazz) {
+      return findCodecConstructor(clazz);
+    }
+  };
+
+  private static final ClassValue<Map<String, Object>> ENUM_CONSTANTS =
+      new ClassValue<Map<String, Object>>() {
+    @Override
+    protected Map<String, Object> computeValue(Class<?> clazz) {
+      Map<String, Object> constants = new HashMap<>();
+      for (Object constant : clazz.getEnumConstants()) {
+        constants.put(constant.toString(), constant);
+      }
+      return constants;
+    }
+  };
+
+  private final ParamsFlattener flattener = ParamsFlattener.getInstance();
+  private final ObjectRefsManager manager;
+
+  private final ConcurrentMap<Class<?>, Optional<KurentoCodec<?>>> codecs =
+      new ConcurrentHashMap<>();
+
+  public KurentoCodecs(ObjectRefsManager manager) {
+    this.manager = manager;
+  }
+
+  /**
+   * Returns the generated codec of the given class, or null if the class has no codec.
+   */
+  @SuppressWarnings("unchecked")
+  public <T> KurentoCodec<T> getCodec(Class<T> clazz) {
+
+    Optional<KurentoCodec<?>> codec = codecs.get(clazz);
+    if (codec == null) {
+      codec = codecs.computeIfAbsent(clazz, this::createCodec);
+    }
+    return (KurentoCodec<T>) codec.orElse(null);
+  }
+
+  private Optional<KurentoCodec<?>> createCodec(Class<?> clazz) {
+
+    Optional<Constructor<?>> constructor = CODEC_CONSTRUCTORS.get(clazz);
+    if (!constructor.isPresent()) {
+      return Optional.empty();
+    }
+
+    try {
+      return Optional.<KurentoCodec<?>> of(
+          (KurentoCodec<?>) constructor.get().newInstance(this));
+    } catch (ReflectiveOperationException e) {
+      throw new KurentoException("Exception creating codec of " + clazz.getName(), e);
+    }
+  }
+
+  private static Optional<Constructor<?>> findCodecConstructor(Class<?> clazz) {
+
+    if (clazz.isPrimitive() || clazz.isArray() || clazz.getPackage() == null) {
+      return Optional.empty();
+    }
+
+    String codecName = clazz.getPackage().getName() + CODEC_PACKAGE + clazz.getSimpleName()
+        + CODEC_SUFFIX;
+
+    try {
+      Class<?> codecClass = Class.forName(codecName, true, clazz.getClassLoader());
+      if (!KurentoCodec.class.isAssignableFrom(codecClass)) {
+        log.warn("Class {} is not a codec. {} will be decoded by reflection", codecName,
+            clazz.getName());
+        return Optional.empty();
+      }
+      return Optional.<Constructor<?>> of(codecClass.getConstructor(KurentoCodecs.class));
+    } catch (ClassNotFoundException e) {
+      log.debug("No generated codec found for {}. It will be decoded by reflection",
+          clazz.getName());
+      return Optional.empty();
+    } catch (NoSuchMethodException e) {
+      log.warn("Class {} has no suitable constructor. {} will be decoded by reflection",
+          codecName, clazz.getName());
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Reads a value of the given type. Complex types without a codec and values of unknown types
+   * are decoded by {@link ParamsFlattener}.
+   */
+  public Object readValue(JsonElement json, String name, Type type) {
+
+    if (KurentoCodec.isNull(json)) {
+      return null;
+    }
+
+    if (type instanceof Class) {
+
+      Class<?> clazz = (Class<?>) type;
+
+      if (clazz == String.class) {
+        return json.getAsString();
+      } else if (clazz == Integer.class || clazz == int.class) {
+        return json.getAsInt();
+      } else if (clazz == Long.class || clazz == long.class) {
+        return json.getAsLong();
+      } else if (clazz == Float.class || clazz == float.class) {
+        return json.getAsFloat();
+      } else if (clazz == Double.class || clazz == double.class) {
+        return json.getAsDouble();
+      } else if (clazz == Boolean.class || clazz == boolean.class) {
+        return json.getAsBoolean();
+      } else if (clazz.isEnum()) {
+        return readEnumConstant(json.getAsString(), clazz);
+      } else if (json.isJsonPrimitive()) {
+        // Remote objects are referenced by their objectRef
+        return flattener.unflattenValue(name, clazz, json.getAsString(), manager);
+      } else if (json.isJsonObject()) {
+        return readComplexType(json.getAsJsonObject(), name, clazz);
+      }
+
+    } else if (type instanceof ParameterizedType) {
+
+      ParameterizedType paramType = (ParameterizedType) type;
+      Class<?> rawType = (Class<?>) paramType.getRawType();
+
+      if (rawType.isAssignableFrom(List.class)) {
+        return readList(json.getAsJsonArray(), name, paramType.getActualTypeArguments()[0]);
+      }
+      if (rawType.isAssignableFrom(Map.class)) {
+        return readMap(json.getAsJsonObject(), name, paramType.getActualTypeArguments()[1]);
+      }
+    }
+
+    return flattener.unflattenValue(name, type, toPropsValue(json), manager);
+  }
+
+  private static Object toPropsValue(JsonElement json) {
+    JsonObject wrapper = new JsonObject();
+    wrapper.add("value", json);
+    return JsonUtils.fromJson(wrapper, Props.class).getProp("value");
+  }
+
+  private Object readEnumConstant(String value, Class<?> clazz) {
+    Object constant = ENUM_CONSTANTS.get(clazz).get(value);
+    if (constant == null) {
+      throw new ProtocolException(
+          "Enum '" + value + "' not found in enumType '" + clazz.getName() + "'");
+    }
+    return constant;
+  }
+
+  private Object readComplexType(JsonObject json, String name, Class<?> clazz) {
+
+    // The concrete type is sent with the value and can be a subclass of the declared one
+    JsonElement moduleName = json.get(MODULE_PROPERTY);
+    JsonElement typeName = json.get(TYPE_PROPERTY);
+    if (moduleName != null && typeName != null) {
+      clazz = flattener.getClassFor(moduleName.getAsString(), typeName.getAsString());
+    }
+
+    KurentoCodec<?> codec = getCodec(clazz);
+    if (codec != null) {
+      return codec.decode(json);
+    }
+
+    return flattener.unflattenValue(name, clazz, JsonUtils.fromJson(json, Props.class), manager);
+  }
+
+  private List<Object> readList(JsonArray json, String name, Type elementType) {
+
+    List<Object> list = new ArrayList<>(json.size());
+    for (int i = 0; i < json.size(); i++) {
+      list.add(readValue(json.get(i), name + "[" + i + "]", elementType));
+    }
+    return list;
+  }
+
+  private Map<String, Object> readMap(JsonObject json, String name, Type valueType) {
+
+    Map<String, Object> map = new HashMap<>();
+    for (Map.Entry<String, JsonElement> entry : json.entrySet()) {
+      map.put(entry.getKey(),
+          readValue(entry.getValue(), name + ".get('" + entry.getKey() + "')", valueType));
+    }
+    return map;
+  }
+
+}
@@ -18,9 +18,7 @@
 package org.kurento.client.internal.transport.serialization;
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
@@ -31,9 +29,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import org.kurento.client.TransactionNotCommitedException;
-import org.kurento.client.internal.ModuleName;
 import org.kurento.client.internal.ParamAnnotationUtils;
 import org.kurento.client.internal.RemoteClass;
+import org.kurento.client.internal.client.AbstractKurentoObject;
 import org.kurento.client.internal.client.RemoteObject;
 import org.kurento.client.internal.client.RemoteObjectInvocationHandler;
 import org.kurento.client.internal.client.RomManager;
@@ -172,6 +170,11 @@ public class ParamsFlattener {
 
       processedParam = flattenRemoteObject((RemoteObject) param, inTx);
 
+    } else if (param instanceof AbstractKurentoObject) {
+
+      processedParam = flattenRemoteObject(
+          RemoteObjectInvocationHandler.getFor(param).getRemoteObject(), inTx);
+
     } else if (param instanceof Proxy) {
 
       InvocationHandler handler = Proxy.getInvocationHandler(param);
@@ -245,33 +248,23 @@ public class ParamsFlattener {
   // this but with params instead result
   private Object extractResultAsProps(Object result, RemoteObjectManager manager) {
 
-    Map<String, Object> propsMap = new HashMap<>();
-    for (Method method : result.getClass().getMethods()) {
+    ComplexTypePlan plan = ComplexTypePlan.of(result.getClass());
 
-      String propName = null;
-
-      String methodName = method.getName();
-      if (methodName.startsWith("is")) {
-        propName = methodName.substring(2, methodName.length());
-      } else if (methodName.startsWith("get") && !methodName.equals("getClass")) {
-        propName = methodName.substring(3, methodName.length());
-      }
+    Map<String, Object> propsMap = new HashMap<>();
+    for (int i = 0; i < plan.getNumProperties(); i++) {
 
-      if (propName != null) {
-        try {
-          propName = Character.toLowerCase(propName.charAt(0)) + propName.substring(1);
-          Object value = flattenResult(method.invoke(result), manager);
-          propsMap.put(propName, value);
+      String propName = plan.getPropertyName(i);
+      try {
+        Object value = flattenResult(plan.getPropertyValue(i, result), manager);
+        propsMap.put(propName, value);
 
-        } catch (Exception e) {
-          log.warn("Exception while accessing prop '{}' in param object: {}", propName, result, e);
-        }
+      } catch (Exception e) {
+        log.warn("Exception while accessing prop '{}' in param object: {}", propName, result, e);
       }
     }
 
-    propsMap.put(TYPE_PROPERTY, result.getClass().getSimpleName());
-    ModuleName name = result.getClass().getAnnotation(ModuleName.class);
-    propsMap.put(MODULE_PROPERTY, name.value());
+    propsMap.put(TYPE_PROPERTY, plan.getTypeName());
+    propsMap.put(MODULE_PROPERTY, plan.getModuleName());
 
     return new Props(propsMap);
   }
@@ -297,32 +290,22 @@ public class ParamsFlattener {
    */
   private Object extractParamAsProps(Object param, boolean inTx) {
 
-    Map<String, Object> propsMap = new HashMap<>();
-    for (Method method : param.getClass().getMethods()) {
-
-      String propName = null;
+    ComplexTypePlan plan = ComplexTypePlan.of(param.getClass());
 
-      String methodName = method.getName();
-      if (methodName.startsWith("is")) {
-        propName = methodName.substring(2, methodName.length());
-      } else if (methodName.startsWith("get") && !methodName.equals("getClass")) {
-        propName = methodName.substring(3, methodName.length());
-      }
+    Map<String, Object> propsMap = new HashMap<>();
+    for (int i = 0; i < plan.getNumProperties(); i++) {
 
-      if (propName != null) {
-        try {
-          propName = Character.toLowerCase(propName.charAt(0)) + propName.substring(1);
-          Object value = flattenParam(method.invoke(param), inTx);
-          propsMap.put(propName, value);
+      String propName = plan.getPropertyName(i);
+      try {
+        Object value = flattenParam(plan.getPropertyValue(i, param), inTx);
+        propsMap.put(propName, value);
 
-        } catch (Exception e) {
-          log.warn("Exception while accessing prop '{}' in param object: {}", propName, param, e);
-        }
+      } catch (Exception e) {
+        log.warn("Exception while accessing prop '{}' in param object: {}", propName, param, e);
       }
     }
-    propsMap.put(TYPE_PROPERTY, param.getClass().getSimpleName());
-    ModuleName name = param.getClass().getAnnotation(ModuleName.class);
-    propsMap.put(MODULE_PROPERTY, name.value());
+    propsMap.put(TYPE_PROPERTY, plan.getTypeName());
+    propsMap.put(MODULE_PROPERTY, plan.getModuleName());
     return new Props(propsMap);
   }
 
@@ -367,6 +350,10 @@ public class ParamsFlattener {
     return moduleClassesManager.getClassFor(fullyClassName);
   }
 
+  public Class<?> getClassFor(String moduleName, String typeName) {
+    return moduleClassesManager.getClassFor(moduleName, typeName);
+  }
+
   public Object unflattenValue(String paramName, Type type, Object value,
       ObjectRefsManager manager) {
 
@@ -442,32 +429,24 @@ public class ParamsFlattener {
 
   private Object unflattedComplexType(Class<?> clazz, Props props, ObjectRefsManager manager) {
 
-    Constructor<?> constructor = clazz.getConstructors()[0];
-    
-    List<Type> constClasses = new ArrayList<>();
-    Class<?>[] parameterTypes = constructor.getParameterTypes();
-    Type[] parameterGenericTypes = constructor.getGenericParameterTypes();
-    for (int i = 0; i < parameterGenericTypes.length; i++) {
-    	if (parameterGenericTypes[i] instanceof java.lang.reflect.ParameterizedType) {
-    		// This is a class with a generic type
-    		// (for example, a java.util.List<java.lang.String>)
-    		constClasses.add(parameterGenericTypes[i]);
-    	} else {
-    		constClasses.add(parameterTypes[i]);
-    	}
+    ComplexTypePlan plan = ComplexTypePlan.of(clazz);
+
+    List<String> paramNames = plan.getConstructorParamNames();
+    if (paramNames == null) {
+      throw new ProtocolException(
+          "No public constructor found for the class '" + clazz.getSimpleName() + "'");
     }
-    
-    Object[] constParams = new Object[parameterTypes.length];
-    List<String> paramNames = ParamAnnotationUtils.getParamNames(constructor);
+    Type[] paramTypes = plan.getConstructorParamTypes();
 
+    Object[] constParams = new Object[paramTypes.length];
     for (int i = 0; i < constParams.length; i++) {
       String paramName = paramNames.get(i);
-      constParams[i] = unflattenValue(paramName, constClasses.get(i), props.getProp(paramName),
+      constParams[i] = unflattenValue(paramName, paramTypes[i], props.getProp(paramName),
           manager);
     }
 
     try {
-      return constructor.newInstance(constParams);
+      return plan.newInstance(constParams);
     } catch (Exception e) {
       throw new ProtocolException(
           "Exception while creating an object for the class '" + clazz.getSimpleName() + "'", e);
@@ -0,0 +1,63 @@
+<#if complexType.typeFormat == "REGISTER">
+${packageToFolder(module.code.api.java.packageName)}/internal/codec/${complexType.name}Codec.java
+<#--
+  Codecs are not registered anywhere: KurentoCodecs finds the codec of a class by its name,
+  <package>.internal.codec.<SimpleName>Codec, so this path and the class name must keep it.
+-->
+<#function typeExpr javaType><#if javaType?contains("<")><#return genericTypes[javaType]><#else><#return javaType + ".class"></#if></#function>
+<#macro readProperty property><#assign type = getJavaObjectType(property.type,property.optional)><#if ["String", "boolean", "int", "long", "float", "double"]?seq_contains(type)>read${type?cap_first}(json, "${property.name}")<#else>(${type}) readValue(json, "${property.name}", ${typeExpr(type)})</#if></#macro>
+<#assign properties = complexType.parentProperties + complexType.properties>
+<#assign required = []>
+<#list properties as property><#if !property.optional><#assign required = required + [property]></#if></#list>
+/**
+ * This file is generated with Kurento-maven-plugin.
+ * Please don't edit.
+ */
+package ${module.code.api.java.packageName}.internal.codec;
+
+import ${module.code.api.java.packageName}.*;
+<#if module.code.api.java.packageName != "org.kurento.client">
+import org.kurento.client.*;
+</#if>
+
+/**
+ * Decodes {@link ${complexType.name}} straight from the JSON sent by the media server. Optional
+ * properties are set after the object is created.
+ */
+@SuppressWarnings("unchecked")
+public class ${complexType.name}Codec
+    extends org.kurento.client.internal.transport.serialization.KurentoCodec<${complexType.name}> {
+
+<#assign genericTypes = {}>
+<#list properties as property>
+  <#assign type = getJavaObjectType(property.type,property.optional)>
+  <#if type?contains("<") && !genericTypes[type]??>
+    <#assign genericTypes = genericTypes + {type: "TYPE_" + genericTypes?size}>
+  private static final java.lang.reflect.Type ${genericTypes[type]} =
+      new com.google.common.reflect.TypeToken<${type}>() {}.getType();
+  </#if>
+</#list>
+
+  public ${complexType.name}Codec(
+      org.kurento.client.internal.transport.serialization.KurentoCodecs codecs) {
+    super(codecs);
+  }
+
+  @Override
+  public ${complexType.name} decode(com.google.gson.JsonObject json) {
+
+    ${complexType.name} decoded = new ${complexType.name}(<#list required as property>
+        <@readProperty property /><#if property_has_next>,</#if></#list>);
+<#list properties as property>
+  <#if property.optional>
+
+    if (json.has("${property.name}")) {
+      decoded.set${property.name?cap_first}(<@readProperty property />);
+    }
+  </#if>
+</#list>
+
+    return decoded;
+  }
+}
+</#if>
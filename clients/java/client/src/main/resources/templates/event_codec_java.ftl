@@ -0,0 +1,47 @@
+${packageToFolder(module.code.api.java.packageName)}/internal/codec/${event.name}EventCodec.java
+<#--
+  Codecs are not registered anywhere: KurentoCodecs finds the codec of a class by its name,
+  <package>.internal.codec.<SimpleName>Codec, so this path and the class name must keep it.
+-->
+<#function typeExpr javaType><#if javaType?contains("<")><#return genericTypes[javaType]><#else><#return javaType + ".class"></#if></#function>
+<#macro readProperty property><#assign type = getJavaObjectType(property.type,false)><#if ["String", "boolean", "int", "long", "float", "double"]?seq_contains(type)>read${type?cap_first}(json, "${property.name}")<#else>(${type}) readValue(json, "${property.name}", ${typeExpr(type)})</#if></#macro>
+<#assign properties = event.parentProperties + event.properties>
+/**
+ * This file is generated with Kurento-maven-plugin.
+ * Please don't edit.
+ */
+package ${module.code.api.java.packageName}.internal.codec;
+
+import ${module.code.api.java.packageName}.*;
+<#if module.code.api.java.packageName != "org.kurento.client">
+import org.kurento.client.*;
+</#if>
+
+/**
+ * Decodes {@link ${event.name}Event} straight from the JSON sent by the media server.
+ */
+@SuppressWarnings("unchecked")
+public class ${event.name}EventCodec
+    extends org.kurento.client.internal.transport.serialization.KurentoCodec<${event.name}Event> {
+
+<#assign genericTypes = {}>
+<#list properties as property>
+  <#assign type = getJavaObjectType(property.type,false)>
+  <#if type?contains("<") && !genericTypes[type]??>
+    <#assign genericTypes = genericTypes + {type: "TYPE_" + genericTypes?size}>
+  private static final java.lang.reflect.Type ${genericTypes[type]} =
+      new com.google.common.reflect.TypeToken<${type}>() {}.getType();
+  </#if>
+</#list>
+
+  public ${event.name}EventCodec(
+      org.kurento.client.internal.transport.serialization.KurentoCodecs codecs) {
+    super(codecs);
+  }
+
+  @Override
+  public ${event.name}Event decode(com.google.gson.JsonObject json) {
+    return new ${event.name}Event(<#list properties as property>
+        <@readProperty property /><#if property_has_next>,</#if></#list>);
+  }
+}
@@ -0,0 +1,176 @@
+${packageToFolder(module.code.api.java.packageName)}/internal/impl/${remoteClass.name}Impl.java
+<#function typeExpr javaType><#if javaType?contains("<")><#return genericTypes[javaType]><#else><#return javaType + ".class"></#if></#function>
+<#macro params params><#list params as param>${getJavaObjectType(param.type,false)} ${param.name}<#if param_has_next>, </#if></#list></#macro>
+<#function cachedName property><#return property.name?replace("([a-z0-9])([A-Z])", "$1_$2", "r")?upper_case + "_PROPERTY"></#function>
+<#function changeEvent property><#list remoteClass.events as event><#if event.name == property.name?cap_first + "Changed" || event.name == remoteClass.name + property.name?cap_first + "Changed"><#list event.type.properties as eventProperty><#if eventProperty.name == "newState" || eventProperty.name == property.name><#return [event.name, eventProperty.name]></#if></#list></#if></#list><#return []></#function>
+<#-- Writable properties are not cached: other clients and the media server itself can change them -->
+<#function cacheKind property><#if property.name == "id"><#return ""><#elseif property.final><#return "immutable"><#elseif !property.readOnly><#return ""><#elseif changeEvent(property)?size gt 0><#return "eventBacked"><#else><#return ""></#if></#function>
+<#macro props params><#if params?size == 0>null<#else>new org.kurento.jsonrpc.Props()<#list params as param>.add("${param.name}", ${param.name})</#list></#if></#macro>
+/**
+ * This file is generated with Kurento-maven-plugin.
+ * Please don't edit.
+ */
+package ${module.code.api.java.packageName}.internal.impl;
+
+import ${module.code.api.java.packageName}.*;
+<#if module.code.api.java.packageName != "org.kurento.client">
+import org.kurento.client.*;
+</#if>
+
+/**
+ * Implementation of {@link ${remoteClass.name}} that invokes the remote object without reflection.
+ * Parameter names, return types and event classes are resolved when this class is generated.
+ */
+@SuppressWarnings("unchecked")
+public class ${remoteClass.name}Impl extends <#if remoteClass.extends??>${remoteClass.extends.type.module.code.api.java.packageName}.internal.impl.${remoteClass.extends.name}Impl<#else>org.kurento.client.internal.client.AbstractKurentoObject</#if>
+    implements ${remoteClass.name} {
+
+<#assign genericTypes = {}>
+<#list remoteClass.properties as property>
+  <#assign type = getJavaObjectType(property.type,true)>
+  <#if type?contains("<") && !genericTypes[type]??>
+    <#assign genericTypes = genericTypes + {type: "TYPE_" + genericTypes?size}>
+  private static final java.lang.reflect.Type ${genericTypes[type]} =
+      new com.google.common.reflect.TypeToken<${type}>() {}.getType();
+  </#if>
+</#list>
+<#list remoteClass.methods as method>
+  <#assign type = getJavaObjectType(method.return,true)>
+  <#if type?contains("<") && !genericTypes[type]??>
+    <#assign genericTypes = genericTypes + {type: "TYPE_" + genericTypes?size}>
+  private static final java.lang.reflect.Type ${genericTypes[type]} =
+      new com.google.common.reflect.TypeToken<${type}>() {}.getType();
+  </#if>
+</#list>
+<#list remoteClass.properties as property>
+  <#assign kind = cacheKind(property)>
+  <#if kind != "">
+    <#assign type = getJavaObjectType(property.type,false)>
+  private static final org.kurento.client.internal.client.CachedProperty ${cachedName(property)} =
+      org.kurento.client.internal.client.CachedProperty.${kind}("get${property.name?cap_first}", ${typeExpr(type)}<#if kind == "eventBacked">, "${changeEvent(property)[0]}", "${changeEvent(property)[1]}"</#if>);
+  </#if>
+</#list>
+
+  public ${remoteClass.name}Impl(org.kurento.client.internal.client.RemoteObject remoteObject,
+      org.kurento.client.internal.client.RomManager manager) {
+    super(remoteObject, manager);
+  }
+
+<#list remoteClass.properties as property>
+  <#assign getter = "get" + property.name?cap_first>
+  <#assign setter = "set" + property.name?cap_first>
+  <#assign type = getJavaObjectType(property.type,false)>
+  <#assign boxedType = getJavaObjectType(property.type,true)>
+  <#assign cached = cacheKind(property) != "">
+  @Override
+  public ${type} ${getter}() {
+    <#if cached>
+    return (${boxedType}) getCached(${cachedName(property)});
+    <#else>
+    return (${boxedType}) invoke("${getter}", null, ${typeExpr(type)});
+    </#if>
+  }
+
+  @Override
+  public void ${getter}(Continuation<${boxedType}> cont) {
+    <#if cached>
+    getCached(${cachedName(property)}, cont);
+    <#else>
+    invoke("${getter}", null, ${typeExpr(boxedType)}, cont);
+    </#if>
+  }
+
+  @Override
+  public TFuture<${boxedType}> ${getter}(Transaction tx) {
+    return invoke("${getter}", null, ${typeExpr(boxedType)}, tx);
+  }
+
+  @Override
+  public java.util.concurrent.CompletableFuture<${boxedType}> ${getter}Async() {
+    <#if cached>
+    return getCachedAsync(${cachedName(property)});
+    <#else>
+    return invokeAsync("${getter}", null, ${typeExpr(boxedType)});
+    </#if>
+  }
+
+  <#if !property.readOnly && !property.final>
+  @Override
+  public void ${setter}(${type} ${property.name}) {
+    invoke("${setter}", new org.kurento.jsonrpc.Props("${property.name}", ${property.name}), void.class);
+  }
+
+  @Override
+  public void ${setter}(${type} ${property.name}, Continuation<Void> cont) {
+    invoke("${setter}", new org.kurento.jsonrpc.Props("${property.name}", ${property.name}), Void.class, cont);
+  }
+
+  @Override
+  public void ${setter}(${type} ${property.name}, Transaction tx) {
+    invoke("${setter}", new org.kurento.jsonrpc.Props("${property.name}", ${property.name}), Void.class, tx);
+  }
+
+  </#if>
+</#list>
+<#list remoteClass.methods as method>
+  <#assign type = getJavaObjectType(method.return,false)>
+  <#assign boxedType = getJavaObjectType(method.return,true)>
+  @Override
+  public ${type} ${method.name}(<@params method.params />) {
+    <#if type == "void">
+    invoke("${method.name}", <@props method.params />, void.class);
+    <#else>
+    return (${boxedType}) invoke("${method.name}", <@props method.params />, ${typeExpr(type)});
+    </#if>
+  }
+
+  @Override
+  public void ${method.name}(<#list method.params as param>${getJavaObjectType(param.type,false)} ${param.name}, </#list>Continuation<${boxedType}> cont) {
+    invoke("${method.name}", <@props method.params />, ${typeExpr(boxedType)}, cont);
+  }
+
+  @Override
+  public java.util.concurrent.CompletableFuture<${boxedType}> ${method.name}Async(<@params method.params />) {
+    return invokeAsync("${method.name}", <@props method.params />, ${typeExpr(boxedType)});
+  }
+
+  @Override
+  public <#if boxedType == "Void">void<#else>TFuture<${boxedType}></#if> ${method.name}(Transaction tx<#list method.params as param>, ${getJavaObjectType(param.type,false)} ${param.name}</#list>) {
+    <#if boxedType == "Void">
+    invoke("${method.name}", <@props method.params />, Void.class, tx);
+    <#else>
+    return invoke("${method.name}", <@props method.params />, ${typeExpr(boxedType)}, tx);
+    </#if>
+  }
+
+</#list>
+<#list remoteClass.events as event>
+  @Override
+  public ListenerSubscription add${event.name}Listener(EventListener<${event.name}Event> listener) {
+    return subscribe("${event.name}", ${event.name}Event.class, listener);
+  }
+
+  @Override
+  public void add${event.name}Listener(EventListener<${event.name}Event> listener, Continuation<ListenerSubscription> cont) {
+    subscribe("${event.name}", ${event.name}Event.class, listener, cont);
+  }
+
+  @Override
+  public void remove${event.name}Listener(ListenerSubscription listenerSubscription) {
+    removeEventListener(listenerSubscription);
+  }
+
+  @Override
+  public void remove${event.name}Listener(ListenerSubscription listenerSubscription, Continuation<Void> cont) {
+    unsubscribe(listenerSubscription, cont);
+  }
+
+</#list>
+<#if remoteClass.name == "MediaPipeline">
+  @Override
+  public Transaction beginTransaction() {
+    return getRemoteObject().beginTransaction();
+  }
+
+</#if>
+}
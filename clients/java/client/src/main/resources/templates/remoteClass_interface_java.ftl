@@ -24,6 +24,9 @@ public interface ${remoteClass.name} extends <#if remoteClass.extends??>${remote
      <@comment_set_get property.doc "Get"/>
      TFuture<${getJavaObjectType(property.type,true)}> get${property.name?cap_first}(Transaction tx);
 
+     <@comment_set_get property.doc "Get"/>
+     java.util.concurrent.CompletableFuture<${getJavaObjectType(property.type,true)}> get${property.name?cap_first}Async();
+
      <#if !property.readOnly && !property.final>
      <@comment_set_get property.doc "Set"/>
      void set${property.name?cap_first}(@org.kurento.client.internal.server.Param("${property.name}") ${getJavaObjectType(property.type,false)} ${property.name});
@@ -53,6 +56,17 @@ done. If an error occurs, {@link Continuation#onError} is called.
     void ${method.name}(<#rt>
     <#lt><#list method.params as param>@org.kurento.client.internal.server.Param("${param.name}") ${getJavaObjectType(param.type,false)} ${param.name}, </#list>Continuation<${getJavaObjectType(method.return)}> cont);
 
+  <#assign doc>
+Asynchronous version of ${method.name}:
+the returned future is completed when the action is
+done, or completed exceptionally if an error occurs.
+
+@see ${remoteClass.name}#${method.name}
+    </#assign>
+    <@comment doc method.params />
+    java.util.concurrent.CompletableFuture<${getJavaObjectType(method.return,true)}> ${method.name}Async(<#rt>
+    <#lt><#list method.params as param>@org.kurento.client.internal.server.Param("${param.name}") ${getJavaObjectType(param.type,false)} ${param.name}<#if param_has_next>, </#if></#list>);
+
     <@comment method.doc method.params method.return />
     <#assign type = getJavaObjectType(method.return,true)>
     <#if type == "Void">void<#else>TFuture<${type}></#if> ${method.name}(Transaction tx<#rt>
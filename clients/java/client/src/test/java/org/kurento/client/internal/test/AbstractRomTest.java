@@ -24,6 +24,8 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 import org.junit.Test;
 import org.kurento.client.internal.client.RomManager;
@@ -111,5 +113,28 @@ public abstract class AbstractRomTest {
       assertEquals(value2.getProp2(), 44);
 
     }
+
+    useRomAsync(manager);
+  }
+
+  private void useRomAsync(RomManager manager) {
+
+    SampleClass obj = new SampleClass.Builder("YYY", false, manager).withAtt3(0.5f)
+        .withAtt4(22).buildAsync().join();
+
+    assertEquals("YYY", obj.getAtt1Async().join());
+
+    List<ComplexParam> returnParams = obj.echoEnumAsync(SampleEnum.CONSTANT_2)
+        .thenCompose(new Function<SampleEnum, CompletableFuture<List<ComplexParam>>>() {
+          @Override
+          public CompletableFuture<List<ComplexParam>> apply(SampleEnum value) {
+            assertEquals(SampleEnum.CONSTANT_2, value);
+            return obj.echoListRegisterAsync(
+                Arrays.asList(new ComplexParam(value.toString(), 55)));
+          }
+        }).join();
+
+    assertEquals(SampleEnum.CONSTANT_2.toString(), returnParams.get(0).getProp1());
+    assertEquals(55, returnParams.get(0).getProp2());
   }
 }
\ No newline at end of file
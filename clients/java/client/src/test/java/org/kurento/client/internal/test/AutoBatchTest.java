@@ -0,0 +1,292 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kurento.client.Continuation;
+import org.kurento.client.KurentoClient;
+import org.kurento.client.MediaPipeline;
+import org.kurento.client.MediaState;
+import org.kurento.client.WebRtcEndpoint;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.JsonRpcErrorException;
+import org.kurento.jsonrpc.JsonUtils;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.client.JsonRpcClientLocal;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.message.Response;
+import org.kurento.jsonrpc.message.ResponseError;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Checks that async invocations are coalesced into transactions, and that each invocation is
+ * completed with its own response.
+ */
+public class AutoBatchTest {
+
+  private static final String FAILING_OPERATION = "getMinVideoRecvBandwidth";
+
+  private static class FakeKmsHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    // Method of each request received, and operations of each invocation
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+    private final AtomicInteger numObjects = new AtomicInteger();
+    private volatile boolean reverseResponses;
+
+    @Override
+    public void handleRequest(Transaction transaction, Request<JsonObject> request)
+        throws Exception {
+
+      JsonObject params = request.getParams();
+      switch (request.getMethod()) {
+        case "create":
+          JsonObject constructorParams = params.getAsJsonObject("constructorParams");
+          String prefix = constructorParams != null && constructorParams.has("mediaPipeline")
+              ? constructorParams.get("mediaPipeline").getAsString() + "/" : "";
+          requests.add("create");
+          transaction.sendResponse(prefix + numObjects.incrementAndGet() + "_kurento."
+              + params.get("type").getAsString());
+          break;
+        case "invoke":
+          requests.add("invoke " + params.get("operation").getAsString());
+          Response<JsonElement> response = invoke(params);
+          if (response.isError()) {
+            transaction.sendError(response.getError());
+          } else {
+            transaction.sendResponse(response.getResult());
+          }
+          break;
+        case "transaction":
+          List<String> operations = new ArrayList<>();
+          List<JsonElement> responses = new ArrayList<>();
+          for (JsonElement operation : params.getAsJsonArray("operations")) {
+            JsonObject op = operation.getAsJsonObject();
+            JsonObject opParams = op.getAsJsonObject("params");
+            operations.add(opParams.get("operation").getAsString());
+            Response<JsonElement> opResponse = invoke(opParams);
+            opResponse.setId(op.get("id").getAsInt());
+            responses.add(JsonUtils.toJsonElement(opResponse));
+          }
+          if (reverseResponses) {
+            Collections.reverse(responses);
+          }
+          JsonArray responsesJson = new JsonArray();
+          for (JsonElement opResponse : responses) {
+            responsesJson.add(opResponse);
+          }
+          requests.add("transaction " + operations);
+          transaction.sendResponse(responsesJson);
+          break;
+        default:
+          requests.add(request.getMethod());
+          transaction.sendResponse(null);
+      }
+    }
+
+    private Response<JsonElement> invoke(JsonObject params) {
+      String operation = params.get("operation").getAsString();
+      switch (operation) {
+        case "getName":
+          return new Response<JsonElement>(null, JsonUtils.toJsonElement("name"));
+        case "getMediaState":
+          return new Response<JsonElement>(null, JsonUtils.toJsonElement("CONNECTED"));
+        case FAILING_OPERATION:
+          return new Response<JsonElement>(null, new ResponseError(40101, "Operation failed"));
+        default:
+          return new Response<JsonElement>(null, (JsonElement) null);
+      }
+    }
+  }
+
+  private FakeKmsHandler kms;
+  private KurentoClient client;
+  private MediaPipeline pipeline;
+  private WebRtcEndpoint webRtc;
+
+  @Before
+  public void setup() {
+    kms = new FakeKmsHandler();
+    client = KurentoClient.createFromJsonRpcClient(new JsonRpcClientLocal(kms));
+    pipeline = client.createMediaPipeline();
+    webRtc = new WebRtcEndpoint.Builder(pipeline).build();
+    kms.requests.clear();
+  }
+
+  @After
+  public void teardown() {
+    client.destroy();
+  }
+
+  @Test
+  public void autoBatchIsDisabledByDefault() throws Exception {
+
+    assertFalse(client.isAutoBatchEnabled());
+
+    CompletableFuture<String> name = webRtc.getNameAsync();
+    CompletableFuture<MediaState> state = webRtc.getMediaStateAsync();
+
+    assertEquals("name", name.get(5, TimeUnit.SECONDS));
+    assertEquals(MediaState.CONNECTED, state.get(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("invoke getName", "invoke getMediaState"), kms.requests);
+  }
+
+  @Test
+  public void asyncInvocationsAreSentInOneTransaction() throws Exception {
+
+    client.enableAutoBatch(TimeUnit.MILLISECONDS.toMicros(50), 100);
+    assertTrue(client.isAutoBatchEnabled());
+
+    final CountDownLatch latch = new CountDownLatch(1);
+    final AtomicReference<MediaState> contState = new AtomicReference<>();
+
+    CompletableFuture<String> name = webRtc.getNameAsync();
+    CompletableFuture<String> pipelineName = pipeline.getNameAsync();
+    webRtc.getMediaState(new Continuation<MediaState>() {
+      @Override
+      public void onSuccess(MediaState result) {
+        contState.set(result);
+        latch.countDown();
+      }
+
+      @Override
+      public void onError(Throwable cause) {
+      }
+    });
+
+    assertEquals("name", name.get(5, TimeUnit.SECONDS));
+    assertEquals("name", pipelineName.get(5, TimeUnit.SECONDS));
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertEquals(MediaState.CONNECTED, contState.get());
+
+    assertEquals(Arrays.asList("transaction [getName, getName, getMediaState]"), kms.requests);
+  }
+
+  @Test
+  public void errorsOnlyFailTheirInvocation() throws Exception {
+
+    client.enableAutoBatch(TimeUnit.MILLISECONDS.toMicros(50), 100);
+
+    CompletableFuture<String> before = webRtc.getNameAsync();
+    CompletableFuture<Integer> failing = webRtc.getMinVideoRecvBandwidthAsync();
+    CompletableFuture<MediaState> after = webRtc.getMediaStateAsync();
+
+    assertEquals("name", before.get(5, TimeUnit.SECONDS));
+    assertEquals(MediaState.CONNECTED, after.get(5, TimeUnit.SECONDS));
+    try {
+      failing.get(5, TimeUnit.SECONDS);
+      fail("Failed operation completed normally");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof JsonRpcErrorException);
+      assertEquals(40101, ((JsonRpcErrorException) e.getCause()).getCode());
+    }
+
+    assertEquals(
+        Arrays.asList("transaction [getName, " + FAILING_OPERATION + ", getMediaState]"),
+        kms.requests);
+  }
+
+  @Test
+  public void fullBatchesAreSentWithoutWaiting() throws Exception {
+
+    client.enableAutoBatch(TimeUnit.SECONDS.toMicros(60), 2);
+
+    CompletableFuture<String> name = webRtc.getNameAsync();
+    CompletableFuture<MediaState> state = webRtc.getMediaStateAsync();
+
+    assertEquals("name", name.get(5, TimeUnit.SECONDS));
+    assertEquals(MediaState.CONNECTED, state.get(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("transaction [getName, getMediaState]"), kms.requests);
+  }
+
+  @Test
+  public void responsesAreMatchedById() throws Exception {
+
+    kms.reverseResponses = true;
+    client.enableAutoBatch(TimeUnit.MILLISECONDS.toMicros(50), 100);
+
+    CompletableFuture<String> name = webRtc.getNameAsync();
+    CompletableFuture<Integer> failing = webRtc.getMinVideoRecvBandwidthAsync();
+    CompletableFuture<MediaState> state = webRtc.getMediaStateAsync();
+
+    assertEquals("name", name.get(5, TimeUnit.SECONDS));
+    assertEquals(MediaState.CONNECTED, state.get(5, TimeUnit.SECONDS));
+    try {
+      failing.get(5, TimeUnit.SECONDS);
+      fail("Failed operation completed normally");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof JsonRpcErrorException);
+    }
+  }
+
+  @Test
+  public void disablingAutoBatchSendsPendingInvocations() throws Exception {
+
+    client.enableAutoBatch(TimeUnit.SECONDS.toMicros(60), 100);
+
+    CompletableFuture<String> name = webRtc.getNameAsync();
+    CompletableFuture<MediaState> state = webRtc.getMediaStateAsync();
+    assertFalse(name.isDone());
+
+    client.disableAutoBatch();
+    assertFalse(client.isAutoBatchEnabled());
+
+    assertEquals("name", name.get(5, TimeUnit.SECONDS));
+    assertEquals(MediaState.CONNECTED, state.get(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("transaction [getName, getMediaState]"), kms.requests);
+  }
+
+  @Test
+  public void otherRequestsOfThePipelineSendPendingInvocationsFirst() throws Exception {
+
+    client.enableAutoBatch(TimeUnit.SECONDS.toMicros(60), 100);
+
+    CompletableFuture<String> name = webRtc.getNameAsync();
+    CompletableFuture<MediaState> state = webRtc.getMediaStateAsync();
+    assertFalse(name.isDone());
+
+    webRtc.setName("other");
+
+    assertEquals("name", name.get(5, TimeUnit.SECONDS));
+    assertEquals(MediaState.CONNECTED, state.get(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("transaction [getName, getMediaState]", "invoke setName"),
+        kms.requests);
+  }
+
+}
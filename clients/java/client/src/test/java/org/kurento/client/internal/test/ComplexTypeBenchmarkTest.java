@@ -0,0 +1,168 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+
+import org.junit.Test;
+import org.kurento.client.IceCandidate;
+import org.kurento.client.IceCandidateFoundEvent;
+import org.kurento.client.internal.transport.serialization.KurentoCodec;
+import org.kurento.client.internal.transport.serialization.KurentoCodecs;
+import org.kurento.client.internal.transport.serialization.ParamsFlattener;
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.JsonUtils;
+import org.kurento.jsonrpc.Props;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Measures the CPU time and the memory allocated to flatten and unflatten ICE candidates, as done
+ * for each candidate trickled between the client and the media server, and to decode the events
+ * that carry them. The number of candidates can be increased with the property
+ * {@code complexTypeBenchmark.rounds}.
+ */
+public class ComplexTypeBenchmarkTest {
+
+  private static final Logger log = LoggerFactory.getLogger(ComplexTypeBenchmarkTest.class);
+
+  private static final int ROUNDS = PropertiesManager.getProperty("complexTypeBenchmark.rounds",
+      50000);
+
+  private static final String CANDIDATE = "candidate:1 1 UDP 2013266431 192.168.1.10 46140 typ host";
+
+  private final ParamsFlattener flattener = ParamsFlattener.getInstance();
+
+  @Test
+  public void iceCandidateTrickling() {
+
+    IceCandidate candidate = new IceCandidate(CANDIDATE, "audio", 0);
+
+    Props flat = flatten(candidate);
+    IceCandidate unflat = unflatten(flat);
+    assertEquals(CANDIDATE, unflat.getCandidate());
+    assertEquals("audio", unflat.getSdpMid());
+    assertEquals(0, unflat.getSdpMLineIndex());
+
+    // Warm up
+    for (int i = 0; i < 3; i++) {
+      flattenAll(candidate);
+      unflattenAll(flat);
+    }
+
+    report("flatten", flattenAll(candidate));
+    report("unflatten", unflattenAll(flat));
+  }
+
+  @Test
+  public void iceCandidateFoundEvents() throws Exception {
+
+    JsonObject data = GeneratedCodecTest.iceCandidateFoundData(null);
+    data.remove("source");
+
+    KurentoCodec<IceCandidateFoundEvent> codec =
+        new KurentoCodecs(null).getCodec(IceCandidateFoundEvent.class);
+
+    IceCandidateFoundEvent event = codec.decode(data);
+    assertEquals(CANDIDATE, event.getCandidate().getCandidate());
+    assertEquals(CANDIDATE, decodeWithProps(data).getCandidate().getCandidate());
+
+    // Warm up
+    for (int i = 0; i < 3; i++) {
+      decodeAllWithCodec(codec, data);
+      decodeAllWithProps(data);
+    }
+
+    report("decode event with codec", decodeAllWithCodec(codec, data));
+    report("decode event with props", decodeAllWithProps(data));
+  }
+
+  private IceCandidateFoundEvent decodeWithProps(JsonObject data) throws Exception {
+    Constructor<?> constructor = IceCandidateFoundEvent.class.getConstructors()[0];
+    Object[] params = flattener.unflattenParams(constructor.getParameterAnnotations(),
+        constructor.getGenericParameterTypes(), JsonUtils.fromJson(data, Props.class), null);
+    return (IceCandidateFoundEvent) constructor.newInstance(params);
+  }
+
+  private long[] decodeAllWithCodec(KurentoCodec<IceCandidateFoundEvent> codec, JsonObject data) {
+    long[] start = measure();
+    for (int i = 0; i < ROUNDS; i++) {
+      codec.decode(data);
+    }
+    return finish(start);
+  }
+
+  private long[] decodeAllWithProps(JsonObject data) throws Exception {
+    long[] start = measure();
+    for (int i = 0; i < ROUNDS; i++) {
+      decodeWithProps(data);
+    }
+    return finish(start);
+  }
+
+  private Props flatten(IceCandidate candidate) {
+    return (Props) flattener.flattenParams(new Props("candidate", candidate), false)
+        .getProp("candidate");
+  }
+
+  private IceCandidate unflatten(Props props) {
+    return (IceCandidate) flattener.unflattenValue("candidate", IceCandidate.class, props, null);
+  }
+
+  private long[] flattenAll(IceCandidate candidate) {
+    long[] start = measure();
+    for (int i = 0; i < ROUNDS; i++) {
+      flatten(candidate);
+    }
+    return finish(start);
+  }
+
+  private long[] unflattenAll(Props props) {
+    long[] start = measure();
+    for (int i = 0; i < ROUNDS; i++) {
+      unflatten(props);
+    }
+    return finish(start);
+  }
+
+  private long[] measure() {
+    return new long[] { threads().getCurrentThreadCpuTime(),
+        threads().getThreadAllocatedBytes(Thread.currentThread().getId()) };
+  }
+
+  private long[] finish(long[] start) {
+    long[] end = measure();
+    return new long[] { end[0] - start[0], end[1] - start[1] };
+  }
+
+  private com.sun.management.ThreadMXBean threads() {
+    return (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  }
+
+  private void report(String name, long[] result) {
+    log.info("{}: {} candidates, {} ns CPU/candidate, {} bytes allocated/candidate", name, ROUNDS,
+        result[0] / ROUNDS, result[1] / ROUNDS);
+  }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.kurento.client.internal.client.RomManager;
+import org.kurento.client.internal.test.model.client.SampleClass;
+import org.kurento.client.internal.transport.jsonrpc.RomClientJsonRpcClient;
+import org.kurento.client.internal.transport.jsonrpc.RomServerJsonRpcHandler;
+import org.kurento.jsonrpc.JsonRpcHandler;
+import org.kurento.jsonrpc.client.JsonRpcClientLocal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates objects from several threads against a local server that takes some time to create
+ * each object, as a media server does with pipelines and endpoints.
+ */
+public class ConcurrentCreationTest {
+
+  private static final Logger log = LoggerFactory.getLogger(ConcurrentCreationTest.class);
+
+  private static final int NUM_OBJECTS = 64;
+  private static final int NUM_THREADS = 8;
+  private static final long CREATION_MILLIS = 5;
+
+  private final RomServerJsonRpcHandler handler = new RomServerJsonRpcHandler(
+      "org.kurento.client.internal.test.model.server", "Impl");
+
+  private static class SlowCreationClient extends JsonRpcClientLocal {
+
+    SlowCreationClient(JsonRpcHandler<? extends Object> handler) {
+      super(handler);
+    }
+
+    @Override
+    public <R> R sendRequest(String method, Object params, Class<R> resultClass)
+        throws IOException {
+
+      if ("create".equals(method)) {
+        try {
+          Thread.sleep(CREATION_MILLIS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return super.sendRequest(method, params, resultClass);
+    }
+  }
+
+  @Test
+  public void objectsAreCreatedConcurrently() throws Exception {
+
+    RomManager manager = new RomManager(
+        new RomClientJsonRpcClient(new SlowCreationClient(handler)));
+
+    // Warm up
+    createObjects(manager, NUM_THREADS);
+
+    long sequential = createObjects(manager, 1);
+    long concurrent = createObjects(manager, NUM_THREADS);
+
+    log.info("{} objects created in {} ms with 1 thread and in {} ms with {} threads",
+        NUM_OBJECTS, sequential / 1000000, concurrent / 1000000, NUM_THREADS);
+
+    assertTrue("Creation does not scale with threads", concurrent * 3 < sequential);
+
+    manager.destroy();
+  }
+
+  @Test
+  public void getByIdReturnsSameObjectInAllThreads() throws Exception {
+
+    // Proxies are created locally for references unknown by the client
+    final String objectRef = "1d5b6a36-d1b4-4d5c_SampleClass";
+
+    final RomManager manager = new RomManager(
+        new RomClientJsonRpcClient(new JsonRpcClientLocal(handler)));
+    final CyclicBarrier barrier = new CyclicBarrier(NUM_THREADS);
+
+    ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+    try {
+      List<Future<SampleClass>> results = new ArrayList<>();
+      for (int i = 0; i < NUM_THREADS; i++) {
+        results.add(executor.submit(new Callable<SampleClass>() {
+          @Override
+          public SampleClass call() throws Exception {
+            barrier.await();
+            return manager.getById(objectRef, SampleClass.class);
+          }
+        }));
+      }
+
+      SampleClass first = results.get(0).get();
+      for (Future<SampleClass> result : results) {
+        assertSame(first, result.get());
+      }
+      assertEquals(objectRef, first.getId());
+    } finally {
+      executor.shutdown();
+    }
+
+    manager.destroy();
+  }
+
+  private long createObjects(final RomManager manager, int threads) throws Exception {
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      long start = System.nanoTime();
+
+      List<Future<SampleClass>> results = new ArrayList<>();
+      for (int i = 0; i < NUM_OBJECTS; i++) {
+        final int att4 = i;
+        results.add(executor.submit(new Callable<SampleClass>() {
+          @Override
+          public SampleClass call() {
+            return new SampleClass.Builder("obj", false, manager).withAtt3(0.5f).withAtt4(att4)
+                .build();
+          }
+        }));
+      }
+
+      for (int i = 0; i < NUM_OBJECTS; i++) {
+        SampleClass object = results.get(i).get();
+        assertSame(object, manager.getById(object.getId(), SampleClass.class));
+      }
+
+      return System.nanoTime() - start;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kurento.client.CodecConfiguration;
+import org.kurento.client.EventListener;
+import org.kurento.client.IceCandidate;
+import org.kurento.client.IceCandidateFoundEvent;
+import org.kurento.client.KurentoClient;
+import org.kurento.client.MediaPipeline;
+import org.kurento.client.Tag;
+import org.kurento.client.WebRtcEndpoint;
+import org.kurento.client.internal.client.RemoteObjectInvocationHandler;
+import org.kurento.client.internal.server.ProtocolException;
+import org.kurento.client.internal.transport.serialization.KurentoCodec;
+import org.kurento.client.internal.transport.serialization.KurentoCodecs;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.client.JsonRpcClientLocal;
+import org.kurento.jsonrpc.message.Request;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Checks that the codecs generated for events and complex types decode the data sent by the media
+ * server.
+ */
+public class GeneratedCodecTest {
+
+  private static final String CANDIDATE = "candidate:1 1 UDP 2013266431 192.168.1.10 46140 typ host";
+
+  private static class FakeKmsHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    private int numObjects;
+
+    @Override
+    public synchronized void handleRequest(Transaction transaction, Request<JsonObject> request)
+        throws Exception {
+
+      switch (request.getMethod()) {
+        case "create":
+          transaction.sendResponse(++numObjects + "_kurento."
+              + request.getParams().get("type").getAsString());
+          break;
+        case "subscribe":
+          transaction.sendResponse("subscription");
+          break;
+        default:
+          transaction.sendResponse(null);
+      }
+    }
+  }
+
+  private KurentoClient client;
+
+  @Before
+  public void setup() {
+    client = KurentoClient.createFromJsonRpcClient(new JsonRpcClientLocal(new FakeKmsHandler()));
+  }
+
+  @After
+  public void teardown() {
+    client.destroy();
+  }
+
+  static JsonObject iceCandidateFoundData(String source) {
+
+    JsonObject candidate = new JsonObject();
+    candidate.addProperty("__module__", "kurento");
+    candidate.addProperty("__type__", "IceCandidate");
+    candidate.addProperty("candidate", CANDIDATE);
+    candidate.addProperty("sdpMid", "audio");
+    candidate.addProperty("sdpMLineIndex", 1);
+
+    JsonObject tag = new JsonObject();
+    tag.addProperty("__module__", "kurento");
+    tag.addProperty("__type__", "Tag");
+    tag.addProperty("key", "room");
+    tag.addProperty("value", "42");
+    JsonArray tags = new JsonArray();
+    tags.add(tag);
+
+    JsonObject data = new JsonObject();
+    data.addProperty("source", source);
+    data.addProperty("timestampMillis", "1500000000000");
+    data.add("tags", tags);
+    data.addProperty("type", "IceCandidateFound");
+    data.add("candidate", candidate);
+    return data;
+  }
+
+  @Test
+  public void codecsAreGenerated() {
+
+    KurentoCodecs codecs = new KurentoCodecs(null);
+
+    KurentoCodec<IceCandidateFoundEvent> eventCodec = codecs.getCodec(IceCandidateFoundEvent.class);
+    assertNotNull(eventCodec);
+    assertEquals("org.kurento.client.internal.codec", eventCodec.getClass().getPackage()
+        .getName());
+    assertSame(eventCodec, codecs.getCodec(IceCandidateFoundEvent.class));
+
+    assertNotNull(codecs.getCodec(IceCandidate.class));
+    assertNull(codecs.getCodec(String.class));
+  }
+
+  @Test
+  public void complexTypesAreDecoded() throws IOException {
+
+    KurentoCodecs codecs = new KurentoCodecs(null);
+
+    JsonObject data = iceCandidateFoundData("1_kurento.WebRtcEndpoint");
+    IceCandidate candidate = codecs.getCodec(IceCandidate.class)
+        .decode(data.getAsJsonObject("candidate"));
+
+    assertEquals(CANDIDATE, candidate.getCandidate());
+    assertEquals("audio", candidate.getSdpMid());
+    assertEquals(1, candidate.getSdpMLineIndex());
+  }
+
+  @Test
+  public void optionalPropertiesAreDecoded() {
+
+    JsonObject properties = new JsonObject();
+    properties.addProperty("profile-level-id", "42e01f");
+    JsonObject json = new JsonObject();
+    json.addProperty("name", "H264/90000");
+    json.add("properties", properties);
+
+    CodecConfiguration codec = new KurentoCodecs(null)
+        .getCodec(CodecConfiguration.class).decode(json);
+
+    assertEquals("H264/90000", codec.getName());
+    assertEquals("42e01f", codec.getProperties().get("profile-level-id"));
+  }
+
+  @Test(expected = ProtocolException.class)
+  public void missingRequiredPropertiesAreRejected() {
+
+    JsonObject json = new JsonObject();
+    json.addProperty("candidate", CANDIDATE);
+    json.addProperty("sdpMid", "audio");
+
+    new KurentoCodecs(null).getCodec(IceCandidate.class).decode(json);
+  }
+
+  @Test
+  public void eventsAreDecodedWithCodecs() throws Exception {
+
+    MediaPipeline pipeline = client.createMediaPipeline();
+    WebRtcEndpoint webRtc = new WebRtcEndpoint.Builder(pipeline).build();
+
+    final CountDownLatch eventReceived = new CountDownLatch(1);
+    final AtomicReference<IceCandidateFoundEvent> event = new AtomicReference<>();
+    webRtc.addIceCandidateFoundListener(new EventListener<IceCandidateFoundEvent>() {
+      @Override
+      public void onEvent(IceCandidateFoundEvent e) {
+        event.set(e);
+        eventReceived.countDown();
+      }
+    });
+
+    RemoteObjectInvocationHandler.getFor(webRtc).getRemoteObject().fireEvent("IceCandidateFound",
+        iceCandidateFoundData("unknown"));
+
+    assertTrue(eventReceived.await(5, TimeUnit.SECONDS));
+
+    IceCandidateFoundEvent e = event.get();
+    assertSame(webRtc, e.getSource());
+    assertEquals("1500000000000", e.getTimestampMillis());
+    assertEquals("IceCandidateFound", e.getType());
+    assertEquals(CANDIDATE, e.getCandidate().getCandidate());
+    assertEquals(1, e.getCandidate().getSdpMLineIndex());
+
+    assertEquals(1, e.getTags().size());
+    Tag tag = e.getTags().get(0);
+    assertEquals("room", tag.getKey());
+    assertEquals("42", tag.getValue());
+  }
+
+}
@@ -0,0 +1,210 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kurento.client.ErrorEvent;
+import org.kurento.client.EventListener;
+import org.kurento.client.GenericMediaElement;
+import org.kurento.client.KurentoClient;
+import org.kurento.client.MediaObject;
+import org.kurento.client.MediaPipeline;
+import org.kurento.client.WebRtcEndpoint;
+import org.kurento.client.internal.client.AbstractKurentoObject;
+import org.kurento.client.internal.client.RemoteObjectInvocationHandler;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.Props;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.client.JsonRpcClientLocal;
+import org.kurento.jsonrpc.message.Request;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Checks that the classes generated for the core module are used instead of proxies, and that they
+ * send the same requests.
+ */
+public class GeneratedImplTest {
+
+  private static class FakeKmsHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    private final List<Request<JsonObject>> requests = new CopyOnWriteArrayList<>();
+    private final AtomicInteger numObjects = new AtomicInteger();
+    private final AtomicReference<String> lastRef = new AtomicReference<>();
+
+    @Override
+    public void handleRequest(Transaction transaction, Request<JsonObject> request)
+        throws Exception {
+
+      requests.add(request);
+
+      JsonObject params = request.getParams();
+      switch (request.getMethod()) {
+        case "create":
+          String ref = numObjects.incrementAndGet() + "_kurento."
+              + params.get("type").getAsString();
+          lastRef.set(ref);
+          transaction.sendResponse(ref);
+          break;
+        case "invoke":
+          transaction.sendResponse(invokeResult(params.get("operation").getAsString()));
+          break;
+        case "subscribe":
+          transaction.sendResponse("subscription");
+          break;
+        default:
+          transaction.sendResponse(null);
+      }
+    }
+
+    private Object invokeResult(String operation) {
+      switch (operation) {
+        case "getName":
+          return "name";
+        case "getMediaPipeline":
+          return "1_kurento.MediaPipeline";
+        case "getChildren":
+          JsonArray children = new JsonArray();
+          children.add(new JsonPrimitive(lastRef.get()));
+          return children;
+        default:
+          return null;
+      }
+    }
+
+    Request<JsonObject> lastRequest() {
+      return requests.get(requests.size() - 1);
+    }
+  }
+
+  private FakeKmsHandler kms;
+  private KurentoClient client;
+
+  @Before
+  public void setup() {
+    kms = new FakeKmsHandler();
+    client = KurentoClient.createFromJsonRpcClient(new JsonRpcClientLocal(kms));
+  }
+
+  @After
+  public void teardown() {
+    client.destroy();
+  }
+
+  @Test
+  public void generatedClassesAreUsed() {
+
+    MediaPipeline pipeline = client.createMediaPipeline();
+    WebRtcEndpoint webRtc = new WebRtcEndpoint.Builder(pipeline).build();
+
+    assertTrue(pipeline instanceof AbstractKurentoObject);
+    assertTrue(webRtc instanceof AbstractKurentoObject);
+    assertFalse(Proxy.isProxyClass(webRtc.getClass()));
+    assertEquals(pipeline.getId(),
+        kms.lastRequest().getParams().getAsJsonObject("constructorParams").get("mediaPipeline")
+            .getAsString());
+
+    // Elements without a generated class are still proxies
+    GenericMediaElement generic = new GenericMediaElement.Builder(pipeline, "Generic").build();
+    assertTrue(Proxy.isProxyClass(generic.getClass()));
+  }
+
+  @Test
+  public void invocationsSendTheSameRequests() {
+
+    MediaPipeline pipeline = client.createMediaPipeline();
+    WebRtcEndpoint webRtc = new WebRtcEndpoint.Builder(pipeline).build();
+    WebRtcEndpoint other = new WebRtcEndpoint.Builder(pipeline).build();
+
+    assertEquals("name", webRtc.getName());
+    JsonObject params = kms.lastRequest().getParams();
+    assertEquals(webRtc.getId(), params.get("object").getAsString());
+    assertEquals("getName", params.get("operation").getAsString());
+    assertNull(params.get("operationParams"));
+
+    webRtc.connect(other);
+    params = kms.lastRequest().getParams();
+    assertEquals("connect", params.get("operation").getAsString());
+    assertEquals(other.getId(),
+        params.getAsJsonObject("operationParams").get("sink").getAsString());
+
+    webRtc.setName("element");
+    params = kms.lastRequest().getParams();
+    assertEquals("setName", params.get("operation").getAsString());
+    assertEquals("element", params.getAsJsonObject("operationParams").get("name").getAsString());
+
+    assertSame(pipeline, webRtc.getMediaPipeline());
+
+    List<MediaObject> children = pipeline.getChildren();
+    assertEquals(1, children.size());
+    assertSame(other, children.get(0));
+    assertEquals(other, children.get(0));
+    assertEquals(other.hashCode(), children.get(0).hashCode());
+    assertFalse(webRtc.equals(other));
+  }
+
+  @Test
+  public void eventsAreDeliveredToGeneratedClasses() throws Exception {
+
+    MediaPipeline pipeline = client.createMediaPipeline();
+    final WebRtcEndpoint webRtc = new WebRtcEndpoint.Builder(pipeline).build();
+
+    final CountDownLatch eventReceived = new CountDownLatch(1);
+    final AtomicReference<ErrorEvent> event = new AtomicReference<>();
+    webRtc.addErrorListener(new EventListener<ErrorEvent>() {
+      @Override
+      public void onEvent(ErrorEvent e) {
+        event.set(e);
+        eventReceived.countDown();
+      }
+    });
+
+    JsonObject params = kms.lastRequest().getParams();
+    assertEquals("subscribe", kms.lastRequest().getMethod());
+    assertEquals("Error", params.get("type").getAsString());
+
+    Props data = new Props("description", "Failure").add("errorCode", 1).add("type", "ERROR")
+        .add("timestampMillis", "0").add("tags", Collections.emptyList());
+    RemoteObjectInvocationHandler.getFor(webRtc).getRemoteObject().fireEvent("Error", data);
+
+    assertTrue(eventReceived.await(5, TimeUnit.SECONDS));
+    assertEquals("Failure", event.get().getDescription());
+    assertSame(webRtc, event.get().getSource());
+  }
+
+}
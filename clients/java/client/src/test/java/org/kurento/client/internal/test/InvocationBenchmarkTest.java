@@ -0,0 +1,118 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+import org.kurento.client.internal.client.RemoteObject;
+import org.kurento.client.internal.client.RemoteObjectInvocationHandler;
+import org.kurento.client.internal.client.RomManager;
+import org.kurento.client.internal.test.model.client.SampleClass;
+import org.kurento.client.internal.test.model.client.SampleEnum;
+import org.kurento.client.internal.transport.jsonrpc.RomClientJsonRpcClient;
+import org.kurento.client.internal.transport.jsonrpc.RomServerJsonRpcHandler;
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.Props;
+import org.kurento.jsonrpc.client.JsonRpcClientLocal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures the CPU time and the memory allocated per call of a remote method that does nothing,
+ * against a local server. Calls through the proxy are compared with calls made directly to the
+ * {@link RemoteObject}, so the difference is the cost of the proxy dispatch. The number of calls
+ * can be increased with the property {@code invocationBenchmark.rounds}.
+ */
+public class InvocationBenchmarkTest {
+
+  private static final Logger log = LoggerFactory.getLogger(InvocationBenchmarkTest.class);
+
+  private static final int ROUNDS = PropertiesManager.getProperty("invocationBenchmark.rounds",
+      20000);
+
+  @Test
+  public void proxyDispatchOverhead() {
+
+    JsonRpcClientLocal client = new JsonRpcClientLocal(new RomServerJsonRpcHandler(
+        "org.kurento.client.internal.test.model.server", "Impl"));
+    client.setDirectDispatch(true);
+
+    RomManager manager = new RomManager(new RomClientJsonRpcClient(client));
+
+    SampleClass obj = new SampleClass.Builder("att1", false, manager).withAtt3(0.5f).withAtt4(7)
+        .build();
+    RemoteObject remoteObject = RemoteObjectInvocationHandler.getFor(obj).getRemoteObject();
+
+    // Warm up
+    for (int i = 0; i < 3; i++) {
+      viaProxy(obj);
+      direct(remoteObject);
+    }
+
+    report("getter via proxy", viaProxy(obj));
+    report("getter direct", direct(remoteObject));
+
+    long[] start = measure();
+    for (int i = 0; i < ROUNDS; i++) {
+      obj.echoEnum(SampleEnum.CONSTANT_1);
+    }
+    report("method with params via proxy", finish(start));
+
+    manager.destroy();
+  }
+
+  private long[] viaProxy(SampleClass obj) {
+    long[] start = measure();
+    for (int i = 0; i < ROUNDS; i++) {
+      assertEquals(7, obj.getAtt4());
+    }
+    return finish(start);
+  }
+
+  private long[] direct(RemoteObject remoteObject) {
+    long[] start = measure();
+    for (int i = 0; i < ROUNDS; i++) {
+      assertEquals(7, remoteObject.invoke("getAtt4", (Props) null, int.class).intValue());
+    }
+    return finish(start);
+  }
+
+  private long[] measure() {
+    return new long[] { threads().getCurrentThreadCpuTime(),
+        threads().getThreadAllocatedBytes(Thread.currentThread().getId()) };
+  }
+
+  private long[] finish(long[] start) {
+    long[] end = measure();
+    return new long[] { end[0] - start[0], end[1] - start[1] };
+  }
+
+  private com.sun.management.ThreadMXBean threads() {
+    return (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  }
+
+  private void report(String name, long[] result) {
+    log.info("{}: {} calls, {} ns CPU/call, {} bytes allocated/call", name, ROUNDS,
+        result[0] / ROUNDS, result[1] / ROUNDS);
+  }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kurento.client.KurentoClient;
+import org.kurento.client.MediaPipeline;
+import org.kurento.client.MediaState;
+import org.kurento.client.PropertyCache;
+import org.kurento.client.WebRtcEndpoint;
+import org.kurento.client.internal.client.RemoteObjectInvocationHandler;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.client.JsonRpcClientLocal;
+import org.kurento.jsonrpc.message.Request;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Checks which properties are read from the property cache, and when they are read again from
+ * the server.
+ */
+public class PropertyCacheTest {
+
+  private static class FakeKmsHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    private final ConcurrentMap<String, AtomicInteger> invocations = new ConcurrentHashMap<>();
+    private final AtomicInteger numObjects = new AtomicInteger();
+
+    @Override
+    public void handleRequest(Transaction transaction, Request<JsonObject> request)
+        throws Exception {
+
+      JsonObject params = request.getParams();
+      switch (request.getMethod()) {
+        case "create":
+          transaction.sendResponse(numObjects.incrementAndGet() + "_kurento."
+              + params.get("type").getAsString());
+          break;
+        case "invoke":
+          String operation = params.get("operation").getAsString();
+          invocations.putIfAbsent(operation, new AtomicInteger());
+          invocations.get(operation).incrementAndGet();
+          transaction.sendResponse(invokeResult(operation));
+          break;
+        default:
+          transaction.sendResponse(null);
+      }
+    }
+
+    private Object invokeResult(String operation) {
+      switch (operation) {
+        case "getName":
+          return "name";
+        case "getMediaPipeline":
+          return "1_kurento.MediaPipeline";
+        case "getMediaState":
+          return "DISCONNECTED";
+        default:
+          return null;
+      }
+    }
+
+    int invocations(String operation) {
+      AtomicInteger counter = invocations.get(operation);
+      return counter == null ? 0 : counter.get();
+    }
+  }
+
+  private FakeKmsHandler kms;
+  private KurentoClient client;
+  private MediaPipeline pipeline;
+  private WebRtcEndpoint webRtc;
+
+  @Before
+  public void setup() {
+    kms = new FakeKmsHandler();
+    client = KurentoClient.createFromJsonRpcClient(new JsonRpcClientLocal(kms));
+    pipeline = client.createMediaPipeline();
+    webRtc = new WebRtcEndpoint.Builder(pipeline).build();
+  }
+
+  @After
+  public void teardown() {
+    client.destroy();
+  }
+
+  @Test
+  public void propertiesAreNotCachedByDefault() {
+
+    assertNull(client.getPropertyCache());
+
+    webRtc.getMediaPipeline();
+    webRtc.getMediaPipeline();
+    assertEquals(2, kms.invocations("getMediaPipeline"));
+  }
+
+  @Test
+  public void finalPropertiesNeverExpire() throws InterruptedException {
+
+    PropertyCache cache = new PropertyCache(1);
+    client.setPropertyCache(cache);
+
+    assertSame(pipeline, webRtc.getMediaPipeline());
+    Thread.sleep(10);
+    assertSame(pipeline, webRtc.getMediaPipeline());
+
+    assertEquals(1, kms.invocations("getMediaPipeline"));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void writablePropertiesAreNotCached() throws Exception {
+
+    PropertyCache cache = new PropertyCache(0);
+    client.setPropertyCache(cache);
+
+    assertEquals("name", webRtc.getName());
+    assertEquals("name", webRtc.getNameAsync().get());
+    assertEquals(2, kms.invocations("getName"));
+    assertEquals(0, cache.getHits());
+    assertEquals(0, cache.getMisses());
+  }
+
+  @Test
+  public void eventBackedPropertiesExpire() throws Exception {
+
+    PropertyCache cache = new PropertyCache(200);
+    client.setPropertyCache(cache);
+
+    assertEquals(MediaState.DISCONNECTED, webRtc.getMediaState());
+    assertEquals(MediaState.DISCONNECTED, webRtc.getMediaStateAsync().get());
+    assertEquals(1, kms.invocations("getMediaState"));
+
+    Thread.sleep(300);
+    webRtc.getMediaState();
+    assertEquals(2, kms.invocations("getMediaState"));
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void eventsUpdateTheirProperties() {
+
+    client.setPropertyCache(new PropertyCache(0));
+
+    assertEquals(MediaState.DISCONNECTED, webRtc.getMediaState());
+
+    JsonObject data = new JsonObject();
+    data.addProperty("oldState", "DISCONNECTED");
+    data.addProperty("newState", "CONNECTED");
+    RemoteObjectInvocationHandler.getFor(webRtc).getRemoteObject().fireEvent("MediaStateChanged",
+        data);
+
+    assertEquals(MediaState.CONNECTED, webRtc.getMediaState());
+    assertEquals(1, kms.invocations("getMediaState"));
+  }
+
+  @Test
+  public void cachedPropertiesCanBeRefreshed() {
+
+    PropertyCache cache = new PropertyCache(0);
+    client.setPropertyCache(cache);
+
+    webRtc.getMediaState();
+    cache.invalidate(webRtc);
+    webRtc.getMediaState();
+    assertEquals(2, kms.invocations("getMediaState"));
+
+    cache.invalidateAll();
+    webRtc.getMediaState();
+    webRtc.getMediaPipeline();
+    webRtc.getMediaPipeline();
+    assertEquals(3, kms.invocations("getMediaState"));
+    assertEquals(1, kms.invocations("getMediaPipeline"));
+
+    client.setPropertyCache(null);
+    webRtc.getMediaPipeline();
+    assertEquals(2, kms.invocations("getMediaPipeline"));
+  }
+
+}
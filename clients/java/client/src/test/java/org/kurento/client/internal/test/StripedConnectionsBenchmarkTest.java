@@ -0,0 +1,231 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.kurento.client.internal.transport.jsonrpc.RomClientJsonRpcClient;
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.client.JsonRpcClient;
+import org.kurento.jsonrpc.client.JsonRpcClientNettyWebSocket;
+import org.kurento.jsonrpc.internal.server.config.JsonRpcConfiguration;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.server.JsonRpcConfigurer;
+import org.kurento.jsonrpc.server.JsonRpcHandlerRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Measures the latency of small requests of one pipeline while another pipeline is receiving big
+ * responses, with one connection and with striped connections. The server answers from a pool, as
+ * the media server does, so only the connection can delay the small responses. The number of small
+ * requests and the size of the big responses can be set with the properties
+ * {@code stripedConnectionsBenchmark.requests} and
+ * {@code stripedConnectionsBenchmark.responseSize}.
+ */
+public class StripedConnectionsBenchmarkTest {
+
+  private static final Logger log =
+      LoggerFactory.getLogger(StripedConnectionsBenchmarkTest.class);
+
+  private static final int REQUESTS =
+      PropertiesManager.getProperty("stripedConnectionsBenchmark.requests", 200);
+  private static final int RESPONSE_SIZE =
+      PropertiesManager.getProperty("stripedConnectionsBenchmark.responseSize", 256 * 1024);
+  private static final int BIG_REQUEST_THREADS = 4;
+  private static final int STRIPES = 4;
+
+  @Configuration
+  @EnableAutoConfiguration
+  @Import(JsonRpcConfiguration.class)
+  public static class BenchmarkServerConfiguration implements JsonRpcConfigurer {
+
+    @Override
+    public void registerJsonRpcHandlers(JsonRpcHandlerRegistry registry) {
+      registry.addHandler(new BigResponsesHandler(), "/kurento");
+    }
+  }
+
+  /**
+   * Answers "getBig" invocations with a big string and any other one with a short string.
+   */
+  static class BigResponsesHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    private final String big;
+
+    BigResponsesHandler() {
+      char[] chars = new char[RESPONSE_SIZE];
+      Arrays.fill(chars, 'x');
+      big = new String(chars);
+    }
+
+    @Override
+    public void handleRequest(final Transaction transaction, final Request<JsonObject> request)
+        throws Exception {
+
+      transaction.startAsync();
+      responders.execute(new Runnable() {
+        @Override
+        public void run() {
+          JsonObject result = new JsonObject();
+          boolean isBig = "getBig".equals(request.getParams().get("operation").getAsString());
+          result.addProperty("value", isBig ? big : "small");
+          try {
+            transaction.sendResponse(result);
+          } catch (Exception e) {
+            log.warn("Exception sending response", e);
+          }
+        }
+      });
+    }
+  }
+
+  private static ExecutorService responders;
+  private static ConfigurableApplicationContext context;
+
+  @BeforeClass
+  public static void startServer() {
+    responders = Executors.newFixedThreadPool(8);
+    context = SpringApplication.run(BenchmarkServerConfiguration.class, "--server.port=0",
+        "--spring.main.banner-mode=off");
+  }
+
+  @AfterClass
+  public static void stopServer() {
+    if (context != null) {
+      context.close();
+      responders.shutdownNow();
+    }
+  }
+
+  @Test
+  public void smallRequestsLatencyWithBigResponsesOfOtherPipeline() throws Exception {
+
+    // Pipelines sent through different connections when there are several
+    String bigPipeline = pipelineWithStripe(0);
+    String smallPipeline = pipelineWithStripe(1);
+
+    long[] single = measure(1, bigPipeline, smallPipeline);
+    long[] striped = measure(STRIPES, bigPipeline, smallPipeline);
+
+    log.info("{} small requests while receiving responses of {} bytes", REQUESTS, RESPONSE_SIZE);
+    log.info("1 connection: p50 {} us, p99 {} us", single[0], single[1]);
+    log.info("{} connections: p50 {} us, p99 {} us", STRIPES, striped[0], striped[1]);
+
+    assertTrue("Striped connections didn't reduce the p99 latency: " + striped[1] + " us vs "
+        + single[1] + " us", striped[1] < single[1]);
+  }
+
+  /**
+   * Returns the p50 and p99 latencies, in microseconds, of the small requests.
+   */
+  private long[] measure(int numConnections, final String bigPipeline, String smallPipeline)
+      throws Exception {
+
+    String url = "ws://localhost:"
+        + ((ServletWebServerApplicationContext) context).getWebServer().getPort() + "/kurento";
+
+    // Connected as KurentoClient does, so all connections have joined the session before the
+    // first request
+    JsonRpcClientNettyWebSocket client = new JsonRpcClientNettyWebSocket(url);
+    client.connectWithSession();
+    List<JsonRpcClient> extraConnections = new ArrayList<>();
+    for (int i = 1; i < numConnections; i++) {
+      JsonRpcClientNettyWebSocket connection = new JsonRpcClientNettyWebSocket(url);
+      connection.connectWithSession(client.getSession().getSessionId());
+      extraConnections.add(connection);
+    }
+    final RomClientJsonRpcClient romClient = new RomClientJsonRpcClient(client, extraConnections);
+
+    // Warm up
+    for (int i = 0; i < 20; i++) {
+      invoke(romClient, bigPipeline, "getBig");
+      invoke(romClient, smallPipeline, "getSmall");
+    }
+
+    final AtomicBoolean finished = new AtomicBoolean();
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < BIG_REQUEST_THREADS; i++) {
+      Thread thread = new Thread("big-requests-" + i) {
+        @Override
+        public void run() {
+          while (!finished.get()) {
+            invoke(romClient, bigPipeline, "getBig");
+          }
+        }
+      };
+      thread.start();
+      threads.add(thread);
+    }
+
+    long[] latencies = new long[REQUESTS];
+    try {
+      for (int i = 0; i < REQUESTS; i++) {
+        long start = System.nanoTime();
+        assertEquals("small", invoke(romClient, smallPipeline, "getSmall"));
+        latencies[i] = System.nanoTime() - start;
+      }
+    } finally {
+      finished.set(true);
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      romClient.destroy();
+    }
+
+    Arrays.sort(latencies);
+    return new long[] { TimeUnit.NANOSECONDS.toMicros(latencies[REQUESTS / 2]),
+        TimeUnit.NANOSECONDS.toMicros(latencies[REQUESTS * 99 / 100]) };
+  }
+
+  private String invoke(RomClientJsonRpcClient romClient, String pipeline, String operation) {
+    return romClient.invoke(pipeline + "/element", operation, null, String.class);
+  }
+
+  private String pipelineWithStripe(int stripe) {
+    String pipeline = "pipeline";
+    for (int i = 0; Math.floorMod(pipeline.hashCode(), STRIPES) != stripe; i++) {
+      pipeline = "pipeline" + i;
+    }
+    return pipeline;
+  }
+
+}
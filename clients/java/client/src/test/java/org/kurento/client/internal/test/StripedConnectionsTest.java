@@ -0,0 +1,336 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.client.internal.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.kurento.client.internal.client.RomManager;
+import org.kurento.client.internal.test.model.client.SampleClass;
+import org.kurento.client.internal.test.model.client.SampleEnum;
+import org.kurento.client.internal.transport.jsonrpc.RomClientJsonRpcClient;
+import org.kurento.client.internal.transport.jsonrpc.RomServerJsonRpcHandler;
+import org.kurento.jsonrpc.JsonRpcHandler;
+import org.kurento.jsonrpc.Props;
+import org.kurento.jsonrpc.client.AbstractJsonRpcClientWebSocket;
+import org.kurento.jsonrpc.client.JsonRpcClient;
+import org.kurento.jsonrpc.client.JsonRpcClientLocal;
+import org.kurento.jsonrpc.message.Response;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+public class StripedConnectionsTest {
+
+  private static final int NUM_CONNECTIONS = 3;
+  private static final int NUM_OBJECTS = 20;
+  // Session id of local clients
+  private static final String SESSION_ID = "XXX";
+
+  // Connection used by each object ref
+  private final Map<String, JsonRpcClient> usedConnections = new ConcurrentHashMap<>();
+  private final Set<JsonRpcClient> connectionsWithRequests = ConcurrentHashMap.newKeySet();
+
+  private class RecordingClient extends JsonRpcClientLocal {
+
+    RecordingClient(JsonRpcHandler<? extends Object> handler) {
+      super(handler);
+    }
+
+    @Override
+    public <R> R sendRequest(String method, Object params, Class<R> resultClass)
+        throws IOException {
+
+      JsonElement objectRef = ((JsonObject) params).get("object");
+      if (objectRef != null) {
+        JsonRpcClient previous = usedConnections.put(objectRef.getAsString(), this);
+        assertTrue("Requests of one object sent through several connections",
+            previous == null || previous == this);
+      }
+      connectionsWithRequests.add(this);
+
+      return super.sendRequest(method, params, resultClass);
+    }
+  }
+
+  /**
+   * WebSocket connection without network. It answers invocations with their "n" parameter, in the
+   * order they are received, and its connection can be dropped by the test.
+   */
+  private static class StripeClient extends AbstractJsonRpcClientWebSocket {
+
+    private final List<Integer> received = new CopyOnWriteArrayList<>();
+    private volatile boolean connected;
+    private volatile boolean losingMessages;
+    private volatile CountDownLatch connectAllowed = new CountDownLatch(0);
+    private final AtomicInteger connectAttempts = new AtomicInteger();
+
+    StripeClient() {
+      super("ws://localhost:1/kurento", null);
+    }
+
+    @Override
+    protected void sendTextMessage(String jsonMessage) throws IOException {
+      if (!connected) {
+        throw new IOException("Not connected");
+      }
+      JsonObject message = JsonParser.parseString(jsonMessage).getAsJsonObject();
+      int id = message.get("id").getAsInt();
+      if ("connect".equals(message.get("method").getAsString())) {
+        answer(id, new JsonPrimitive("OK"));
+      } else if (!losingMessages) {
+        JsonObject params = message.getAsJsonObject("params");
+        int n = params.getAsJsonObject("operationParams").get("n").getAsInt();
+        received.add(n);
+        answer(id, new JsonPrimitive(n));
+      }
+    }
+
+    private void answer(int id, JsonElement result) {
+      handleResponseFromServer(new Response<JsonElement>(SESSION_ID, id, result));
+    }
+
+    @Override
+    protected void closeNativeClient() {
+      connected = false;
+    }
+
+    @Override
+    protected boolean isNativeClientConnected() {
+      return connected;
+    }
+
+    @Override
+    protected void connectNativeClient() throws Exception {
+      connectAttempts.incrementAndGet();
+      if (!connectAllowed.await(10, TimeUnit.SECONDS)) {
+        throw new IOException("Connection not allowed");
+      }
+      connected = true;
+    }
+
+    void dropConnection() {
+      connectAllowed = new CountDownLatch(1);
+      connected = false;
+      losingMessages = false;
+      handleReconnectDisconnection(1006, "Connection lost");
+    }
+
+    void allowReconnection() {
+      connectAllowed.countDown();
+    }
+  }
+
+  @Test
+  public void requestsOfEachObjectUseOneConnection() throws IOException {
+
+    RomServerJsonRpcHandler handler = new RomServerJsonRpcHandler(
+        "org.kurento.client.internal.test.model.server", "Impl");
+
+    JsonRpcClient client = new RecordingClient(handler);
+    List<JsonRpcClient> extraConnections = new ArrayList<>();
+    for (int i = 1; i < NUM_CONNECTIONS; i++) {
+      extraConnections.add(new RecordingClient(handler));
+    }
+
+    RomClientJsonRpcClient romClient = new RomClientJsonRpcClient(client, extraConnections);
+    assertEquals(NUM_CONNECTIONS, romClient.getNumConnections());
+
+    RomManager manager = new RomManager(romClient);
+
+    List<SampleClass> objects = new ArrayList<>();
+    for (int i = 0; i < NUM_OBJECTS; i++) {
+      objects.add(new SampleClass.Builder("obj" + i, false, manager).withAtt3(0.5f).withAtt4(i)
+          .build());
+    }
+
+    for (int j = 0; j < 3; j++) {
+      for (int i = 0; i < NUM_OBJECTS; i++) {
+        SampleClass obj = objects.get(i);
+        assertEquals("obj" + i, obj.getAtt1());
+        assertEquals(i, obj.getAtt4());
+        assertEquals(Arrays.asList(SampleEnum.CONSTANT_1),
+            obj.echoListEnum(Arrays.asList(SampleEnum.CONSTANT_1)));
+      }
+    }
+
+    assertEquals(NUM_OBJECTS, usedConnections.size());
+    // With 20 objects, all connections are used
+    assertEquals(NUM_CONNECTIONS, connectionsWithRequests.size());
+
+    romClient.destroy();
+  }
+
+  @Test
+  public void requestsOfClosedConnectionUseMainClient() throws IOException {
+
+    RomServerJsonRpcHandler handler = new RomServerJsonRpcHandler(
+        "org.kurento.client.internal.test.model.server", "Impl");
+
+    JsonRpcClient client = new RecordingClient(handler);
+    List<JsonRpcClient> extraConnections = new ArrayList<>();
+    for (int i = 1; i < NUM_CONNECTIONS; i++) {
+      extraConnections.add(new RecordingClient(handler));
+    }
+
+    RomClientJsonRpcClient romClient = new RomClientJsonRpcClient(client, extraConnections);
+    RomManager manager = new RomManager(romClient);
+
+    List<SampleClass> objects = new ArrayList<>();
+    for (int i = 0; i < NUM_OBJECTS; i++) {
+      objects.add(new SampleClass.Builder("obj" + i, false, manager).withAtt3(0.5f).withAtt4(i)
+          .build());
+    }
+
+    JsonRpcClient closed = extraConnections.get(0);
+    closed.close();
+    usedConnections.clear();
+    connectionsWithRequests.clear();
+
+    for (int i = 0; i < NUM_OBJECTS; i++) {
+      assertEquals(i, objects.get(i).getAtt4());
+    }
+
+    assertFalse("Requests sent through a closed connection",
+        connectionsWithRequests.contains(closed));
+    assertTrue(connectionsWithRequests.contains(client));
+
+    romClient.destroy();
+  }
+
+  @Test
+  public void requestsKeepTheirOrderWhenTheConnectionIsDropped() throws Exception {
+
+    RomServerJsonRpcHandler handler = new RomServerJsonRpcHandler(
+        "org.kurento.client.internal.test.model.server", "Impl");
+
+    JsonRpcClient client = new RecordingClient(handler);
+    StripeClient stripe = new StripeClient();
+    stripe.connectWithSession(SESSION_ID);
+
+    RomClientJsonRpcClient romClient =
+        new RomClientJsonRpcClient(client, Arrays.<JsonRpcClient> asList(stripe));
+
+    // A pipeline whose requests are sent through the extra connection
+    String pipelineRef = "pipeline";
+    for (int i = 0; Math.floorMod(pipelineRef.hashCode(), 2) != 1; i++) {
+      pipelineRef = "pipeline" + i;
+    }
+
+    List<CompletableFuture<Object>> results = new ArrayList<>();
+    results.add(invoke(romClient, pipelineRef, 0));
+
+    // Lost in the connection, so it is sent again after reconnecting
+    stripe.losingMessages = true;
+    results.add(invoke(romClient, pipelineRef, 1));
+    stripe.dropConnection();
+
+    // Issued while the connection is recovered
+    results.add(invoke(romClient, pipelineRef, 2));
+    results.add(invoke(romClient, pipelineRef, 3));
+    stripe.allowReconnection();
+
+    for (CompletableFuture<Object> result : results) {
+      result.get(10, TimeUnit.SECONDS);
+    }
+    results.add(invoke(romClient, pipelineRef, 4));
+
+    for (int i = 0; i < results.size(); i++) {
+      assertEquals(i, results.get(i).get(10, TimeUnit.SECONDS));
+    }
+    // None of them was sent through the main client, which doesn't know the pipeline
+    assertEquals(Arrays.asList(0, 1, 2, 3, 4), stripe.received);
+
+    romClient.destroy();
+  }
+
+  @Test
+  public void notConnectedConnectionIsConnectedInTheBackground() throws Exception {
+
+    StripeClient client = new StripeClient();
+    client.connectWithSession(SESSION_ID);
+    StripeClient stripe = new StripeClient();
+    stripe.connectAllowed = new CountDownLatch(1);
+
+    RomClientJsonRpcClient romClient =
+        new RomClientJsonRpcClient(client, Arrays.<JsonRpcClient> asList(stripe));
+
+    String pipelineRef = "pipeline";
+    for (int i = 0; Math.floorMod(pipelineRef.hashCode(), 2) != 1; i++) {
+      pipelineRef = "pipeline" + i;
+    }
+
+    // Sent through the main client without waiting for the connection
+    assertEquals(0, invoke(romClient, pipelineRef, 0).get(5, TimeUnit.SECONDS));
+    assertEquals(1, invoke(romClient, pipelineRef, 1).get(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList(0, 1), client.received);
+    assertTrue(stripe.connectAttempts.get() <= 1);
+
+    stripe.allowReconnection();
+    long deadline = System.currentTimeMillis() + 10000;
+    while (stripe.getSession() == null && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(SESSION_ID, stripe.getSession().getSessionId());
+
+    assertEquals(2, invoke(romClient, pipelineRef, 2).get(10, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList(2), stripe.received);
+    assertEquals(1, stripe.connectAttempts.get());
+
+    romClient.destroy();
+  }
+
+  @Test
+  public void eventsOfAllConnectionsWaitInTheSameQueue() {
+
+    StripeClient client = new StripeClient();
+    StripeClient stripe = new StripeClient();
+
+    RomClientJsonRpcClient romClient =
+        new RomClientJsonRpcClient(client, Arrays.<JsonRpcClient> asList(stripe));
+
+    assertSame(client.getServerRequestDispatcher(), stripe.getServerRequestDispatcher());
+
+    romClient.destroy();
+  }
+
+  private CompletableFuture<Object> invoke(RomClientJsonRpcClient romClient, String pipelineRef,
+      int n) {
+    return romClient.invokeAsync(pipelineRef + "/element", "getSequence", new Props("n", n),
+        Integer.class);
+  }
+
+}
@@ -19,6 +19,7 @@ package org.kurento.client.internal.test.model.client;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.kurento.client.AbstractBuilder;
 import org.kurento.client.Continuation;
@@ -37,6 +38,8 @@ public interface SampleClass extends KurentoObject {
 
   void getAtt1(Continuation<String> cont);
 
+  CompletableFuture<String> getAtt1Async();
+
   boolean getAtt2();
 
   void getAtt2(Continuation<Boolean> cont);
@@ -57,6 +60,8 @@ public interface SampleClass extends KurentoObject {
 
   void echoEnum(@Param("param") SampleEnum param, Continuation<SampleEnum> cont);
 
+  CompletableFuture<SampleEnum> echoEnumAsync(@Param("param") SampleEnum param);
+
   ComplexParam echoRegister(@Param("param") ComplexParam param);
 
   void echoRegister(@Param("param") ComplexParam param, Continuation<ComplexParam> cont);
@@ -70,6 +75,9 @@ public interface SampleClass extends KurentoObject {
   void echoListRegister(@Param("param") List<ComplexParam> param,
       Continuation<List<ComplexParam>> cont);
 
+  CompletableFuture<List<ComplexParam>> echoListRegisterAsync(
+      @Param("param") List<ComplexParam> param);
+
   Map<String, SampleEnum> echoMapEnum(@Param("param") Map<String, SampleEnum> param);
 
   void echoMapEnum(@Param("param") Map<String, SampleEnum> param,
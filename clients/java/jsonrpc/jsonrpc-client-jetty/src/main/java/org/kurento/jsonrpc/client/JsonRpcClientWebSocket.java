@@ -92,6 +92,8 @@ public class JsonRpcClientWebSocket extends AbstractJsonRpcClientWebSocket {
           label + " JsonRpcClient is disconnected from WebSocket server at '" + this.uri + "'");
     }
 
+    recordBytesSent(jsonMessage);
+
     synchronized (jettyWsSession) {
       CountDownLatch latch = new CountDownLatch(1);
       AtomicReference<Throwable> failure = new AtomicReference<>();
@@ -0,0 +1,117 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.jsonrpc;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+import org.kurento.jsonrpc.message.Message;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+
+/**
+ * Default codec, based on the Gson instance of {@link JsonUtils}.
+ */
+public class GsonJsonCodec implements JsonCodec {
+
+  private final Gson gson;
+  private final JsonRpcMessageReader messageReader;
+
+  public GsonJsonCodec() {
+    this(JsonUtils.getGson());
+  }
+
+  public GsonJsonCodec(Gson gson) {
+    this.gson = gson;
+    this.messageReader = new JsonRpcMessageReader(gson);
+  }
+
+  @Override
+  public Message readMessage(Reader reader) throws IOException {
+    return messageReader.read(reader);
+  }
+
+  @Override
+  public List<Message> readMessages(Reader reader) throws IOException {
+    return messageReader.readAll(reader);
+  }
+
+  @Override
+  public void writeMessage(Message message, Appendable writer) throws IOException {
+    JsonUtils.parseResultJson(message);
+    try {
+      JsonObject jsonObject = JsonUtils.toJsonObjectWithSessionId(message);
+      if (jsonObject != null) {
+        gson.toJson(jsonObject, writer);
+      } else {
+        gson.toJson(message, writer);
+      }
+    } catch (JsonIOException e) {
+      throw asIOException(e);
+    }
+  }
+
+  @Override
+  public JsonElement readTree(Reader reader) throws IOException {
+    try {
+      return gson.fromJson(reader, JsonElement.class);
+    } catch (JsonIOException e) {
+      throw asIOException(e);
+    }
+  }
+
+  @Override
+  public void writeTree(JsonElement element, Appendable writer) throws IOException {
+    try {
+      gson.toJson(element, writer);
+    } catch (JsonIOException e) {
+      throw asIOException(e);
+    }
+  }
+
+  @Override
+  public Props readProps(Reader reader) throws IOException {
+    try {
+      return gson.fromJson(reader, Props.class);
+    } catch (JsonIOException e) {
+      throw asIOException(e);
+    }
+  }
+
+  @Override
+  public void writeProps(Props props, Appendable writer) throws IOException {
+    try {
+      gson.toJson(props, Props.class, writer);
+    } catch (JsonIOException e) {
+      throw asIOException(e);
+    }
+  }
+
+  private IOException asIOException(JsonIOException e) {
+    if (e.getCause() instanceof IOException) {
+      return (IOException) e.getCause();
+    }
+    return new IOException(e);
+  }
+
+}
@@ -0,0 +1,664 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.jsonrpc;
+
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.ERROR_PROPERTY;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.ID_PROPERTY;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.JSON_RPC_PROPERTY;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.METHOD_PROPERTY;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.PARAMS_PROPERTY;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.RESULT_PROPERTY;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.SESSION_ID_PROPERTY;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.kurento.jsonrpc.internal.JsonRpcConstants;
+import org.kurento.jsonrpc.message.Message;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.message.Response;
+import org.kurento.jsonrpc.message.ResponseError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.internal.LazilyParsedNumber;
+
+/**
+ * Codec based on the streaming API of Jackson ({@code jackson-core}), that must be added to the
+ * classpath to use it.
+ *
+ * Messages are read and written token by token, building or walking the Gson trees of params and
+ * results directly, so the output is equivalent to the one of {@link GsonJsonCodec}. As in that
+ * codec, results are read as JSON text and only parsed when they are converted to the type
+ * expected by the caller. Numbers are kept with their original text. Params and results that are
+ * not JsonElement are converted to a tree with Gson before being written.
+ */
+public class JacksonJsonCodec implements JsonCodec {
+
+  private static final Logger log = LoggerFactory.getLogger(JacksonJsonCodec.class);
+
+  private final JsonFactory factory;
+
+  public JacksonJsonCodec() {
+    this(JsonFactory.builder().disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+        .disable(StreamWriteFeature.AUTO_CLOSE_TARGET).build());
+  }
+
+  /**
+   * Creates a codec with the given factory. It should not close the sources and targets of the
+   * parsers and generators it creates.
+   */
+  public JacksonJsonCodec(JsonFactory factory) {
+    this.factory = factory;
+  }
+
+  @Override
+  public Message readMessage(Reader reader) throws IOException {
+    try (JsonParser parser = factory.createParser(reader)) {
+      nextToken(parser);
+      return readMessage(parser);
+    }
+  }
+
+  @Override
+  public List<Message> readMessages(Reader reader) throws IOException {
+    try (JsonParser parser = factory.createParser(reader)) {
+
+      if (nextToken(parser) != JsonToken.START_ARRAY) {
+        return Collections.singletonList(readMessage(parser));
+      }
+
+      List<Message> messages = new ArrayList<>();
+      while (parser.nextToken() != JsonToken.END_ARRAY) {
+        messages.add(readMessage(parser));
+      }
+      return messages;
+    }
+  }
+
+  @Override
+  public void writeMessage(Message message, Appendable writer) throws IOException {
+    try (JsonGenerator generator = factory.createGenerator(asWriter(writer))) {
+      writeMessage(message, generator);
+    }
+  }
+
+  @Override
+  public JsonElement readTree(Reader reader) throws IOException {
+    try (JsonParser parser = factory.createParser(reader)) {
+      if (parser.nextToken() == null) {
+        return null;
+      }
+      return readElement(parser);
+    }
+  }
+
+  @Override
+  public void writeTree(JsonElement element, Appendable writer) throws IOException {
+    try (JsonGenerator generator = factory.createGenerator(asWriter(writer))) {
+      writeElement(element, generator);
+    }
+  }
+
+  @Override
+  public Props readProps(Reader reader) throws IOException {
+    try (JsonParser parser = factory.createParser(reader)) {
+      JsonToken token = parser.nextToken();
+      if (token == null || token == JsonToken.VALUE_NULL) {
+        return null;
+      }
+      if (token != JsonToken.START_OBJECT) {
+        throw new JsonParseException("Cannot convert " + token + " to Props object");
+      }
+      return readProps(parser);
+    }
+  }
+
+  @Override
+  public void writeProps(Props props, Appendable writer) throws IOException {
+    try (JsonGenerator generator = factory.createGenerator(asWriter(writer))) {
+      writeValue(props, generator);
+    }
+  }
+
+  private Message readMessage(JsonParser parser) throws IOException {
+
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      throw new JsonParseException("JsonObject expected, found " + parser.currentToken());
+    }
+
+    String version = null;
+    boolean hasId = false;
+    int id = 0;
+    String method = null;
+    String sessionId = null;
+    JsonElement params = null;
+    String result = null;
+    ResponseError error = null;
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.currentName();
+      JsonToken token = parser.nextToken();
+      switch (name) {
+        case JSON_RPC_PROPERTY:
+          version = readString(parser);
+          break;
+        case ID_PROPERTY:
+          if (token != JsonToken.VALUE_NULL) {
+            id = readId(parser);
+            hasId = true;
+          }
+          break;
+        case METHOD_PROPERTY:
+          method = readString(parser);
+          break;
+        case PARAMS_PROPERTY:
+          if (token == JsonToken.START_OBJECT) {
+            JsonObject paramsObject = new JsonObject();
+            sessionId = readObjectExtractingSessionId(parser, paramsObject);
+            params = paramsObject;
+          } else {
+            params = readElement(parser);
+          }
+          break;
+        case RESULT_PROPERTY:
+          StringWriter resultJson = new StringWriter();
+          try (JsonGenerator generator = factory.createGenerator(resultJson)) {
+            sessionId = copyValueExtractingSessionId(parser, generator);
+          }
+          result = resultJson.toString();
+          break;
+        case ERROR_PROPERTY:
+          // Errors are rare, so they are mapped by Gson
+          error = JsonUtils.fromJson(readElement(parser), ResponseError.class);
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+
+    if (method != null) {
+
+      Request<JsonElement> request = new Request<>(method, params);
+      if (hasId) {
+        request.setId(id);
+      }
+      request.setSessionId(JsonUtils.INJECT_SESSION_ID ? sessionId : null);
+      return request;
+    }
+
+    if (version == null) {
+      throw new JsonParseException(
+          "Invalid JsonRpc response lacking version '" + JSON_RPC_PROPERTY + "' field");
+    }
+
+    if (!JsonRpcConstants.JSON_RPC_VERSION.equals(version)) {
+      throw new JsonParseException("Invalid JsonRpc version");
+    }
+
+    Response<JsonElement> response;
+    if (error != null) {
+      response = new Response<>(error);
+    } else {
+      response = new Response<>();
+      if (result != null) {
+        response.setResultJson(result);
+      } else {
+        log.warn("Invalid JsonRpc response with id {}. It lacks a valid '{}' or '{}' field",
+            hasId ? id : null,
+            RESULT_PROPERTY, ERROR_PROPERTY);
+      }
+      response.setSessionId(JsonUtils.INJECT_SESSION_ID ? sessionId : null);
+    }
+    if (hasId) {
+      response.setId(id);
+    }
+    return response;
+  }
+
+  private String readObjectExtractingSessionId(JsonParser parser, JsonObject object)
+      throws IOException {
+
+    String sessionId = null;
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.currentName();
+      parser.nextToken();
+      JsonElement value = readElement(parser);
+      if (JsonUtils.INJECT_SESSION_ID && SESSION_ID_PROPERTY.equals(name)) {
+        if (!(value instanceof JsonNull)) {
+          sessionId = value.getAsString();
+        }
+      } else {
+        object.add(name, value);
+      }
+    }
+
+    return sessionId;
+  }
+
+  /**
+   * Copies the current value to the generator token by token, without building a tree. If the
+   * value is an object, its session id is left out and returned.
+   */
+  private String copyValueExtractingSessionId(JsonParser parser, JsonGenerator generator)
+      throws IOException {
+
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      copyValue(parser, generator);
+      return null;
+    }
+
+    String sessionId = null;
+
+    generator.writeStartObject();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.currentName();
+      parser.nextToken();
+      if (JsonUtils.INJECT_SESSION_ID && SESSION_ID_PROPERTY.equals(name)) {
+        sessionId = readString(parser);
+      } else {
+        generator.writeFieldName(name);
+        copyValue(parser, generator);
+      }
+    }
+    generator.writeEndObject();
+
+    return sessionId;
+  }
+
+  private void copyValue(JsonParser parser, JsonGenerator generator) throws IOException {
+
+    int depth = 0;
+    while (true) {
+      JsonToken token = parser.currentToken();
+      if (token.isStructStart()) {
+        depth++;
+      } else if (token.isStructEnd()) {
+        depth--;
+      }
+      if (token.isNumeric()) {
+        // Numbers keep their original text
+        generator.writeNumber(parser.getText());
+      } else {
+        generator.copyCurrentEvent(parser);
+      }
+      if (depth == 0) {
+        return;
+      }
+      nextToken(parser);
+    }
+  }
+
+  private JsonElement readElement(JsonParser parser) throws IOException {
+
+    switch (parser.currentToken()) {
+      case START_OBJECT:
+        JsonObject object = new JsonObject();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String name = parser.currentName();
+          parser.nextToken();
+          object.add(name, readElement(parser));
+        }
+        return object;
+      case START_ARRAY:
+        JsonArray array = new JsonArray();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          array.add(readElement(parser));
+        }
+        return array;
+      case VALUE_STRING:
+        return new JsonPrimitive(parser.getText());
+      case VALUE_NUMBER_INT:
+      case VALUE_NUMBER_FLOAT:
+        // Same number representation as Gson trees
+        return new JsonPrimitive(new LazilyParsedNumber(parser.getText()));
+      case VALUE_TRUE:
+        return new JsonPrimitive(Boolean.TRUE);
+      case VALUE_FALSE:
+        return new JsonPrimitive(Boolean.FALSE);
+      case VALUE_NULL:
+        return JsonNull.INSTANCE;
+      default:
+        throw new JsonParseException("Unexpected token " + parser.currentToken() + " at "
+            + parser.currentLocation());
+    }
+  }
+
+  private Props readProps(JsonParser parser) throws IOException {
+
+    Props props = new Props();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.currentName();
+      parser.nextToken();
+      props.add(name, readPropValue(parser));
+    }
+    return props;
+  }
+
+  private Object readPropValue(JsonParser parser) throws IOException {
+
+    switch (parser.currentToken()) {
+      case START_OBJECT:
+        return readProps(parser);
+      case START_ARRAY:
+        List<Object> list = new ArrayList<>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          list.add(readPropValue(parser));
+        }
+        return list;
+      case VALUE_STRING:
+        return parser.getText();
+      case VALUE_NUMBER_INT:
+      case VALUE_NUMBER_FLOAT:
+        // Same conversion as the Gson adapter of Props
+        double value = parser.getDoubleValue();
+        if ((int) value == value) {
+          return Integer.valueOf((int) value);
+        } else if ((long) value == value) {
+          return Long.valueOf((long) value);
+        } else if ((float) value == value) {
+          return Float.valueOf((float) value);
+        } else {
+          return Double.valueOf(value);
+        }
+      case VALUE_TRUE:
+        return Boolean.TRUE;
+      case VALUE_FALSE:
+        return Boolean.FALSE;
+      case VALUE_NULL:
+        return null;
+      default:
+        throw new JsonParseException("Unexpected token " + parser.currentToken() + " at "
+            + parser.currentLocation());
+    }
+  }
+
+  private String readString(JsonParser parser) throws IOException {
+
+    JsonToken token = parser.currentToken();
+    if (token == JsonToken.VALUE_NULL) {
+      return null;
+    }
+    if (!token.isScalarValue()) {
+      throw new JsonParseException("Expected a string but was " + token + " at "
+          + parser.currentLocation());
+    }
+    return parser.getText();
+  }
+
+  private int readId(JsonParser parser) throws IOException {
+
+    JsonToken token = parser.currentToken();
+    try {
+      double value;
+      if (token == JsonToken.VALUE_STRING) {
+        value = Double.parseDouble(parser.getText());
+      } else if (token.isNumeric()) {
+        value = parser.getDoubleValue();
+      } else {
+        throw new NumberFormatException(token.toString());
+      }
+      if ((int) value != value) {
+        throw new NumberFormatException(parser.getText());
+      }
+      return (int) value;
+    } catch (NumberFormatException e) {
+      throw new JsonParseException("Invalid format in '" + ID_PROPERTY + "' field", e);
+    }
+  }
+
+  private JsonToken nextToken(JsonParser parser) throws IOException {
+    JsonToken token = parser.nextToken();
+    if (token == null) {
+      throw new EOFException("End of input at " + parser.currentLocation());
+    }
+    return token;
+  }
+
+  private void writeMessage(Message message, JsonGenerator generator) throws IOException {
+
+    String sessionId = JsonUtils.INJECT_SESSION_ID ? message.getSessionId() : null;
+
+    // Same members and order as the Gson serialisation of messages
+    if (message instanceof Request) {
+
+      Request<?> request = (Request<?>) message;
+      generator.writeStartObject();
+      if (request.hasId()) {
+        generator.writeNumberField(ID_PROPERTY, request.getIntId());
+      }
+      if (request.getMethod() != null) {
+        generator.writeStringField(METHOD_PROPERTY, request.getMethod());
+      }
+      writeMember(PARAMS_PROPERTY, request.getParams(), sessionId, generator);
+      generator.writeStringField(JSON_RPC_PROPERTY, message.getVersion());
+      generator.writeEndObject();
+
+    } else if (message instanceof Response) {
+
+      Response<?> response = (Response<?>) message;
+      generator.writeStartObject();
+      if (response.hasId()) {
+        generator.writeNumberField(ID_PROPERTY, response.getIntId());
+      }
+      if (response.getError() == null) {
+        writeMember(RESULT_PROPERTY, response.getResult(), sessionId, generator);
+      } else {
+        writeMember(RESULT_PROPERTY, response.getResult(), null, generator);
+        writeMember(ERROR_PROPERTY, response.getError(), sessionId, generator);
+      }
+      generator.writeStringField(JSON_RPC_PROPERTY, message.getVersion());
+      generator.writeEndObject();
+
+    } else {
+
+      JsonElement tree = JsonUtils.toJsonObjectWithSessionId(message);
+      writeElement(tree != null ? tree : JsonUtils.toJsonElement(message), generator);
+    }
+  }
+
+  /**
+   * Writes a member of a message. If there is a session id, it is injected in the value, that is
+   * wrapped in a "value" property if it is not an object.
+   */
+  private void writeMember(String name, Object value, String sessionId, JsonGenerator generator)
+      throws IOException {
+
+    JsonElement tree;
+    if (value == null || value instanceof JsonElement) {
+      tree = (JsonElement) value;
+    } else {
+      tree = JsonUtils.toJsonElement(value);
+    }
+    boolean isNull = tree == null || tree.isJsonNull();
+
+    if (sessionId == null) {
+      if (!isNull) {
+        generator.writeFieldName(name);
+        writeElement(tree, generator);
+      }
+      return;
+    }
+
+    generator.writeFieldName(name);
+    generator.writeStartObject();
+    if (tree instanceof JsonObject) {
+      for (Map.Entry<String, JsonElement> member : ((JsonObject) tree).entrySet()) {
+        if (!member.getValue().isJsonNull() && !SESSION_ID_PROPERTY.equals(member.getKey())) {
+          generator.writeFieldName(member.getKey());
+          writeElement(member.getValue(), generator);
+        }
+      }
+    } else if (!isNull) {
+      generator.writeFieldName("value");
+      writeElement(tree, generator);
+    }
+    generator.writeStringField(SESSION_ID_PROPERTY, sessionId);
+    generator.writeEndObject();
+  }
+
+  private void writeElement(JsonElement element, JsonGenerator generator) throws IOException {
+
+    if (element == null || element.isJsonNull()) {
+      generator.writeNull();
+
+    } else if (element.isJsonObject()) {
+      generator.writeStartObject();
+      for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet()) {
+        // Gson does not serialise null members
+        if (!member.getValue().isJsonNull()) {
+          generator.writeFieldName(member.getKey());
+          writeElement(member.getValue(), generator);
+        }
+      }
+      generator.writeEndObject();
+
+    } else if (element.isJsonArray()) {
+      generator.writeStartArray();
+      for (JsonElement item : element.getAsJsonArray()) {
+        writeElement(item, generator);
+      }
+      generator.writeEndArray();
+
+    } else {
+      JsonPrimitive primitive = element.getAsJsonPrimitive();
+      if (primitive.isBoolean()) {
+        generator.writeBoolean(primitive.getAsBoolean());
+      } else if (primitive.isNumber()) {
+        writeNumber(primitive.getAsNumber(), generator);
+      } else {
+        generator.writeString(primitive.getAsString());
+      }
+    }
+  }
+
+  private void writeNumber(Number number, JsonGenerator generator) throws IOException {
+
+    if (number instanceof Integer || number instanceof Short || number instanceof Byte) {
+      generator.writeNumber(number.intValue());
+    } else if (number instanceof Long) {
+      generator.writeNumber(number.longValue());
+    } else if (number instanceof Double || number instanceof Float) {
+      double value = number.doubleValue();
+      if (Double.isNaN(value) || Double.isInfinite(value)) {
+        throw new IllegalArgumentException(
+            value + " is not a valid double value as per JSON specification");
+      }
+      if (number instanceof Float) {
+        generator.writeNumber(number.floatValue());
+      } else {
+        generator.writeNumber(value);
+      }
+    } else if (number instanceof BigInteger) {
+      generator.writeNumber((BigInteger) number);
+    } else if (number instanceof BigDecimal) {
+      generator.writeNumber((BigDecimal) number);
+    } else {
+      // LazilyParsedNumber and others keep their original text
+      generator.writeNumber(number.toString());
+    }
+  }
+
+  private void writeValue(Object value, JsonGenerator generator) throws IOException {
+
+    if (value == null) {
+      generator.writeNull();
+    } else if (value instanceof Props) {
+      generator.writeStartObject();
+      for (Prop prop : (Props) value) {
+        if (prop.getValue() != null) {
+          generator.writeFieldName(prop.getName());
+          writeValue(prop.getValue(), generator);
+        }
+      }
+      generator.writeEndObject();
+    } else if (value instanceof String) {
+      generator.writeString((String) value);
+    } else if (value instanceof Boolean) {
+      generator.writeBoolean(((Boolean) value).booleanValue());
+    } else if (value instanceof Number) {
+      writeNumber((Number) value, generator);
+    } else if (value instanceof JsonElement) {
+      writeElement((JsonElement) value, generator);
+    } else if (value instanceof List) {
+      generator.writeStartArray();
+      for (Object item : (List<?>) value) {
+        writeValue(item, generator);
+      }
+      generator.writeEndArray();
+    } else {
+      writeElement(JsonUtils.toJsonElement(value), generator);
+    }
+  }
+
+  private static Writer asWriter(Appendable appendable) {
+
+    if (appendable instanceof Writer) {
+      return (Writer) appendable;
+    }
+
+    return new Writer() {
+
+      @Override
+      public void write(char[] cbuf, int off, int len) throws IOException {
+        if (appendable instanceof StringBuilder) {
+          ((StringBuilder) appendable).append(cbuf, off, len);
+        } else {
+          appendable.append(new String(cbuf, off, len));
+        }
+      }
+
+      @Override
+      public void write(String str, int off, int len) throws IOException {
+        appendable.append(str, off, off + len);
+      }
+
+      @Override
+      public void flush() {
+      }
+
+      @Override
+      public void close() {
+      }
+    };
+  }
+
+}
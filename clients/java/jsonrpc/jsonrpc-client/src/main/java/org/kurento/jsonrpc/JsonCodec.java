@@ -0,0 +1,69 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.jsonrpc;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+import org.kurento.jsonrpc.message.Message;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Reads and writes the JSON text of JSON-RPC messages.
+ *
+ * Messages are read with JsonElement params and result, with the session id already extracted,
+ * and they are written with the session id injected in their params, result or error data.
+ * Conversion of params and results from and to Java types is not part of the codec, and it is
+ * always done with Gson (see {@link JsonUtils#getGson()}).
+ *
+ * The codec used by the transports is selected with the property {@code jsonRpc.codec}, that
+ * can be {@code gson} (default), {@code jackson}, or the name of a class implementing this
+ * interface with a public no-args constructor. Implementations must be thread safe.
+ *
+ * @see JsonUtils#setCodec(JsonCodec)
+ */
+public interface JsonCodec {
+
+  /**
+   * Reads a single message.
+   */
+  Message readMessage(Reader reader) throws IOException;
+
+  /**
+   * Reads a single message or a JSON-RPC 2.0 batch of messages.
+   */
+  List<Message> readMessages(Reader reader) throws IOException;
+
+  void writeMessage(Message message, Appendable writer) throws IOException;
+
+  JsonElement readTree(Reader reader) throws IOException;
+
+  void writeTree(JsonElement element, Appendable writer) throws IOException;
+
+  /**
+   * Reads a JSON object as {@link Props}. Nested objects are read as Props, arrays as lists, and
+   * numbers as the smallest of Integer, Long, Float or Double able to hold their value.
+   */
+  Props readProps(Reader reader) throws IOException;
+
+  void writeProps(Props props, Appendable writer) throws IOException;
+
+}
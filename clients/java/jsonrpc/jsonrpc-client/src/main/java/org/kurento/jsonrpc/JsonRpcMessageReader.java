@@ -0,0 +1,314 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc;
+
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.ERROR_PROPERTY;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.ID_PROPERTY;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.JSON_RPC_PROPERTY;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.METHOD_PROPERTY;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.PARAMS_PROPERTY;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.RESULT_PROPERTY;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.SESSION_ID_PROPERTY;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.kurento.jsonrpc.internal.JsonRpcConstants;
+import org.kurento.jsonrpc.message.Message;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.message.Response;
+import org.kurento.jsonrpc.message.ResponseError;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Decodes a JSON-RPC message in a single pass over its text.
+ *
+ * The members of the message are read as they come, and errors are read straight into
+ * {@link ResponseError}. This avoids parsing the message into a JsonObject and then converting
+ * that object into a Request or a Response.
+ *
+ * The result of a response is not parsed into a tree: it is copied token by token as JSON text,
+ * removing the session id on the fly, and decoded when the caller converts the response to the
+ * type it expects. Params are parsed into a JsonElement tree, because ordering keys and handlers
+ * of server requests read them as JsonElement.
+ */
+class JsonRpcMessageReader {
+
+  private static final Logger log = LoggerFactory.getLogger(JsonRpcMessageReader.class);
+
+  private final TypeAdapter<JsonElement> elementAdapter;
+  private final TypeAdapter<ResponseError> errorAdapter;
+
+  JsonRpcMessageReader(Gson gson) {
+    this.elementAdapter = gson.getAdapter(JsonElement.class);
+    this.errorAdapter = gson.getAdapter(ResponseError.class);
+  }
+
+  Message read(Reader in) throws IOException {
+    return read(new JsonReader(in));
+  }
+
+  /**
+   * Reads a single message or a JSON-RPC 2.0 batch of messages.
+   */
+  List<Message> readAll(Reader in) throws IOException {
+
+    JsonReader reader = new JsonReader(in);
+
+    if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+      return Collections.singletonList(read(reader));
+    }
+
+    List<Message> messages = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      messages.add(read(reader));
+    }
+    reader.endArray();
+
+    return messages;
+  }
+
+  private Message read(JsonReader reader) throws IOException {
+
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      throw new JsonParseException("JsonObject expected, found " + reader.peek());
+    }
+
+    String version = null;
+    boolean hasId = false;
+    int id = 0;
+    String method = null;
+    String sessionId = null;
+    JsonElement params = null;
+    String result = null;
+    ResponseError error = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      switch (name) {
+        case JSON_RPC_PROPERTY:
+          version = readString(reader);
+          break;
+        case ID_PROPERTY:
+          if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+          } else {
+            id = readId(reader);
+            hasId = true;
+          }
+          break;
+        case METHOD_PROPERTY:
+          method = readString(reader);
+          break;
+        case PARAMS_PROPERTY:
+          if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            JsonObject paramsObject = new JsonObject();
+            sessionId = readObjectExtractingSessionId(reader, paramsObject);
+            params = paramsObject;
+          } else {
+            params = elementAdapter.read(reader);
+          }
+          break;
+        case RESULT_PROPERTY:
+          StringWriter resultJson = new StringWriter();
+          sessionId = copyValueExtractingSessionId(reader, new JsonWriter(resultJson));
+          result = resultJson.toString();
+          break;
+        case ERROR_PROPERTY:
+          error = errorAdapter.read(reader);
+          break;
+        default:
+          reader.skipValue();
+      }
+    }
+    reader.endObject();
+
+    if (method != null) {
+
+      Request<JsonElement> request = new Request<>(method, params);
+      if (hasId) {
+        request.setId(id);
+      }
+      request.setSessionId(JsonUtils.INJECT_SESSION_ID ? sessionId : null);
+      return request;
+    }
+
+    if (version == null) {
+      throw new JsonParseException(
+          "Invalid JsonRpc response lacking version '" + JSON_RPC_PROPERTY + "' field");
+    }
+
+    if (!JsonRpcConstants.JSON_RPC_VERSION.equals(version)) {
+      throw new JsonParseException("Invalid JsonRpc version");
+    }
+
+    Response<JsonElement> response;
+    if (error != null) {
+      response = new Response<>(error);
+    } else {
+      response = new Response<>();
+      if (result != null) {
+        response.setResultJson(result);
+      } else {
+        log.warn("Invalid JsonRpc response with id {}. It lacks a valid '{}' or '{}' field",
+            hasId ? id : null,
+            RESULT_PROPERTY, ERROR_PROPERTY);
+      }
+      response.setSessionId(JsonUtils.INJECT_SESSION_ID ? sessionId : null);
+    }
+    if (hasId) {
+      response.setId(id);
+    }
+    return response;
+  }
+
+  private String readObjectExtractingSessionId(JsonReader reader, JsonObject object)
+      throws IOException {
+
+    String sessionId = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      JsonElement value = elementAdapter.read(reader);
+      if (JsonUtils.INJECT_SESSION_ID && SESSION_ID_PROPERTY.equals(name)) {
+        if (!(value instanceof JsonNull)) {
+          sessionId = value.getAsString();
+        }
+      } else {
+        object.add(name, value);
+      }
+    }
+    reader.endObject();
+
+    return sessionId;
+  }
+
+  /**
+   * Copies the next value to the writer token by token, without building a tree. If the value is
+   * an object, its session id is left out and returned.
+   */
+  private String copyValueExtractingSessionId(JsonReader reader, JsonWriter writer)
+      throws IOException {
+
+    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+      copyValue(reader, writer);
+      return null;
+    }
+
+    String sessionId = null;
+
+    reader.beginObject();
+    writer.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (JsonUtils.INJECT_SESSION_ID && SESSION_ID_PROPERTY.equals(name)) {
+        sessionId = readString(reader);
+      } else {
+        writer.name(name);
+        copyValue(reader, writer);
+      }
+    }
+    reader.endObject();
+    writer.endObject();
+
+    return sessionId;
+  }
+
+  private void copyValue(JsonReader reader, JsonWriter writer) throws IOException {
+
+    int depth = 0;
+    do {
+      switch (reader.peek()) {
+        case BEGIN_OBJECT:
+          reader.beginObject();
+          writer.beginObject();
+          depth++;
+          break;
+        case END_OBJECT:
+          reader.endObject();
+          writer.endObject();
+          depth--;
+          break;
+        case BEGIN_ARRAY:
+          reader.beginArray();
+          writer.beginArray();
+          depth++;
+          break;
+        case END_ARRAY:
+          reader.endArray();
+          writer.endArray();
+          depth--;
+          break;
+        case NAME:
+          writer.name(reader.nextName());
+          break;
+        case STRING:
+          writer.value(reader.nextString());
+          break;
+        case NUMBER:
+          // Numbers keep their original text
+          writer.jsonValue(reader.nextString());
+          break;
+        case BOOLEAN:
+          writer.value(reader.nextBoolean());
+          break;
+        case NULL:
+          reader.nextNull();
+          writer.nullValue();
+          break;
+        default:
+          throw new JsonParseException("Unexpected token " + reader.peek());
+      }
+    } while (depth > 0);
+  }
+
+  private String readString(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    return reader.nextString();
+  }
+
+  private int readId(JsonReader reader) throws IOException {
+    try {
+      return reader.nextInt();
+    } catch (NumberFormatException | IllegalStateException e) {
+      throw new JsonParseException("Invalid format in '" + ID_PROPERTY + "' field", e);
+    }
+  }
+
+}
@@ -26,6 +26,8 @@ import static org.kurento.jsonrpc.internal.JsonRpcConstants.PARAMS_PROPERTY;
 import static org.kurento.jsonrpc.internal.JsonRpcConstants.RESULT_PROPERTY;
 import static org.kurento.jsonrpc.internal.JsonRpcConstants.SESSION_ID_PROPERTY;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
@@ -33,6 +35,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import org.kurento.commons.PropertiesManager;
 import org.kurento.jsonrpc.internal.JsonRpcConstants;
 import org.kurento.jsonrpc.message.Message;
 import org.kurento.jsonrpc.message.Request;
@@ -47,6 +50,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
@@ -66,11 +70,19 @@ import com.google.gson.reflect.TypeToken;
 public class JsonUtils {
 
   public static final boolean INJECT_SESSION_ID = true;
+
+  public static final String CODEC_PROPERTY = "jsonRpc.codec";
+
+  private static final String GSON_CODEC = "gson";
+  private static final String JACKSON_CODEC = "jackson";
+
   /**
    * Static instance of Gson object.
    */
   private static Gson gson;
 
+  private static volatile JsonCodec codec;
+
   /**
    * Serialise Java object to JSON (as String).
    *
@@ -96,6 +108,31 @@ public class JsonUtils {
     }
   }
 
+  /**
+   * Reads a JSON-RPC message without parsing it into a JsonObject first. Params of requests are
+   * returned as JsonElement, and results of responses are kept as JSON text until they are read or
+   * converted to the type expected by the caller. The session id is already extracted from both.
+   *
+   * @param reader
+   *          source of the JSON text of the message
+   * @return a {@link Request} or a {@link Response} with JsonElement params or result
+   */
+  public static Message readJsonMessage(Reader reader) throws IOException {
+    return getCodec().readMessage(reader);
+  }
+
+  /**
+   * Reads a JSON-RPC message or a JSON-RPC 2.0 batch of messages.
+   *
+   * @param reader
+   *          source of the JSON text
+   * @return the messages read, in the same order they appear in the batch
+   * @see #readJsonMessage(Reader)
+   */
+  public static List<Message> readJsonMessages(Reader reader) throws IOException {
+    return getCodec().readMessages(reader);
+  }
+
   public static <T> Request<T> fromJsonRequest(String json, Class<T> paramsClass) {
 
     if (INJECT_SESSION_ID) {
@@ -267,6 +304,52 @@ public class JsonUtils {
     return gson;
   }
 
+  /**
+   * Codec used to read and write the JSON text of messages. It is created the first time it is
+   * used, as configured in the property {@value #CODEC_PROPERTY}.
+   */
+  public static JsonCodec getCodec() {
+
+    if (codec == null) {
+      synchronized (JsonUtils.class) {
+        if (codec == null) {
+          codec = createCodec(PropertiesManager.getProperty(CODEC_PROPERTY, GSON_CODEC));
+        }
+      }
+    }
+
+    return codec;
+  }
+
+  /**
+   * Replaces the codec of all the clients and servers of this JVM. It should be called at startup,
+   * before any message is sent or received.
+   */
+  public static void setCodec(JsonCodec codec) {
+    if (codec == null) {
+      throw new IllegalArgumentException("Codec can't be null");
+    }
+    JsonUtils.codec = codec;
+  }
+
+  private static JsonCodec createCodec(String name) {
+
+    if (GSON_CODEC.equalsIgnoreCase(name)) {
+      return new GsonJsonCodec(getGson());
+    }
+
+    String className = JACKSON_CODEC.equalsIgnoreCase(name)
+        ? "org.kurento.jsonrpc.JacksonJsonCodec" : name;
+
+    // Loaded by name, so Jackson is only required when it is selected
+    try {
+      return (JsonCodec) Class.forName(className).getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | ClassCastException | LinkageError e) {
+      throw new JsonRpcException("Invalid JSON codec '" + name + "' in property "
+          + CODEC_PROPERTY, e);
+    }
+  }
+
   static boolean isIn(JsonObject jObject, String[] clues) {
     for (String clue : clues) {
       if (jObject.has(clue)) {
@@ -278,6 +361,67 @@ public class JsonUtils {
 
   public static String toJsonMessage(Message message) {
 
+    parseResultJson(message);
+
+    JsonObject jsonObject = toJsonObjectWithSessionId(message);
+    if (jsonObject != null) {
+      return jsonObject.toString();
+    }
+
+    return JsonUtils.toJson(message);
+
+  }
+
+  /**
+   * Serialises a message as {@link #toJsonMessage(Message)} does, but writing the JSON directly to
+   * the given writer instead of creating a String.
+   *
+   * @param message
+   *          the message to be serialised
+   * @param writer
+   *          destination of the JSON text
+   */
+  public static void writeJsonMessage(Message message, Appendable writer) {
+    try {
+      getCodec().writeMessage(message, writer);
+    } catch (IOException e) {
+      throw new JsonIOException(e);
+    }
+  }
+
+  /**
+   * Writes the given messages as a JSON-RPC 2.0 batch.
+   *
+   * @param messages
+   *          the messages of the batch
+   * @param writer
+   *          destination of the JSON text
+   */
+  public static void writeJsonMessages(List<? extends Message> messages, Appendable writer)
+      throws IOException {
+
+    writer.append('[');
+    for (int i = 0; i < messages.size(); i++) {
+      if (i > 0) {
+        writer.append(',');
+      }
+      writeJsonMessage(messages.get(i), writer);
+    }
+    writer.append(']');
+  }
+
+  /**
+   * Parses the result of a received response that is still kept as JSON text, because messages are
+   * serialised from their fields.
+   */
+  static void parseResultJson(Message message) {
+    if (message instanceof Response) {
+      ((Response<?>) message).getResult();
+    }
+  }
+
+  static JsonObject toJsonObjectWithSessionId(Message message) {
+
     if (message.getSessionId() != null && INJECT_SESSION_ID) {
 
       JsonObject jsonObject = JsonUtils.toJsonObject(message);
@@ -302,11 +446,10 @@ public class JsonUtils {
       objectToInjectSessionId.addProperty(JsonRpcConstants.SESSION_ID_PROPERTY,
           message.getSessionId());
 
-      return jsonObject.toString();
+      return jsonObject;
     }
 
-    return JsonUtils.toJson(message);
-
+    return null;
   }
 
   private static JsonObject convertToObject(JsonObject jsonObject, String... properties) {
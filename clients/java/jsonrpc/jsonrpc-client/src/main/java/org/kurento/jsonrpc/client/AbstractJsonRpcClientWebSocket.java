@@ -17,45 +17,65 @@
 
 package org.kurento.jsonrpc.client;
 
-import static org.kurento.jsonrpc.JsonUtils.fromJson;
-import static org.kurento.jsonrpc.JsonUtils.fromJsonRequest;
 import static org.kurento.jsonrpc.JsonUtils.fromJsonResponse;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.ERROR_SERVER_ERROR;
 import static org.kurento.jsonrpc.internal.JsonRpcConstants.METHOD_CONNECT;
 import static org.kurento.jsonrpc.internal.JsonRpcConstants.METHOD_PING;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.kurento.commons.PropertiesManager;
-import org.kurento.commons.ThreadFactoryCreator;
 import org.kurento.commons.TimeoutReentrantLock;
 import org.kurento.commons.TimeoutRuntimeException;
 import org.kurento.jsonrpc.JsonRpcClientClosedException;
 import org.kurento.jsonrpc.JsonRpcErrorException;
 import org.kurento.jsonrpc.JsonRpcException;
+import org.kurento.jsonrpc.JsonRpcTimeoutException;
+import org.kurento.jsonrpc.JsonUtils;
+import org.kurento.jsonrpc.TransportException;
+import org.kurento.jsonrpc.client.JsonRpcMetrics.Outcome;
 import org.kurento.jsonrpc.internal.JsonRpcConstants;
+import org.kurento.jsonrpc.internal.JsonRpcExecutors;
+import org.kurento.jsonrpc.internal.JsonRpcExecutors.Mode;
 import org.kurento.jsonrpc.internal.JsonRpcRequestSenderHelper;
+import org.kurento.jsonrpc.internal.client.ClientScheduler;
+import org.kurento.jsonrpc.internal.client.ClientScheduler.ScheduledTask;
 import org.kurento.jsonrpc.internal.client.ClientSession;
+import org.kurento.jsonrpc.internal.client.OrderedDispatcher;
+import org.kurento.jsonrpc.internal.client.OrderedDispatcher.DiscardableTask;
+import org.kurento.jsonrpc.internal.client.OrderedDispatcher.OverflowPolicy;
 import org.kurento.jsonrpc.internal.client.TransactionImpl.ResponseSender;
+import org.kurento.jsonrpc.internal.ws.MessageBatcher;
+import org.kurento.jsonrpc.internal.ws.MessageBatcher.BatchSender;
 import org.kurento.jsonrpc.internal.ws.PendingRequests;
+import org.kurento.jsonrpc.internal.ws.ReplayBuffer;
 import org.kurento.jsonrpc.message.Message;
 import org.kurento.jsonrpc.message.MessageUtils;
 import org.kurento.jsonrpc.message.Request;
 import org.kurento.jsonrpc.message.Response;
+import org.kurento.jsonrpc.message.ResponseError;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Utf8;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
@@ -74,14 +94,43 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
   protected static final int maxPacketSize =
       PropertiesManager.getProperty("jsonRpcClientWebSocket.packetSize", 1000000);
 
-  private volatile ExecutorService reqResEventExec;
-  private volatile ScheduledExecutorService disconnectExec;
+  private static final int DISPATCHER_QUEUE_BOUND =
+      PropertiesManager.getProperty("jsonRpcClient.dispatcher.queueBound", 10000);
+
+  private static final OverflowPolicy DISPATCHER_OVERFLOW_POLICY = PropertiesManager
+      .getProperty("jsonRpcClient.dispatcher.overflowPolicy", OverflowPolicy.BLOCK);
+
+  private static final boolean REPLAY_REQUESTS =
+      PropertiesManager.getProperty("jsonRpcClient.replayRequests", false);
+
+  private static final int REPLAY_BUFFER_SIZE =
+      PropertiesManager.getProperty("jsonRpcClient.replayBufferSize", 256);
+
+  // Events and continuations of all clients are executed in the threads of the shared scheduler
+  private static final Executor REQ_RES_EVENT_EXEC = new Executor() {
+    @Override
+    public void execute(Runnable command) {
+      ClientScheduler.getDefault().executeBlocking(command);
+    }
+  };
+
+  private volatile ScheduledTask reconnectTask;
 
   protected URI uri;
 
   private final PendingRequests pendingRequests = new PendingRequests();
+  private volatile WireTracer wireTracer = new WireTracer();
+  private volatile ReplayBuffer replayBuffer =
+      REPLAY_REQUESTS ? new ReplayBuffer(REPLAY_BUFFER_SIZE) : null;
   private ResponseSender rs;
 
+  private volatile MessageBatcher batcher;
+  private ScheduledExecutorService batchFlushExec;
+
+  private volatile Mode serverRequestExecutorMode = JsonRpcExecutors.getMode();
+  private volatile OrderedDispatcher serverRequestDispatcher = new OrderedDispatcher(
+      OrderedDispatcher.getDefaultWorkers(), DISPATCHER_QUEUE_BOUND, DISPATCHER_OVERFLOW_POLICY);
+
   private JsonRpcWSConnectionListener connectionListener;
   private Handler connectedHandler;
   private Handler connectionFailedHandler;
@@ -147,9 +196,15 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
   /**
    * Configures the request timeout in this client. If a request doesn't receive a response before
    * this time (in millis), a TransportException will be thrown.
+   *
+   * @throws IllegalArgumentException
+   *           if the timeout is not positive
    */
   @Override
   public void setRequestTimeout(long timeout) {
+    if (timeout <= 0) {
+      throw new IllegalArgumentException("Request timeout must be positive: " + timeout);
+    }
     this.requestTimeout = timeout;
   }
 
@@ -157,6 +212,88 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
     return requestTimeout;
   }
 
+  /**
+   * Returns the number of requests sent by this client that are waiting for a response.
+   */
+  public int getInFlightRequestsCount() {
+    return pendingRequests.getInFlightCount();
+  }
+
+  /**
+   * Returns the number of requests sent by this client that have been discarded because their
+   * response was not received before the request timeout.
+   */
+  public long getExpiredRequestsCount() {
+    return pendingRequests.getExpiredCount();
+  }
+
+  /**
+   * Returns the number of responses received by this client that didn't match any request waiting
+   * for a response, like late responses of expired requests.
+   */
+  public long getUnmatchedResponsesCount() {
+    return pendingRequests.getUnmatchedCount();
+  }
+
+  /**
+   * Enables the replay of requests across reconnections. When the connection is lost and the
+   * client reconnects to the same session, the requests issued while reconnecting and the
+   * idempotent requests waiting for a response (see
+   * {@link #setRequestReplayPolicy(RequestReplayPolicy)}) are sent again instead of waiting for
+   * their timeout. They fail if the client reconnects to a new session. Requests issued while
+   * reconnecting fail right away if the buffer is full.
+   *
+   * By default, replay is disabled. It can be enabled with the properties
+   * {@code jsonRpcClient.replayRequests} and {@code jsonRpcClient.replayBufferSize} (256 by
+   * default). This method should be called before connecting.
+   *
+   * @param bufferSize
+   *          maximum number of requests kept to be replayed
+   */
+  public void enableRequestReplay(int bufferSize) {
+    this.replayBuffer = new ReplayBuffer(bufferSize);
+  }
+
+  /**
+   * Enables the replay of requests with the buffer size of {@code jsonRpcClient.replayBufferSize}.
+   *
+   * @see #enableRequestReplay(int)
+   */
+  public void enableRequestReplay() {
+    enableRequestReplay(REPLAY_BUFFER_SIZE);
+  }
+
+  public void disableRequestReplay() {
+    this.replayBuffer = null;
+  }
+
+  public boolean isRequestReplayEnabled() {
+    return replayBuffer != null;
+  }
+
+  /**
+   * Returns the number of requests that will be sent again if the client reconnects.
+   */
+  public int getReplayableRequestsCount() {
+    ReplayBuffer buffer = replayBuffer;
+    return buffer != null ? buffer.size() : 0;
+  }
+
+  /**
+   * Returns the tracer that keeps the last messages exchanged with the server. It is disabled by
+   * default (see {@link WireTracer}).
+   */
+  public WireTracer getWireTracer() {
+    return wireTracer;
+  }
+
+  /**
+   * Sets the tracer of this client. Several clients can share the same tracer.
+   */
+  public void setWireTracer(WireTracer wireTracer) {
+    this.wireTracer = wireTracer;
+  }
+
   /**
    * Configures if this client should send a close message to server when close() method is invoked.
    * This close message is used to inform the server that client explicitly closed the connection.
@@ -183,7 +320,9 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
 
   /**
    * Configures how requests from server have to be processed. If concurrentServerRequest is true,
-   * then a executor service with several threads is used to execute the handler of the request. If
+   * then the handler of the request is executed in a pool of worker threads shared by all clients,
+   * keeping the order of requests with the same ordering key (see
+   * {@link #setServerRequestOrderingKey(ServerRequestOrderingKey)}). If
    * concurrentServerRequest is false, the websocket library thread is used to execute the handler.
    * In the current implementation (using Jetty as websocket client), this means that handler is
    * executed sequentially. That is problematic if a synchronous request in sent to server in a
@@ -201,9 +340,87 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
     return concurrentServerRequest;
   }
 
+  /**
+   * Configures the queues of the requests received from the server when they are handled
+   * concurrently. Requests with the same ordering key (see
+   * {@link #setServerRequestOrderingKey(ServerRequestOrderingKey)}) wait in the same queue, and are
+   * handled in the order they were received.
+   *
+   * By default, queues are bounded to 10000 requests, and the thread receiving from the server
+   * waits while the queue of a new request is full. Defaults can be changed with the properties
+   * {@code jsonRpcClient.dispatcher.queueBound} and {@code jsonRpcClient.dispatcher.overflowPolicy}.
+   * Requests discarded by other policies are answered with an error if they expect a response.
+   *
+   * @param queueBound
+   *          maximum number of requests waiting for the same key
+   * @param overflowPolicy
+   *          what to do when a request arrives and its queue is full
+   */
+  public void setServerRequestQueue(int queueBound, OverflowPolicy overflowPolicy) {
+    this.serverRequestDispatcher = new OrderedDispatcher(
+        OrderedDispatcher.getDefaultWorkers(serverRequestExecutorMode), queueBound, overflowPolicy);
+  }
+
+  /**
+   * Sets the threads that handle the requests received from the server when they are handled
+   * concurrently. With {@link Mode#VIRTUAL}, each queue is handled in its own virtual thread, so
+   * any number of handlers can be blocked waiting for a response at the same time. By default, the
+   * mode configured with the property {@code jsonRpc.executor}.
+   *
+   * @param mode
+   *          threads used to handle requests from the server
+   */
+  public void setServerRequestExecutorMode(Mode mode) {
+    this.serverRequestExecutorMode = mode;
+    OrderedDispatcher current = serverRequestDispatcher;
+    setServerRequestQueue(current.getQueueBound(), current.getOverflowPolicy());
+  }
+
+  /**
+   * Returns the dispatcher that queues the requests received from the server when they are
+   * handled concurrently.
+   */
+  public OrderedDispatcher getServerRequestDispatcher() {
+    return serverRequestDispatcher;
+  }
+
+  /**
+   * Sets the dispatcher that queues the requests received from the server. Clients connected to
+   * the same session can share one, so requests with the same ordering key are handled in order
+   * whatever client receives them. Configuring the queue or the executor mode afterwards gives this
+   * client a dispatcher of its own.
+   *
+   * @param dispatcher
+   *          dispatcher of the requests from the server
+   */
+  public void setServerRequestDispatcher(OrderedDispatcher dispatcher) {
+    this.serverRequestDispatcher = dispatcher;
+  }
+
+  /**
+   * Returns the number of requests from the server waiting to be handled.
+   */
+  public int getServerRequestQueueDepth() {
+    return serverRequestDispatcher.getQueuedTasks();
+  }
+
+  /**
+   * Returns the maximum number of requests from the server that have been waiting to be handled at
+   * the same time.
+   */
+  public int getServerRequestMaxQueueDepth() {
+    return serverRequestDispatcher.getMaxQueueDepth();
+  }
+
+  /**
+   * Returns the number of requests from the server discarded because their queue was full.
+   */
+  public long getDroppedServerRequests() {
+    return serverRequestDispatcher.getDroppedTasks();
+  }
+
   private void fireEvent(Runnable r) {
-    createExecServiceIfNecessary();
-    reqResEventExec.submit(r);
+    REQ_RES_EVENT_EXEC.execute(r);
   }
 
   protected void fireReconnectedNewServer() {
@@ -323,50 +540,26 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
     }
   }
 
-  protected void createExecServiceIfNecessary() {
-
-    if (reqResEventExec == null || disconnectExec == null || reqResEventExec.isShutdown()
-        || reqResEventExec.isTerminated() || disconnectExec.isShutdown()
-        || disconnectExec.isTerminated()) {
-
-      synchronized (executorsLock) {
-
-        if (reqResEventExec == null || reqResEventExec.isShutdown()
-            || reqResEventExec.isTerminated()) {
-          reqResEventExec = Executors.newCachedThreadPool(
-              ThreadFactoryCreator.create("AbstractJsonRpcClientWebSocket-reqResEventExec"));
-        }
-
-        if (disconnectExec == null || disconnectExec.isShutdown()
-            || disconnectExec.isTerminated()) {
-          disconnectExec = Executors.newScheduledThreadPool(1,
-              ThreadFactoryCreator.create("AbstractJsonRpcClientWebSocket-disconnectExec"));
-        }
-      }
-    }
-  }
-
   protected <P, R> Response<R> internalSendRequestWebSocket(Request<P> request,
       Class<R> resultClass) throws IOException {
 
-    connectIfNecessary(false);
+    if (!isHoldingRequests()) {
+      connectIfNecessary(false);
+    }
 
-    Future<Response<JsonElement>> responseFuture = null;
+    ListenableFuture<Response<JsonElement>> responseFuture = null;
 
-    if (request.getId() != null) {
-      responseFuture = pendingRequests.prepareResponse(request.getId());
+    if (request.hasId()) {
+      responseFuture = pendingRequests.prepareResponse(request.getIntId(), requestTimeout);
+      measureLatency(request, responseFuture);
     }
 
-    boolean isPing = false;
-    String jsonMessage = request.toString();
-    if (METHOD_PING.equals(request.getMethod())) {
-      isPing = true;
-      log.trace("{} Req-> {}", label, jsonMessage.trim());
-    } else {
-      log.debug("{} Req-> {}", label, jsonMessage.trim());
-    }
+    boolean isPing = METHOD_PING.equals(request.getMethod());
+    logRequest(request, isPing);
 
-    sendTextMessage(jsonMessage);
+    if (!keepForReplay(request, responseFuture)) {
+      sendRequestMessage(request, isPing);
+    }
 
     if (responseFuture == null) {
       return null;
@@ -374,13 +567,10 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
 
     Response<JsonElement> responseJson;
     try {
-      responseJson = responseFuture.get(requestTimeout, TimeUnit.MILLISECONDS);
+      // Expiration is managed by pendingRequests, which always uses a finite timeout
+      responseJson = responseFuture.get();
 
-      if (isPing) {
-        log.trace("{} <-Res {}", label, responseJson.toString());
-      } else {
-        log.debug("{} <-Res {}", label, responseJson.toString());
-      }
+      logResponse(responseJson, isPing);
 
       Response<R> response = MessageUtils.convertResponse(responseJson, resultClass);
 
@@ -393,10 +583,15 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
     } catch (InterruptedException e) {
       throw new JsonRpcException(label + " Interrupted while waiting for a response", e);
     } catch (ExecutionException e) {
+      if (e.getCause() instanceof JsonRpcTimeoutException) {
+        throw new JsonRpcException(label + " Timeout of " + requestTimeout
+            + " milliseconds waiting from response to request " + request.toString().trim(),
+            e.getCause());
+      }
+      if (e.getCause() instanceof TransportException) {
+        throw new TransportException(label + " " + e.getCause().getMessage(), e.getCause());
+      }
       throw new JsonRpcException(label + " This exception shouldn't be thrown", e);
-    } catch (TimeoutException e) {
-      throw new JsonRpcException(label + " Timeout of " + requestTimeout
-          + " milliseconds waiting from response to request " + jsonMessage.trim(), e);
     }
   }
 
@@ -406,39 +601,31 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
 
     try {
 
-      connectIfNecessary(false);
+      if (!isHoldingRequests()) {
+        connectIfNecessary(false);
+      }
 
       ListenableFuture<Response<JsonElement>> responseFuture = null;
 
-      if (request.getId() != null) {
-        responseFuture = pendingRequests.prepareResponse(request.getId());
+      if (request.hasId()) {
+        responseFuture = pendingRequests.prepareResponse(request.getIntId(), requestTimeout);
+        measureLatency(request, responseFuture);
       }
 
-      final boolean isPing;
-      String jsonMessage = request.toString();
-      if (METHOD_PING.equals(request.getMethod())) {
-        isPing = true;
-        log.trace("{} Req-> {}", label, jsonMessage.trim());
-      } else {
-        isPing = false;
-        log.debug("{} Req-> {}", label, jsonMessage.trim());
-      }
+      final boolean isPing = METHOD_PING.equals(request.getMethod());
+      logRequest(request, isPing);
 
-      sendTextMessage(jsonMessage);
+      if (!keepForReplay(request, responseFuture)) {
+        sendRequestMessage(request, isPing);
+      }
 
       if (responseFuture != null) {
 
-        createExecServiceIfNecessary();
-
         Futures.addCallback(responseFuture, new FutureCallback<Response<JsonElement>>() {
           @Override
           public void onSuccess(Response<JsonElement> responseJson) {
 
-            if (isPing) {
-              log.trace("{} <-Res {}", label, responseJson.toString());
-            } else {
-              log.debug("{} <-Res {}", label, responseJson.toString());
-            }
+            logResponse(responseJson, isPing);
 
             try {
 
@@ -460,7 +647,7 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
           public void onFailure(Throwable thrown) {
             continuation.onError(thrown);
           }
-        }, reqResEventExec);
+        }, REQ_RES_EVENT_EXEC);
 
       }
 
@@ -474,6 +661,9 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
 
     super.close();
 
+    // Requests waiting in a batch are sent before the close message
+    releaseBatcher();
+
     String sessionId = this.session != null ? this.session.getSessionId() : "";
     log.debug("{} Explicit close of JsonRpcClientWebsocket with sessionId={}", label, sessionId);
 
@@ -500,24 +690,9 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
 
     closeNativeClient();
 
-    if (reqResEventExec != null) {
-      try {
-        reqResEventExec.shutdown();
-      } catch (Exception e) {
-        log.debug("{} Could not properly shut down executor service. Reason: {}", label,
-            e.getMessage());
-      }
-      reqResEventExec = null;
-    }
-
-    if (disconnectExec != null && shutdownReconnectThread) {
-      try {
-        disconnectExec.shutdownNow();
-      } catch (Exception e) {
-        log.debug("{} Could not properly shut down disconnect executor service. Reason: {}", label,
-            e.getMessage());
-      }
-      disconnectExec = null;
+    if (reconnectTask != null && shutdownReconnectThread) {
+      reconnectTask.cancel();
+      reconnectTask = null;
     }
 
     if (heartbeating) {
@@ -533,6 +708,7 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
     }
 
     pendingRequests.closeAllPendingRequests();
+    clearReplayBuffer("Connection with server have been closed");
 
     if (session != null) {
       handlerManager.afterConnectionClosed(session, reason);
@@ -540,52 +716,101 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
   }
 
   protected void handleResponseFromServer(JsonObject message) {
+    handleResponseFromServer(fromJsonResponse(message, JsonElement.class));
+  }
 
-    Response<JsonElement> response = fromJsonResponse(message, JsonElement.class);
+  protected void handleResponseFromServer(Response<JsonElement> response) {
 
     if (response.getSessionId() != null) {
       setSessionId(response.getSessionId());
     }
 
+    wireTracer.traceReceived(label, response);
     pendingRequests.handleResponse(response);
   }
 
   protected void receivedTextMessage(String message) {
 
+    recordBytesReceived(message);
+
     try {
 
-      JsonObject jsonMessage = fromJson(message, JsonObject.class);
-
-      if (jsonMessage.has(JsonRpcConstants.METHOD_PROPERTY)) {
-        handleRequestFromServer(jsonMessage);
-      } else {
-        handleResponseFromServer(jsonMessage);
-      }
+      receivedMessage(new StringReader(message));
 
     } catch (Exception e) {
       log.error("{} Exception processing jsonRpc message {}", label, message, e);
     }
   }
 
-  void handleRequestFromServer(final JsonObject message) {
+  /**
+   * Decodes a message, or a batch of messages, received from the server in a single pass and
+   * dispatches it.
+   *
+   * @param message
+   *          reader of the JSON text of the message
+   */
+  @SuppressWarnings("unchecked")
+  protected void receivedMessage(Reader message) throws IOException {
+
+    for (Message jsonRpcMessage : JsonUtils.readJsonMessages(message)) {
+      if (jsonRpcMessage instanceof Request) {
+        handleRequestFromServer((Request<JsonElement>) jsonRpcMessage);
+      } else {
+        handleResponseFromServer((Response<JsonElement>) jsonRpcMessage);
+      }
+    }
+  }
+
+  void handleRequestFromServer(final Request<JsonElement> request) {
+
+    wireTracer.traceReceived(label, request);
 
     if (concurrentServerRequest) {
 
-      createExecServiceIfNecessary();
+      ServerRequestOrderingKey orderingKey = serverRequestOrderingKey;
+      Object key = null;
+      if (orderingKey != null) {
+        try {
+          key = orderingKey.getKey(request);
+        } catch (Exception e) {
+          log.debug("{} Exception obtaining ordering key of request {}", label, request, e);
+        }
+      }
 
-      reqResEventExec.submit(new Runnable() {
+      serverRequestDispatcher.dispatch(key, new DiscardableTask() {
         @Override
         public void run() {
-          handlerManager.handleRequest(session, fromJsonRequest(message, JsonElement.class), rs);
+          handlerManager.handleRequest(session, request, rs);
+        }
+
+        @Override
+        public void discarded() {
+          rejectRequestFromServer(request);
         }
       });
 
     } else {
 
       try {
-        handlerManager.handleRequest(session, fromJsonRequest(message, JsonElement.class), rs);
+        handlerManager.handleRequest(session, request, rs);
       } catch (Exception e) {
-        log.warn("{} Exception processing request {}", label, message, e);
+        log.warn("{} Exception processing request {}", label, request, e);
+      }
+    }
+  }
+
+  // Answers a request that won't be handled, so the server doesn't wait for its response
+  private void rejectRequestFromServer(Request<JsonElement> request) {
+
+    log.warn("{} Request from server discarded: too many pending requests. Request: {}", label,
+        request);
+
+    if (request.getId() != null) {
+      try {
+        rs.sendResponse(new Response<>(request.getId(),
+            new ResponseError(ERROR_SERVER_ERROR, "Too many requests waiting to be handled")));
+      } catch (IOException e) {
+        log.warn("{} Exception answering discarded request {}", label, request, e);
       }
     }
   }
@@ -601,6 +826,7 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
     } else {
 
       pendingRequests.closeAllPendingRequests();
+      clearReplayBuffer("Connection with server have been closed");
 
       handlerManager.afterConnectionClosed(session, closeReason);
 
@@ -617,6 +843,11 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
 
     reconnecting = true;
 
+    ReplayBuffer buffer = replayBuffer;
+    if (buffer != null) {
+      buffer.startHolding();
+    }
+
     if (fireReconnecting) {
       fireReconnecting();
     }
@@ -625,9 +856,7 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
       disableHeartbeat();
     }
 
-    createExecServiceIfNecessary();
-
-    disconnectExec.schedule(new Runnable() {
+    reconnectTask = ClientScheduler.getDefault().scheduleBlocking(new Runnable() {
       @Override
       public void run() {
         try {
@@ -692,6 +921,18 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
 
   }
 
+  /**
+   * Connects to the server and joins a session that already exists in it, for example the session
+   * of another connection of the same application.
+   *
+   * @param sessionId
+   *          id of the session to join
+   */
+  public void connectWithSession(String sessionId) throws IOException {
+    rsHelper.setSessionId(sessionId);
+    connectWithSession();
+  }
+
   protected void internalConnectIfNecessary(boolean shutdownReconnectThread) throws IOException {
 
     if (!isNativeClientConnected()) {
@@ -756,7 +997,7 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
   private void updateSession() throws IOException {
 
     if (session == null) {
-      session = new ClientSession(null, null, this);
+      session = new ClientSession(rsHelper.getSessionId(), null, this);
       configureResponseSender();
     }
 
@@ -764,9 +1005,16 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
 
       boolean sameServer = executeConnectProtocol();
 
+      JsonRpcMetrics currentMetrics = metrics;
+      if (currentMetrics != null) {
+        currentMetrics.reconnected(sameServer);
+      }
+
       if (sameServer) {
+        replayRequests();
         fireReconnectedSameServer();
       } else {
+        clearReplayBuffer("Reconnected to a new session in server " + uri);
         fireReconnectedNewServer();
       }
 
@@ -825,16 +1073,15 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
     rs = new ResponseSender() {
       @Override
       public void sendResponse(Message message) throws IOException {
-        String jsonMessage = message.toString();
-        log.debug("{} <-Res {}", label, jsonMessage);
-        sendTextMessage(jsonMessage);
+        log.debug("{} <-Res {}", label, message);
+        wireTracer.traceSent(label, message);
+        sendMessage(message);
       }
 
       @Override
       public void sendPingResponse(Message message) throws IOException {
-        String jsonMessage = message.toString();
-        log.trace("{} <-Res {}", label, jsonMessage);
-        sendTextMessage(jsonMessage);
+        log.trace("{} <-Res {}", label, message);
+        sendMessage(message);
       }
     };
   }
@@ -886,6 +1133,321 @@ public abstract class AbstractJsonRpcClientWebSocket extends JsonRpcClient {
     this.tryReconnectingMaxTime = tryReconnectingMaxTime;
   }
 
+  private void logRequest(Request<?> request, boolean isPing) {
+    if (isPing) {
+      if (log.isTraceEnabled()) {
+        log.trace("{} Req-> {}", label, request.toString().trim());
+      }
+    } else {
+      if (log.isDebugEnabled()) {
+        log.debug("{} Req-> {}", label, request.toString().trim());
+      }
+      wireTracer.traceSent(label, request);
+    }
+  }
+
+  private void logResponse(Response<JsonElement> response, boolean isPing) {
+    if (isPing) {
+      log.trace("{} <-Res {}", label, response);
+    } else {
+      log.debug("{} <-Res {}", label, response);
+    }
+  }
+
+  private void sendRequestMessage(Request<?> request, boolean isPing) throws IOException {
+
+    MessageBatcher currentBatcher = null;
+    if (!isPing && !METHOD_CONNECT.equals(request.getMethod())
+        && !JsonRpcConstants.METHOD_CLOSE.equals(request.getMethod())) {
+      currentBatcher = getBatcher();
+    }
+
+    if (currentBatcher != null) {
+      currentBatcher.add(request);
+    } else {
+      try {
+        sendMessage(request);
+      } catch (IOException | RuntimeException e) {
+        // Nothing will answer the request, so it must not wait for its timeout
+        if (request.hasId()) {
+          pendingRequests.failRequest(request.getIntId(), e);
+        }
+        throw e;
+      }
+    }
+  }
+
+  private void measureLatency(final Request<?> request,
+      ListenableFuture<Response<JsonElement>> responseFuture) {
+
+    final JsonRpcMetrics currentMetrics = metrics;
+    if (currentMetrics == null) {
+      return;
+    }
+
+    final long start = System.nanoTime();
+    currentMetrics.requestSent(request);
+
+    Futures.addCallback(responseFuture, new FutureCallback<Response<JsonElement>>() {
+      @Override
+      public void onSuccess(Response<JsonElement> response) {
+        currentMetrics.requestCompleted(request, System.nanoTime() - start,
+            response.isError() ? Outcome.ERROR : Outcome.SUCCESS);
+      }
+
+      @Override
+      public void onFailure(Throwable thrown) {
+        currentMetrics.requestCompleted(request, System.nanoTime() - start,
+            thrown instanceof JsonRpcTimeoutException ? Outcome.TIMEOUT : Outcome.ERROR);
+      }
+    }, MoreExecutors.directExecutor());
+  }
+
+  /**
+   * Reports the bytes of a text message sent to the server, if metrics are enabled.
+   */
+  protected void recordBytesSent(String text) {
+    JsonRpcMetrics currentMetrics = metrics;
+    if (currentMetrics != null) {
+      currentMetrics.bytesSent(Utf8.encodedLength(text));
+    }
+  }
+
+  protected void recordBytesSent(long bytes) {
+    JsonRpcMetrics currentMetrics = metrics;
+    if (currentMetrics != null) {
+      currentMetrics.bytesSent(bytes);
+    }
+  }
+
+  /**
+   * Reports the bytes of a text message received from the server, if metrics are enabled.
+   */
+  protected void recordBytesReceived(String text) {
+    JsonRpcMetrics currentMetrics = metrics;
+    if (currentMetrics != null) {
+      currentMetrics.bytesReceived(Utf8.encodedLength(text));
+    }
+  }
+
+  protected void recordBytesReceived(long bytes) {
+    JsonRpcMetrics currentMetrics = metrics;
+    if (currentMetrics != null) {
+      currentMetrics.bytesReceived(bytes);
+    }
+  }
+
+  private boolean isHoldingRequests() {
+    ReplayBuffer buffer = replayBuffer;
+    return buffer != null && buffer.isHolding();
+  }
+
+  /**
+   * Keeps a request in the replay buffer, if it can be sent again after a reconnection.
+   *
+   * @return true if the client is reconnecting and the request has been held to be sent later
+   */
+  private boolean keepForReplay(Request<?> request,
+      ListenableFuture<Response<JsonElement>> responseFuture) {
+
+    final ReplayBuffer buffer = replayBuffer;
+    if (buffer == null || responseFuture == null || METHOD_PING.equals(request.getMethod())
+        || METHOD_CONNECT.equals(request.getMethod())
+        || JsonRpcConstants.METHOD_CLOSE.equals(request.getMethod())) {
+      return false;
+    }
+
+    boolean held;
+    try {
+      held = buffer.hold(request);
+    } catch (TransportException e) {
+      pendingRequests.failRequest(request.getIntId(), e);
+      throw e;
+    }
+
+    if (!held && !(isIdempotent(request) && buffer.add(request))) {
+      return false;
+    }
+
+    final Integer id = request.getId();
+    responseFuture.addListener(new Runnable() {
+      @Override
+      public void run() {
+        buffer.remove(id);
+      }
+    }, MoreExecutors.directExecutor());
+
+    if (held) {
+      log.debug("{} Request {} held until reconnection", label, id);
+    }
+    return held;
+  }
+
+  private boolean isIdempotent(Request<?> request) {
+    RequestReplayPolicy policy = requestReplayPolicy;
+    if (policy == null) {
+      return false;
+    }
+    try {
+      return policy.isIdempotent(request);
+    } catch (Exception e) {
+      log.debug("{} Exception evaluating replay policy for request {}", label, request, e);
+      return false;
+    }
+  }
+
+  private void replayRequests() {
+
+    ReplayBuffer buffer = replayBuffer;
+    if (buffer == null) {
+      return;
+    }
+
+    // Requests issued meanwhile are held, and sent in a later round, to keep their order
+    Set<Integer> replayed = new HashSet<>();
+    List<Request<?>> requests;
+    while (!(requests = buffer.nextToReplay(replayed)).isEmpty()) {
+
+      log.debug("{} Sending again {} requests after reconnection", label, requests.size());
+
+      for (Request<?> request : requests) {
+        replayed.add(request.getId());
+        logRequest(request, false);
+        try {
+          sendRequestMessage(request, false);
+        } catch (IOException | RuntimeException e) {
+          // The request has been failed by sendRequestMessage
+          log.debug("{} Exception sending again request {}", label, request.getId(), e);
+        }
+      }
+    }
+  }
+
+  private void clearReplayBuffer(String reason) {
+    ReplayBuffer buffer = replayBuffer;
+    if (buffer != null) {
+      for (Request<?> request : buffer.clear()) {
+        pendingRequests.failRequest(request.getIntId(), new TransportException(reason));
+      }
+    }
+  }
+
+  private MessageBatcher getBatcher() {
+
+    if (!isBatchingEnabled()) {
+      return null;
+    }
+
+    MessageBatcher currentBatcher = batcher;
+    if (currentBatcher == null || currentBatcher.getWindowMicros() != batchWindowMicros
+        || currentBatcher.getMaxMessages() != batchMaxMessages) {
+
+      synchronized (executorsLock) {
+        currentBatcher = batcher;
+        if (currentBatcher == null || currentBatcher.getWindowMicros() != batchWindowMicros
+            || currentBatcher.getMaxMessages() != batchMaxMessages) {
+
+          if (currentBatcher != null) {
+            currentBatcher.flush();
+          }
+
+          if (batchFlushExec == null) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder().setNameFormat("JsonRpcClient-batchFlush-%d")
+                    .setDaemon(true).build());
+            executor.setRemoveOnCancelPolicy(true);
+            batchFlushExec = executor;
+          }
+
+          currentBatcher = new MessageBatcher(new BatchSender() {
+            @Override
+            public void sendBatch(List<Message> messages) throws IOException {
+              if (messages.size() == 1) {
+                sendMessage(messages.get(0));
+              } else {
+                log.trace("{} Sending batch of {} messages", label, messages.size());
+                sendMessages(messages);
+              }
+            }
+
+            @Override
+            public void batchFailed(List<Message> messages, Exception e) {
+              failRequests(messages, e);
+            }
+          }, batchFlushExec, batchWindowMicros, batchMaxMessages);
+
+          batcher = currentBatcher;
+        }
+      }
+    }
+
+    return currentBatcher;
+  }
+
+  @Override
+  public void disableBatching() {
+    super.disableBatching();
+    releaseBatcher();
+  }
+
+  /**
+   * Sends the requests waiting in the current batch and stops the thread that flushes batches.
+   */
+  private void releaseBatcher() {
+
+    MessageBatcher currentBatcher;
+    ScheduledExecutorService executor;
+    synchronized (executorsLock) {
+      currentBatcher = batcher;
+      executor = batchFlushExec;
+      batcher = null;
+      batchFlushExec = null;
+    }
+
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+    if (currentBatcher != null) {
+      currentBatcher.flush();
+    }
+  }
+
+  /**
+   * Completes with an error the pending requests of messages that couldn't be sent.
+   */
+  protected void failRequests(List<Message> messages, Throwable cause) {
+    for (Message message : messages) {
+      if (message instanceof Request) {
+        Request<?> request = (Request<?>) message;
+        if (request.hasId()) {
+          pendingRequests.failRequest(request.getIntId(), new TransportException(
+              "Exception sending request with id " + request.getIntId(), cause));
+        }
+      }
+    }
+  }
+
+  /**
+   * Sends several messages to the server as a JSON-RPC 2.0 batch. By default, the batch is
+   * serialised as a String and sent with {@link #sendTextMessage(String)}.
+   */
+  protected void sendMessages(List<Message> messages) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    JsonUtils.writeJsonMessages(messages, sb);
+    sendTextMessage(sb.toString());
+  }
+
+  /**
+   * Sends a message to the server. By default, the message is serialised as a String with the
+   * codec of {@link JsonUtils} and sent with {@link #sendTextMessage(String)}. Implementations able
+   * to serialise the message directly into their transport buffers can override this method.
+   */
+  protected void sendMessage(Message message) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    JsonUtils.writeJsonMessage(message, sb);
+    sendTextMessage(sb.toString());
+  }
+
   protected abstract void sendTextMessage(String jsonMessage) throws IOException;
 
   protected abstract void closeNativeClient();
@@ -0,0 +1,131 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.client;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.kurento.jsonrpc.client.JsonRpcMetricsSnapshot.OperationStats;
+import org.kurento.jsonrpc.internal.client.LatencyHistogram;
+import org.kurento.jsonrpc.message.Request;
+
+/**
+ * Keeps in memory a latency histogram and counters for each operation, and global counters of
+ * requests in flight, bytes transferred and reconnections. A consistent copy of all of them can be
+ * obtained with {@link #snapshot()}.
+ *
+ * Operations are named after the method of the request. Subclasses can use a finer name (for
+ * instance, including the parameters that identify the operation) overriding
+ * {@link #getOperationName(Request)}.
+ */
+public class DefaultJsonRpcMetrics implements JsonRpcMetrics {
+
+  private static class OperationMetrics {
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+  }
+
+  private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+  private final AtomicLong inFlight = new AtomicLong();
+  private final AtomicLong bytesSent = new AtomicLong();
+  private final AtomicLong bytesReceived = new AtomicLong();
+  private final AtomicLong reconnectionsSameSession = new AtomicLong();
+  private final AtomicLong reconnectionsNewSession = new AtomicLong();
+
+  @Override
+  public void requestSent(Request<?> request) {
+    inFlight.incrementAndGet();
+  }
+
+  @Override
+  public void requestCompleted(Request<?> request, long latencyNanos, Outcome outcome) {
+
+    inFlight.decrementAndGet();
+
+    OperationMetrics metrics = getOperationMetrics(getOperationName(request));
+    metrics.latency.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+
+    if (outcome == Outcome.ERROR) {
+      metrics.errors.incrementAndGet();
+    } else if (outcome == Outcome.TIMEOUT) {
+      metrics.timeouts.incrementAndGet();
+    }
+  }
+
+  @Override
+  public void bytesSent(long bytes) {
+    bytesSent.addAndGet(bytes);
+  }
+
+  @Override
+  public void bytesReceived(long bytes) {
+    bytesReceived.addAndGet(bytes);
+  }
+
+  @Override
+  public void reconnected(boolean sameSession) {
+    if (sameSession) {
+      reconnectionsSameSession.incrementAndGet();
+    } else {
+      reconnectionsNewSession.incrementAndGet();
+    }
+  }
+
+  /**
+   * Returns the name under which the latency of a request is recorded. By default, the method of
+   * the request.
+   */
+  protected String getOperationName(Request<?> request) {
+    return request.getMethod();
+  }
+
+  public JsonRpcMetricsSnapshot snapshot() {
+
+    Map<String, OperationStats> stats = new TreeMap<>();
+    for (Map.Entry<String, OperationMetrics> entry : operations.entrySet()) {
+      OperationMetrics metrics = entry.getValue();
+      stats.put(entry.getKey(),
+          new OperationStats(entry.getKey(), metrics.latency.getTotalCount(),
+              metrics.errors.get(), metrics.timeouts.get(), metrics.latency.getTotalMicros(),
+              metrics.latency.getMaxMicros(), metrics.latency.copyCounts()));
+    }
+
+    return new JsonRpcMetricsSnapshot(stats, inFlight.get(), bytesSent.get(),
+        bytesReceived.get(), reconnectionsSameSession.get(), reconnectionsNewSession.get());
+  }
+
+  private OperationMetrics getOperationMetrics(String name) {
+    OperationMetrics metrics = operations.get(name);
+    if (metrics == null) {
+      OperationMetrics newMetrics = new OperationMetrics();
+      metrics = operations.putIfAbsent(name, newMetrics);
+      if (metrics == null) {
+        metrics = newMetrics;
+      }
+    }
+    return metrics;
+  }
+
+}
@@ -24,18 +24,19 @@ import static org.kurento.jsonrpc.internal.JsonRpcConstants.PONG_PAYLOAD;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.kurento.commons.PropertiesManager;
-import org.kurento.commons.ThreadFactoryCreator;
 import org.kurento.commons.exception.KurentoException;
 import org.kurento.jsonrpc.JsonRpcHandler;
 import org.kurento.jsonrpc.Session;
 import org.kurento.jsonrpc.internal.JsonRpcHandlerManager;
 import org.kurento.jsonrpc.internal.JsonRpcRequestSender;
 import org.kurento.jsonrpc.internal.JsonRpcRequestSenderHelper;
+import org.kurento.jsonrpc.internal.client.ClientScheduler;
+import org.kurento.jsonrpc.internal.client.ClientScheduler.ScheduledTask;
 import org.kurento.jsonrpc.internal.client.ClientSession;
 import org.kurento.jsonrpc.message.Request;
 import org.kurento.jsonrpc.message.Response;
@@ -71,12 +72,12 @@ public abstract class JsonRpcClient implements JsonRpcRequestSender, Closeable {
 
   public static Logger log = LoggerFactory.getLogger(JsonRpcClient.class.getName());
 
-  private static class PingParams {
-    @SuppressWarnings("unused")
-    public long interval;
-  }
+  private static final String INTERVAL_PROPERTY = "interval";
 
   protected JsonRpcHandlerManager handlerManager = new JsonRpcHandlerManager();
+  protected volatile ServerRequestOrderingKey serverRequestOrderingKey;
+  protected volatile RequestReplayPolicy requestReplayPolicy;
+  protected volatile JsonRpcMetrics metrics;
   protected JsonRpcRequestSenderHelper rsHelper;
   protected Object registerInfo;
   protected ClientSession session;
@@ -88,16 +89,57 @@ public abstract class JsonRpcClient implements JsonRpcRequestSender, Closeable {
   private static final int DEFAULT_HEARTBEAT_INTERVAL = 5000;
   protected boolean heartbeating;
   protected boolean closedByClient;
-  private volatile PingParams pingParams;
-
-  private ScheduledExecutorService hearbeatExec = createScheduler();
+  protected long batchWindowMicros =
+      PropertiesManager.getProperty("jsonRpcClient.batchWindowMicros", 0L);
+  protected int batchMaxMessages =
+      PropertiesManager.getProperty("jsonRpcClient.batchMaxMessages", 32);
+  private volatile JsonObject pingParams;
+  private final AtomicBoolean pingInFlight = new AtomicBoolean();
+  private volatile long lastPingRttMicros = -1;
 
-  private Future<?> heartbeat;
+  private ScheduledTask heartbeat;
 
   public void setServerRequestHandler(JsonRpcHandler<?> handler) {
     this.handlerManager.setJsonRpcHandler(handler);
   }
 
+  /**
+   * Sets how requests received from the server are ordered when they are handled concurrently.
+   * Only WebSocket clients handle server requests concurrently.
+   *
+   * @param orderingKey
+   *          the key extractor, or null to handle requests in any order
+   */
+  public void setServerRequestOrderingKey(ServerRequestOrderingKey orderingKey) {
+    this.serverRequestOrderingKey = orderingKey;
+  }
+
+  /**
+   * Sets which requests waiting for a response can be sent again when the client reconnects to the
+   * same session. Only used by clients with request replay enabled.
+   *
+   * @param replayPolicy
+   *          the policy, or null to only replay requests issued while reconnecting
+   */
+  public void setRequestReplayPolicy(RequestReplayPolicy replayPolicy) {
+    this.requestReplayPolicy = replayPolicy;
+  }
+
+  /**
+   * Sets where the measures of this client are reported. By default, nothing is measured.
+   * Only WebSocket clients take measures.
+   *
+   * @param metrics
+   *          the metrics, or null to stop measuring
+   */
+  public void setMetrics(JsonRpcMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  public JsonRpcMetrics getMetrics() {
+    return metrics;
+  }
+
   public void setLabel(String label) {
     this.label = "[" + label + "] ";
   }
@@ -128,6 +170,16 @@ public abstract class JsonRpcClient implements JsonRpcRequestSender, Closeable {
     rsHelper.sendRequest(method, params, continuation);
   }
 
+  /**
+   * Sends a request without blocking.
+   *
+   * @return a future completed with the result of the response, or exceptionally with a
+   *         {@link org.kurento.jsonrpc.JsonRpcErrorException} if the response is an error
+   */
+  public CompletableFuture<JsonElement> sendRequestAsync(String method, JsonObject params) {
+    return rsHelper.sendRequestAsync(method, params);
+  }
+
   @Override
   public void sendNotification(String method) throws IOException {
     rsHelper.sendNotification(method);
@@ -155,6 +207,15 @@ public abstract class JsonRpcClient implements JsonRpcRequestSender, Closeable {
     rsHelper.sendRequest(request, continuation);
   }
 
+  /**
+   * Sends a request without blocking.
+   *
+   * @return a future completed with the response, even if it is an error response
+   */
+  public CompletableFuture<Response<JsonElement>> sendRequestAsync(Request<JsonObject> request) {
+    return rsHelper.sendRequestAsync(request);
+  }
+
   @Override
   public void sendRequestHonorId(Request<JsonObject> request,
       Continuation<Response<JsonElement>> continuation) throws IOException {
@@ -172,7 +233,10 @@ public abstract class JsonRpcClient implements JsonRpcRequestSender, Closeable {
 
   public void setSessionId(String sessionId) {
     this.rsHelper.setSessionId(sessionId);
-    this.session.setSessionId(sessionId);
+    // The session is created when the client connects, with the id of the helper
+    if (this.session != null) {
+      this.session.setSessionId(sessionId);
+    }
   }
 
   /**
@@ -236,6 +300,50 @@ public abstract class JsonRpcClient implements JsonRpcRequestSender, Closeable {
     this.heartbeatInterval = interval;
   }
 
+  /**
+   * Enables coalescing of outbound requests into JSON-RPC 2.0 batches. Requests sent within the
+   * given window are sent together in a single message, which is sent earlier if it reaches the
+   * maximum number of requests. Responses are matched with their requests by id, so the server
+   * can answer each request separately. Batching is disabled by default.
+   *
+   * Transports that don't support batches ignore this setting.
+   *
+   * @param windowMicros
+   *          time in microseconds that a request waits for others to be sent with
+   * @param maxMessages
+   *          maximum number of requests of a batch
+   */
+  public void enableBatching(long windowMicros, int maxMessages) {
+    if (windowMicros <= 0 || maxMessages < 2) {
+      throw new IllegalArgumentException("Invalid batching configuration: window of "
+          + windowMicros + " microseconds and " + maxMessages + " messages");
+    }
+    this.batchWindowMicros = windowMicros;
+    this.batchMaxMessages = maxMessages;
+  }
+
+  public void disableBatching() {
+    this.batchWindowMicros = 0;
+  }
+
+  /**
+   * Returns whether outbound requests are coalesced into batches.
+   *
+   * @return true if batching has been enabled
+   * @see #enableBatching(long, int)
+   */
+  public boolean isBatchingEnabled() {
+    return batchWindowMicros > 0 && batchMaxMessages > 1;
+  }
+
+  public long getBatchWindowMicros() {
+    return batchWindowMicros;
+  }
+
+  public int getBatchMaxMessages() {
+    return batchMaxMessages;
+  }
+
   public void enableHeartbeat() {
     this.enableHeartbeat(this.heartbeatInterval);
   }
@@ -246,49 +354,85 @@ public abstract class JsonRpcClient implements JsonRpcRequestSender, Closeable {
 
       this.heartbeating = true;
       this.heartbeatInterval = interval == 0 ? DEFAULT_HEARTBEAT_INTERVAL : interval;
-      pingParams = new PingParams();
-      pingParams.interval = this.heartbeatInterval;
+      pingParams = new JsonObject();
+      pingParams.addProperty(INTERVAL_PROPERTY, this.heartbeatInterval);
 
       log.debug("{} Enabling heartbeat with an interval of {} ms", label, this.heartbeatInterval);
 
-      if (hearbeatExec.isShutdown()) {
-        hearbeatExec = createScheduler();
-      }
-
-      heartbeat = hearbeatExec.scheduleAtFixedRate(new Runnable() {
+      heartbeat = ClientScheduler.getDefault().scheduleAtFixedRate(new Runnable() {
         @Override
         public void run() {
-          try {
-            JsonObject response = sendRequest(METHOD_PING, pingParams).getAsJsonObject();
+          sendPing();
+        }
+      }, 0, heartbeatInterval, MILLISECONDS);
+    }
+  }
+
+  private void sendPing() {
 
-            pingParams = null;
+    if (!pingInFlight.compareAndSet(false, true)) {
+      // The response to the previous ping will arrive or the request will time out
+      return;
+    }
 
-            if (!PONG.equals(response.get(PONG_PAYLOAD).getAsString())) {
-              closeHeartbeatOnFailure();
-            }
-          } catch (Exception e) {
-            log.warn("{} Error sending heartbeat to server. Exception: {}", label, e.getMessage());
+    final long startTime = System.nanoTime();
+
+    try {
+      sendRequest(METHOD_PING, pingParams, new Continuation<JsonElement>() {
+        @Override
+        public void onSuccess(JsonElement result) {
+          pingInFlight.set(false);
+          lastPingRttMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime);
+
+          pingParams = null;
+
+          JsonElement pong = result instanceof JsonObject
+              ? ((JsonObject) result).get(PONG_PAYLOAD)
+              : null;
+          if (pong == null || !PONG.equals(pong.getAsString())) {
             closeHeartbeatOnFailure();
           }
         }
-      }, 0, heartbeatInterval, MILLISECONDS);
+
+        @Override
+        public void onError(Throwable cause) {
+          pingInFlight.set(false);
+          log.warn("{} Error sending heartbeat to server. Exception: {}", label,
+              cause.getMessage());
+          closeHeartbeatOnFailure();
+        }
+      });
+    } catch (Exception e) {
+      pingInFlight.set(false);
+      log.warn("{} Error sending heartbeat to server. Exception: {}", label, e.getMessage());
+      closeHeartbeatOnFailure();
     }
   }
 
-  private ScheduledExecutorService createScheduler() {
-    return Executors.newSingleThreadScheduledExecutor(
-        ThreadFactoryCreator.create("JsonRpcClient-hearbeatExec"));
+  /**
+   * Returns the round trip time of the last heartbeat ping answered by the server.
+   *
+   * @return the round trip time in microseconds, or -1 if no ping has been answered yet
+   */
+  public long getLastPingRttMicros() {
+    return lastPingRttMicros;
   }
 
   /**
    * Cancels the heartbeat task and closes the client
    */
   private final void closeHeartbeatOnFailure() {
-    log.warn("{} Stopping heartbeat and closing client: failure during heartbeat mechanism", label);
 
-    heartbeat.cancel(false);
-    heartbeat = null;
-    hearbeatExec.shutdownNow();
+    synchronized (this) {
+      if (heartbeat == null) {
+        // Heartbeat already disabled
+        return;
+      }
+      log.warn("{} Stopping heartbeat and closing client: failure during heartbeat mechanism",
+          label);
+      heartbeat.cancel();
+      heartbeat = null;
+    }
 
     try {
       closeWithReconnection();
@@ -298,29 +442,26 @@ public abstract class JsonRpcClient implements JsonRpcRequestSender, Closeable {
   }
 
   /**
-   * Disables the heratbeat mechanism. The scheduler running the task will be shut down after the
-   * task has been cancelled. This method DOES NOT cancel the task if it's already running
+   * Disables the heratbeat mechanism. This method DOES NOT cancel a ping already in progress
    */
   public void disableHeartbeat() {
     disableHeartbeat(false);
   }
 
   /**
-   * Disables the heratbeat mechanism. The scheduler running the task will be shut down after the
-   * task has been cancelled.
+   * Disables the heratbeat mechanism. The response to a ping already sent is ignored.
    *
    * @param mayInterruptIfRunning
-   *          Signals the task to interrupt even if it is already running
+   *          whether the thread sending a ping, if any, should be interrupted
    */
-  public void disableHeartbeat(boolean mayInterruptIfRunning) {
+  public synchronized void disableHeartbeat(boolean mayInterruptIfRunning) {
     if (heartbeating) {
-      log.debug("Disabling heartbeat. Interrupt if running is {}", mayInterruptIfRunning);
+      log.debug("Disabling heartbeat");
       this.heartbeating = false;
       if (heartbeat != null) {
         heartbeat.cancel(mayInterruptIfRunning);
         heartbeat = null;
       }
-      hearbeatExec.shutdownNow();
     }
   }
 
@@ -17,11 +17,19 @@
 
 package org.kurento.jsonrpc.client;
 
+import static org.kurento.jsonrpc.JsonUtils.INJECT_SESSION_ID;
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.SESSION_ID_PROPERTY;
+
 import java.io.IOException;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.JsonRpcException;
 import org.kurento.jsonrpc.JsonRpcHandler;
+import org.kurento.jsonrpc.JsonRpcTimeoutException;
 import org.kurento.jsonrpc.JsonUtils;
 import org.kurento.jsonrpc.internal.JsonRpcHandlerManager;
 import org.kurento.jsonrpc.internal.JsonRpcRequestSenderHelper;
@@ -29,20 +37,37 @@ import org.kurento.jsonrpc.internal.client.ClientSession;
 import org.kurento.jsonrpc.internal.client.TransactionImpl;
 import org.kurento.jsonrpc.internal.client.TransactionImpl.ResponseSender;
 import org.kurento.jsonrpc.message.Message;
+import org.kurento.jsonrpc.message.MessageUtils;
 import org.kurento.jsonrpc.message.Request;
 import org.kurento.jsonrpc.message.Response;
 import org.kurento.jsonrpc.message.ResponseError;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Throwables;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
+/**
+ * Client that sends its requests to a handler in the same JVM.
+ *
+ * By default, requests and responses are serialised to JSON and parsed back, as if they were sent
+ * through the network. In direct dispatch mode (see {@link #setDirectDispatch(boolean)}), the
+ * request is handed to the handler as it is, and the result is converted to the expected class
+ * through a JSON tree, or returned as it is when it already has the expected class. The handler
+ * receives the same request and transaction in both modes.
+ */
 public class JsonRpcClientLocal extends JsonRpcClient {
 
   private static Logger log = LoggerFactory.getLogger(JsonRpcClientLocal.class);
 
+  private static final long SERVER_REQUEST_TIMEOUT = 10000;
+
+  private static final boolean DEFAULT_DIRECT_DISPATCH =
+      PropertiesManager.getProperty("jsonRpcClientLocal.directDispatch", false);
+
   private JsonRpcHandler<? extends Object> remoteHandler;
+  private volatile boolean directDispatch = DEFAULT_DIRECT_DISPATCH;
   private final JsonRpcHandlerManager remoteHandlerManager = new JsonRpcHandlerManager();
 
   public <F> JsonRpcClientLocal(JsonRpcHandler<? extends Object> handler) {
@@ -70,14 +95,36 @@ public class JsonRpcClientLocal extends JsonRpcClient {
     };
   }
 
+  /**
+   * Configures if requests are handed to the handler without serialising them to JSON. It can also
+   * be enabled with the property {@code jsonRpcClientLocal.directDispatch}.
+   */
+  public void setDirectDispatch(boolean directDispatch) {
+    this.directDispatch = directDispatch;
+  }
+
+  public boolean isDirectDispatch() {
+    return directDispatch;
+  }
+
   @SuppressWarnings({ "unchecked", "rawtypes" })
   private <R, P> Response<R> localSendRequest(Request<P> request, Class<R> resultClass) {
-    // Simulate sending json string for net
-    String jsonRequest = request.toString();
 
-    log.debug("--> {}", jsonRequest);
+    final boolean direct = directDispatch;
+
+    Request<JsonObject> newRequest;
+    if (direct) {
+      log.debug("--> {}", request);
+      newRequest = new Request<>(request.getSessionId(), request.getId(), request.getMethod(),
+          directParams(request.getParams()));
+    } else {
+      // Simulate sending json string for net
+      String jsonRequest = request.toString();
 
-    Request<JsonObject> newRequest = JsonUtils.fromJsonRequest(jsonRequest, JsonObject.class);
+      log.debug("--> {}", jsonRequest);
+
+      newRequest = JsonUtils.fromJsonRequest(jsonRequest, JsonObject.class);
+    }
 
     final Response<JsonObject>[] response = new Response[1];
 
@@ -105,45 +152,51 @@ public class JsonRpcClientLocal extends JsonRpcClient {
       protected <P2, R2> Response<R2> internalSendRequest(Request<P2> request,
           Class<R2> resultClass) throws IOException {
 
-        final Object[] response = new Object[1];
-
-            final CountDownLatch responseLatch = new CountDownLatch(1);
-
-            handlerManager.handleRequest(session, (Request<JsonElement>) request,
-                new ResponseSender() {
-                  @Override
-                  public void sendResponse(Message message) throws IOException {
-                    response[0] = message;
-                    responseLatch.countDown();
-                  }
-
-                  @Override
-                  public void sendPingResponse(Message message) throws IOException {
-                    sendResponse(message);
-                  }
-                });
-
-            Response<R2> response2 = (Response<R2>) response[0];
-
-            try {
-              responseLatch.await(10, TimeUnit.SECONDS);
-            } catch (InterruptedException e) {
-              throw new RuntimeException(e);
-            }
+        final CompletableFuture<Response<JsonElement>> responseFuture = new CompletableFuture<>();
+
+        internalSendRequest(request, JsonElement.class,
+            new Continuation<Response<JsonElement>>() {
+              @Override
+              public void onSuccess(Response<JsonElement> result) {
+                responseFuture.complete(result);
+              }
+
+              @Override
+              public void onError(Throwable cause) {
+                responseFuture.completeExceptionally(cause);
+              }
+            });
+
+        // Handlers usually respond before returning, so the future is already completed
+        Response<R2> response2;
+        try {
+          response2 = (Response<R2>) (Response<?>) responseFuture.get(SERVER_REQUEST_TIMEOUT,
+              TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+          throw new JsonRpcTimeoutException(request.getId(),
+              "No response from client handler after " + SERVER_REQUEST_TIMEOUT + " ms");
+        } catch (ExecutionException e) {
+          Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+          Throwables.throwIfUnchecked(e.getCause());
+          throw new JsonRpcException("Exception handling request", e.getCause());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new JsonRpcException("Interrupted waiting for response", e);
+        }
 
-            log.debug("<-- {}", response2);
+        log.debug("<-- {}", response2);
 
-            Object result = response2.getResult();
+        Object result = response2.getResult();
 
-            if (result == null || resultClass.isAssignableFrom(result.getClass())) {
-              return response2;
-            } else if (resultClass == JsonElement.class) {
-              response2.setResult((R2) JsonUtils.toJsonElement(result));
-              return response2;
-            } else {
-              throw new ClassCastException("Class " + result + " cannot be converted to "
-                  + resultClass);
-            }
+        if (result == null || resultClass.isAssignableFrom(result.getClass())) {
+          return response2;
+        } else if (resultClass == JsonElement.class) {
+          response2.setResult((R2) JsonUtils.toJsonElement(result));
+          return response2;
+        } else {
+          throw new ClassCastException("Class " + result + " cannot be converted to "
+              + resultClass);
+        }
       }
     });
 
@@ -161,18 +214,26 @@ public class JsonRpcClientLocal extends JsonRpcClient {
     });
 
     try {
-      remoteHandler.handleRequest(t, (Request) request);
+      // The handler receives the params with its own type, as in a server
+      Class<?> paramsType = JsonRpcHandlerManager.getParamsType(remoteHandler.getHandlerType());
+      remoteHandler.handleRequest(t, (Request) MessageUtils.convertRequest(newRequest, paramsType));
     } catch (Exception e) {
       ResponseError error = ResponseError.newFromException(e);
       return new Response<>(request.getId(), error);
     }
 
     if (response[0] != null) {
-      // Simulate receiving json string from net
       Response<R> responseObj = (Response<R>) response[0];
       if (responseObj.getId() == null) {
         responseObj.setId(request.getId());
       }
+
+      if (direct && responseObj.getError() == null) {
+        return directResponse((Response<Object>) (Response<?>) response[0], request.getId(),
+            resultClass);
+      }
+
+      // Simulate receiving json string from net
       String jsonResponse = responseObj.toString();
 
       // log.debug("< {}", jsonResponse);
@@ -189,6 +250,71 @@ public class JsonRpcClientLocal extends JsonRpcClient {
 
   }
 
+  /**
+   * Converts the params of a request to a JSON object as the JSON round trip would do, without
+   * serialising them. They are copied, so the handler can't modify the params of the caller.
+   */
+  private static JsonObject directParams(Object params) {
+    if (params == null) {
+      return null;
+    }
+    JsonElement tree = params instanceof JsonElement ? ((JsonElement) params).deepCopy()
+        : JsonUtils.toJsonElement(params);
+    return tree.isJsonNull() ? null : tree.getAsJsonObject();
+  }
+
+  /**
+   * Converts the result of a response to the expected class as the JSON round trip would do,
+   * without serialising it. When session ids are injected, they travel inside the result, so
+   * results that are not JSON objects are received wrapped in a "value" property.
+   */
+  @SuppressWarnings("unchecked")
+  private <R> Response<R> directResponse(Response<Object> response, Integer id,
+      Class<R> resultClass) {
+
+    Class<?> expectedClass = resultClass != null ? resultClass : JsonElement.class;
+    Object result = response.getResult();
+    String sessionId = response.getSessionId();
+
+    if (result != null && !JsonElement.class.isAssignableFrom(expectedClass)
+        && expectedClass.isInstance(result)) {
+      return new Response<>(sessionId, id, (R) result);
+    }
+
+    JsonElement tree = null;
+    if (result instanceof JsonElement) {
+      // The handler could modify its result after responding
+      tree = ((JsonElement) result).deepCopy();
+    } else if (result != null) {
+      tree = JsonUtils.toJsonElement(result);
+    }
+
+    if (sessionId != null && INJECT_SESSION_ID) {
+      if (tree == null || tree.isJsonNull()) {
+        tree = new JsonObject();
+      } else if (tree.isJsonObject()) {
+        ((JsonObject) tree).remove(SESSION_ID_PROPERTY);
+      } else {
+        JsonObject wrapper = new JsonObject();
+        wrapper.add("value", tree);
+        tree = wrapper;
+      }
+    }
+
+    R converted;
+    if (tree == null || tree.isJsonNull()) {
+      converted = null;
+    } else if (expectedClass.isInstance(tree)) {
+      converted = (R) tree;
+    } else {
+      converted = (R) JsonUtils.fromJson(tree, expectedClass);
+    }
+
+    log.debug("<-- {}", converted);
+
+    return new Response<>(sessionId, id, converted);
+  }
+
   @Override
   public void close() throws IOException {
     handlerManager.afterConnectionClosed(session, "Client close");
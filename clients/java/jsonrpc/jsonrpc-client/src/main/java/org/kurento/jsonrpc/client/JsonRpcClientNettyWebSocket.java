@@ -17,7 +17,13 @@
 package org.kurento.jsonrpc.client;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.nio.channels.spi.SelectorProvider;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -28,14 +34,24 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import javax.net.ssl.SSLException;
 
+import org.kurento.commons.PropertiesManager;
 import org.kurento.commons.exception.KurentoException;
+import org.kurento.jsonrpc.JsonUtils;
+import org.kurento.jsonrpc.TransportException;
+import org.kurento.jsonrpc.internal.ws.CompressionStats;
+import org.kurento.jsonrpc.internal.ws.OutboundQueue;
+import org.kurento.jsonrpc.message.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
@@ -44,6 +60,7 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.channel.DefaultSelectStrategyFactory;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.MultiThreadIoEventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.nio.NioIoHandler;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
@@ -59,7 +76,6 @@ import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketHandshakeException;
 import io.netty.handler.codec.http.websocketx.WebSocketVersion;
-import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketClientCompressionHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
@@ -91,8 +107,11 @@ public class JsonRpcClientNettyWebSocket extends AbstractJsonRpcClientWebSocket
 
     @Override
     public void channelWritabilityChanged(ChannelHandlerContext ctx) {
-      log.debug("{} channel inactive", label);
-      handleReconnectDisconnection(0, "Unknown reason");
+      OutboundQueue queue = outboundQueue;
+      if (queue != null && ctx.channel().isWritable()) {
+        queue.scheduleDrain();
+      }
+      ctx.fireChannelWritabilityChanged();
     }
 
     @Override
@@ -124,7 +143,7 @@ public class JsonRpcClientNettyWebSocket extends AbstractJsonRpcClientWebSocket
       if (frame instanceof TextWebSocketFrame) {
         TextWebSocketFrame textFrame = (TextWebSocketFrame) frame;
         if (textFrame.isFinalFragment()) {
-          receivedTextMessage(textFrame.text());
+          receivedTextFrame(textFrame.content());
         } else {
           partialText.append(textFrame.text());
         }
@@ -146,6 +165,20 @@ public class JsonRpcClientNettyWebSocket extends AbstractJsonRpcClientWebSocket
 
     }
 
+    /**
+     * Decodes the message from the UTF-8 bytes of the frame, without creating a String with it.
+     */
+    private void receivedTextFrame(ByteBuf content) {
+      recordBytesReceived(content.readableBytes());
+      try {
+        receivedMessage(new InputStreamReader(new ByteBufInputStream(content.duplicate()),
+            StandardCharsets.UTF_8));
+      } catch (Exception e) {
+        log.error("{} Exception processing jsonRpc message {}", label,
+            content.toString(StandardCharsets.UTF_8), e);
+      }
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
       log.warn("{} Exception caught in Netty websocket handler", label, cause);
@@ -163,13 +196,32 @@ public class JsonRpcClientNettyWebSocket extends AbstractJsonRpcClientWebSocket
 
   private static final Logger log = LoggerFactory.getLogger(JsonRpcClientNettyWebSocket.class);
 
+  private static final boolean DEFAULT_ASYNC_SEND =
+      PropertiesManager.getProperty("jsonRpcClient.netty.asyncSend", false);
+
+  private static final int DEFAULT_WRITE_LOW_WATERMARK =
+      PropertiesManager.getProperty("jsonRpcClient.netty.writeLowWatermark", 512 * 1024);
+
+  private static final int DEFAULT_WRITE_HIGH_WATERMARK =
+      PropertiesManager.getProperty("jsonRpcClient.netty.writeHighWatermark", 1024 * 1024);
+
   private final Lock lock = new ReentrantLock();
   private final Condition condition = lock.newCondition();
   
   private volatile Channel channel;
+  // Guarded by groupLock for writes; read without it to check the state of the connection
   private volatile EventLoopGroup group;
+  private final Object groupLock = new Object();
+  private boolean groupRetained;
   private volatile JsonRpcWebSocketClientHandler handler;
+  private volatile OutboundQueue outboundQueue;
+  private volatile boolean asyncSend = DEFAULT_ASYNC_SEND;
+  private volatile int writeLowWatermark = DEFAULT_WRITE_LOW_WATERMARK;
+  private volatile int writeHighWatermark = DEFAULT_WRITE_HIGH_WATERMARK;
+  private volatile NettyCompression compression = new NettyCompression();
+  private final CompressionStats compressionStats = new CompressionStats();
   private final SslContext customSslContext;
+  private final NettyTransportResources transportResources;
 
     public JsonRpcClientNettyWebSocket(String url) {
         this(url, null, null);
@@ -183,11 +235,110 @@ public class JsonRpcClientNettyWebSocket extends AbstractJsonRpcClientWebSocket
     public JsonRpcClientNettyWebSocket(String url,
                                        JsonRpcWSConnectionListener connectionListener,
                                        SslContext sslContext) {
+        this(url, connectionListener, sslContext, null);
+    }
+
+    /**
+     * Creates a client that uses the event loop group of the given transport resources instead of
+     * creating its own. The group is retained when the client connects and released when it is
+     * closed.
+     *
+     * @param transportResources
+     *          Resources shared with other clients, or null to create a dedicated event loop group
+     */
+    public JsonRpcClientNettyWebSocket(String url,
+                                       JsonRpcWSConnectionListener connectionListener,
+                                       SslContext sslContext,
+                                       NettyTransportResources transportResources) {
         super(url, connectionListener);
         this.customSslContext = sslContext;
+        this.transportResources = transportResources;
         log.debug("{} Creating JsonRPC NETTY Websocket client (mTLS-capable)", label);
     }
 
+  public NettyTransportResources getTransportResources() {
+    return transportResources;
+  }
+
+  /**
+   * Enables the async send mode. Messages are enqueued in a bounded queue and written by the event
+   * loop when the channel is writable, so senders never wait for the channel. When the bytes
+   * waiting to be sent exceed the high watermark, requests fail with a {@link TransportException}
+   * until they drain below the low watermark. Bytes wait in the queue and then in the write buffer
+   * of the channel, so both watermarks are split in halves between them, and the memory taken by
+   * outgoing messages doesn't exceed the high watermark.
+   *
+   * <p>
+   * The mode can also be enabled with the property {@code jsonRpcClient.netty.asyncSend}, and the
+   * watermarks configured with {@code jsonRpcClient.netty.writeLowWatermark} and
+   * {@code jsonRpcClient.netty.writeHighWatermark}. Changes take effect on the next connection.
+   * </p>
+   *
+   * @param lowWatermark
+   *          bytes under which new messages are accepted again
+   * @param highWatermark
+   *          bytes over which new messages are rejected
+   */
+  public void enableAsyncSend(int lowWatermark, int highWatermark) {
+    if (lowWatermark < 0 || highWatermark < lowWatermark) {
+      throw new IllegalArgumentException(
+          "Invalid watermarks: low=" + lowWatermark + ", high=" + highWatermark);
+    }
+    this.writeLowWatermark = lowWatermark;
+    this.writeHighWatermark = highWatermark;
+    this.asyncSend = true;
+  }
+
+  /**
+   * Disables the async send mode. Senders wait up to 1 second for the channel to be writable.
+   * Changes take effect on the next connection.
+   */
+  public void disableAsyncSend() {
+    this.asyncSend = false;
+  }
+
+  public boolean isAsyncSendEnabled() {
+    return asyncSend;
+  }
+
+  /**
+   * Returns the bytes waiting to be written in the outbound queue of the current connection, or 0
+   * if the async send mode is not in use.
+   */
+  public long getOutboundQueuedBytes() {
+    OutboundQueue queue = outboundQueue;
+    return queue != null ? queue.getQueuedBytes() : 0;
+  }
+
+  /**
+   * Returns the messages rejected because the outbound queue of the current connection was over
+   * its high watermark.
+   */
+  public long getRejectedOutboundFrames() {
+    OutboundQueue queue = outboundQueue;
+    return queue != null ? queue.getRejectedFrames() : 0;
+  }
+
+  /**
+   * Sets the compression policy of the frames sent to the server. It is applied the next time the
+   * client connects.
+   */
+  public void setCompression(NettyCompression compression) {
+    this.compression = compression;
+  }
+
+  public NettyCompression getCompression() {
+    return compression;
+  }
+
+  /**
+   * Returns the effect of compression on the frames exchanged with the server since the client was
+   * created. Nothing is measured when compression is off.
+   */
+  public CompressionStats getCompressionStats() {
+    return compressionStats;
+  }
+
   public void waitForChannelWritability() throws InterruptedException, KurentoException {
     lock.lock();
     try {
@@ -206,35 +357,111 @@ public class JsonRpcClientNettyWebSocket extends AbstractJsonRpcClientWebSocket
 
   @Override
   protected void sendTextMessage(String jsonMessage) throws IOException {
-    boolean delivered = false;
+    checkChannelActive();
+    writeFrame(new TextWebSocketFrame(jsonMessage), Collections.<Message> emptyList());
+  }
+
+  /**
+   * Serialises the message directly as UTF-8 into a buffer of the channel allocator, so no
+   * intermediate String is created for the JSON text.
+   */
+  @Override
+  protected void sendMessage(Message message) throws IOException {
+    Channel ch = checkChannelActive();
+
+    ByteBuf buffer = ch.alloc().buffer();
+    try {
+      Writer writer = new OutputStreamWriter(new ByteBufOutputStream(buffer),
+          StandardCharsets.UTF_8);
+      JsonUtils.writeJsonMessage(message, writer);
+      writer.flush();
+    } catch (IOException | RuntimeException e) {
+      buffer.release();
+      throw e;
+    }
+
+    writeFrame(new TextWebSocketFrame(buffer), Collections.singletonList(message));
+  }
+
+  @Override
+  protected void sendMessages(List<Message> messages) throws IOException {
+    Channel ch = checkChannelActive();
+
+    ByteBuf buffer = ch.alloc().buffer();
+    try {
+      Writer writer = new OutputStreamWriter(new ByteBufOutputStream(buffer),
+          StandardCharsets.UTF_8);
+      JsonUtils.writeJsonMessages(messages, writer);
+      writer.flush();
+    } catch (IOException | RuntimeException e) {
+      buffer.release();
+      throw e;
+    }
 
-    if (channel == null || !channel.isActive()) {
+    writeFrame(new TextWebSocketFrame(buffer), messages);
+  }
+
+  private Channel checkChannelActive() {
+    Channel ch = channel;
+    if (ch == null || !ch.isActive()) {
       throw new IllegalStateException(
           label + " JsonRpcClient is disconnected from WebSocket server at '" + this.uri + "'");
     }
+    return ch;
+  }
 
-    while (! delivered) {
-      boolean retry = false;
+  private void writeFrame(WebSocketFrame frame, List<Message> messages) throws IOException {
 
-      synchronized (channel) {
-        if (channel.isWritable()) {
-          channel.writeAndFlush(new TextWebSocketFrame(jsonMessage));
-          delivered = true;
-        } else {
-          log.warn("{} channel is not writable, request will be enqueued", label);
-          retry = true;
-        }
+    final int size = frame.content().readableBytes();
+
+    OutboundQueue queue = outboundQueue;
+    if (queue != null) {
+      if (!queue.offer(frame, messages)) {
+        throw new TransportException(label + " Outbound queue is over its high watermark ("
+            + queue.getHighWatermark() + " bytes). Message discarded");
       }
-      if (retry) {
-        // Backpressure: wait for channel to be writable
-        // We wait for at most 1 second and if not writable an exception is thrown
-        try {
-          waitForChannelWritability();
-        } catch (InterruptedException e) {
-          log.warn("{} Interrupted while waiting for channel writability", label);
-          throw new IOException("Interrupted while waiting for channel writability", e);
+      return;
+    }
+
+    boolean delivered = false;
+
+    try {
+      while (!delivered) {
+        boolean retry = false;
+
+        Channel ch = checkChannelActive();
+        synchronized (ch) {
+          if (ch.isWritable()) {
+            // Only bytes actually written are counted
+            ch.writeAndFlush(frame).addListener(new ChannelFutureListener() {
+              @Override
+              public void operationComplete(ChannelFuture future) {
+                if (future.isSuccess()) {
+                  recordBytesSent(size);
+                }
+              }
+            });
+            delivered = true;
+          } else {
+            log.warn("{} channel is not writable, request will be enqueued", label);
+            retry = true;
+          }
+        }
+        if (retry) {
+          // Backpressure: wait for channel to be writable
+          // We wait for at most 1 second and if not writable an exception is thrown
+          try {
+            waitForChannelWritability();
+          } catch (InterruptedException e) {
+            log.warn("{} Interrupted while waiting for channel writability", label);
+            throw new IOException("Interrupted while waiting for channel writability", e);
+          }
         }
       }
+    } finally {
+      if (!delivered) {
+        frame.release();
+      }
     }
   }
 
@@ -281,11 +508,7 @@ public class JsonRpcClientNettyWebSocket extends AbstractJsonRpcClientWebSocket
         port = uri.getPort();
       }
 
-      if (group == null || group.isShuttingDown() || group.isShutdown() || group.isTerminated()) {
-        log.info("{} Creating new native event loop", label);
-        group = new MultiThreadIoEventLoopGroup(0, (Executor) null,
-            NioIoHandler.newFactory(SelectorProvider.provider(), DefaultSelectStrategyFactory.INSTANCE));
-      }
+      EventLoopGroup currentGroup = obtainGroup();
 
       if (channel != null) {
         log.info("{} Closing previously existing channel when connecting native client", label);
@@ -293,7 +516,7 @@ public class JsonRpcClientNettyWebSocket extends AbstractJsonRpcClientWebSocket
       }
 
       Bootstrap b = new Bootstrap();
-      b.group(group).channel(NioSocketChannel.class)
+      b.group(currentGroup).channel(NioSocketChannel.class)
           .handler(new ChannelInitializer<SocketChannel>() {
             @Override
             protected void initChannel(SocketChannel ch) {
@@ -307,11 +530,31 @@ public class JsonRpcClientNettyWebSocket extends AbstractJsonRpcClientWebSocket
               if (sslCtx != null) {
                 p.addLast(sslCtx.newHandler(ch.alloc(), host, port));
               }
-              p.addLast(new HttpClientCodec(), new HttpObjectAggregator(8192),
-                  new WebSocketClientCompressionHandler(0), handler);
+              p.addLast(new HttpClientCodec(), new HttpObjectAggregator(8192));
+
+              ChannelHandler compressionHandler = compression.newExtensionHandler(0);
+              if (compressionHandler != null) {
+                // The compression codecs are added after the extension handler when the
+                // handshake finishes, so they are placed between both sides of the probe
+                CompressionStats.Probe probe = compressionStats.newProbe();
+                p.addLast(probe.getWireSide(), compressionHandler, probe.getApplicationSide());
+              }
+              p.addLast(handler);
             }
           }).option(ChannelOption.CONNECT_TIMEOUT_MILLIS, this.connectionTimeout);
 
+      final boolean useOutboundQueue = asyncSend;
+      // Half of the budget for the write buffer of the channel and the rest for the queue
+      final int channelLowWatermark = writeLowWatermark / 2;
+      final int channelHighWatermark = writeHighWatermark / 2;
+      final int queueLowWatermark = writeLowWatermark - channelLowWatermark;
+      final int queueHighWatermark = writeHighWatermark - channelHighWatermark;
+      if (useOutboundQueue) {
+        b.option(ChannelOption.WRITE_BUFFER_WATER_MARK,
+            new WriteBufferWaterMark(channelLowWatermark, channelHighWatermark));
+      }
+      outboundQueue = null;
+
       int numRetries = 0;
       final int maxRetries = 5;
       while (channel == null || !channel.isOpen()) {
@@ -335,6 +578,22 @@ public class JsonRpcClientNettyWebSocket extends AbstractJsonRpcClientWebSocket
 
       }
 
+      if (useOutboundQueue) {
+        outboundQueue = new OutboundQueue(channel, queueLowWatermark, queueHighWatermark,
+            new OutboundQueue.SendListener() {
+              @Override
+              public void sent(int bytes) {
+                recordBytesSent(bytes);
+              }
+
+              @Override
+              public void sendFailed(List<Message> messages, Throwable cause) {
+                log.warn("{} Exception sending {} messages", label, messages.size(), cause);
+                failRequests(messages, cause);
+              }
+            });
+      }
+
       channel.closeFuture().addListener(new ChannelFutureListener() {
         @Override
         public void operationComplete(ChannelFuture future) throws Exception {
@@ -367,15 +626,50 @@ public class JsonRpcClientNettyWebSocket extends AbstractJsonRpcClientWebSocket
   public void closeNativeClient() {
     closeChannel();
 
-    if (group != null) {
-      group.shutdownGracefully();
-    } else {
+    if (group == null) {
       log.warn("{} Trying to close a JsonRpcClientNettyWebSocket with group == null", label);
     }
-    group = null;
+    releaseGroup();
     handler = null;
   }
 
+  private EventLoopGroup obtainGroup() {
+    synchronized (groupLock) {
+      if (group == null || group.isShuttingDown() || group.isShutdown() || group.isTerminated()) {
+        releaseGroup();
+        if (transportResources != null) {
+          log.info("{} Using shared native event loop", label);
+          group = transportResources.retain();
+          groupRetained = true;
+        } else {
+          log.info("{} Creating new native event loop", label);
+          group = new MultiThreadIoEventLoopGroup(0, (Executor) null,
+              NioIoHandler.newFactory(SelectorProvider.provider(), DefaultSelectStrategyFactory.INSTANCE));
+        }
+      }
+      return group;
+    }
+  }
+
+  private void releaseGroup() {
+    synchronized (groupLock) {
+      EventLoopGroup oldGroup = group;
+      group = null;
+      if (oldGroup == null) {
+        return;
+      }
+      if (transportResources != null) {
+        // Only the reference this client still holds is released, once
+        if (groupRetained) {
+          groupRetained = false;
+          transportResources.release(oldGroup);
+        }
+      } else {
+        oldGroup.shutdownGracefully();
+      }
+    }
+  }
+
   private Future<Void> closeChannel() {
     if (channel != null) {
       log.debug("{} Closing client", label);
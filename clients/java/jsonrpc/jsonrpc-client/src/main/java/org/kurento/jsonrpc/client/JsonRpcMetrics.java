@@ -0,0 +1,67 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.client;
+
+import org.kurento.jsonrpc.message.Request;
+
+/**
+ * Receives the measures taken by a client: request latencies and outcomes, bytes transferred and
+ * reconnections. Implementations are called from the threads sending requests and receiving
+ * messages, so they must be thread safe and must not block.
+ *
+ * Clients don't measure anything until an implementation is set with
+ * {@link JsonRpcClient#setMetrics(JsonRpcMetrics)}. {@link DefaultJsonRpcMetrics} keeps latency
+ * histograms and counters in memory.
+ */
+public interface JsonRpcMetrics {
+
+  enum Outcome {
+    /** A response with a result has been received */
+    SUCCESS,
+    /** A response with an error has been received, or the request couldn't be sent */
+    ERROR,
+    /** No response has been received before the request timeout */
+    TIMEOUT
+  }
+
+  /**
+   * A request that expects a response has been sent.
+   */
+  void requestSent(Request<?> request);
+
+  /**
+   * A request sent has finished.
+   *
+   * @param latencyNanos
+   *          time since the request was sent, in nanoseconds
+   */
+  void requestCompleted(Request<?> request, long latencyNanos, Outcome outcome);
+
+  void bytesSent(long bytes);
+
+  void bytesReceived(long bytes);
+
+  /**
+   * The client has reconnected after losing the connection.
+   *
+   * @param sameSession
+   *          true if the session has been kept by the server
+   */
+  void reconnected(boolean sameSession);
+
+}
@@ -0,0 +1,158 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.client;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.kurento.jsonrpc.internal.client.LatencyHistogram;
+
+/**
+ * Copy of the measures taken by a {@link DefaultJsonRpcMetrics} at a given moment. Latencies are
+ * in microseconds.
+ */
+public class JsonRpcMetricsSnapshot {
+
+  /**
+   * Measures of the requests of one operation.
+   */
+  public static class OperationStats {
+
+    private final String name;
+    private final long count;
+    private final long errors;
+    private final long timeouts;
+    private final long totalMicros;
+    private final long maxMicros;
+    private final long[] latencyCounts;
+
+    OperationStats(String name, long count, long errors, long timeouts, long totalMicros,
+        long maxMicros, long[] latencyCounts) {
+      this.name = name;
+      this.count = count;
+      this.errors = errors;
+      this.timeouts = timeouts;
+      this.totalMicros = totalMicros;
+      this.maxMicros = maxMicros;
+      this.latencyCounts = latencyCounts;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Returns the number of requests finished, including errors and timeouts.
+     */
+    public long getCount() {
+      return count;
+    }
+
+    public long getErrors() {
+      return errors;
+    }
+
+    public long getTimeouts() {
+      return timeouts;
+    }
+
+    public long getMeanMicros() {
+      return count == 0 ? 0 : totalMicros / count;
+    }
+
+    public long getMaxMicros() {
+      return maxMicros;
+    }
+
+    /**
+     * @param percentile
+     *          percentile between 0 and 100
+     * @return the latency under which the given percentage of the requests finished
+     */
+    public long getPercentileMicros(double percentile) {
+      return Math.min(LatencyHistogram.valueAtPercentile(latencyCounts, percentile), maxMicros);
+    }
+
+    @Override
+    public String toString() {
+      return name + " [count=" + count + ", errors=" + errors + ", timeouts=" + timeouts
+          + ", mean=" + getMeanMicros() + "us, p50=" + getPercentileMicros(50) + "us, p99="
+          + getPercentileMicros(99) + "us, max=" + maxMicros + "us]";
+    }
+  }
+
+  private final Map<String, OperationStats> operations;
+  private final long inFlightRequests;
+  private final long bytesSent;
+  private final long bytesReceived;
+  private final long reconnectionsSameSession;
+  private final long reconnectionsNewSession;
+
+  JsonRpcMetricsSnapshot(Map<String, OperationStats> operations, long inFlightRequests,
+      long bytesSent, long bytesReceived, long reconnectionsSameSession,
+      long reconnectionsNewSession) {
+    this.operations = Collections.unmodifiableMap(operations);
+    this.inFlightRequests = inFlightRequests;
+    this.bytesSent = bytesSent;
+    this.bytesReceived = bytesReceived;
+    this.reconnectionsSameSession = reconnectionsSameSession;
+    this.reconnectionsNewSession = reconnectionsNewSession;
+  }
+
+  /**
+   * Returns the measures of each operation, sorted by name.
+   */
+  public Map<String, OperationStats> getOperations() {
+    return operations;
+  }
+
+  /**
+   * Returns the measures of an operation, or null if no request of the operation has finished.
+   */
+  public OperationStats getOperation(String name) {
+    return operations.get(name);
+  }
+
+  public long getInFlightRequests() {
+    return inFlightRequests;
+  }
+
+  public long getBytesSent() {
+    return bytesSent;
+  }
+
+  public long getBytesReceived() {
+    return bytesReceived;
+  }
+
+  public long getReconnectionsSameSession() {
+    return reconnectionsSameSession;
+  }
+
+  public long getReconnectionsNewSession() {
+    return reconnectionsNewSession;
+  }
+
+  @Override
+  public String toString() {
+    return "JsonRpcMetricsSnapshot [inFlight=" + inFlightRequests + ", bytesSent=" + bytesSent
+        + ", bytesReceived=" + bytesReceived + ", reconnections=" + reconnectionsSameSession
+        + "/" + reconnectionsNewSession + ", operations=" + operations.values() + "]";
+  }
+
+}
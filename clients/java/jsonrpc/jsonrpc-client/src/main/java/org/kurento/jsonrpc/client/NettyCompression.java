@@ -0,0 +1,199 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.client;
+
+import org.kurento.commons.PropertiesManager;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketClientExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilterProvider;
+import io.netty.handler.codec.http.websocketx.extensions.compression.DeflateFrameClientExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateClientExtensionHandshaker;
+
+/**
+ * Compression policy of the frames sent by a {@link JsonRpcClientNettyWebSocket}.
+ *
+ * <ul>
+ * <li>{@link Mode#OFF}: compression is not negotiated with the server.</li>
+ * <li>{@link Mode#ALWAYS}: every frame is compressed (default).</li>
+ * <li>{@link Mode#ADAPTIVE}: only frames of at least {@link #getThreshold()} bytes are
+ * compressed. Small frames (pings, ICE candidates, most invocations) are sent as they are, as
+ * deflating them costs CPU and saves almost nothing.</li>
+ * </ul>
+ *
+ * Frames received are decompressed whenever the server compresses them. Defaults can be changed
+ * with the properties {@code jsonRpcClientWebSocket.netty.compression},
+ * {@code jsonRpcClientWebSocket.netty.compressionThreshold} (1024 bytes),
+ * {@code jsonRpcClientWebSocket.netty.compressionLevel} (6),
+ * {@code jsonRpcClientWebSocket.netty.compressionServerWindowBits} (15) and
+ * {@code jsonRpcClientWebSocket.netty.compressionNoContextTakeover} (false).
+ *
+ * @since 7.3.1
+ */
+public class NettyCompression {
+
+  public enum Mode {
+    OFF, ALWAYS, ADAPTIVE
+  }
+
+  private static final Mode DEFAULT_MODE =
+      PropertiesManager.getProperty("jsonRpcClientWebSocket.netty.compression", Mode.ALWAYS);
+
+  private static final int DEFAULT_THRESHOLD =
+      PropertiesManager.getProperty("jsonRpcClientWebSocket.netty.compressionThreshold", 1024);
+
+  private static final int DEFAULT_LEVEL =
+      PropertiesManager.getProperty("jsonRpcClientWebSocket.netty.compressionLevel", 6);
+
+  private static final int DEFAULT_SERVER_WINDOW_BITS = PropertiesManager
+      .getProperty("jsonRpcClientWebSocket.netty.compressionServerWindowBits", 15);
+
+  private static final boolean DEFAULT_NO_CONTEXT_TAKEOVER = PropertiesManager
+      .getProperty("jsonRpcClientWebSocket.netty.compressionNoContextTakeover", false);
+
+  private Mode mode = DEFAULT_MODE;
+  private int threshold = DEFAULT_THRESHOLD;
+  private int level = DEFAULT_LEVEL;
+  private int serverWindowBits = DEFAULT_SERVER_WINDOW_BITS;
+  private boolean noContextTakeover = DEFAULT_NO_CONTEXT_TAKEOVER;
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  public NettyCompression setMode(Mode mode) {
+    this.mode = mode;
+    return this;
+  }
+
+  public int getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * Sets the minimum size in bytes of the frames compressed in {@link Mode#ADAPTIVE} mode.
+   */
+  public NettyCompression setThreshold(int threshold) {
+    this.threshold = threshold;
+    return this;
+  }
+
+  public int getLevel() {
+    return level;
+  }
+
+  /**
+   * Sets the deflate compression level, from 0 (no compression) to 9 (best compression).
+   */
+  public NettyCompression setLevel(int level) {
+    if (level < 0 || level > 9) {
+      throw new IllegalArgumentException("Invalid compression level: " + level);
+    }
+    this.level = level;
+    return this;
+  }
+
+  public int getServerWindowBits() {
+    return serverWindowBits;
+  }
+
+  /**
+   * Sets the size of the window (as a power of two, from 8 to 15) requested to the server to
+   * compress its messages. Smaller windows use less memory in both sides, and compress less.
+   */
+  public NettyCompression setServerWindowBits(int serverWindowBits) {
+    if (serverWindowBits < 8 || serverWindowBits > 15) {
+      throw new IllegalArgumentException("Invalid window bits: " + serverWindowBits);
+    }
+    this.serverWindowBits = serverWindowBits;
+    return this;
+  }
+
+  public boolean isNoContextTakeover() {
+    return noContextTakeover;
+  }
+
+  /**
+   * Configures if the compression context is reset after each message, in both directions. Without
+   * context takeover, messages compress less, but the memory used by the deflater is released
+   * between messages.
+   */
+  public NettyCompression setNoContextTakeover(boolean noContextTakeover) {
+    this.noContextTakeover = noContextTakeover;
+    return this;
+  }
+
+  /**
+   * Creates the handler that negotiates compression with the server, or returns null if
+   * compression is off.
+   */
+  ChannelHandler newExtensionHandler(int maxAllocation) {
+
+    if (mode == Mode.OFF) {
+      return null;
+    }
+
+    WebSocketExtensionFilterProvider filterProvider = newFilterProvider();
+
+    return new WebSocketClientExtensionHandler(
+        new PerMessageDeflateClientExtensionHandshaker(level, false, serverWindowBits,
+            noContextTakeover, noContextTakeover, filterProvider, maxAllocation),
+        new DeflateFrameClientExtensionHandshaker(level, false, filterProvider, maxAllocation),
+        new DeflateFrameClientExtensionHandshaker(level, true, filterProvider, maxAllocation));
+  }
+
+  /**
+   * Creates the filter that decides which frames are compressed.
+   */
+  public WebSocketExtensionFilterProvider newFilterProvider() {
+
+    if (mode != Mode.ADAPTIVE) {
+      return WebSocketExtensionFilterProvider.DEFAULT;
+    }
+
+    final int minSize = threshold;
+    final WebSocketExtensionFilter smallFrames = new WebSocketExtensionFilter() {
+      @Override
+      public boolean mustSkip(WebSocketFrame frame) {
+        return frame.content().readableBytes() < minSize;
+      }
+    };
+
+    return new WebSocketExtensionFilterProvider() {
+      @Override
+      public WebSocketExtensionFilter encoderFilter() {
+        return smallFrames;
+      }
+
+      @Override
+      public WebSocketExtensionFilter decoderFilter() {
+        return WebSocketExtensionFilter.NEVER_SKIP;
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return "NettyCompression [mode=" + mode + ", threshold=" + threshold + ", level=" + level
+        + ", serverWindowBits=" + serverWindowBits + ", noContextTakeover=" + noContextTakeover
+        + "]";
+  }
+
+}
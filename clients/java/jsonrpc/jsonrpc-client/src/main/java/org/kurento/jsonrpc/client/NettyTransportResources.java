@@ -0,0 +1,168 @@
+/*
+ * (C) Copyright 2026 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.client;
+
+import java.nio.channels.spi.SelectorProvider;
+import java.util.concurrent.Executor;
+
+import org.kurento.commons.PropertiesManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.channel.DefaultSelectStrategyFactory;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultiThreadIoEventLoopGroup;
+import io.netty.channel.nio.NioIoHandler;
+
+/**
+ * Netty resources that can be shared by several {@link JsonRpcClientNettyWebSocket} instances.
+ *
+ * By default, each client creates its own event loop group, with as many threads as twice the
+ * number of cores. When a lot of clients are created in the same JVM (e.g. one client per media
+ * server and tenant), a single instance of this class can be passed to all of them so they share
+ * the same event loop group.
+ *
+ * The event loop group is reference counted: it is created when the first client connects and it
+ * is shut down when the last client using it is closed. If another client connects afterwards, a
+ * new event loop group is created.
+ *
+ * @since 7.3.1
+ */
+public class NettyTransportResources {
+
+  private static final Logger log = LoggerFactory.getLogger(NettyTransportResources.class);
+
+  private static final int DEFAULT_NUM_THREADS =
+      PropertiesManager.getProperty("jsonRpcClientWebSocket.netty.sharedThreads", 0);
+
+  private static volatile NettyTransportResources defaultInstance;
+
+  private final int numThreads;
+
+  private EventLoopGroup group;
+  private int refCount;
+
+  /**
+   * Creates shared resources with the default number of event loop threads. This number can be
+   * configured with the property {@code jsonRpcClientWebSocket.netty.sharedThreads}. If it is 0,
+   * Netty defaults are used (twice the number of cores).
+   */
+  public NettyTransportResources() {
+    this(DEFAULT_NUM_THREADS);
+  }
+
+  /**
+   * Creates shared resources with the given number of event loop threads.
+   *
+   * @param numThreads
+   *          Number of threads of the event loop group. If 0, Netty defaults are used.
+   */
+  public NettyTransportResources(int numThreads) {
+    if (numThreads < 0) {
+      throw new IllegalArgumentException("Number of threads can't be negative: " + numThreads);
+    }
+    this.numThreads = numThreads;
+  }
+
+  /**
+   * Returns a process-wide instance that can be used when there is no need to manage the
+   * resources explicitly.
+   *
+   * @return the shared instance
+   */
+  public static NettyTransportResources getDefault() {
+    if (defaultInstance == null) {
+      synchronized (NettyTransportResources.class) {
+        if (defaultInstance == null) {
+          defaultInstance = new NettyTransportResources();
+        }
+      }
+    }
+    return defaultInstance;
+  }
+
+  /**
+   * Obtains the shared event loop group, creating it if necessary, and increments its reference
+   * count. Every call to this method must be paired with a call to {@link #release()}.
+   *
+   * @return the shared event loop group
+   */
+  public synchronized EventLoopGroup retain() {
+    if (group == null || group.isShuttingDown() || group.isShutdown()) {
+      log.debug("Creating shared native event loop with {} threads", numThreads);
+      group = new MultiThreadIoEventLoopGroup(numThreads, (Executor) null,
+          NioIoHandler.newFactory(SelectorProvider.provider(),
+              DefaultSelectStrategyFactory.INSTANCE));
+      refCount = 0;
+    }
+    refCount++;
+    return group;
+  }
+
+  /**
+   * Decrements the reference count of the shared event loop group. When it reaches zero, the
+   * group is shut down gracefully.
+   */
+  public synchronized void release() {
+    if (refCount == 0) {
+      log.warn("Releasing shared native event loop more times than it has been retained");
+      return;
+    }
+    refCount--;
+    if (refCount == 0 && group != null) {
+      log.debug("Shutting down shared native event loop: no more clients are using it");
+      group.shutdownGracefully();
+      group = null;
+    }
+  }
+
+  /**
+   * Releases a group obtained from {@link #retain()}. Nothing is released if the group has been
+   * shut down and replaced since it was retained, as its references were dropped with it.
+   *
+   * @param retained
+   *          the group returned by {@link #retain()}
+   */
+  public synchronized void release(EventLoopGroup retained) {
+    if (retained != group) {
+      log.debug("Ignoring release of a shared native event loop that has been replaced");
+      return;
+    }
+    release();
+  }
+
+  /**
+   * Returns the number of clients currently using the shared event loop group.
+   *
+   * @return the reference count
+   */
+  public synchronized int getRefCount() {
+    return refCount;
+  }
+
+  public int getNumThreads() {
+    return numThreads;
+  }
+
+  @Override
+  public String toString() {
+    return "NettyTransportResources [numThreads=" + numThreads + ", refCount=" + getRefCount()
+        + "]";
+  }
+
+}
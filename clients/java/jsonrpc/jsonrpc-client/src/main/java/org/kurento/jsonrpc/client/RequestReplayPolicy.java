@@ -0,0 +1,36 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.client;
+
+import org.kurento.jsonrpc.message.Request;
+
+/**
+ * Decides which requests can be sent again after a transparent reconnection to the same server.
+ * A request already sent when the connection was lost may have been executed by the server, so
+ * only requests that can be executed twice without side effects should be replayed.
+ */
+public interface RequestReplayPolicy {
+
+  /**
+   * @param request
+   *          request sent to the server whose response has not been received
+   * @return true if the request can be sent again
+   */
+  boolean isIdempotent(Request<?> request);
+
+}
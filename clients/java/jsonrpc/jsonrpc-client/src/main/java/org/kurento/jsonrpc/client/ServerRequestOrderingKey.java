@@ -0,0 +1,38 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.client;
+
+import org.kurento.jsonrpc.message.Request;
+
+import com.google.gson.JsonElement;
+
+/**
+ * Obtains the key used to order the requests received from the server. Requests with the same key
+ * are handled one after the other, in the order they were received. Requests with different keys
+ * are handled in parallel.
+ */
+public interface ServerRequestOrderingKey {
+
+  /**
+   * @param request
+   *          request received from the server
+   * @return the ordering key of the request, or null if it can be handled in any order
+   */
+  Object getKey(Request<JsonElement> request);
+
+}
@@ -0,0 +1,234 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.client;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.message.Message;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.message.Response;
+
+/**
+ * Keeps the last messages exchanged with the server in a ring buffer, to be dumped on demand (for
+ * instance, after an incident).
+ *
+ * Messages are only serialised when the tracer is enabled and the message is sampled. Requests
+ * are sampled with the rate of their method (or the default rate), and responses are traced when
+ * their request was. A tracer can be shared by several connections with different labels. Payloads longer than the configured maximum are truncated.
+ *
+ * By default, the tracer is disabled. It can be configured with the properties
+ * {@code jsonRpcClient.wireTrace.enabled}, {@code jsonRpcClient.wireTrace.sampleRate} (1.0),
+ * {@code jsonRpcClient.wireTrace.maxPayload} (1024 chars) and
+ * {@code jsonRpcClient.wireTrace.bufferSize} (1000 messages).
+ */
+public class WireTracer {
+
+  private static final boolean DEFAULT_ENABLED =
+      PropertiesManager.getProperty("jsonRpcClient.wireTrace.enabled", false);
+
+  private static final double DEFAULT_SAMPLE_RATE =
+      PropertiesManager.getProperty("jsonRpcClient.wireTrace.sampleRate", 1.0);
+
+  private static final int DEFAULT_MAX_PAYLOAD =
+      PropertiesManager.getProperty("jsonRpcClient.wireTrace.maxPayload", 1024);
+
+  private static final int DEFAULT_BUFFER_SIZE =
+      PropertiesManager.getProperty("jsonRpcClient.wireTrace.bufferSize", 1000);
+
+  private static class Entry {
+
+    private final long seq;
+    private final long timestamp;
+    private final String direction;
+    private final String label;
+    private final String payload;
+
+    Entry(long seq, String direction, String label, String payload) {
+      this.seq = seq;
+      this.timestamp = System.currentTimeMillis();
+      this.direction = direction;
+      this.label = label;
+      this.payload = payload;
+    }
+  }
+
+  private final AtomicReferenceArray<Entry> entries;
+  private final AtomicLong nextSeq = new AtomicLong();
+
+  private final Map<String, Double> methodSampleRates = new ConcurrentHashMap<>();
+  // Keyed by label and id, as connections sharing a tracer use the same ids
+  private final Set<String> sampledRequests = ConcurrentHashMap.newKeySet();
+
+  private volatile boolean enabled = DEFAULT_ENABLED;
+  private volatile double defaultSampleRate = DEFAULT_SAMPLE_RATE;
+  private volatile int maxPayload = DEFAULT_MAX_PAYLOAD;
+
+  public WireTracer() {
+    this(DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * @param bufferSize
+   *          number of messages kept
+   */
+  public WireTracer(int bufferSize) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Invalid wire trace buffer size: " + bufferSize);
+    }
+    this.entries = new AtomicReferenceArray<>(bufferSize);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+    if (!enabled) {
+      sampledRequests.clear();
+    }
+  }
+
+  /**
+   * Sets the fraction (between 0 and 1) of the requests traced for methods without their own
+   * rate.
+   */
+  public void setSampleRate(double sampleRate) {
+    this.defaultSampleRate = sampleRate;
+  }
+
+  /**
+   * Sets the fraction (between 0 and 1) of the requests of a method that are traced.
+   */
+  public void setSampleRate(String method, double sampleRate) {
+    methodSampleRates.put(method, sampleRate);
+  }
+
+  /**
+   * Sets the maximum number of characters kept of each message.
+   */
+  public void setMaxPayload(int maxPayload) {
+    this.maxPayload = maxPayload;
+  }
+
+  public void traceSent(String label, Message message) {
+    if (enabled) {
+      trace("->", label, message);
+    }
+  }
+
+  public void traceReceived(String label, Message message) {
+    if (enabled) {
+      trace("<-", label, message);
+    }
+  }
+
+  /**
+   * Returns the messages kept, oldest first.
+   */
+  public List<String> dump() {
+
+    long last = nextSeq.get();
+    long first = Math.max(0, last - entries.length());
+    SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+    List<String> lines = new ArrayList<>();
+    for (long seq = first; seq < last; seq++) {
+      Entry entry = entries.get(index(seq));
+      // Skipped if it has been overwritten by a newer message, or it is still being written
+      if (entry != null && entry.seq == seq) {
+        lines.add(format.format(new Date(entry.timestamp)) + " " + entry.label + " "
+            + entry.direction + " " + entry.payload);
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * Writes the messages kept, oldest first, one per line.
+   */
+  public void dump(Appendable out) throws IOException {
+    for (String line : dump()) {
+      out.append(line).append('\n');
+    }
+  }
+
+  private void trace(String direction, String label, Message message) {
+
+    if (!isSampled(label, message)) {
+      return;
+    }
+
+    String payload = message.toString().trim();
+    int max = maxPayload;
+    if (payload.length() > max) {
+      payload = payload.substring(0, max) + "...(" + payload.length() + " chars)";
+    }
+
+    long seq = nextSeq.getAndIncrement();
+    entries.set(index(seq), new Entry(seq, direction, label, payload));
+  }
+
+  private boolean isSampled(String label, Message message) {
+
+    if (message instanceof Response) {
+      Response<?> response = (Response<?>) message;
+      return response.hasId() && sampledRequests.remove(requestKey(label, response.getIntId()));
+    }
+
+    if (!(message instanceof Request)) {
+      return false;
+    }
+
+    Request<?> request = (Request<?>) message;
+    Double methodRate = methodSampleRates.get(request.getMethod());
+    double rate = methodRate != null ? methodRate : defaultSampleRate;
+    if (rate <= 0 || rate < 1 && ThreadLocalRandom.current().nextDouble() >= rate) {
+      return false;
+    }
+
+    if (request.hasId()) {
+      // Ids of requests never answered are forgotten to keep the set bounded
+      if (sampledRequests.size() >= entries.length()) {
+        sampledRequests.clear();
+      }
+      sampledRequests.add(requestKey(label, request.getIntId()));
+    }
+    return true;
+  }
+
+  private static String requestKey(String label, int id) {
+    return label + '#' + id;
+  }
+
+  private int index(long seq) {
+    return (int) (seq % entries.length());
+  }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.internal;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.kurento.commons.PropertiesManager;
+import org.kurento.commons.ThreadFactoryCreator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Creates the executors used to run continuations, handlers of requests and session tasks.
+ *
+ * With the property {@code jsonRpc.executor=virtual}, those executors use JDK virtual threads, so
+ * handlers blocked waiting for a response don't hold platform threads. Each executor keeps the
+ * same ordering guarantees it has with platform threads. If virtual threads are not available in
+ * the running JVM, platform threads are used.
+ */
+public class JsonRpcExecutors {
+
+  public enum Mode {
+    PLATFORM, VIRTUAL
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(JsonRpcExecutors.class);
+
+  private static final Mode MODE = initMode();
+
+  private JsonRpcExecutors() {
+  }
+
+  /**
+   * Returns the mode configured with the property {@code jsonRpc.executor}.
+   */
+  public static Mode getMode() {
+    return MODE;
+  }
+
+  /**
+   * Returns whether the running JVM supports virtual threads.
+   */
+  public static boolean isVirtualThreadsSupported() {
+    try {
+      Thread.class.getMethod("ofVirtual");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Creates an executor that runs each task as soon as possible, without ordering guarantees.
+   */
+  public static ExecutorService newTaskExecutor(String name) {
+    return newTaskExecutor(name, MODE);
+  }
+
+  public static ExecutorService newTaskExecutor(String name, Mode mode) {
+    if (mode == Mode.VIRTUAL) {
+      try {
+        return (ExecutorService) Executors.class
+            .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+            .invoke(null, newVirtualThreadFactory(name));
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("Virtual threads are not supported in this JVM", e);
+      }
+    }
+    return Executors.newCachedThreadPool(ThreadFactoryCreator.create(name));
+  }
+
+  /**
+   * Creates an executor that runs tasks one after the other, in the order they were submitted.
+   */
+  public static ExecutorService newSerialExecutor(String name) {
+    return newSerialExecutor(name, MODE);
+  }
+
+  public static ExecutorService newSerialExecutor(String name, Mode mode) {
+    if (mode == Mode.VIRTUAL) {
+      return Executors.newSingleThreadExecutor(newVirtualThreadFactory(name));
+    }
+    return Executors.newSingleThreadExecutor(ThreadFactoryCreator.create(name));
+  }
+
+  /**
+   * Creates a factory of threads of the given mode, named after the given prefix. Platform threads
+   * are daemon threads.
+   */
+  public static ThreadFactory newThreadFactory(String name, Mode mode) {
+    if (mode == Mode.VIRTUAL) {
+      return newVirtualThreadFactory(name);
+    }
+    return new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build();
+  }
+
+  private static Mode initMode() {
+
+    String value = PropertiesManager.getProperty("jsonRpc.executor", "platform");
+
+    if ("virtual".equalsIgnoreCase(value)) {
+      if (isVirtualThreadsSupported()) {
+        log.info("JSON-RPC tasks will be executed in virtual threads");
+        return Mode.VIRTUAL;
+      }
+      log.warn("Virtual threads are not supported in Java {}. Using platform threads",
+          System.getProperty("java.version"));
+    } else if (!"platform".equalsIgnoreCase(value)) {
+      log.warn("Unknown value '{}' for property jsonRpc.executor. Using platform threads", value);
+    }
+
+    return Mode.PLATFORM;
+  }
+
+  // Virtual threads are created by reflection because the code is compiled for Java 17
+  private static ThreadFactory newVirtualThreadFactory(String name) {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+      Method nameMethod = builderClass.getMethod("name", String.class, long.class);
+      builder = nameMethod.invoke(builder, name + "-", 0L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Virtual threads are not supported in this JVM", e);
+    }
+  }
+
+}
@@ -20,7 +20,10 @@ package org.kurento.jsonrpc.internal;
 import static org.kurento.jsonrpc.JsonUtils.INJECT_SESSION_ID;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 import org.kurento.jsonrpc.JsonRpcErrorException;
 import org.kurento.jsonrpc.client.Continuation;
@@ -102,21 +105,31 @@ public abstract class JsonRpcRequestSenderHelper implements JsonRpcRequestSender
   @Override
   public void sendRequest(String method, JsonObject params,
       final Continuation<JsonElement> continuation) {
+    notifyWhenComplete(sendRequestAsync(method, params), continuation);
+  }
+
+  /**
+   * Sends a request without blocking. The returned future completes with the result of the
+   * response, or exceptionally with a {@link JsonRpcErrorException} if the response is an error.
+   */
+  public CompletableFuture<JsonElement> sendRequestAsync(String method, JsonObject params) {
 
-    Request<Object> request =
-        new Request<Object>(Integer.valueOf(id.incrementAndGet()), method, params);
+    Request<Object> request = new Request<Object>(method, params);
+    request.setId(id.incrementAndGet());
 
     if (INJECT_SESSION_ID) {
       request.setSessionId(sessionId);
     }
 
+    final CompletableFuture<JsonElement> future = new CompletableFuture<>();
+
     internalSendRequest(request, JsonElement.class, new Continuation<Response<JsonElement>>() {
 
       @Override
       public void onSuccess(Response<JsonElement> response) {
 
         if (response == null) {
-          continuation.onSuccess(null);
+          future.complete(null);
           return;
         }
 
@@ -125,18 +138,19 @@ public abstract class JsonRpcRequestSenderHelper implements JsonRpcRequestSender
         }
 
         if (response.getError() != null) {
-          continuation.onError(new JsonRpcErrorException(response.getError()));
+          future.completeExceptionally(new JsonRpcErrorException(response.getError()));
         } else {
-          continuation.onSuccess(response.getResult());
+          future.complete(response.getResult());
         }
       }
 
       @Override
       public void onError(Throwable cause) {
-        continuation.onError(cause);
+        future.completeExceptionally(cause);
       }
     });
 
+    return future;
   }
 
   @Override
@@ -171,17 +185,41 @@ public abstract class JsonRpcRequestSenderHelper implements JsonRpcRequestSender
   }
 
   private void setIdIfNecessary(Request<? extends Object> request) {
-    if (request.getId() == null) {
-      request.setId(Integer.valueOf(id.incrementAndGet()));
+    if (!request.hasId()) {
+      request.setId(id.incrementAndGet());
     }
   }
 
   @Override
   public void sendRequest(Request<JsonObject> request,
       Continuation<Response<JsonElement>> continuation) {
+    notifyWhenComplete(sendRequestAsync(request), continuation);
+  }
+
+  /**
+   * Sends a request without blocking. The returned future completes with the response, even if it
+   * is an error response.
+   */
+  public CompletableFuture<Response<JsonElement>> sendRequestAsync(Request<JsonObject> request) {
 
     setIdIfNecessary(request);
-    internalSendRequest(request, JsonElement.class, continuation);
+
+    final CompletableFuture<Response<JsonElement>> future = new CompletableFuture<>();
+
+    internalSendRequest(request, JsonElement.class, new Continuation<Response<JsonElement>>() {
+
+      @Override
+      public void onSuccess(Response<JsonElement> response) {
+        future.complete(response);
+      }
+
+      @Override
+      public void onError(Throwable cause) {
+        future.completeExceptionally(cause);
+      }
+    });
+
+    return future;
   }
 
   @Override
@@ -195,6 +233,32 @@ public abstract class JsonRpcRequestSenderHelper implements JsonRpcRequestSender
     internalSendRequest(request, JsonElement.class, continuation);
   }
 
+  /**
+   * Notifies the outcome of the future to the continuation. As with the continuations used
+   * internally, if {@code onSuccess} throws an exception, {@code onError} is called with it.
+   */
+  private static <T> void notifyWhenComplete(CompletableFuture<T> future,
+      final Continuation<T> continuation) {
+
+    future.whenComplete(new BiConsumer<T, Throwable>() {
+      @Override
+      public void accept(T result, Throwable cause) {
+        if (cause == null) {
+          try {
+            continuation.onSuccess(result);
+            return;
+          } catch (Exception e) {
+            cause = e;
+          }
+        }
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+          cause = cause.getCause();
+        }
+        continuation.onError(cause);
+      }
+    });
+  }
+
   protected abstract <P, R> Response<R> internalSendRequest(Request<P> request,
       Class<R> resultClass) throws IOException;
 
@@ -0,0 +1,255 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.internal.client;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.kurento.commons.PropertiesManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.TimerTask;
+
+/**
+ * Process-wide scheduler for the housekeeping tasks of JSON-RPC clients: heartbeats,
+ * reconnections, connection events and continuations of asynchronous requests.
+ *
+ * Deadlines of all clients are kept in a single hashed wheel timer, and expired tasks are executed
+ * in a small pool of worker threads, so the number of threads doesn't depend on the number of
+ * clients. Tasks shouldn't block for long, as they share the workers with the tasks of other
+ * clients. Tasks that may block, like reconnections or user listeners, are scheduled with
+ * {@link #scheduleBlocking(Runnable, long, TimeUnit)} or {@link #executeBlocking(Runnable)} and
+ * executed in a separate pool, also of fixed size, whose tasks wait in a bounded queue when all of
+ * its threads are busy.
+ */
+public class ClientScheduler {
+
+  private static final Logger log = LoggerFactory.getLogger(ClientScheduler.class);
+
+  private static final long TICK_MILLIS =
+      PropertiesManager.getProperty("jsonRpcClient.scheduler.tick", 20);
+
+  private static final int NUM_WORKERS =
+      PropertiesManager.getProperty("jsonRpcClient.scheduler.workers", 4);
+
+  private static final int NUM_BLOCKING_WORKERS =
+      PropertiesManager.getProperty("jsonRpcClient.scheduler.blockingWorkers", 16);
+
+  private static final int BLOCKING_QUEUE_BOUND =
+      PropertiesManager.getProperty("jsonRpcClient.scheduler.blockingQueueBound", 10000);
+
+  private static final long REJECTED_RETRY_MILLIS = 100;
+
+  private static volatile ClientScheduler defaultInstance;
+
+  /**
+   * Task scheduled in the scheduler. Cancelling it prevents future executions.
+   */
+  public static class ScheduledTask {
+
+    private volatile Timeout timeout;
+    private volatile boolean cancelled;
+    private Thread runner;
+
+    /**
+     * Cancels the task without interrupting an execution in progress.
+     */
+    public void cancel() {
+      cancel(false);
+    }
+
+    /**
+     * Cancels the task.
+     *
+     * @param mayInterruptIfRunning
+     *          whether the thread executing the task, if any, should be interrupted
+     */
+    public void cancel(boolean mayInterruptIfRunning) {
+      cancelled = true;
+      Timeout t = timeout;
+      if (t != null) {
+        t.cancel();
+      }
+      if (mayInterruptIfRunning) {
+        synchronized (this) {
+          if (runner != null) {
+            runner.interrupt();
+          }
+        }
+      }
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+  }
+
+  private final HashedWheelTimer timer;
+  private final ExecutorService workers;
+  private final ExecutorService blockingWorkers;
+
+  public ClientScheduler(long tickMillis, int numWorkers) {
+    this(tickMillis, numWorkers, NUM_BLOCKING_WORKERS, BLOCKING_QUEUE_BOUND);
+  }
+
+  public ClientScheduler(long tickMillis, int numWorkers, int numBlockingWorkers,
+      int blockingQueueBound) {
+    this.timer = new HashedWheelTimer(
+        new ThreadFactoryBuilder().setNameFormat("ClientScheduler-timer-%d").setDaemon(true)
+            .build(),
+        tickMillis, TimeUnit.MILLISECONDS);
+    this.workers = new ThreadPoolExecutor(numWorkers, numWorkers, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder()
+            .setNameFormat("ClientScheduler-worker-%d").setDaemon(true).build());
+    ThreadPoolExecutor blockingPool = new ThreadPoolExecutor(numBlockingWorkers,
+        numBlockingWorkers, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(blockingQueueBound), new ThreadFactoryBuilder()
+            .setNameFormat("ClientScheduler-blocking-%d").setDaemon(true).build());
+    blockingPool.allowCoreThreadTimeOut(true);
+    this.blockingWorkers = blockingPool;
+  }
+
+  public static ClientScheduler getDefault() {
+    if (defaultInstance == null) {
+      synchronized (ClientScheduler.class) {
+        if (defaultInstance == null) {
+          defaultInstance = new ClientScheduler(TICK_MILLIS, NUM_WORKERS);
+        }
+      }
+    }
+    return defaultInstance;
+  }
+
+  /**
+   * Executes the task once after the given delay.
+   */
+  public ScheduledTask schedule(Runnable task, long delay, TimeUnit unit) {
+    return schedule(task, delay, unit, workers);
+  }
+
+  /**
+   * Executes once after the given delay a task that may block, like connecting to a server. It
+   * isn't executed in the workers shared by the other tasks, so it doesn't delay them.
+   */
+  public ScheduledTask scheduleBlocking(Runnable task, long delay, TimeUnit unit) {
+    return schedule(task, delay, unit, blockingWorkers);
+  }
+
+  /**
+   * Executes as soon as possible a task that may block, like a listener provided by the user. If
+   * the queue of blocking tasks is full, the task is executed in the calling thread, so it is never
+   * lost.
+   */
+  public void executeBlocking(Runnable task) {
+    try {
+      blockingWorkers.execute(task);
+    } catch (RejectedExecutionException e) {
+      log.debug("Queue of blocking tasks is full. Executing task in the calling thread");
+      task.run();
+    }
+  }
+
+  private ScheduledTask schedule(final Runnable task, long delay, TimeUnit unit,
+      final ExecutorService executor) {
+
+    final ScheduledTask scheduledTask = new ScheduledTask();
+
+    scheduledTask.timeout = timer.newTimeout(new TimerTask() {
+      @Override
+      public void run(Timeout timeout) {
+        execute(scheduledTask, task, executor);
+      }
+    }, delay, unit);
+
+    return scheduledTask;
+  }
+
+  /**
+   * Executes the task periodically. Each execution is scheduled when the previous one has been
+   * submitted, so executions of the same task never overlap if they take less than the period.
+   */
+  public ScheduledTask scheduleAtFixedRate(final Runnable task, long initialDelay,
+      final long period, final TimeUnit unit) {
+
+    final ScheduledTask scheduledTask = new ScheduledTask();
+
+    TimerTask timerTask = new TimerTask() {
+      @Override
+      public void run(Timeout timeout) {
+        if (!scheduledTask.cancelled) {
+          scheduledTask.timeout = timer.newTimeout(this, period, unit);
+          execute(scheduledTask, task, workers);
+        }
+      }
+    };
+
+    scheduledTask.timeout = timer.newTimeout(timerTask, initialDelay, unit);
+
+    return scheduledTask;
+  }
+
+  private void execute(final ScheduledTask scheduledTask, final Runnable task,
+      final ExecutorService executor) {
+    try {
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          synchronized (scheduledTask) {
+            if (scheduledTask.cancelled) {
+              return;
+            }
+            scheduledTask.runner = Thread.currentThread();
+          }
+          try {
+            task.run();
+          } catch (Throwable t) {
+            log.warn("Exception executing scheduled task", t);
+          } finally {
+            synchronized (scheduledTask) {
+              scheduledTask.runner = null;
+            }
+            // An interruption of this task must not affect the next task run by the thread
+            Thread.interrupted();
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      if (executor != blockingWorkers || scheduledTask.cancelled) {
+        log.warn("Scheduled task rejected", e);
+        return;
+      }
+      // The timer thread mustn't block, so the task is tried again later instead of waiting
+      log.debug("Queue of blocking tasks is full. Retrying in {} ms", REJECTED_RETRY_MILLIS);
+      scheduledTask.timeout = timer.newTimeout(new TimerTask() {
+        @Override
+        public void run(Timeout timeout) {
+          execute(scheduledTask, task, executor);
+        }
+      }, REJECTED_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.internal.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in microseconds, with log-linear buckets in the style of
+ * HdrHistogram.
+ *
+ * Values under 64 have their own bucket. Above that, each power of two is split in 32 buckets, so
+ * the value reported for a percentile is at most 1/32 (about 3%) over the real one. Values over
+ * 2^32 microseconds (about 71 minutes) are recorded as that maximum.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+  private static final long MAX_VALUE = (1L << 32) - 1;
+  private static final int BUCKET_COUNT = SUB_BUCKET_COUNT
+      + (32 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong totalCount = new AtomicLong();
+  private final AtomicLong totalMicros = new AtomicLong();
+  private final AtomicLong maxMicros = new AtomicLong();
+
+  public void record(long micros) {
+
+    long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+
+    counts.incrementAndGet(bucketIndex(value));
+    totalCount.incrementAndGet();
+    totalMicros.addAndGet(value);
+
+    long max = maxMicros.get();
+    while (value > max && !maxMicros.compareAndSet(max, value)) {
+      max = maxMicros.get();
+    }
+  }
+
+  public long getTotalCount() {
+    return totalCount.get();
+  }
+
+  public long getTotalMicros() {
+    return totalMicros.get();
+  }
+
+  public long getMaxMicros() {
+    return maxMicros.get();
+  }
+
+  /**
+   * Returns a copy of the bucket counts, to be used with
+   * {@link #valueAtPercentile(long[], double)}.
+   */
+  public long[] copyCounts() {
+    long[] copy = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      copy[i] = counts.get(i);
+    }
+    return copy;
+  }
+
+  /**
+   * Returns the highest value of the bucket that contains the given percentile.
+   *
+   * @param counts
+   *          bucket counts obtained with {@link #copyCounts()}
+   * @param percentile
+   *          percentile between 0 and 100
+   * @return the value in microseconds, or 0 if there are no values
+   */
+  public static long valueAtPercentile(long[] counts, double percentile) {
+
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    if (total == 0) {
+      return 0;
+    }
+
+    double bounded = Math.min(Math.max(percentile, 0), 100);
+    long target = Math.max(1, (long) Math.ceil(bounded / 100 * total));
+
+    long accumulated = 0;
+    for (int i = 0; i < counts.length; i++) {
+      accumulated += counts[i];
+      if (accumulated >= target) {
+        return highestValueInBucket(i);
+      }
+    }
+    return MAX_VALUE;
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+    return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF
+        + (int) ((value >> shift) - SUB_BUCKET_HALF);
+  }
+
+  static long highestValueInBucket(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+    long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+}
@@ -0,0 +1,350 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.internal.client;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.internal.JsonRpcExecutors;
+import org.kurento.jsonrpc.internal.JsonRpcExecutors.Mode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes tasks in a pool of workers, keeping the order of the tasks with the same key.
+ *
+ * Each key has a mailbox. Tasks of the same mailbox are executed one after the other, in the order
+ * they were dispatched, while tasks of different mailboxes are executed in parallel. Tasks without
+ * key are executed as soon as a worker is available, without any ordering guarantee.
+ */
+public class OrderedDispatcher {
+
+  /**
+   * What to do with a task dispatched to a mailbox that is full. Discarded tasks are told if they
+   * are {@link DiscardableTask}s.
+   */
+  public enum OverflowPolicy {
+    /** The new task is discarded. */
+    DROP_NEWEST,
+    /** The oldest task waiting in the mailbox is discarded to make room for the new one. */
+    DROP_OLDEST,
+    /**
+     * The dispatching thread waits until there is room in the mailbox. Use with care: if tasks
+     * are dispatched from the transport thread, it can't read anything else while waiting.
+     */
+    BLOCK
+  }
+
+  /**
+   * Task that is told when it is discarded because its mailbox is full, for example to answer a
+   * request that won't be handled.
+   */
+  public interface DiscardableTask extends Runnable {
+
+    /**
+     * Invoked in a worker when the task is discarded. It is never invoked if the task is run.
+     */
+    void discarded();
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(OrderedDispatcher.class);
+
+  private static final int DEFAULT_NUM_WORKERS = PropertiesManager.getProperty(
+      "jsonRpcClient.dispatcher.workers", Runtime.getRuntime().availableProcessors() * 2);
+
+  private static final int TASKS_PER_TURN = 32;
+
+  private static volatile ExecutorService defaultWorkers;
+  private static volatile ExecutorService defaultVirtualWorkers;
+
+  private class Mailbox implements Runnable {
+
+    private final Object key;
+    private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+    private boolean scheduled;
+    private boolean removed;
+
+    Mailbox(Object key) {
+      this.key = key;
+    }
+
+    @Override
+    public void run() {
+      for (int i = 0; i < TASKS_PER_TURN; i++) {
+        Runnable task;
+        synchronized (this) {
+          task = tasks.poll();
+          if (task == null) {
+            scheduled = false;
+            removed = true;
+            mailboxes.remove(key, this);
+            return;
+          }
+          queuedTasks.decrementAndGet();
+          notifyAll();
+        }
+        runTask(task);
+      }
+
+      // Give other mailboxes a chance before continuing with this one
+      workers.execute(this);
+    }
+  }
+
+  private final Executor workers;
+  private final int queueBound;
+  private final OverflowPolicy overflowPolicy;
+
+  private final ConcurrentMap<Object, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+  private final AtomicInteger queuedTasks = new AtomicInteger();
+  private final AtomicInteger maxQueueDepth = new AtomicInteger();
+  private final AtomicLong droppedTasks = new AtomicLong();
+
+  /**
+   * @param workers
+   *          executor used to run the tasks. If it is a pool, its size bounds the number of
+   *          mailboxes processed at the same time
+   * @param queueBound
+   *          maximum number of tasks waiting in a mailbox
+   * @param overflowPolicy
+   *          what to do when a mailbox is full
+   */
+  public OrderedDispatcher(Executor workers, int queueBound, OverflowPolicy overflowPolicy) {
+    if (queueBound <= 0) {
+      throw new IllegalArgumentException("Queue bound must be positive: " + queueBound);
+    }
+    this.workers = workers;
+    this.queueBound = queueBound;
+    this.overflowPolicy = overflowPolicy;
+  }
+
+  /**
+   * Returns the workers shared by all dispatchers of the process, with threads of the mode
+   * configured with {@code jsonRpc.executor}.
+   *
+   * @see #getDefaultWorkers(Mode)
+   */
+  public static Executor getDefaultWorkers() {
+    return getDefaultWorkers(JsonRpcExecutors.getMode());
+  }
+
+  /**
+   * Returns the workers of the given mode shared by all dispatchers of the process. Platform
+   * workers are a pool whose size can be configured with the property
+   * {@code jsonRpcClient.dispatcher.workers}. Virtual workers run each mailbox turn in its own
+   * virtual thread, so handlers blocked waiting for a response don't stop other mailboxes; only the
+   * mailboxes are bounded.
+   */
+  public static Executor getDefaultWorkers(Mode mode) {
+    if (mode == Mode.VIRTUAL) {
+      if (defaultVirtualWorkers == null) {
+        synchronized (OrderedDispatcher.class) {
+          if (defaultVirtualWorkers == null) {
+            defaultVirtualWorkers = newWorkers(DEFAULT_NUM_WORKERS, Mode.VIRTUAL);
+          }
+        }
+      }
+      return defaultVirtualWorkers;
+    }
+    if (defaultWorkers == null) {
+      synchronized (OrderedDispatcher.class) {
+        if (defaultWorkers == null) {
+          defaultWorkers = newWorkers(DEFAULT_NUM_WORKERS, Mode.PLATFORM);
+        }
+      }
+    }
+    return defaultWorkers;
+  }
+
+  /**
+   * Creates the workers of a dispatcher. Platform workers are a pool of the given number of
+   * threads. Virtual workers start a virtual thread per task, and the number is ignored.
+   */
+  public static ExecutorService newWorkers(int numWorkers, Mode mode) {
+    if (mode == Mode.VIRTUAL) {
+      return JsonRpcExecutors.newTaskExecutor("OrderedDispatcher-worker", mode);
+    }
+    return new ThreadPoolExecutor(numWorkers, numWorkers, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        JsonRpcExecutors.newThreadFactory("OrderedDispatcher-worker", mode));
+  }
+
+  /**
+   * Dispatches a task. Tasks with the same key are executed in the order they are dispatched.
+   *
+   * @param key
+   *          ordering key of the task, or null if it can be executed in any order
+   * @param task
+   *          the task
+   * @return false if the task has been discarded because its mailbox was full
+   */
+  public boolean dispatch(Object key, Runnable task) {
+
+    if (key == null) {
+      workers.execute(task);
+      return true;
+    }
+
+    Runnable discarded = enqueue(key, task);
+    if (discarded != null) {
+      dropped(key, discarded);
+    }
+    return discarded != task;
+  }
+
+  // Returns the task discarded to keep the mailbox within its bound, if any
+  private Runnable enqueue(Object key, Runnable task) {
+
+    while (true) {
+
+      Mailbox mailbox = mailboxes.get(key);
+      if (mailbox == null) {
+        Mailbox newMailbox = new Mailbox(key);
+        mailbox = mailboxes.putIfAbsent(key, newMailbox);
+        if (mailbox == null) {
+          mailbox = newMailbox;
+        }
+      }
+
+      synchronized (mailbox) {
+
+        if (mailbox.removed) {
+          // The mailbox was emptied and discarded meanwhile
+          continue;
+        }
+
+        Runnable discarded = null;
+
+        if (mailbox.tasks.size() >= queueBound) {
+          switch (overflowPolicy) {
+            case DROP_NEWEST:
+              return task;
+            case DROP_OLDEST:
+              discarded = mailbox.tasks.poll();
+              queuedTasks.decrementAndGet();
+              break;
+            case BLOCK:
+            default:
+              while (mailbox.tasks.size() >= queueBound && !mailbox.removed) {
+                try {
+                  mailbox.wait();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  return task;
+                }
+              }
+              if (mailbox.removed) {
+                continue;
+              }
+          }
+        }
+
+        mailbox.tasks.add(task);
+        int depth = queuedTasks.incrementAndGet();
+        updateMaxQueueDepth(depth);
+
+        if (!mailbox.scheduled) {
+          mailbox.scheduled = true;
+          workers.execute(mailbox);
+        }
+        return discarded;
+      }
+    }
+  }
+
+  public int getQueueBound() {
+    return queueBound;
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  /**
+   * Returns the number of tasks waiting to be executed in all mailboxes.
+   */
+  public int getQueuedTasks() {
+    return queuedTasks.get();
+  }
+
+  /**
+   * Returns the maximum number of tasks that have been waiting at the same time.
+   */
+  public int getMaxQueueDepth() {
+    return maxQueueDepth.get();
+  }
+
+  /**
+   * Returns the number of tasks discarded because their mailbox was full.
+   */
+  public long getDroppedTasks() {
+    return droppedTasks.get();
+  }
+
+  /**
+   * Returns the number of keys with tasks waiting or in execution.
+   */
+  public int getActiveMailboxes() {
+    return mailboxes.size();
+  }
+
+  private void dropped(Object key, final Runnable task) {
+
+    droppedTasks.incrementAndGet();
+    log.warn("Mailbox of {} is full ({} tasks). Task discarded with policy {}", key, queueBound,
+        overflowPolicy);
+
+    if (task instanceof DiscardableTask) {
+      // Not told in the dispatching thread, that can be the one receiving from the network
+      workers.execute(new Runnable() {
+        @Override
+        public void run() {
+          ((DiscardableTask) task).discarded();
+        }
+      });
+    }
+  }
+
+  private void updateMaxQueueDepth(int depth) {
+    int max;
+    while (depth > (max = maxQueueDepth.get())) {
+      if (maxQueueDepth.compareAndSet(max, depth)) {
+        return;
+      }
+    }
+  }
+
+  private void runTask(Runnable task) {
+    try {
+      task.run();
+    } catch (Throwable t) {
+      log.warn("Exception executing dispatched task", t);
+    }
+  }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.internal.ws;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtension;
+
+/**
+ * Measures the effect of WebSocket compression on the frames of a client: payload bytes before
+ * and after compression, and the time spent compressing and decompressing them.
+ *
+ * For each channel, {@link #newProbe()} creates a pair of handlers that are placed at both sides
+ * of the compression extension handler. As compression runs in the event loop, the time between
+ * both handlers is the time spent by the compression codec. Frames sent are counted when their
+ * write succeeds, so frames that fail to be written don't count.
+ */
+public class CompressionStats {
+
+  /**
+   * Handlers of one channel. The application side handler has to be placed after the compression
+   * extension handler, and the wire side handler before it.
+   */
+  public class Probe {
+
+    private long writeStart;
+    private long readStart;
+
+    private final ChannelHandler applicationSide = new ChannelDuplexHandler() {
+
+      @Override
+      public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+          throws Exception {
+        if (msg instanceof WebSocketFrame) {
+          final int bytes = ((WebSocketFrame) msg).content().readableBytes();
+          writeStart = System.nanoTime();
+          promise = promise.unvoid();
+          promise.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+              if (future.isSuccess()) {
+                framesSent.incrementAndGet();
+                uncompressedBytesSent.addAndGet(bytes);
+              }
+            }
+          });
+        }
+        ctx.write(msg, promise);
+      }
+
+      @Override
+      public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof WebSocketFrame) {
+          uncompressedBytesReceived.addAndGet(((WebSocketFrame) msg).content().readableBytes());
+          if (readStart != 0) {
+            decompressNanos.addAndGet(System.nanoTime() - readStart);
+            readStart = 0;
+          }
+        }
+        ctx.fireChannelRead(msg);
+      }
+    };
+
+    private final ChannelHandler wireSide = new ChannelDuplexHandler() {
+
+      @Override
+      public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+          throws Exception {
+        if (msg instanceof WebSocketFrame) {
+          WebSocketFrame frame = (WebSocketFrame) msg;
+          final int bytes = frame.content().readableBytes();
+          final boolean compressed = (frame.rsv() & WebSocketExtension.RSV1) != 0;
+          if (writeStart != 0) {
+            compressNanos.addAndGet(System.nanoTime() - writeStart);
+            writeStart = 0;
+          }
+          promise = promise.unvoid();
+          promise.addListener(new ChannelFutureListener() {
+            @Override
+            public void operationComplete(ChannelFuture future) {
+              if (future.isSuccess()) {
+                wireBytesSent.addAndGet(bytes);
+                if (compressed) {
+                  framesCompressed.incrementAndGet();
+                }
+              }
+            }
+          });
+        }
+        ctx.write(msg, promise);
+      }
+
+      @Override
+      public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof WebSocketFrame) {
+          framesReceived.incrementAndGet();
+          wireBytesReceived.addAndGet(((WebSocketFrame) msg).content().readableBytes());
+          readStart = System.nanoTime();
+        }
+        ctx.fireChannelRead(msg);
+      }
+    };
+
+    public ChannelHandler getApplicationSide() {
+      return applicationSide;
+    }
+
+    public ChannelHandler getWireSide() {
+      return wireSide;
+    }
+  }
+
+  private final AtomicLong framesSent = new AtomicLong();
+  private final AtomicLong framesCompressed = new AtomicLong();
+  private final AtomicLong uncompressedBytesSent = new AtomicLong();
+  private final AtomicLong wireBytesSent = new AtomicLong();
+  private final AtomicLong compressNanos = new AtomicLong();
+
+  private final AtomicLong framesReceived = new AtomicLong();
+  private final AtomicLong wireBytesReceived = new AtomicLong();
+  private final AtomicLong uncompressedBytesReceived = new AtomicLong();
+  private final AtomicLong decompressNanos = new AtomicLong();
+
+  public Probe newProbe() {
+    return new Probe();
+  }
+
+  public long getFramesSent() {
+    return framesSent.get();
+  }
+
+  public long getFramesCompressed() {
+    return framesCompressed.get();
+  }
+
+  public long getUncompressedBytesSent() {
+    return uncompressedBytesSent.get();
+  }
+
+  public long getWireBytesSent() {
+    return wireBytesSent.get();
+  }
+
+  public long getCompressNanos() {
+    return compressNanos.get();
+  }
+
+  public long getFramesReceived() {
+    return framesReceived.get();
+  }
+
+  public long getWireBytesReceived() {
+    return wireBytesReceived.get();
+  }
+
+  public long getUncompressedBytesReceived() {
+    return uncompressedBytesReceived.get();
+  }
+
+  public long getDecompressNanos() {
+    return decompressNanos.get();
+  }
+
+  /**
+   * Returns the payload bytes sent divided by the bytes they would have taken without compression.
+   */
+  public double getSentCompressionRatio() {
+    return ratio(wireBytesSent.get(), uncompressedBytesSent.get());
+  }
+
+  /**
+   * Returns the payload bytes received divided by their size after decompression.
+   */
+  public double getReceivedCompressionRatio() {
+    return ratio(wireBytesReceived.get(), uncompressedBytesReceived.get());
+  }
+
+  private static double ratio(long wire, long uncompressed) {
+    return uncompressed == 0 ? 1 : (double) wire / uncompressed;
+  }
+
+  @Override
+  public String toString() {
+    return "CompressionStats [sent=" + framesSent + " frames (" + framesCompressed
+        + " compressed), ratio=" + String.format("%.3f", getSentCompressionRatio())
+        + ", compressNanos=" + compressNanos + ", received=" + framesReceived + " frames, ratio="
+        + String.format("%.3f", getReceivedCompressionRatio()) + ", decompressNanos="
+        + decompressNanos + "]";
+  }
+
+}
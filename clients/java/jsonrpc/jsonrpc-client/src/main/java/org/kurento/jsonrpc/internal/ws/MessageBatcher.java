@@ -0,0 +1,187 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.internal.ws;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.kurento.jsonrpc.message.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Coalesces messages sent at about the same time into JSON-RPC 2.0 batches.
+ *
+ * The first message added to an empty batch starts a window of the configured duration. The batch
+ * is sent when the window ends or as soon as it reaches the maximum number of messages, whatever
+ * happens first. Windows are timed with the scheduler given by the connection that owns the
+ * batcher, so connections don't delay each other's flushes.
+ */
+public class MessageBatcher {
+
+  public interface BatchSender {
+
+    void sendBatch(List<Message> messages) throws IOException;
+
+    void batchFailed(List<Message> messages, Exception e);
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(MessageBatcher.class);
+
+  private final BatchSender sender;
+  private final ScheduledExecutorService scheduler;
+  private final long windowMicros;
+  private final int maxMessages;
+
+  // Each batch gets a turn when it is taken, while holding the monitor, and it is sent in its
+  // turn, while holding this lock. Batches are thus sent in the same order they were filled, and
+  // a slow send doesn't block adding messages to the next batch
+  private final Lock sendLock = new ReentrantLock();
+  private final Condition turnFinished = sendLock.newCondition();
+  private long currentTurn;
+
+  private List<Message> batch;
+  private ScheduledFuture<?> flushTask;
+  private long nextTurn;
+
+  /**
+   * @param scheduler
+   *          executor that sends the batches whose window ends
+   * @param windowMicros
+   *          maximum time, in microseconds, that a message waits for other messages to be sent with
+   * @param maxMessages
+   *          maximum number of messages of a batch
+   */
+  public MessageBatcher(BatchSender sender, ScheduledExecutorService scheduler,
+      long windowMicros, int maxMessages) {
+    Preconditions.checkArgument(windowMicros > 0, "Batch window must be positive: %s",
+        windowMicros);
+    Preconditions.checkArgument(maxMessages > 1, "Batches must allow more than one message: %s",
+        maxMessages);
+    this.sender = sender;
+    this.scheduler = scheduler;
+    this.windowMicros = windowMicros;
+    this.maxMessages = maxMessages;
+  }
+
+  /**
+   * Adds a message to the current batch. If sending the batch fails, the error is reported to
+   * {@link BatchSender#batchFailed(List, Exception)} for all its messages.
+   */
+  public void add(Message message) {
+
+    List<Message> full = null;
+    long turn = 0;
+
+    synchronized (this) {
+      if (batch == null) {
+        batch = new ArrayList<>(maxMessages);
+      }
+      batch.add(message);
+
+      if (batch.size() >= maxMessages) {
+        full = takeBatch();
+        turn = nextTurn++;
+      } else if (flushTask == null) {
+        try {
+          flushTask = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+              flush();
+            }
+          }, windowMicros, TimeUnit.MICROSECONDS);
+        } catch (RejectedExecutionException e) {
+          // The connection is releasing the batcher, so nothing would flush this message later
+          full = takeBatch();
+          turn = nextTurn++;
+        }
+      }
+    }
+
+    if (full != null) {
+      send(full, turn);
+    }
+  }
+
+  /**
+   * Sends the messages waiting in the current batch, if any.
+   */
+  public void flush() {
+
+    List<Message> messages;
+    long turn;
+    synchronized (this) {
+      messages = takeBatch();
+      if (messages == null) {
+        return;
+      }
+      turn = nextTurn++;
+    }
+
+    send(messages, turn);
+  }
+
+  // Waits until the batches taken before have been sent, without holding the monitor
+  private void send(List<Message> messages, long turn) {
+    sendLock.lock();
+    try {
+      while (currentTurn != turn) {
+        turnFinished.awaitUninterruptibly();
+      }
+      try {
+        sender.sendBatch(messages);
+      } catch (Exception e) {
+        log.warn("Exception sending batch of {} messages", messages.size(), e);
+        sender.batchFailed(messages, e);
+      }
+    } finally {
+      currentTurn++;
+      turnFinished.signalAll();
+      sendLock.unlock();
+    }
+  }
+
+  public long getWindowMicros() {
+    return windowMicros;
+  }
+
+  public int getMaxMessages() {
+    return maxMessages;
+  }
+
+  private List<Message> takeBatch() {
+    if (flushTask != null) {
+      flushTask.cancel(false);
+      flushTask = null;
+    }
+    List<Message> messages = batch;
+    batch = null;
+    return messages;
+  }
+
+}
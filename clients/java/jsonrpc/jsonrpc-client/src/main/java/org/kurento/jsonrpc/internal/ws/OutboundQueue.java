@@ -0,0 +1,224 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.internal.ws;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.kurento.jsonrpc.TransportException;
+import org.kurento.jsonrpc.message.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+
+/**
+ * Bounded queue of frames waiting to be written to a Netty channel.
+ *
+ * Frames are enqueued by any thread without blocking, and they are written in the event loop of
+ * the channel while it is writable, with a single flush for all the frames written in the same
+ * turn. When the bytes waiting in the queue exceed the high watermark, new frames are rejected
+ * until the queue drains below the low watermark. The outcome of each frame is reported to the
+ * {@link SendListener} once its write completes.
+ *
+ * Written frames wait in the write buffer of the channel until they are sent, so the memory taken
+ * by outgoing frames is bounded by the sum of the high watermarks of the queue and the channel.
+ */
+public class OutboundQueue {
+
+  /**
+   * Receives the outcome of the frames that have been enqueued.
+   */
+  public interface SendListener {
+
+    /**
+     * Called when a frame has been written to the channel, with its payload size.
+     */
+    void sent(int bytes);
+
+    /**
+     * Called with the messages of a frame that couldn't be written.
+     */
+    void sendFailed(List<Message> messages, Throwable cause);
+  }
+
+  private static final Logger log = LoggerFactory.getLogger(OutboundQueue.class);
+
+  private class Entry implements ChannelFutureListener {
+
+    private final WebSocketFrame frame;
+    private final List<Message> messages;
+    private final int size;
+
+    Entry(WebSocketFrame frame, List<Message> messages) {
+      this.frame = frame;
+      this.messages = messages;
+      this.size = frame.content().readableBytes();
+    }
+
+    @Override
+    public void operationComplete(ChannelFuture future) {
+      if (future.isSuccess()) {
+        sendListener.sent(size);
+      } else {
+        sendListener.sendFailed(messages,
+            new TransportException("Exception writing to channel", future.cause()));
+      }
+    }
+  }
+
+  private final Channel channel;
+  private final int lowWatermark;
+  private final int highWatermark;
+  private final SendListener sendListener;
+
+  private final Queue<Entry> entries = new ConcurrentLinkedQueue<>();
+  private final AtomicLong queuedBytes = new AtomicLong();
+  private final AtomicBoolean drainScheduled = new AtomicBoolean();
+  private final AtomicLong rejectedFrames = new AtomicLong();
+  private volatile boolean saturated;
+
+  private final Runnable drainTask = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+
+  public OutboundQueue(Channel channel, int lowWatermark, int highWatermark,
+      SendListener sendListener) {
+    if (lowWatermark < 0 || highWatermark < lowWatermark) {
+      throw new IllegalArgumentException(
+          "Invalid watermarks: low=" + lowWatermark + ", high=" + highWatermark);
+    }
+    this.channel = channel;
+    this.lowWatermark = lowWatermark;
+    this.highWatermark = highWatermark;
+    this.sendListener = sendListener;
+
+    channel.closeFuture().addListener(new ChannelFutureListener() {
+      @Override
+      public void operationComplete(ChannelFuture future) {
+        failAll(new TransportException("Channel closed"));
+      }
+    });
+  }
+
+  /**
+   * Enqueues a frame to be written. The frame is released if it is rejected.
+   *
+   * @param frame
+   *          frame to be written
+   * @param messages
+   *          messages contained in the frame, reported to the send listener if the frame can't
+   *          be written after being enqueued
+   * @return false if the queue is over its high watermark and the frame has been rejected
+   */
+  public boolean offer(WebSocketFrame frame, List<Message> messages) {
+
+    if (saturated) {
+      rejectedFrames.incrementAndGet();
+      frame.release();
+      return false;
+    }
+
+    Entry entry = new Entry(frame, messages);
+    entries.add(entry);
+    if (queuedBytes.addAndGet(entry.size) > highWatermark) {
+      log.debug("Outbound queue of {} over high watermark ({} bytes)", channel, highWatermark);
+      saturated = true;
+    }
+
+    scheduleDrain();
+    return true;
+  }
+
+  /**
+   * Writes pending frames. Called when the channel becomes writable again.
+   */
+  public void scheduleDrain() {
+    if (drainScheduled.compareAndSet(false, true)) {
+      try {
+        channel.eventLoop().execute(drainTask);
+      } catch (RejectedExecutionException e) {
+        drainScheduled.set(false);
+        failAll(new TransportException("Event loop of the channel is shut down", e));
+      }
+    }
+  }
+
+  public long getQueuedBytes() {
+    return queuedBytes.get();
+  }
+
+  public boolean isSaturated() {
+    return saturated;
+  }
+
+  public long getRejectedFrames() {
+    return rejectedFrames.get();
+  }
+
+  public int getHighWatermark() {
+    return highWatermark;
+  }
+
+  private void drain() {
+
+    drainScheduled.set(false);
+
+    boolean written = false;
+    Entry entry;
+    while (channel.isWritable() && (entry = entries.poll()) != null) {
+      queuedBytes.addAndGet(-entry.size);
+      channel.write(entry.frame).addListener(entry);
+      written = true;
+    }
+
+    if (written) {
+      channel.flush();
+    }
+
+    if (saturated && queuedBytes.get() <= lowWatermark) {
+      log.debug("Outbound queue of {} under low watermark ({} bytes)", channel, lowWatermark);
+      saturated = false;
+    }
+
+    if (!channel.isActive()) {
+      failAll(new TransportException("Channel closed"));
+    }
+  }
+
+  private void failAll(Throwable cause) {
+    Entry entry;
+    while ((entry = entries.poll()) != null) {
+      queuedBytes.addAndGet(-entry.size);
+      entry.frame.release();
+      sendListener.sendFailed(entry.messages, cause);
+    }
+    saturated = false;
+  }
+
+}
@@ -17,60 +17,319 @@
 
 package org.kurento.jsonrpc.internal.ws;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.kurento.commons.PropertiesManager;
 import org.kurento.jsonrpc.JsonRpcException;
+import org.kurento.jsonrpc.JsonRpcTimeoutException;
 import org.kurento.jsonrpc.message.Response;
 import org.kurento.jsonrpc.message.ResponseError;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.AbstractFuture;
 import com.google.common.util.concurrent.ListenableFuture;
-import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.JsonElement;
 
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+/**
+ * Requests waiting for a response, indexed by request id.
+ *
+ * Request ids are generated sequentially, so pending requests are stored in a ring of slots
+ * indexed by {@code id} modulo the ring capacity, which is accessed with compare-and-set
+ * operations and doesn't box ids. When the slot of a request is taken by an older request still
+ * waiting for its response (or when the id was chosen by the user), the request is stored in an
+ * overflow map instead.
+ */
 public class PendingRequests {
 
   private static final Logger log = LoggerFactory.getLogger(PendingRequests.class);
 
-  private final ConcurrentMap<Integer, SettableFuture<Response<JsonElement>>> pendingRequests =
-      new ConcurrentHashMap<>();
+  private static final int DEFAULT_CAPACITY =
+      PropertiesManager.getProperty("jsonRpc.pendingRequests.capacity", 1024);
+
+  private static final long TIMER_TICK_MILLIS =
+      PropertiesManager.getProperty("jsonRpc.pendingRequests.timerTick", 100);
+
+  private static final int TIMER_TICKS_PER_WHEEL =
+      PropertiesManager.getProperty("jsonRpc.pendingRequests.ticksPerWheel", 512);
+
+  private static final long DEFAULT_TIMEOUT_MILLIS =
+      PropertiesManager.getProperty("jsonRpc.pendingRequests.defaultTimeout", 60000);
+
+  private static volatile Timer timer;
+
+  /**
+   * Pending request and completion handle of its response future in a single object.
+   */
+  private static final class PendingRequest extends AbstractFuture<Response<JsonElement>> {
+
+    private final int id;
+    private volatile Timeout timeout;
+
+    private PendingRequest(int id) {
+      this.id = id;
+    }
+
+    // The future is completed before reading the timeout, so either this method sees the timeout
+    // or prepareResponse sees the future done after setting it, and no timer is left behind
+    private void complete(Response<JsonElement> response) {
+      set(response);
+      cancelTimeout();
+    }
+
+    private void fail(Throwable cause) {
+      setException(cause);
+      cancelTimeout();
+    }
+
+    private void cancelTimeout() {
+      Timeout t = timeout;
+      if (t != null) {
+        t.cancel();
+      }
+    }
+  }
+
+  private final AtomicReferenceArray<PendingRequest> ring;
+  private final int mask;
+
+  private final ConcurrentMap<Integer, PendingRequest> overflow = new ConcurrentHashMap<>();
+
+  private final LongAdder inFlightRequests = new LongAdder();
+  private final AtomicLong expiredRequests = new AtomicLong();
+  private final AtomicLong unmatchedResponses = new AtomicLong();
+
+  public PendingRequests() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity
+   *          number of slots of the ring. It is rounded up to a power of two
+   */
+  public PendingRequests(int capacity) {
+    Preconditions.checkArgument(capacity > 0, "Capacity must be positive: %s", capacity);
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.ring = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
 
   public void handleResponse(Response<JsonElement> response) {
 
-    SettableFuture<Response<JsonElement>> responseFuture = pendingRequests.remove(response.getId());
+    PendingRequest pendingRequest = response.hasId() ? remove(response.getIntId()) : null;
 
-    if (responseFuture == null) {
-      // TODO It is necessary to do something else? Who is watching this?
-      log.warn("Received response {} with an id not registered as pending request. Maybe the request timed out", response);
+    if (pendingRequest == null) {
+      // Nobody waits for it anymore, so it is only counted and logged
+      unmatchedResponses.incrementAndGet();
+      log.warn("Received response {} with an id not registered as pending request. Maybe the "
+          + "request timed out", response);
     } else {
-      responseFuture.set(response);
+      pendingRequest.complete(response);
     }
   }
 
-  public ListenableFuture<Response<JsonElement>> prepareResponse(Integer id) {
-
-    Preconditions.checkNotNull(id, "The request id cannot be null");
+  /**
+   * Registers a request waiting for its response. If the response is not received in the given
+   * time, the returned future fails with a {@link JsonRpcTimeoutException} and the request is
+   * discarded.
+   *
+   * @param id
+   *          the request id
+   * @param timeoutMillis
+   *          time to wait for the response. If 0 or negative, the default timeout is used, set
+   *          with the property {@code jsonRpc.pendingRequests.defaultTimeout}
+   * @return the future that will be completed with the response
+   */
+  public ListenableFuture<Response<JsonElement>> prepareResponse(int id, long timeoutMillis) {
 
-    SettableFuture<Response<JsonElement>> responseFuture = SettableFuture.create();
+    final long expiration = timeoutMillis > 0 ? timeoutMillis : DEFAULT_TIMEOUT_MILLIS;
+    final PendingRequest pendingRequest = new PendingRequest(id);
 
-    if (pendingRequests.putIfAbsent(id, responseFuture) != null) {
+    if (!add(pendingRequest)) {
       throw new JsonRpcException("Can not send a request with the id '" + id
           + "'. There is already a pending request with this id");
     }
 
-    return responseFuture;
+    pendingRequest.timeout = getTimer().newTimeout(new TimerTask() {
+      @Override
+      public void run(Timeout timeout) throws Exception {
+        expire(pendingRequest, expiration);
+      }
+    }, expiration, TimeUnit.MILLISECONDS);
+
+    if (pendingRequest.isDone()) {
+      // The response arrived while the timeout was being scheduled
+      pendingRequest.cancelTimeout();
+    }
+
+    return pendingRequest;
+  }
+
+  private void expire(PendingRequest pendingRequest, long timeoutMillis) {
+
+    if (remove(pendingRequest)) {
+
+      expiredRequests.incrementAndGet();
+
+      log.debug("Request with id {} expired after {} ms without response", pendingRequest.id,
+          timeoutMillis);
+
+      pendingRequest.fail(new JsonRpcTimeoutException(pendingRequest.id,
+          "Timeout of " + timeoutMillis + " milliseconds waiting response to request with id "
+              + pendingRequest.id));
+    }
+  }
+
+  /**
+   * Fails the request with the given id, if it is still waiting for its response.
+   *
+   * @param id
+   *          the request id
+   * @param cause
+   *          exception used to complete the response future
+   */
+  public void failRequest(int id, Throwable cause) {
+    PendingRequest pendingRequest = remove(id);
+    if (pendingRequest != null) {
+      pendingRequest.fail(cause);
+    }
   }
 
   public void closeAllPendingRequests() {
     log.debug("Sending error to all pending requests");
-    for (SettableFuture<Response<JsonElement>> responseFuture : pendingRequests.values()) {
-      responseFuture.set(new Response<JsonElement>(
-          new ResponseError(0, "Connection with server have been closed")));
+    for (PendingRequest pendingRequest : snapshot()) {
+      if (remove(pendingRequest)) {
+        pendingRequest.complete(
+            new Response<JsonElement>(new ResponseError(0, "Connection with server have been closed")));
+      }
+    }
+  }
+
+  /**
+   * Returns the number of requests waiting for a response.
+   */
+  public int getInFlightCount() {
+    return inFlightRequests.intValue();
+  }
+
+  /**
+   * Returns the number of requests that have been discarded because their response was not
+   * received in time.
+   */
+  public long getExpiredCount() {
+    return expiredRequests.get();
+  }
+
+  /**
+   * Returns the number of responses received for requests that were not waiting for a response,
+   * usually because they had already expired.
+   */
+  public long getUnmatchedCount() {
+    return unmatchedResponses.get();
+  }
+
+  private boolean add(PendingRequest pendingRequest) {
+
+    int id = pendingRequest.id;
+    int index = id & mask;
+
+    if (!overflow.isEmpty() && overflow.containsKey(id)) {
+      return false;
+    }
+
+    if (!ring.compareAndSet(index, null, pendingRequest)) {
+
+      PendingRequest current = ring.get(index);
+      if (current != null && current.id == id) {
+        return false;
+      }
+
+      // Slot taken by an older request
+      if (overflow.putIfAbsent(id, pendingRequest) != null) {
+        return false;
+      }
+    }
+
+    inFlightRequests.increment();
+    return true;
+  }
+
+  private PendingRequest remove(int id) {
+
+    int index = id & mask;
+
+    PendingRequest pendingRequest = ring.get(index);
+    if (pendingRequest != null && pendingRequest.id == id
+        && ring.compareAndSet(index, pendingRequest, null)) {
+      inFlightRequests.decrement();
+      return pendingRequest;
+    }
+
+    if (overflow.isEmpty()) {
+      return null;
+    }
+
+    pendingRequest = overflow.remove(id);
+    if (pendingRequest != null) {
+      inFlightRequests.decrement();
+    }
+    return pendingRequest;
+  }
+
+  private boolean remove(PendingRequest pendingRequest) {
+
+    int id = pendingRequest.id;
+
+    if (ring.compareAndSet(id & mask, pendingRequest, null)
+        || overflow.remove(id, pendingRequest)) {
+      inFlightRequests.decrement();
+      return true;
+    }
+
+    return false;
+  }
+
+  private List<PendingRequest> snapshot() {
+    List<PendingRequest> pendingRequests = new ArrayList<>();
+    for (int i = 0; i < ring.length(); i++) {
+      PendingRequest pendingRequest = ring.get(i);
+      if (pendingRequest != null) {
+        pendingRequests.add(pendingRequest);
+      }
+    }
+    pendingRequests.addAll(overflow.values());
+    return pendingRequests;
+  }
+
+  private static Timer getTimer() {
+    if (timer == null) {
+      synchronized (PendingRequests.class) {
+        if (timer == null) {
+          timer = new HashedWheelTimer(
+              new ThreadFactoryBuilder().setNameFormat("PendingRequests-timer-%d")
+                  .setDaemon(true).build(),
+              TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS, TIMER_TICKS_PER_WHEEL);
+        }
+      }
     }
-    pendingRequests.clear();
+    return timer;
   }
 
 }
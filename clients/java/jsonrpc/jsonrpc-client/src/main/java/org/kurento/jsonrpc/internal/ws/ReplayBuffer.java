@@ -0,0 +1,137 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.internal.ws;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.kurento.jsonrpc.TransportException;
+import org.kurento.jsonrpc.message.Request;
+
+/**
+ * Bounded buffer of the requests that have to be sent again after a reconnection to the same
+ * server.
+ *
+ * It keeps the idempotent requests that are waiting for a response, and, while the client is
+ * reconnecting, it holds the new requests instead of sending them. When the client reconnects to
+ * the same session, {@link #nextToReplay(Set)} returns them, in the order they were issued, to be
+ * sent again. Requests are removed from the buffer when their response is received.
+ */
+public class ReplayBuffer {
+
+  private final int capacity;
+  private final Map<Integer, Request<?>> requests = new LinkedHashMap<>();
+  private boolean holding;
+
+  public ReplayBuffer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Invalid replay buffer capacity: " + capacity);
+    }
+    this.capacity = capacity;
+  }
+
+  /**
+   * Keeps a request sent to the server until its response is received.
+   *
+   * @return false if the buffer is full and the request won't be replayed
+   */
+  public synchronized boolean add(Request<?> request) {
+    if (requests.size() >= capacity) {
+      return false;
+    }
+    requests.put(request.getId(), request);
+    return true;
+  }
+
+  /**
+   * Holds a request that can't be sent because the client is reconnecting.
+   *
+   * @return false if the client is not reconnecting and the request has to be sent right away
+   * @throws TransportException
+   *           if the client is reconnecting and the buffer is full
+   */
+  public synchronized boolean hold(Request<?> request) {
+    if (!holding) {
+      return false;
+    }
+    if (requests.size() >= capacity) {
+      throw new TransportException("Replay buffer full (" + capacity
+          + " requests) while reconnecting. Request " + request.getId() + " discarded");
+    }
+    requests.put(request.getId(), request);
+    return true;
+  }
+
+  public synchronized void remove(Integer id) {
+    requests.remove(id);
+  }
+
+  /**
+   * Starts holding new requests. Called when the connection is lost.
+   */
+  public synchronized void startHolding() {
+    holding = true;
+  }
+
+  /**
+   * Returns the requests that have not been sent again yet, in the order they were issued. They are
+   * kept in the buffer until their response is received. New
+   * requests are held until there are no more requests to send, so they can't overtake the ones
+   * being sent again. At that point, holding stops and an empty list is returned.
+   *
+   * @param replayed
+   *          ids of the requests already sent again
+   */
+  public synchronized List<Request<?>> nextToReplay(Set<Integer> replayed) {
+    List<Request<?>> next = new ArrayList<>();
+    for (Map.Entry<Integer, Request<?>> entry : requests.entrySet()) {
+      if (!replayed.contains(entry.getKey())) {
+        next.add(entry.getValue());
+      }
+    }
+    if (next.isEmpty()) {
+      holding = false;
+    }
+    return next;
+  }
+
+  /**
+   * Stops holding new requests and discards all requests. Called when the requests can't be
+   * replayed, because the session has been lost or the client has been closed.
+   *
+   * @return the discarded requests
+   */
+  public synchronized List<Request<?>> clear() {
+    holding = false;
+    List<Request<?>> discarded = new ArrayList<>(requests.values());
+    requests.clear();
+    return discarded;
+  }
+
+  public synchronized boolean isHolding() {
+    return holding;
+  }
+
+  public synchronized int size() {
+    return requests.size();
+  }
+
+}
@@ -37,7 +37,16 @@ public class MessageUtils {
   public static <R> Response<R> convertResponse(Response<JsonElement> response,
       Class<R> resultClass) {
 
-    R resultR = convertJsonTo(response.getResult(), resultClass);
+    R resultR;
+    String resultJson = response.getResultJson();
+    if (resultJson != null && resultClass != null && !isValueClass(resultClass)) {
+      // Decoded straight into the expected type, without building a tree first
+      resultR = getGson().fromJson(resultJson, resultClass);
+    } else if (resultClass != null) {
+      resultR = convertJsonTo(response.getResult(), resultClass);
+    } else {
+      resultR = null;
+    }
 
     @SuppressWarnings("unchecked")
     Response<R> responseR = (Response<R>) response;
@@ -81,9 +90,7 @@ public class MessageUtils {
     }
 
     R resultR = null;
-    if (resultClass == String.class || resultClass == Boolean.class
-        || resultClass == Character.class || Number.class.isAssignableFrom(resultClass)
-        || resultClass.isPrimitive()) {
+    if (isValueClass(resultClass)) {
 
       JsonElement value;
       if (resultElement.isJsonObject()) {
@@ -135,4 +142,11 @@ public class MessageUtils {
     return resultR;
   }
 
+  // Values can be received wrapped in an object or an array, so they are converted from a tree
+  private static boolean isValueClass(Class<?> resultClass) {
+    return resultClass == String.class || resultClass == Boolean.class
+        || resultClass == Character.class || Number.class.isAssignableFrom(resultClass)
+        || resultClass.isPrimitive();
+  }
+
 }
@@ -36,6 +36,7 @@ public class Request<P> extends Message {
   /**
    * Request identifier.
    */
+  // Boxed, so reflective serialisations leave it out of notifications instead of writing 0
   private Integer id;
 
   /**
@@ -70,7 +71,7 @@ public class Request<P> extends Message {
     this.sessionId = sessionId;
     this.method = method;
     this.params = params;
-    this.id = id;
+    setId(id);
   }
 
   /**
@@ -115,6 +116,22 @@ public class Request<P> extends Message {
     this.id = id;
   }
 
+  public void setId(int id) {
+    this.id = Integer.valueOf(id);
+  }
+
+  public boolean hasId() {
+    return id != null;
+  }
+
+  /**
+   * Returns the identifier as an int, so it can be used as a key without boxing it again. It is
+   * only meaningful if {@link #hasId()} is true.
+   */
+  public int getIntId() {
+    return id.intValue();
+  }
+
   public boolean isNotification() {
     return id == null;
   }
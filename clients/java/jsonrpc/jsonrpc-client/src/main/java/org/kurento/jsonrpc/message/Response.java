@@ -17,6 +17,10 @@
 
 package org.kurento.jsonrpc.message;
 
+import org.kurento.jsonrpc.JsonUtils;
+
+import com.google.gson.JsonElement;
+
 /**
  *
  * Java representation for JSON media connector request.
@@ -30,6 +34,7 @@ public class Response<R> extends Message {
   /**
    * Request identifier related to this response
    */
+  // Boxed, so reflective serialisations leave it out of notifications instead of writing 0
   private Integer id;
 
   /**
@@ -37,6 +42,12 @@ public class Response<R> extends Message {
    */
   private R result;
 
+  /**
+   * JSON text of a received result, kept until the result is read or converted to the type
+   * expected by the caller
+   */
+  private transient String resultJson;
+
   /**
    * Error produced executing method
    */
@@ -66,27 +77,50 @@ public class Response<R> extends Message {
 
   public Response(Integer id) {
     super(null);
-    this.id = id;
+    setId(id);
   }
 
   public Response(String sessionId, Integer id, R result) {
     super(sessionId);
-    this.id = id;
+    setId(id);
     this.result = result;
   }
 
   public Response(String sessionId, Integer id, ResponseError error) {
     super(sessionId);
-    this.id = id;
+    setId(id);
     this.error = error;
   }
 
+  @SuppressWarnings("unchecked")
   public R getResult() {
+    if (resultJson != null) {
+      result = (R) JsonUtils.fromJson(resultJson, JsonElement.class);
+      resultJson = null;
+    }
     return result;
   }
 
   public void setResult(R result) {
     this.result = result;
+    this.resultJson = null;
+  }
+
+  /**
+   * Sets the JSON text of the result. It is not parsed until the result is read, so
+   * {@link MessageUtils#convertResponse(Response, Class)} can decode it straight into the type
+   * expected by the caller.
+   *
+   * @param resultJson
+   *          JSON text of the result
+   */
+  public void setResultJson(String resultJson) {
+    this.result = null;
+    this.resultJson = resultJson;
+  }
+
+  String getResultJson() {
+    return resultJson;
   }
 
   public Integer getId() {
@@ -97,6 +131,22 @@ public class Response<R> extends Message {
     this.id = id;
   }
 
+  public void setId(int id) {
+    this.id = Integer.valueOf(id);
+  }
+
+  public boolean hasId() {
+    return id != null;
+  }
+
+  /**
+   * Returns the identifier as an int, so it can be used as a key without boxing it again. It is
+   * only meaningful if {@link #hasId()} is true.
+   */
+  public int getIntId() {
+    return id.intValue();
+  }
+
   public ResponseError getError() {
     return error;
   }
@@ -0,0 +1,162 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.client.AbstractJsonRpcClientWebSocket;
+import org.kurento.jsonrpc.client.ServerRequestOrderingKey;
+import org.kurento.jsonrpc.internal.JsonRpcExecutors;
+import org.kurento.jsonrpc.internal.JsonRpcExecutors.Mode;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.message.Response;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Checks that, with virtual threads, event handlers of many objects can be blocked at the same
+ * time in a request to the server, far more than the workers of a pool of platform threads.
+ */
+public class BlockedEventHandlersTest {
+
+  private static final String SESSION_ID = "session";
+
+  private static final int NUM_OBJECTS = Runtime.getRuntime().availableProcessors() * 2 * 50;
+
+  /**
+   * WebSocket client without network. Requests other than connect are recorded, to be answered by
+   * the test.
+   */
+  private static class FakeWebSocketClient extends AbstractJsonRpcClientWebSocket {
+
+    private final BlockingQueue<Integer> sent = new LinkedBlockingQueue<>();
+    private volatile boolean connected;
+
+    FakeWebSocketClient() {
+      super("ws://localhost:1/kurento", null);
+    }
+
+    @Override
+    protected void sendTextMessage(String jsonMessage) throws IOException {
+      JsonObject message = JsonParser.parseString(jsonMessage).getAsJsonObject();
+      int id = message.get("id").getAsInt();
+      if ("connect".equals(message.get("method").getAsString())) {
+        answer(id);
+      } else {
+        sent.add(id);
+      }
+    }
+
+    void answer(int id) {
+      handleResponseFromServer(new Response<JsonElement>(SESSION_ID, id, new JsonPrimitive("OK")));
+    }
+
+    void receiveEvent(String objectRef) {
+      receivedTextMessage("{\"jsonrpc\":\"2.0\",\"method\":\"onEvent\",\"params\":{\"object\":\""
+          + objectRef + "\"}}");
+    }
+
+    @Override
+    protected void closeNativeClient() {
+      connected = false;
+    }
+
+    @Override
+    protected boolean isNativeClientConnected() {
+      return connected;
+    }
+
+    @Override
+    protected void connectNativeClient() throws Exception {
+      connected = true;
+    }
+  }
+
+  @Test
+  public void eventHandlersBlockedInRequestsRunConcurrently() throws Exception {
+
+    Assume.assumeTrue("Virtual threads are not supported in this JVM",
+        JsonRpcExecutors.isVirtualThreadsSupported());
+
+    final FakeWebSocketClient client = new FakeWebSocketClient();
+    final AtomicInteger handled = new AtomicInteger();
+    final CountDownLatch finished = new CountDownLatch(NUM_OBJECTS);
+
+    client.setServerRequestExecutorMode(Mode.VIRTUAL);
+    client.setServerRequestOrderingKey(new ServerRequestOrderingKey() {
+      @Override
+      public Object getKey(Request<JsonElement> request) {
+        return ((JsonObject) request.getParams()).get("object").getAsString();
+      }
+    });
+    client.setServerRequestHandler(new DefaultJsonRpcHandler<JsonObject>() {
+      @Override
+      public void handleRequest(Transaction transaction, Request<JsonObject> request)
+          throws Exception {
+        // Blocks until the requests of all handlers have been sent
+        if ("OK".equals(client.sendRequest("getState").getAsString())) {
+          handled.incrementAndGet();
+        }
+        finished.countDown();
+      }
+    });
+    client.connectWithSession();
+
+    try {
+      for (int i = 0; i < NUM_OBJECTS; i++) {
+        client.receiveEvent("object" + i);
+      }
+
+      // Every handler is blocked waiting for its response before any of them is answered
+      List<Integer> ids = new ArrayList<>();
+      for (int i = 0; i < NUM_OBJECTS; i++) {
+        Integer id = client.sent.poll(10, TimeUnit.SECONDS);
+        assertNotNull("Only " + i + " handlers blocked at the same time", id);
+        ids.add(id);
+      }
+
+      for (Integer id : ids) {
+        client.answer(id);
+      }
+      assertTrue(finished.await(10, TimeUnit.SECONDS));
+      assertEquals(NUM_OBJECTS, handled.get());
+
+    } finally {
+      client.close();
+    }
+  }
+
+}
@@ -0,0 +1,182 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.kurento.jsonrpc.internal.client.ClientScheduler;
+import org.kurento.jsonrpc.internal.client.ClientScheduler.ScheduledTask;
+
+public class ClientSchedulerTest {
+
+  @Test
+  public void periodicTasksOfManyClientsShareTheScheduler() throws Exception {
+
+    ClientScheduler scheduler = new ClientScheduler(10, 2);
+
+    int numClients = 1000;
+    final CountDownLatch latch = new CountDownLatch(numClients * 3);
+    final AtomicInteger executions = new AtomicInteger();
+
+    ScheduledTask[] tasks = new ScheduledTask[numClients];
+    for (int i = 0; i < numClients; i++) {
+      tasks[i] = scheduler.scheduleAtFixedRate(new Runnable() {
+        @Override
+        public void run() {
+          executions.incrementAndGet();
+          latch.countDown();
+        }
+      }, 0, 50, TimeUnit.MILLISECONDS);
+    }
+
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+    for (ScheduledTask task : tasks) {
+      task.cancel();
+    }
+
+    Thread.sleep(200);
+    int executionsAfterCancel = executions.get();
+    Thread.sleep(300);
+
+    assertEquals(executionsAfterCancel, executions.get());
+  }
+
+  @Test
+  public void blockingTasksDontDelayPeriodicTasks() throws Exception {
+
+    ClientScheduler scheduler = new ClientScheduler(10, 1);
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch blockingStarted = new CountDownLatch(4);
+    for (int i = 0; i < 4; i++) {
+      scheduler.scheduleBlocking(new Runnable() {
+        @Override
+        public void run() {
+          blockingStarted.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }, 0, TimeUnit.MILLISECONDS);
+    }
+
+    try {
+      assertTrue(blockingStarted.await(5, TimeUnit.SECONDS));
+
+      final CountDownLatch executions = new CountDownLatch(3);
+      ScheduledTask task = scheduler.scheduleAtFixedRate(new Runnable() {
+        @Override
+        public void run() {
+          executions.countDown();
+        }
+      }, 0, 20, TimeUnit.MILLISECONDS);
+
+      assertTrue(executions.await(5, TimeUnit.SECONDS));
+      task.cancel();
+
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void blockingTasksBeyondTheBoundWaitForAFreeThread() throws Exception {
+
+    ClientScheduler scheduler = new ClientScheduler(10, 1, 2, 2);
+
+    int numTasks = 20;
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch finished = new CountDownLatch(numTasks);
+    final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+    for (int i = 0; i < numTasks; i++) {
+      scheduler.scheduleBlocking(new Runnable() {
+        @Override
+        public void run() {
+          threads.add(Thread.currentThread());
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          finished.countDown();
+        }
+      }, 0, TimeUnit.MILLISECONDS);
+    }
+
+    Thread.sleep(200);
+    release.countDown();
+
+    // Tasks rejected by the full queue are retried instead of being lost
+    assertTrue(finished.await(10, TimeUnit.SECONDS));
+    assertEquals(2, threads.size());
+  }
+
+  @Test
+  public void cancelInterruptsRunningTaskOnlyIfRequested() throws Exception {
+
+    ClientScheduler scheduler = new ClientScheduler(10, 1);
+
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    ScheduledTask task = scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        started.countDown();
+        try {
+          Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+        }
+      }
+    }, 0, TimeUnit.MILLISECONDS);
+
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    task.cancel();
+    assertFalse(interrupted.await(200, TimeUnit.MILLISECONDS));
+
+    task.cancel(true);
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+    // The worker thread isn't left interrupted for the next task
+    final CountDownLatch next = new CountDownLatch(1);
+    scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        if (!Thread.currentThread().isInterrupted()) {
+          next.countDown();
+        }
+      }
+    }, 0, TimeUnit.MILLISECONDS);
+    assertTrue(next.await(5, TimeUnit.SECONDS));
+  }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.client.NettyCompression;
+import org.kurento.jsonrpc.client.NettyCompression.Mode;
+import org.kurento.jsonrpc.internal.ws.CompressionStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionData;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateClientExtensionHandshaker;
+
+/**
+ * Compares the CPU time per message and the bytes on the wire of each compression mode, with a
+ * traffic mix similar to the one of a media application: pings, ICE candidates, property getters,
+ * SDP offers and stats. The number of rounds can be increased with the property
+ * {@code compressionBenchmark.rounds}.
+ */
+public class CompressionBenchmarkTest {
+
+  private static final Logger log = LoggerFactory.getLogger(CompressionBenchmarkTest.class);
+
+  private static final int ROUNDS =
+      PropertiesManager.getProperty("compressionBenchmark.rounds", 200);
+
+  private static final int BIG_MESSAGES_PER_ROUND = 2;
+
+  private static class Result {
+    private long messages;
+    private long cpuNanos;
+    private CompressionStats stats = new CompressionStats();
+  }
+
+  @Test
+  public void adaptiveCompressionOnlyCompressesBigFrames() {
+
+    List<String> mix = trafficMix();
+
+    // Warm up
+    for (Mode mode : Mode.values()) {
+      run(new NettyCompression().setMode(mode), mix);
+    }
+
+    Result off = run(new NettyCompression().setMode(Mode.OFF), mix);
+    Result always = run(new NettyCompression().setMode(Mode.ALWAYS), mix);
+    Result adaptive = run(new NettyCompression().setMode(Mode.ADAPTIVE).setThreshold(1024), mix);
+
+    report("off", off);
+    report("always", always);
+    report("adaptive", adaptive);
+
+    assertEquals(0, off.stats.getFramesCompressed());
+    assertEquals(always.messages, always.stats.getFramesCompressed());
+    assertEquals(ROUNDS * BIG_MESSAGES_PER_ROUND, adaptive.stats.getFramesCompressed());
+
+    // Big frames account for most of the savings
+    assertTrue(adaptive.stats.getWireBytesSent() < off.stats.getWireBytesSent() / 2);
+  }
+
+  private Result run(NettyCompression compression, List<String> mix) {
+
+    Result result = new Result();
+    CompressionStats.Probe probe = result.stats.newProbe();
+
+    EmbeddedChannel channel;
+    if (compression.getMode() == Mode.OFF) {
+      channel = new EmbeddedChannel(probe.getWireSide(), probe.getApplicationSide());
+    } else {
+      PerMessageDeflateClientExtensionHandshaker handshaker =
+          new PerMessageDeflateClientExtensionHandshaker(compression.getLevel(), false, 15, false,
+              false, compression.newFilterProvider(), 0);
+      WebSocketExtensionData negotiated = new WebSocketExtensionData("permessage-deflate",
+          Collections.<String, String> emptyMap());
+      channel = new EmbeddedChannel(probe.getWireSide(),
+          handshaker.handshakeExtension(negotiated).newExtensionEncoder(),
+          probe.getApplicationSide());
+    }
+
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    long start = threads.getCurrentThreadCpuTime();
+
+    for (int i = 0; i < ROUNDS; i++) {
+      for (String message : mix) {
+        channel.writeOutbound(new TextWebSocketFrame(message));
+        result.messages++;
+      }
+      Object frame;
+      while ((frame = channel.readOutbound()) != null) {
+        ((TextWebSocketFrame) frame).release();
+      }
+    }
+
+    result.cpuNanos = threads.getCurrentThreadCpuTime() - start;
+    channel.finishAndReleaseAll();
+    return result;
+  }
+
+  private void report(String mode, Result result) {
+    log.info("{}: {} messages, {} ns CPU/message, {} compressed, {} bytes on the wire "
+        + "({} uncompressed, ratio {})", mode, result.messages,
+        result.cpuNanos / result.messages, result.stats.getFramesCompressed(),
+        result.stats.getWireBytesSent(), result.stats.getUncompressedBytesSent(),
+        String.format("%.3f", result.stats.getSentCompressionRatio()));
+  }
+
+  private List<String> trafficMix() {
+
+    List<String> mix = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      mix.add("{\"id\":" + i + ",\"method\":\"ping\",\"params\":{\"interval\":240000},"
+          + "\"jsonrpc\":\"2.0\"}");
+    }
+    for (int i = 0; i < 20; i++) {
+      mix.add(invoke("addIceCandidate", "\"candidate\":{\"candidate\":\"candidate:" + i
+          + " 1 UDP 2122252543 192.168.1." + i + " 5" + i + "123 typ host\","
+          + "\"sdpMid\":\"0\",\"sdpMLineIndex\":0,\"__module__\":\"kurento\","
+          + "\"__type__\":\"IceCandidate\"}"));
+    }
+    for (int i = 0; i < 5; i++) {
+      mix.add(invoke("getMediaState", ""));
+    }
+
+    StringBuilder sdp = new StringBuilder("v=0\\r\\no=- 4611731400430051336 2 IN IP4 127.0.0.1");
+    for (int i = 0; i < 40; i++) {
+      sdp.append("\\r\\na=rtpmap:").append(96 + i).append(" VP8/90000\\r\\na=rtcp-fb:")
+          .append(96 + i).append(" goog-remb\\r\\na=rtcp-fb:").append(96 + i)
+          .append(" transport-cc\\r\\na=ssrc:").append(1000 + i).append(" cname:user");
+    }
+    mix.add(invoke("processOffer", "\"offer\":\"" + sdp + "\""));
+
+    StringBuilder stats = new StringBuilder();
+    for (int i = 0; i < 60; i++) {
+      stats.append(i == 0 ? "" : ",").append("\"RTCInboundRTPStreamStats_").append(i)
+          .append("\":{\"id\":\"").append(i).append("\",\"timestamp\":16000000").append(i)
+          .append(",\"packetsReceived\":").append(i * 31).append(",\"bytesReceived\":")
+          .append(i * 1024).append(",\"jitter\":0.00").append(i).append(",\"fractionLost\":0")
+          .append(",\"__module__\":\"kurento\",\"__type__\":\"RTCInboundRTPStreamStats\"}");
+    }
+    mix.add(invoke("getStats", "\"mediaType\":\"VIDEO\",\"previous\":{" + stats + "}"));
+
+    return mix;
+  }
+
+  private String invoke(String operation, String params) {
+    return "{\"id\":1,\"method\":\"invoke\",\"params\":{\"object\":\"1d5b6a36-d1b4-4d5c-9b2c_"
+        + "kurento.MediaPipeline/3f3a2b1c_kurento.WebRtcEndpoint\",\"operation\":\"" + operation
+        + "\",\"operationParams\":{" + params + "},\"sessionId\":\"4ea2fe5c-8e1f-4b7f-9a3e\"},"
+        + "\"jsonrpc\":\"2.0\"}";
+  }
+
+}
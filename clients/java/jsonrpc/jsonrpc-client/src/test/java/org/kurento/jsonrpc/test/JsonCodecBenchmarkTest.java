@@ -0,0 +1,149 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.GsonJsonCodec;
+import org.kurento.jsonrpc.JacksonJsonCodec;
+import org.kurento.jsonrpc.JsonCodec;
+import org.kurento.jsonrpc.message.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the CPU time and the memory allocated per message by each codec, reading and writing
+ * SDP offers and answers, getStats results, ICE candidate events and errors. The number of rounds
+ * can be increased with the property {@code jsonCodecBenchmark.rounds}.
+ */
+public class JsonCodecBenchmarkTest {
+
+  private static final Logger log = LoggerFactory.getLogger(JsonCodecBenchmarkTest.class);
+
+  private static final int ROUNDS = PropertiesManager.getProperty("jsonCodecBenchmark.rounds", 300);
+
+  private static class Result {
+    private long messages;
+    private long cpuNanos;
+    private long allocatedBytes;
+    private long chars;
+  }
+
+  @Test
+  public void codecsProduceSameOutput() throws IOException {
+
+    List<String> mix = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      mix.add(KurentoMessages.iceCandidateEvent(i));
+    }
+    mix.addAll(KurentoMessages.all());
+
+    JsonCodec gson = new GsonJsonCodec();
+    JsonCodec jackson = new JacksonJsonCodec();
+
+    List<Message> messages = new ArrayList<>();
+    for (String json : mix) {
+      messages.add(gson.readMessage(new StringReader(json)));
+    }
+
+    // Warm up
+    for (int i = 0; i < 3; i++) {
+      read(gson, mix);
+      read(jackson, mix);
+      write(gson, messages);
+      write(jackson, messages);
+    }
+
+    report("gson read", read(gson, mix));
+    report("jackson read", read(jackson, mix));
+
+    Result gsonWrite = write(gson, messages);
+    Result jacksonWrite = write(jackson, messages);
+    report("gson write", gsonWrite);
+    report("jackson write", jacksonWrite);
+
+    assertEquals(gsonWrite.chars, jacksonWrite.chars);
+  }
+
+  private Result read(JsonCodec codec, List<String> mix) throws IOException {
+
+    Result result = new Result();
+    long[] start = measure();
+
+    for (int i = 0; i < ROUNDS; i++) {
+      for (String json : mix) {
+        codec.readMessage(new StringReader(json));
+        result.messages++;
+        result.chars += json.length();
+      }
+    }
+
+    finish(result, start);
+    return result;
+  }
+
+  private Result write(JsonCodec codec, List<Message> messages) throws IOException {
+
+    Result result = new Result();
+    StringBuilder sb = new StringBuilder();
+    long[] start = measure();
+
+    for (int i = 0; i < ROUNDS; i++) {
+      for (Message message : messages) {
+        sb.setLength(0);
+        codec.writeMessage(message, sb);
+        result.messages++;
+        result.chars += sb.length();
+      }
+    }
+
+    finish(result, start);
+    return result;
+  }
+
+  private long[] measure() {
+    return new long[] { threads().getCurrentThreadCpuTime(),
+        threads().getThreadAllocatedBytes(Thread.currentThread().getId()) };
+  }
+
+  private void finish(Result result, long[] start) {
+    result.cpuNanos = threads().getCurrentThreadCpuTime() - start[0];
+    result.allocatedBytes = threads().getThreadAllocatedBytes(Thread.currentThread().getId())
+        - start[1];
+  }
+
+  private com.sun.management.ThreadMXBean threads() {
+    return (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  }
+
+  private void report(String name, Result result) {
+    log.info("{}: {} messages, {} ns CPU/message, {} bytes allocated/message, {} chars/message",
+        name, result.messages, result.cpuNanos / result.messages,
+        result.allocatedBytes / result.messages, result.chars / result.messages);
+  }
+
+}
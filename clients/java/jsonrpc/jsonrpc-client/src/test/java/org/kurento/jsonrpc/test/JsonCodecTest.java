@@ -0,0 +1,219 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.kurento.jsonrpc.GsonJsonCodec;
+import org.kurento.jsonrpc.JacksonJsonCodec;
+import org.kurento.jsonrpc.JsonCodec;
+import org.kurento.jsonrpc.JsonUtils;
+import org.kurento.jsonrpc.Props;
+import org.kurento.jsonrpc.message.Message;
+import org.kurento.jsonrpc.message.MessageUtils;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.message.Response;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class JsonCodecTest {
+
+  static class Params {
+    String param1;
+    int param2;
+  }
+
+  static class SubclassedRequest extends Request<Params> {
+
+    SubclassedRequest(Integer id, String method) {
+      super(id, method, null);
+    }
+  }
+
+  private final JsonCodec gson = new GsonJsonCodec();
+  private final JsonCodec jackson = new JacksonJsonCodec();
+
+  @Test
+  public void idsAreWrittenByEverySerialiser() {
+
+    JsonObject subclassJson = JsonParser
+        .parseString(JsonUtils.toJson(new SubclassedRequest(7, "method"))).getAsJsonObject();
+    assertEquals(7, subclassJson.get("id").getAsInt());
+
+    Gson plainGson = new Gson();
+    JsonObject requestJson = JsonParser
+        .parseString(plainGson.toJson(new Request<Params>(8, "method", null))).getAsJsonObject();
+    assertEquals(8, requestJson.get("id").getAsInt());
+    JsonObject responseJson = JsonParser
+        .parseString(plainGson.toJson(new Response<String>(9, "result"))).getAsJsonObject();
+    assertEquals(9, responseJson.get("id").getAsInt());
+
+    Response<?> response = plainGson.fromJson(responseJson, Response.class);
+    assertTrue(response.hasId());
+    assertEquals(9, response.getIntId());
+  }
+
+  @Test
+  public void jacksonReadsSameMessagesAsGson() throws IOException {
+
+    for (String json : KurentoMessages.all()) {
+      Message expected = gson.readMessage(new StringReader(json));
+      Message read = jackson.readMessage(new StringReader(json));
+
+      assertEquals(json, expected.getClass(), read.getClass());
+      assertEquals(json, expected.getSessionId(), read.getSessionId());
+      assertEquals(json, write(gson, expected), write(gson, read));
+    }
+  }
+
+  @Test
+  public void jacksonWritesSameTextAsGson() throws IOException {
+
+    for (String json : KurentoMessages.all()) {
+      Message message = gson.readMessage(new StringReader(json));
+      assertEquals(write(gson, message), write(jackson, message));
+    }
+
+    Params params = new Params();
+    params.param1 = "v=0 ñ 😀 \"quoted\" <tag>";
+    params.param2 = 3;
+
+    Request<Params> request = new Request<>(1, "method", params);
+    assertEquals(write(gson, request), write(jackson, request));
+    request.setSessionId("xxxxxxx");
+    assertEquals(write(gson, request), write(jackson, request));
+
+    Response<Integer> response = new Response<>(2, 42);
+    response.setSessionId("xxxxxxx");
+    assertEquals(write(gson, response), write(jackson, response));
+
+    Response<Void> voidResponse = new Response<>(3);
+    voidResponse.setSessionId("xxxxxxx");
+    // Gson appends the missing result after the version
+    assertEquals(JsonParser.parseString(write(gson, voidResponse)),
+        JsonParser.parseString(write(jackson, voidResponse)));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void resultsAreDecodedIntoTheExpectedType() throws IOException {
+
+    String json = "{\"id\":1,\"jsonrpc\":\"2.0\",\"result\":{\"param1\":\"value\","
+        + "\"param2\":2,\"sessionId\":\"xxxxxxx\"}}";
+
+    for (JsonCodec codec : new JsonCodec[] { gson, jackson }) {
+
+      Response<JsonElement> response =
+          (Response<JsonElement>) codec.readMessage(new StringReader(json));
+      assertEquals("xxxxxxx", response.getSessionId());
+
+      Params params = MessageUtils.convertResponse(response, Params.class).getResult();
+      assertEquals("value", params.param1);
+      assertEquals(2, params.param2);
+
+      response = (Response<JsonElement>) codec.readMessage(new StringReader(json));
+      assertEquals(JsonParser.parseString("{\"param1\":\"value\",\"param2\":2}"),
+          response.getResult());
+    }
+  }
+
+  @Test
+  public void jacksonReadsBatches() throws IOException {
+
+    String batch = "[" + KurentoMessages.processOfferResponse(1) + ","
+        + KurentoMessages.iceCandidateEvent(2) + "]";
+
+    List<Message> messages = jackson.readMessages(new StringReader(batch));
+
+    assertEquals(2, messages.size());
+    assertTrue(messages.get(0) instanceof Response);
+    assertEquals("onEvent", ((Request<?>) messages.get(1)).getMethod());
+    assertEquals(1, jackson.readMessages(new StringReader(KurentoMessages.processOffer(3)))
+        .size());
+  }
+
+  @Test
+  public void jacksonReadsAndWritesPropsAndTrees() throws IOException {
+
+    String json = "{\"int\":1,\"long\":10000000000,\"float\":0.5,\"double\":0.1,"
+        + "\"string\":\"s\",\"bool\":true,\"list\":[1,\"a\",null],\"props\":{\"a\":\"b\"}}";
+
+    Props expected = gson.readProps(new StringReader(json));
+    Props read = jackson.readProps(new StringReader(json));
+
+    assertEquals(expected.getMap().toString(), read.getMap().toString());
+    assertEquals(Integer.valueOf(1), read.getProp("int"));
+    assertEquals(Long.valueOf(10000000000L), read.getProp("long"));
+    assertEquals(Float.valueOf(0.5f), read.getProp("float"));
+    assertEquals(Arrays.asList(1, "a", null), read.getProp("list"));
+
+    assertEquals(write(gson, expected), write(jackson, expected));
+
+    JsonElement tree = JsonParser.parseString(KurentoMessages.getStatsResponse(1));
+    assertEquals(tree, jackson.readTree(new StringReader(tree.toString())));
+    StringBuilder sb = new StringBuilder();
+    jackson.writeTree(tree, sb);
+    StringBuilder expectedText = new StringBuilder();
+    gson.writeTree(tree, expectedText);
+    assertEquals(expectedText.toString(), sb.toString());
+    assertNull(jackson.readTree(new StringReader("")));
+  }
+
+  @Test
+  public void codecIsUsedByJsonUtils() throws IOException {
+
+    JsonCodec previous = JsonUtils.getCodec();
+    JsonUtils.setCodec(jackson);
+    try {
+      Message message = JsonUtils.readJsonMessage(
+          new StringReader(KurentoMessages.processOfferResponse(5)));
+      assertEquals(Integer.valueOf(5), ((Response<?>) message).getId());
+
+      StringBuilder sb = new StringBuilder();
+      JsonUtils.writeJsonMessage(message, sb);
+      assertEquals(write(jackson, message), sb.toString());
+    } finally {
+      JsonUtils.setCodec(previous);
+    }
+  }
+
+  private String write(JsonCodec codec, Message message) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    codec.writeMessage(message, sb);
+    return sb.toString();
+  }
+
+  private String write(JsonCodec codec, Props props) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    codec.writeProps(props, sb);
+    return sb.toString();
+  }
+
+}
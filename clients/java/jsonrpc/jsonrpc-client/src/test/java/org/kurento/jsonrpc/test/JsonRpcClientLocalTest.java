@@ -20,6 +20,7 @@ package org.kurento.jsonrpc.test;
 import org.junit.Assert;
 import org.junit.Test;
 import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.JsonRpcErrorException;
 import org.kurento.jsonrpc.Transaction;
 import org.kurento.jsonrpc.client.JsonRpcClient;
 import org.kurento.jsonrpc.client.JsonRpcClientLocal;
@@ -27,6 +28,7 @@ import org.kurento.jsonrpc.message.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 public class JsonRpcClientLocalTest {
@@ -47,6 +49,65 @@ public class JsonRpcClientLocalTest {
     }
   }
 
+  static class TypedResultsJsonRpcHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    @Override
+    public void handleRequest(Transaction transaction, Request<JsonObject> request)
+        throws Exception {
+
+      switch (request.getMethod()) {
+        case "number":
+          transaction.sendResponse(42);
+          break;
+        case "string":
+          transaction.sendResponse("value");
+          break;
+        case "params":
+          Params params = new Params();
+          params.param1 = request.getParams().get("param1").getAsString();
+          transaction.sendResponse(params);
+          break;
+        case "fail":
+          throw new IllegalStateException("Failed request");
+        default:
+          transaction.sendResponse(null);
+      }
+    }
+  }
+
+  // Forwards each request to the client and answers with the client's response
+  static class AskClientJsonRpcHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    @Override
+    public void handleRequest(Transaction transaction, Request<JsonObject> request)
+        throws Exception {
+      transaction.sendResponse(transaction.getSession().sendRequest("ask", request.getParams()));
+    }
+  }
+
+  // Answers from another thread after returning
+  static class LateJsonRpcHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    @Override
+    public void handleRequest(final Transaction transaction, final Request<JsonObject> request)
+        throws Exception {
+
+      transaction.startAsync();
+
+      new Thread("late-response") {
+        @Override
+        public void run() {
+          try {
+            Thread.sleep(100);
+            transaction.sendResponse(request.getParams());
+          } catch (Exception e) {
+            LOG.warn("Exception sending response", e);
+          }
+        }
+      }.start();
+    }
+  }
+
   static class Params {
     String param1;
     String param2;
@@ -76,4 +137,106 @@ public class JsonRpcClientLocalTest {
 
   }
 
+  @Test
+  public void directDispatchEchoTest() throws Exception {
+
+    JsonRpcClientLocal client = new JsonRpcClientLocal(new EchoJsonRpcHandler());
+    client.setDirectDispatch(true);
+
+    Params params = new Params();
+    params.param1 = "Value1";
+    params.param2 = "Value2";
+
+    Params result = client.sendRequest("echo", params, Params.class);
+
+    // The handler receives the params as a JSON object, as in the round trip
+    Assert.assertNotSame(params, result);
+    Assert.assertEquals(params.param1, result.param1);
+    Assert.assertEquals(params.param2, result.param2);
+
+    client.close();
+  }
+
+  @Test
+  public void directDispatchDoesNotShareParamsWithHandler() throws Exception {
+
+    JsonRpcClientLocal client = new JsonRpcClientLocal(new DefaultJsonRpcHandler<JsonObject>() {
+      @Override
+      public void handleRequest(Transaction transaction, Request<JsonObject> request)
+          throws Exception {
+        request.getParams().addProperty("param1", "Changed");
+        transaction.sendResponse(request.getParams());
+      }
+    });
+    client.setDirectDispatch(true);
+
+    JsonObject params = new JsonObject();
+    params.addProperty("param1", "Value1");
+
+    JsonObject result = client.sendRequest("change", params, JsonObject.class);
+
+    Assert.assertEquals("Changed", result.get("param1").getAsString());
+    Assert.assertEquals("Value1", params.get("param1").getAsString());
+
+    client.close();
+  }
+
+  @Test
+  public void directDispatchReturnsSameResultsAsRoundTrip() throws Exception {
+
+    JsonRpcClientLocal roundTrip = new JsonRpcClientLocal(new TypedResultsJsonRpcHandler());
+    JsonRpcClientLocal direct = new JsonRpcClientLocal(new TypedResultsJsonRpcHandler());
+    direct.setDirectDispatch(true);
+
+    JsonObject params = new JsonObject();
+    params.addProperty("param1", "Value1");
+
+    for (String method : new String[] { "number", "string", "params", "void", "echo" }) {
+      Assert.assertEquals(method, roundTrip.sendRequest(method, params, JsonElement.class),
+          direct.sendRequest(method, params, JsonElement.class));
+      Assert.assertEquals(method, roundTrip.sendRequest(method, params, JsonObject.class),
+          direct.sendRequest(method, params, JsonObject.class));
+    }
+
+    Assert.assertEquals(roundTrip.sendRequest("params", params, Params.class).param1,
+        direct.sendRequest("params", params, Params.class).param1);
+
+    roundTrip.close();
+    direct.close();
+  }
+
+  @Test
+  public void directDispatchReportsErrors() throws Exception {
+
+    JsonRpcClientLocal client = new JsonRpcClientLocal(new TypedResultsJsonRpcHandler());
+    client.setDirectDispatch(true);
+
+    try {
+      client.sendRequest("fail", new JsonObject(), JsonElement.class);
+      Assert.fail("Error response expected");
+    } catch (JsonRpcErrorException e) {
+      Assert.assertTrue(e.getMessage().contains("Failed request"));
+    }
+
+    JsonObject params = new JsonObject();
+    params.addProperty("param1", "Value1");
+    Assert.assertEquals("Value1", client.sendRequest("params", params, Params.class).param1);
+
+    client.close();
+  }
+
+  @Test
+  public void serverRequestWaitsForLateResponse() throws Exception {
+
+    JsonRpcClientLocal client = new JsonRpcClientLocal(new AskClientJsonRpcHandler());
+    client.setServerRequestHandler(new LateJsonRpcHandler());
+
+    JsonObject params = new JsonObject();
+    params.addProperty("param1", "Value1");
+
+    Assert.assertEquals(params, client.sendRequest("question", params, JsonObject.class));
+
+    client.close();
+  }
+
 }
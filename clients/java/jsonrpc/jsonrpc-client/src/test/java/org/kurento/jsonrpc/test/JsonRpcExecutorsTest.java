@@ -0,0 +1,115 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.kurento.jsonrpc.internal.JsonRpcExecutors;
+import org.kurento.jsonrpc.internal.JsonRpcExecutors.Mode;
+import org.kurento.jsonrpc.internal.client.OrderedDispatcher;
+import org.kurento.jsonrpc.internal.client.OrderedDispatcher.OverflowPolicy;
+
+public class JsonRpcExecutorsTest {
+
+  private static final int NUM_SESSIONS = 1000;
+  private static final int TASKS_PER_SESSION = 10;
+
+  @Test
+  public void serialExecutorKeepsOrder() throws Exception {
+    checkSerialOrder(Mode.PLATFORM);
+    if (JsonRpcExecutors.isVirtualThreadsSupported()) {
+      checkSerialOrder(Mode.VIRTUAL);
+    }
+  }
+
+  @Test
+  public void virtualThreadsKeepOrderPerKey() throws Exception {
+
+    assumeTrue(JsonRpcExecutors.isVirtualThreadsSupported());
+
+    ExecutorService exec = JsonRpcExecutors.newTaskExecutor("dispatcher", Mode.VIRTUAL);
+    OrderedDispatcher dispatcher = new OrderedDispatcher(exec, TASKS_PER_SESSION,
+        OverflowPolicy.BLOCK);
+
+    final List<List<Integer>> executed = new ArrayList<>();
+    for (int i = 0; i < NUM_SESSIONS; i++) {
+      executed.add(Collections.synchronizedList(new ArrayList<Integer>()));
+    }
+    final CountDownLatch finished = new CountDownLatch(NUM_SESSIONS * TASKS_PER_SESSION);
+
+    for (int j = 0; j < TASKS_PER_SESSION; j++) {
+      for (int i = 0; i < NUM_SESSIONS; i++) {
+        final List<Integer> sessionTasks = executed.get(i);
+        final int taskNumber = j;
+        dispatcher.dispatch("session-" + i, new Runnable() {
+          @Override
+          public void run() {
+            try {
+              Thread.sleep(1);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            sessionTasks.add(taskNumber);
+            finished.countDown();
+          }
+        });
+      }
+    }
+
+    assertTrue(finished.await(60, TimeUnit.SECONDS));
+    for (List<Integer> sessionTasks : executed) {
+      for (int j = 0; j < TASKS_PER_SESSION; j++) {
+        assertEquals(Integer.valueOf(j), sessionTasks.get(j));
+      }
+    }
+    exec.shutdown();
+  }
+
+  private void checkSerialOrder(Mode mode) throws Exception {
+
+    ExecutorService exec = JsonRpcExecutors.newSerialExecutor("serial", mode);
+    final List<Integer> executed = Collections.synchronizedList(new ArrayList<Integer>());
+
+    for (int i = 0; i < 100; i++) {
+      final int taskNumber = i;
+      exec.execute(new Runnable() {
+        @Override
+        public void run() {
+          executed.add(taskNumber);
+        }
+      });
+    }
+
+    exec.shutdown();
+    assertTrue(exec.awaitTermination(10, TimeUnit.SECONDS));
+    for (int i = 0; i < 100; i++) {
+      assertEquals(Integer.valueOf(i), executed.get(i));
+    }
+  }
+
+}
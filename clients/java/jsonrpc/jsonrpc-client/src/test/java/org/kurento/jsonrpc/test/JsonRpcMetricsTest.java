@@ -0,0 +1,95 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.kurento.jsonrpc.client.DefaultJsonRpcMetrics;
+import org.kurento.jsonrpc.client.JsonRpcMetrics.Outcome;
+import org.kurento.jsonrpc.client.JsonRpcMetricsSnapshot;
+import org.kurento.jsonrpc.client.JsonRpcMetricsSnapshot.OperationStats;
+import org.kurento.jsonrpc.internal.client.LatencyHistogram;
+import org.kurento.jsonrpc.message.Request;
+
+public class JsonRpcMetricsTest {
+
+  @Test
+  public void percentilesAreWithinHistogramPrecision() {
+
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long micros = 1; micros <= 100000; micros++) {
+      histogram.record(micros);
+    }
+
+    long[] counts = histogram.copyCounts();
+    assertEquals(100000, histogram.getTotalCount());
+    assertEquals(100000, histogram.getMaxMicros());
+    assertPercentile(50000, LatencyHistogram.valueAtPercentile(counts, 50));
+    assertPercentile(99000, LatencyHistogram.valueAtPercentile(counts, 99));
+    assertPercentile(99900, LatencyHistogram.valueAtPercentile(counts, 99.9));
+    assertEquals(1, LatencyHistogram.valueAtPercentile(counts, 0));
+  }
+
+  @Test
+  public void requestsAreRecordedPerOperation() {
+
+    DefaultJsonRpcMetrics metrics = new DefaultJsonRpcMetrics();
+    Request<Void> create = new Request<>(1, "create", null);
+    Request<Void> invoke = new Request<>(2, "invoke", null);
+    Request<Void> pending = new Request<>(3, "invoke", null);
+
+    metrics.requestSent(create);
+    metrics.requestSent(invoke);
+    metrics.requestSent(pending);
+    metrics.requestCompleted(create, TimeUnit.MILLISECONDS.toNanos(2), Outcome.SUCCESS);
+    metrics.requestCompleted(invoke, TimeUnit.MILLISECONDS.toNanos(10), Outcome.TIMEOUT);
+    metrics.bytesSent(100);
+    metrics.bytesReceived(40);
+    metrics.reconnected(true);
+
+    JsonRpcMetricsSnapshot snapshot = metrics.snapshot();
+    assertEquals(1, snapshot.getInFlightRequests());
+    assertEquals(100, snapshot.getBytesSent());
+    assertEquals(40, snapshot.getBytesReceived());
+    assertEquals(1, snapshot.getReconnectionsSameSession());
+    assertEquals(0, snapshot.getReconnectionsNewSession());
+
+    OperationStats createStats = snapshot.getOperation("create");
+    assertEquals(1, createStats.getCount());
+    assertEquals(0, createStats.getErrors());
+    assertEquals(2000, createStats.getMaxMicros());
+    assertPercentile(2000, createStats.getPercentileMicros(50));
+
+    OperationStats invokeStats = snapshot.getOperation("invoke");
+    assertEquals(1, invokeStats.getCount());
+    assertEquals(1, invokeStats.getTimeouts());
+
+    assertNull(snapshot.getOperation("release"));
+  }
+
+  private void assertPercentile(long expected, long actual) {
+    assertTrue("Expected " + expected + " but was " + actual,
+        actual >= expected && actual <= expected + expected / 32);
+  }
+
+}
@@ -0,0 +1,97 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.jsonrpc.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON text of typical messages exchanged between a Kurento client and the media server.
+ */
+class KurentoMessages {
+
+  private static final String SESSION_ID = "4ea2fe5c-8e1f-4b7f-9a3e-0c5d2f1b7a61";
+  private static final String ENDPOINT = "1d5b6a36-d1b4-4d5c-9b2c-2f6e4a0d8c13_kurento.MediaPipeline/"
+      + "3f3a2b1c-7d8e-4f90-a1b2-c3d4e5f60718_kurento.WebRtcEndpoint";
+
+  static String sdp() {
+    StringBuilder sdp = new StringBuilder(
+        "v=0\\r\\no=- 4611731400430051336 2 IN IP4 127.0.0.1\\r\\ns=-\\r\\nt=0 0\\r\\n"
+            + "a=group:BUNDLE 0 1\\r\\na=msid-semantic: WMS");
+    for (int i = 0; i < 40; i++) {
+      sdp.append("\\r\\na=rtpmap:").append(96 + i).append(" VP8/90000\\r\\na=rtcp-fb:")
+          .append(96 + i).append(" goog-remb\\r\\na=rtcp-fb:").append(96 + i)
+          .append(" transport-cc\\r\\na=ssrc:").append(1000 + i).append(" cname:userñ");
+    }
+    return sdp.toString();
+  }
+
+  static String processOffer(int id) {
+    return "{\"id\":" + id + ",\"method\":\"invoke\",\"params\":{\"object\":\"" + ENDPOINT
+        + "\",\"operation\":\"processOffer\",\"operationParams\":{\"offer\":\"" + sdp()
+        + "\"},\"sessionId\":\"" + SESSION_ID + "\"},\"jsonrpc\":\"2.0\"}";
+  }
+
+  static String processOfferResponse(int id) {
+    return "{\"id\":" + id + ",\"result\":{\"value\":\"" + sdp() + "\",\"sessionId\":\""
+        + SESSION_ID + "\"},\"jsonrpc\":\"2.0\"}";
+  }
+
+  static String getStatsResponse(int id) {
+    StringBuilder stats = new StringBuilder();
+    for (int i = 0; i < 30; i++) {
+      stats.append(i == 0 ? "" : ",").append("\"RTCInboundRTPStreamStats_").append(i)
+          .append("\":{\"id\":\"").append(i).append("\",\"timestamp\":1600000000").append(i)
+          .append(",\"timestampMillis\":16000000001").append(i).append(",\"packetsReceived\":")
+          .append(i * 31).append(",\"bytesReceived\":").append(i * 1024)
+          .append(",\"jitter\":0.00").append(i + 1).append(",\"fractionLost\":0")
+          .append(",\"remb\":1.5e6,\"isRemote\":false,\"codecId\":null")
+          .append(",\"__module__\":\"kurento\",\"__type__\":\"RTCInboundRTPStreamStats\"}");
+    }
+    return "{\"id\":" + id + ",\"result\":{\"value\":{" + stats + "},\"sessionId\":\""
+        + SESSION_ID + "\"},\"jsonrpc\":\"2.0\"}";
+  }
+
+  static String iceCandidateEvent(int i) {
+    return "{\"jsonrpc\":\"2.0\",\"method\":\"onEvent\",\"params\":{\"value\":{\"data\":{"
+        + "\"candidate\":{\"__module__\":\"kurento\",\"__type__\":\"IceCandidate\","
+        + "\"candidate\":\"candidate:" + i + " 1 UDP 2122252543 192.168.1." + i + " 5" + i
+        + "123 typ host\",\"sdpMLineIndex\":0,\"sdpMid\":\"0\"},\"componentId\":1,"
+        + "\"source\":\"" + ENDPOINT + "\",\"streamId\":\"1\",\"tags\":[],"
+        + "\"timestamp\":\"1600000000\",\"timestampMillis\":\"1600000000123\","
+        + "\"type\":\"IceCandidateFound\"},\"object\":\"" + ENDPOINT + "\","
+        + "\"type\":\"IceCandidateFound\"}}}";
+  }
+
+  static String errorResponse(int id) {
+    return "{\"id\":" + id + ",\"error\":{\"code\":40101,\"message\":\"Object '" + ENDPOINT
+        + "' not found\",\"data\":{\"type\":\"MEDIA_OBJECT_NOT_FOUND\"}},\"jsonrpc\":\"2.0\"}";
+  }
+
+  static List<String> all() {
+    List<String> messages = new ArrayList<>();
+    messages.add(processOffer(1));
+    messages.add(processOfferResponse(1));
+    messages.add(getStatsResponse(2));
+    messages.add(iceCandidateEvent(3));
+    messages.add(errorResponse(4));
+    return messages;
+  }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.kurento.jsonrpc.JsonUtils;
+import org.kurento.jsonrpc.internal.ws.MessageBatcher;
+import org.kurento.jsonrpc.internal.ws.MessageBatcher.BatchSender;
+import org.kurento.jsonrpc.message.Message;
+import org.kurento.jsonrpc.message.Request;
+
+import com.google.gson.JsonObject;
+
+public class MessageBatcherTest {
+
+  private final BlockingQueue<List<Message>> batches = new LinkedBlockingQueue<>();
+
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+  private final BatchSender sender = new BatchSender() {
+    @Override
+    public void sendBatch(List<Message> messages) {
+      batches.add(messages);
+    }
+
+    @Override
+    public void batchFailed(List<Message> messages, Exception e) {
+    }
+  };
+
+  @After
+  public void shutdownScheduler() {
+    scheduler.shutdownNow();
+  }
+
+  @Test
+  public void batchIsSentWhenFull() throws Exception {
+
+    MessageBatcher batcher = new MessageBatcher(sender, scheduler, TimeUnit.SECONDS.toMicros(10), 3);
+
+    for (int i = 0; i < 3; i++) {
+      batcher.add(new Request<JsonObject>(i, "method", null));
+    }
+
+    List<Message> batch = batches.poll(1, TimeUnit.SECONDS);
+    assertEquals(3, batch.size());
+    assertTrue(batches.isEmpty());
+  }
+
+  @Test
+  public void batchIsSentWhenWindowEnds() throws Exception {
+
+    MessageBatcher batcher = new MessageBatcher(sender, scheduler, 500, 100);
+
+    batcher.add(new Request<JsonObject>(1, "method", null));
+    batcher.add(new Request<JsonObject>(2, "method", null));
+
+    List<Message> batch = batches.poll(5, TimeUnit.SECONDS);
+    assertEquals(2, batch.size());
+
+    StringBuilder sb = new StringBuilder();
+    JsonUtils.writeJsonMessages(batch, sb);
+
+    List<Message> read = JsonUtils.readJsonMessages(new StringReader(sb.toString()));
+    assertEquals(2, read.size());
+    assertEquals(Integer.valueOf(1), ((Request<?>) read.get(0)).getId());
+    assertEquals(Integer.valueOf(2), ((Request<?>) read.get(1)).getId());
+  }
+
+  @Test
+  public void messageIsSentWhenSchedulerIsShutDown() throws Exception {
+
+    MessageBatcher batcher =
+        new MessageBatcher(sender, scheduler, TimeUnit.SECONDS.toMicros(10), 100);
+    scheduler.shutdownNow();
+
+    batcher.add(new Request<JsonObject>(1, "method", null));
+
+    List<Message> batch = batches.poll(1, TimeUnit.SECONDS);
+    assertEquals(1, batch.size());
+  }
+
+  @Test
+  public void slowBatchDoesNotBlockOtherSenders() throws Exception {
+
+    final CountDownLatch firstSending = new CountDownLatch(1);
+    final CountDownLatch releaseFirst = new CountDownLatch(1);
+
+    BatchSender slowSender = new BatchSender() {
+      @Override
+      public void sendBatch(List<Message> messages) throws IOException {
+        if (firstSending.getCount() > 0) {
+          firstSending.countDown();
+          try {
+            releaseFirst.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        batches.add(messages);
+      }
+
+      @Override
+      public void batchFailed(List<Message> messages, Exception e) {
+      }
+    };
+
+    final MessageBatcher batcher =
+        new MessageBatcher(slowSender, scheduler, TimeUnit.SECONDS.toMicros(10), 2);
+
+    Thread first = new Thread("first-batch") {
+      @Override
+      public void run() {
+        batcher.add(new Request<JsonObject>(1, "method", null));
+        batcher.add(new Request<JsonObject>(2, "method", null));
+      }
+    };
+    first.start();
+    assertTrue(firstSending.await(5, TimeUnit.SECONDS));
+
+    // Filling the next batch waits for its turn, but adding to it doesn't block
+    Thread second = new Thread("second-batch") {
+      @Override
+      public void run() {
+        batcher.add(new Request<JsonObject>(3, "method", null));
+        batcher.add(new Request<JsonObject>(4, "method", null));
+      }
+    };
+    second.start();
+    while (second.getState() != Thread.State.WAITING && second.isAlive()) {
+      Thread.sleep(10);
+    }
+
+    long start = System.nanoTime();
+    batcher.add(new Request<JsonObject>(5, "method", null));
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+    releaseFirst.countDown();
+    first.join(5000);
+    second.join(5000);
+
+    assertEquals(Integer.valueOf(1), ((Request<?>) batches.poll(1, TimeUnit.SECONDS).get(0))
+        .getId());
+    assertEquals(Integer.valueOf(3), ((Request<?>) batches.poll(1, TimeUnit.SECONDS).get(0))
+        .getId());
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * (C) Copyright 2026 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.kurento.jsonrpc.client.NettyTransportResources;
+
+import io.netty.channel.EventLoopGroup;
+
+public class NettyTransportResourcesTest {
+
+  @Test
+  public void sharedGroupIsShutDownWhenLastClientReleasesIt() {
+
+    NettyTransportResources resources = new NettyTransportResources(1);
+
+    EventLoopGroup group1 = resources.retain();
+    EventLoopGroup group2 = resources.retain();
+
+    assertSame(group1, group2);
+    assertEquals(2, resources.getRefCount());
+
+    resources.release();
+    assertFalse(group1.isShuttingDown());
+
+    resources.release();
+    assertEquals(0, resources.getRefCount());
+    assertTrue(group1.isShuttingDown());
+
+    EventLoopGroup group3 = resources.retain();
+    assertNotSame(group1, group3);
+    assertFalse(group3.isShuttingDown());
+
+    resources.release();
+  }
+
+  @Test
+  public void releasingAReplacedGroupKeepsTheCountOfTheNewOne() {
+
+    NettyTransportResources resources = new NettyTransportResources(1);
+
+    EventLoopGroup group1 = resources.retain();
+    group1.shutdownGracefully();
+
+    EventLoopGroup group2 = resources.retain();
+    assertNotSame(group1, group2);
+
+    resources.release(group1);
+    assertEquals(1, resources.getRefCount());
+    assertFalse(group2.isShuttingDown());
+
+    resources.release(group2);
+    assertEquals(0, resources.getRefCount());
+    assertTrue(group2.isShuttingDown());
+  }
+
+}
@@ -0,0 +1,224 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.kurento.jsonrpc.internal.JsonRpcExecutors;
+import org.kurento.jsonrpc.internal.JsonRpcExecutors.Mode;
+import org.kurento.jsonrpc.internal.client.OrderedDispatcher;
+import org.kurento.jsonrpc.internal.client.OrderedDispatcher.DiscardableTask;
+import org.kurento.jsonrpc.internal.client.OrderedDispatcher.OverflowPolicy;
+
+public class OrderedDispatcherTest {
+
+  @Test
+  public void tasksWithSameKeyAreExecutedInOrder() throws Exception {
+
+    ExecutorService workers = Executors.newFixedThreadPool(8);
+    try {
+      OrderedDispatcher dispatcher = new OrderedDispatcher(workers, 10000,
+          OverflowPolicy.DROP_NEWEST);
+
+      int numKeys = 20;
+      int tasksPerKey = 500;
+
+      final List<List<Integer>> executed = new ArrayList<>();
+      for (int i = 0; i < numKeys; i++) {
+        executed.add(Collections.synchronizedList(new ArrayList<Integer>()));
+      }
+      final CountDownLatch latch = new CountDownLatch(numKeys * tasksPerKey);
+
+      for (int j = 0; j < tasksPerKey; j++) {
+        for (int i = 0; i < numKeys; i++) {
+          final List<Integer> list = executed.get(i);
+          final int seq = j;
+          dispatcher.dispatch("object" + i, new Runnable() {
+            @Override
+            public void run() {
+              list.add(seq);
+              latch.countDown();
+            }
+          });
+        }
+      }
+
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+      for (List<Integer> list : executed) {
+        assertEquals(tasksPerKey, list.size());
+        for (int j = 0; j < tasksPerKey; j++) {
+          assertEquals(Integer.valueOf(j), list.get(j));
+        }
+      }
+      assertEquals(0, dispatcher.getQueuedTasks());
+
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+
+  @Test
+  public void fullMailboxDiscardsNewTasks() throws Exception {
+
+    ExecutorService workers = Executors.newSingleThreadExecutor();
+    try {
+      OrderedDispatcher dispatcher = new OrderedDispatcher(workers, 2,
+          OverflowPolicy.DROP_NEWEST);
+
+      final CountDownLatch blocker = new CountDownLatch(1);
+      final CountDownLatch started = new CountDownLatch(1);
+      dispatcher.dispatch("key", new Runnable() {
+        @Override
+        public void run() {
+          started.countDown();
+          try {
+            blocker.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+
+      Runnable noop = new Runnable() {
+        @Override
+        public void run() {
+        }
+      };
+
+      assertTrue(dispatcher.dispatch("key", noop));
+      assertTrue(dispatcher.dispatch("key", noop));
+      assertFalse(dispatcher.dispatch("key", noop));
+
+      assertEquals(2, dispatcher.getQueuedTasks());
+      assertEquals(2, dispatcher.getMaxQueueDepth());
+      assertEquals(1, dispatcher.getDroppedTasks());
+
+      blocker.countDown();
+
+    } finally {
+      workers.shutdown();
+    }
+  }
+
+  @Test
+  public void discardedTasksAreTold() throws Exception {
+
+    ExecutorService workers = Executors.newSingleThreadExecutor();
+    try {
+      OrderedDispatcher dispatcher = new OrderedDispatcher(workers, 1,
+          OverflowPolicy.DROP_OLDEST);
+
+      final CountDownLatch blocker = new CountDownLatch(1);
+      final CountDownLatch started = new CountDownLatch(1);
+      dispatcher.dispatch("key", new Runnable() {
+        @Override
+        public void run() {
+          started.countDown();
+          try {
+            blocker.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+
+      final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+      final CountDownLatch done = new CountDownLatch(2);
+
+      for (final String name : new String[] { "oldest", "newest" }) {
+        assertTrue(dispatcher.dispatch("key", new DiscardableTask() {
+          @Override
+          public void run() {
+            events.add(name + " run");
+            done.countDown();
+          }
+
+          @Override
+          public void discarded() {
+            events.add(name + " discarded");
+            done.countDown();
+          }
+        }));
+      }
+
+      blocker.countDown();
+      assertTrue(done.await(5, TimeUnit.SECONDS));
+
+      assertEquals(2, events.size());
+      assertTrue(events.contains("oldest discarded"));
+      assertTrue(events.contains("newest run"));
+      assertEquals(1, dispatcher.getDroppedTasks());
+
+    } finally {
+      workers.shutdown();
+    }
+  }
+
+  @Test
+  public void virtualWorkersRunAllBlockedMailboxes() throws Exception {
+
+    Assume.assumeTrue("Virtual threads are not supported in this JVM",
+        JsonRpcExecutors.isVirtualThreadsSupported());
+
+    // Far more than the workers of a pool of platform threads
+    final int numMailboxes = Runtime.getRuntime().availableProcessors() * 2 * 100;
+    ExecutorService workers = OrderedDispatcher.newWorkers(2, Mode.VIRTUAL);
+    try {
+      OrderedDispatcher dispatcher = new OrderedDispatcher(workers, 10,
+          OverflowPolicy.DROP_NEWEST);
+
+      final CountDownLatch blocked = new CountDownLatch(numMailboxes);
+      final CountDownLatch release = new CountDownLatch(1);
+
+      for (int i = 0; i < numMailboxes; i++) {
+        dispatcher.dispatch("object" + i, new Runnable() {
+          @Override
+          public void run() {
+            blocked.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        });
+      }
+
+      assertTrue(blocked.await(10, TimeUnit.SECONDS));
+      release.countDown();
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+
+}
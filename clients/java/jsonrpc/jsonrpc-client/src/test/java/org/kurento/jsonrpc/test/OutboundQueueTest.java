@@ -0,0 +1,130 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.kurento.jsonrpc.internal.ws.OutboundQueue;
+import org.kurento.jsonrpc.internal.ws.OutboundQueue.SendListener;
+import org.kurento.jsonrpc.message.Message;
+import org.kurento.jsonrpc.message.Request;
+
+import com.google.gson.JsonObject;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+
+public class OutboundQueueTest {
+
+  private static final String TEXT_20_BYTES = "01234567890123456789";
+
+  private final List<Message> failed = new ArrayList<>();
+  private int sentBytes;
+
+  private final SendListener listener = new SendListener() {
+    @Override
+    public void sent(int bytes) {
+      sentBytes += bytes;
+    }
+
+    @Override
+    public void sendFailed(List<Message> messages, Throwable cause) {
+      failed.addAll(messages);
+    }
+  };
+
+  @Test
+  public void framesAreWrittenInOrder() {
+
+    EmbeddedChannel channel = new EmbeddedChannel();
+    OutboundQueue queue = new OutboundQueue(channel, 10, 100, listener);
+
+    for (int i = 0; i < 3; i++) {
+      assertTrue(queue.offer(new TextWebSocketFrame("m" + i), Collections.<Message> emptyList()));
+    }
+    channel.runPendingTasks();
+
+    for (int i = 0; i < 3; i++) {
+      TextWebSocketFrame frame = channel.readOutbound();
+      assertEquals("m" + i, frame.text());
+      frame.release();
+    }
+    assertEquals(0, queue.getQueuedBytes());
+    assertEquals(6, sentBytes);
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void framesAreRejectedOverHighWatermark() {
+
+    EmbeddedChannel channel = new EmbeddedChannel();
+    channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+    OutboundQueue queue = new OutboundQueue(channel, 10, 30, listener);
+
+    assertTrue(queue.offer(new TextWebSocketFrame(TEXT_20_BYTES), noMessages()));
+    assertTrue(queue.offer(new TextWebSocketFrame(TEXT_20_BYTES), noMessages()));
+    channel.runPendingTasks();
+
+    assertTrue(queue.isSaturated());
+    assertFalse(queue.offer(new TextWebSocketFrame(TEXT_20_BYTES), noMessages()));
+    assertEquals(1, queue.getRejectedFrames());
+    assertNull(channel.readOutbound());
+
+    channel.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+    queue.scheduleDrain();
+    channel.runPendingTasks();
+
+    assertFalse(queue.isSaturated());
+    assertEquals(0, queue.getQueuedBytes());
+    assertEquals(2, channel.outboundMessages().size());
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void queuedMessagesFailWhenChannelCloses() {
+
+    EmbeddedChannel channel = new EmbeddedChannel();
+    channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+    OutboundQueue queue = new OutboundQueue(channel, 10, 100, listener);
+
+    Request<JsonObject> request = new Request<>(1, "method", null);
+    assertTrue(queue.offer(new TextWebSocketFrame(request.toString()),
+        Collections.<Message> singletonList(request)));
+    channel.runPendingTasks();
+
+    channel.close();
+
+    assertEquals(1, failed.size());
+    assertEquals(request, failed.get(0));
+    assertEquals(0, queue.getQueuedBytes());
+    assertEquals(0, sentBytes);
+  }
+
+  private List<Message> noMessages() {
+    return Collections.emptyList();
+  }
+
+}
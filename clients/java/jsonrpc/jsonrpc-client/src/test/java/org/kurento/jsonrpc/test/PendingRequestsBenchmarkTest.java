@@ -0,0 +1,185 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+
+package org.kurento.jsonrpc.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.internal.ws.PendingRequests;
+import org.kurento.jsonrpc.message.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Compares the response path of {@link PendingRequests}, which finds requests by their int id,
+ * with the map of boxed ids it replaced: CPU time and memory allocated per request in one thread,
+ * and throughput with several threads sending and answering requests. Responses keep their id
+ * boxed in both cases. Results are only logged. The number of requests can be increased with the
+ * property {@code pendingRequestsBenchmark.requests}.
+ */
+public class PendingRequestsBenchmarkTest {
+
+  private static final Logger log = LoggerFactory.getLogger(PendingRequestsBenchmarkTest.class);
+
+  private static final int REQUESTS =
+      PropertiesManager.getProperty("pendingRequestsBenchmark.requests", 200000);
+
+  private static final int THREADS = 4;
+
+  // Requests waiting for their response at the same time in each thread
+  private static final int IN_FLIGHT = 64;
+
+  private static final JsonElement RESULT = new JsonPrimitive("ok");
+
+  private interface Registry {
+
+    Object prepare(int id);
+
+    void handle(int id);
+  }
+
+  private static class RingRegistry implements Registry {
+
+    private final PendingRequests pendingRequests = new PendingRequests();
+
+    @Override
+    public Object prepare(int id) {
+      return pendingRequests.prepareResponse(id, 0);
+    }
+
+    @Override
+    public void handle(int id) {
+      Response<JsonElement> response = new Response<>(RESULT);
+      response.setId(id);
+      pendingRequests.handleResponse(response);
+    }
+  }
+
+  // Previous implementation: a map of boxed ids
+  private static class MapRegistry implements Registry {
+
+    private final ConcurrentMap<Integer, SettableFuture<Response<JsonElement>>> pendingRequests =
+        new ConcurrentHashMap<>();
+
+    @Override
+    public Object prepare(int id) {
+      SettableFuture<Response<JsonElement>> future = SettableFuture.create();
+      pendingRequests.putIfAbsent(Integer.valueOf(id), future);
+      return future;
+    }
+
+    @Override
+    public void handle(int id) {
+      Response<JsonElement> response = new Response<>(RESULT);
+      response.setId(Integer.valueOf(id));
+      SettableFuture<Response<JsonElement>> future = pendingRequests.remove(response.getId());
+      future.set(response);
+    }
+  }
+
+  @Test
+  public void compareRingWithMap() throws InterruptedException {
+
+    // Warm up
+    for (int i = 0; i < 3; i++) {
+      singleThread(new RingRegistry());
+      singleThread(new MapRegistry());
+    }
+
+    long[] ring = singleThread(new RingRegistry());
+    long[] map = singleThread(new MapRegistry());
+    log.info("ring: {} ns CPU/request, {} bytes allocated/request", ring[0], ring[1]);
+    log.info("map: {} ns CPU/request, {} bytes allocated/request", map[0], map[1]);
+
+    log.info("ring: {} requests/s with {} threads", concurrent(new RingRegistry()), THREADS);
+    log.info("map: {} requests/s with {} threads", concurrent(new MapRegistry()), THREADS);
+  }
+
+  // Returns CPU time and bytes allocated per request
+  private long[] singleThread(Registry registry) {
+
+    long cpu = threads().getCurrentThreadCpuTime();
+    long allocated = threads().getThreadAllocatedBytes(Thread.currentThread().getId());
+
+    sendAndAnswer(registry, 0, 1);
+
+    cpu = threads().getCurrentThreadCpuTime() - cpu;
+    allocated = threads().getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated;
+    return new long[] { cpu / REQUESTS, allocated / REQUESTS };
+  }
+
+  private long concurrent(final Registry registry) throws InterruptedException {
+
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(THREADS);
+    final AtomicInteger nextThread = new AtomicInteger();
+
+    for (int t = 0; t < THREADS; t++) {
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            // Ids of a connection are sequential, whatever the thread sending each request
+            sendAndAnswer(registry, nextThread.getAndIncrement(), THREADS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+
+    long startTime = System.nanoTime();
+    start.countDown();
+    done.await();
+    long elapsed = System.nanoTime() - startTime;
+
+    return (long) THREADS * REQUESTS * 1000000000L / elapsed;
+  }
+
+  // Keeps IN_FLIGHT requests waiting, answering the oldest one each time a new one is sent. Ids
+  // start above the range of cached Integer instances
+  private static void sendAndAnswer(Registry registry, int offset, int stride) {
+    for (int i = 0; i < REQUESTS; i++) {
+      registry.prepare(1000 + offset + i * stride);
+      if (i >= IN_FLIGHT) {
+        registry.handle(1000 + offset + (i - IN_FLIGHT) * stride);
+      }
+    }
+    for (int i = REQUESTS - IN_FLIGHT; i < REQUESTS; i++) {
+      registry.handle(1000 + offset + i * stride);
+    }
+  }
+
+  private com.sun.management.ThreadMXBean threads() {
+    return (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+  }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.kurento.jsonrpc.JsonRpcException;
+import org.kurento.jsonrpc.JsonRpcTimeoutException;
+import org.kurento.jsonrpc.internal.ws.PendingRequests;
+import org.kurento.jsonrpc.message.Response;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+public class PendingRequestsTest {
+
+  @Test
+  public void requestWithoutResponseExpires() throws Exception {
+
+    PendingRequests pendingRequests = new PendingRequests();
+
+    Future<Response<JsonElement>> future = pendingRequests.prepareResponse(1, 200);
+    assertEquals(1, pendingRequests.getInFlightCount());
+
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("Request should have expired");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof JsonRpcTimeoutException);
+      assertEquals(Integer.valueOf(1), ((JsonRpcTimeoutException) e.getCause()).getRequestId());
+    }
+
+    assertEquals(0, pendingRequests.getInFlightCount());
+    assertEquals(1, pendingRequests.getExpiredCount());
+
+    // A late response is only counted
+    pendingRequests.handleResponse(new Response<JsonElement>(1, new JsonPrimitive("late")));
+    assertEquals(1, pendingRequests.getUnmatchedCount());
+  }
+
+  @Test
+  public void responseCancelsExpiration() throws Exception {
+
+    PendingRequests pendingRequests = new PendingRequests();
+
+    Future<Response<JsonElement>> future = pendingRequests.prepareResponse(2, 200);
+
+    Response<JsonElement> response = new Response<JsonElement>(2, new JsonPrimitive("ok"));
+    pendingRequests.handleResponse(response);
+
+    assertSame(response, future.get(5, TimeUnit.SECONDS));
+
+    Thread.sleep(500);
+
+    assertEquals(0, pendingRequests.getInFlightCount());
+    assertEquals(0, pendingRequests.getExpiredCount());
+  }
+
+  @Test
+  public void requestsSharingSlotAreKeptApart() throws Exception {
+
+    PendingRequests pendingRequests = new PendingRequests(4);
+
+    Future<Response<JsonElement>> future1 = pendingRequests.prepareResponse(1, 0);
+    Future<Response<JsonElement>> future5 = pendingRequests.prepareResponse(5, 0);
+    assertEquals(2, pendingRequests.getInFlightCount());
+
+    try {
+      pendingRequests.prepareResponse(5, 0);
+      fail("Duplicated id should be rejected");
+    } catch (JsonRpcException e) {
+      // Expected
+    }
+
+    Response<JsonElement> response5 = new Response<JsonElement>(5, new JsonPrimitive("five"));
+    pendingRequests.handleResponse(response5);
+
+    assertSame(response5, future5.get(5, TimeUnit.SECONDS));
+    assertFalse(future1.isDone());
+
+    Response<JsonElement> response1 = new Response<JsonElement>(1, new JsonPrimitive("one"));
+    pendingRequests.handleResponse(response1);
+
+    assertSame(response1, future1.get(5, TimeUnit.SECONDS));
+    assertEquals(0, pendingRequests.getInFlightCount());
+  }
+
+  @Test
+  public void concurrentSenders() throws Exception {
+    for (int senders : new int[] { 1, 8, 64 }) {
+      checkConcurrentSenders(senders, 2000);
+    }
+  }
+
+  private void checkConcurrentSenders(int senders, final int requestsPerSender)
+      throws Exception {
+
+    final PendingRequests pendingRequests = new PendingRequests(64);
+    final AtomicInteger ids = new AtomicInteger();
+
+    ExecutorService exec = Executors.newFixedThreadPool(senders);
+    try {
+      List<Future<Void>> results = new ArrayList<>();
+      for (int i = 0; i < senders; i++) {
+        results.add(exec.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int j = 0; j < requestsPerSender; j++) {
+              int id = ids.incrementAndGet();
+              Future<Response<JsonElement>> future = pendingRequests.prepareResponse(id, 0);
+              Response<JsonElement> response = new Response<JsonElement>(id,
+                  new JsonPrimitive(id));
+              pendingRequests.handleResponse(response);
+              assertSame(response, future.get(5, TimeUnit.SECONDS));
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> result : results) {
+        result.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      exec.shutdown();
+    }
+
+    assertEquals(0, pendingRequests.getInFlightCount());
+  }
+
+}
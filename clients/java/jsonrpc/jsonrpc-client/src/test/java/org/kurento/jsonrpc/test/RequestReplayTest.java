@@ -0,0 +1,280 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kurento.jsonrpc.TransportException;
+import org.kurento.jsonrpc.client.AbstractJsonRpcClientWebSocket;
+import org.kurento.jsonrpc.client.RequestReplayPolicy;
+import org.kurento.jsonrpc.internal.ws.ReplayBuffer;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.message.Response;
+import org.kurento.jsonrpc.message.ResponseError;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+public class RequestReplayTest {
+
+  private static final String SESSION_ID = "session";
+
+  /**
+   * WebSocket client without network. Requests are recorded and the connect protocol is answered
+   * by the test.
+   */
+  private static class FakeWebSocketClient extends AbstractJsonRpcClientWebSocket {
+
+    private final BlockingQueue<JsonObject> sent = new LinkedBlockingQueue<>();
+    private volatile boolean connected;
+    private volatile CountDownLatch connectAllowed = new CountDownLatch(0);
+    private volatile boolean newServer;
+    private volatile CountDownLatch sendAllowed = new CountDownLatch(0);
+    private final CountDownLatch sendBlocked = new CountDownLatch(1);
+
+    FakeWebSocketClient() {
+      super("ws://localhost:1/kurento", null);
+    }
+
+    @Override
+    protected void sendTextMessage(String jsonMessage) throws IOException {
+      if (!connected) {
+        throw new IOException("Not connected");
+      }
+      JsonObject message = JsonParser.parseString(jsonMessage).getAsJsonObject();
+      if ("connect".equals(message.get("method").getAsString())) {
+        answerConnect(message.get("id").getAsInt(), message.has("params"));
+      } else {
+        if (sendAllowed.getCount() > 0) {
+          sendBlocked.countDown();
+          try {
+            sendAllowed.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        sent.add(message);
+      }
+    }
+
+    private void answerConnect(int id, boolean withSession) {
+      if (newServer && withSession) {
+        handleResponseFromServer(new Response<JsonElement>(id,
+            new ResponseError(40007, "Invalid session")));
+      } else {
+        handleResponseFromServer(
+            new Response<JsonElement>(SESSION_ID, id, new JsonPrimitive("OK")));
+      }
+    }
+
+    @Override
+    protected void closeNativeClient() {
+      connected = false;
+    }
+
+    @Override
+    protected boolean isNativeClientConnected() {
+      return connected;
+    }
+
+    @Override
+    protected void connectNativeClient() throws Exception {
+      if (!connectAllowed.await(10, TimeUnit.SECONDS)) {
+        throw new IOException("Connection not allowed");
+      }
+      connected = true;
+    }
+
+    void answer(JsonObject request) {
+      handleResponseFromServer(new Response<JsonElement>(SESSION_ID,
+          request.get("id").getAsInt(), request.get("method")));
+    }
+
+    void dropConnection() {
+      connectAllowed = new CountDownLatch(1);
+      connected = false;
+      handleReconnectDisconnection(1006, "Connection lost");
+    }
+
+    void allowReconnection(boolean toNewServer) {
+      newServer = toNewServer;
+      connectAllowed.countDown();
+    }
+  }
+
+  private final RequestReplayPolicy getsAreIdempotent = new RequestReplayPolicy() {
+    @Override
+    public boolean isIdempotent(Request<?> request) {
+      return request.getMethod().startsWith("get");
+    }
+  };
+
+  private FakeWebSocketClient client;
+
+  @Before
+  public void connect() throws IOException {
+    client = new FakeWebSocketClient();
+    client.enableRequestReplay(10);
+    client.setRequestReplayPolicy(getsAreIdempotent);
+    client.connectWithSession();
+  }
+
+  @After
+  public void close() throws IOException {
+    client.close();
+  }
+
+  @Test
+  public void requestsAreReplayedAfterReconnectingToSameSession() throws Exception {
+
+    CompletableFuture<JsonElement> idempotent = client.sendRequestAsync("getState", null);
+    CompletableFuture<JsonElement> nonIdempotent = client.sendRequestAsync("setState", null);
+    assertEquals("getState", takeSent().get("method").getAsString());
+    assertEquals("setState", takeSent().get("method").getAsString());
+    assertEquals(1, client.getReplayableRequestsCount());
+
+    client.dropConnection();
+
+    // Issued in the reconnection window, so it is held instead of being sent
+    CompletableFuture<JsonElement> duringReconnection = client.sendRequestAsync("play", null);
+    assertEquals(2, client.getReplayableRequestsCount());
+    assertTrue(client.sent.isEmpty());
+
+    client.allowReconnection(false);
+
+    List<JsonObject> replayed = new ArrayList<>();
+    replayed.add(takeSent());
+    replayed.add(takeSent());
+    assertEquals("getState", replayed.get(0).get("method").getAsString());
+    assertEquals("play", replayed.get(1).get("method").getAsString());
+
+    for (JsonObject request : replayed) {
+      client.answer(request);
+    }
+
+    assertEquals("getState", idempotent.get(10, TimeUnit.SECONDS).getAsString());
+    assertEquals("play", duringReconnection.get(10, TimeUnit.SECONDS).getAsString());
+    assertFalse(nonIdempotent.isDone());
+    assertEquals(0, client.getReplayableRequestsCount());
+  }
+
+  @Test
+  public void requestsIssuedWhileReplayingAreSentAfterReplayedOnes() throws Exception {
+
+    client.sendRequestAsync("getState", null);
+    takeSent();
+
+    client.dropConnection();
+
+    // The replay blocks while sending the first request
+    client.sendAllowed = new CountDownLatch(1);
+    client.allowReconnection(false);
+    assertTrue(client.sendBlocked.await(10, TimeUnit.SECONDS));
+
+    CompletableFuture<JsonElement> duringReplay = client.sendRequestAsync("play", null);
+    client.sendAllowed.countDown();
+
+    assertEquals("getState", takeSent().get("method").getAsString());
+    JsonObject play = takeSent();
+    assertEquals("play", play.get("method").getAsString());
+
+    client.answer(play);
+    assertEquals("play", duringReplay.get(10, TimeUnit.SECONDS).getAsString());
+  }
+
+  @Test
+  public void requestsFailAfterReconnectingToNewSession() throws Exception {
+
+    CompletableFuture<JsonElement> idempotent = client.sendRequestAsync("getState", null);
+    takeSent();
+
+    client.dropConnection();
+    CompletableFuture<JsonElement> duringReconnection = client.sendRequestAsync("play", null);
+
+    client.allowReconnection(true);
+
+    assertFailed(idempotent);
+    assertFailed(duringReconnection);
+    assertEquals(0, client.getReplayableRequestsCount());
+    assertTrue(client.sent.isEmpty());
+  }
+
+  @Test
+  public void bufferIsBounded() {
+
+    ReplayBuffer buffer = new ReplayBuffer(2);
+    assertTrue(buffer.add(new Request<Void>(1, "m", null)));
+    assertTrue(buffer.add(new Request<Void>(2, "m", null)));
+    assertFalse(buffer.add(new Request<Void>(3, "m", null)));
+
+    buffer.startHolding();
+    try {
+      buffer.hold(new Request<Void>(4, "m", null));
+      fail("Request held in a full buffer");
+    } catch (TransportException e) {
+      // Expected
+    }
+
+    buffer.remove(1);
+    assertTrue(buffer.hold(new Request<Void>(4, "m", null)));
+    assertEquals(2, buffer.nextToReplay(Collections.<Integer> emptySet()).size());
+    assertTrue(buffer.isHolding());
+    assertTrue(buffer.nextToReplay(new HashSet<>(Arrays.asList(1, 2, 4)))
+        .isEmpty());
+    assertFalse(buffer.hold(new Request<Void>(5, "m", null)));
+  }
+
+  private JsonObject takeSent() throws InterruptedException {
+    JsonObject message = client.sent.poll(10, TimeUnit.SECONDS);
+    if (message == null) {
+      fail("Request not sent");
+    }
+    return message;
+  }
+
+  private void assertFailed(CompletableFuture<JsonElement> future) throws Exception {
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      fail("Request should have failed");
+    } catch (ExecutionException e) {
+      // Expected
+    }
+  }
+
+}
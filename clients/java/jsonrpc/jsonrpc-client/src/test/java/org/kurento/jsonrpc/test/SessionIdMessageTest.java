@@ -17,14 +17,22 @@
 
 package org.kurento.jsonrpc.test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
 import org.junit.Assert;
 import org.junit.Test;
 import org.kurento.jsonrpc.JsonUtils;
+import org.kurento.jsonrpc.message.Message;
 import org.kurento.jsonrpc.message.Request;
 import org.kurento.jsonrpc.message.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
@@ -127,4 +135,54 @@ public class SessionIdMessageTest {
     Assert.assertEquals(newResponse.getSessionId(), "xxxxxxx");
   }
 
+  @Test
+  public void writtenRequestTest() throws Exception {
+
+    Params params = new Params();
+    params.param1 = "v=0 \u00f1 \ud83d\ude00";
+
+    Request<Params> request = new Request<Params>(1, "method", params);
+    request.setSessionId("xxxxxxx");
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    JsonUtils.writeJsonMessage(request, writer);
+    writer.flush();
+
+    Assert.assertEquals(request.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void readResponseTest() throws Exception {
+
+    Message message = JsonUtils.readJsonMessage(new StringReader(
+        "{\"result\":{\"value\":\"v\",\"sessionId\":\"xxxxxxx\"},\"id\":3,\"jsonrpc\":\"2.0\"}"));
+
+    Assert.assertTrue(message instanceof Response);
+
+    @SuppressWarnings("unchecked")
+    Response<JsonElement> response = (Response<JsonElement>) message;
+    Assert.assertEquals(Integer.valueOf(3), response.getId());
+    Assert.assertEquals("xxxxxxx", response.getSessionId());
+    Assert.assertEquals(JsonParser.parseString("{\"value\":\"v\"}"), response.getResult());
+  }
+
+  @Test
+  public void readRequestTest() throws Exception {
+
+    Message message = JsonUtils.readJsonMessage(new StringReader(
+        "{\"jsonrpc\":\"2.0\",\"params\":{\"sessionId\":\"xxxxxxx\",\"value\":{\"type\":\"E\"}},"
+            + "\"method\":\"onEvent\"}"));
+
+    Assert.assertTrue(message instanceof Request);
+
+    @SuppressWarnings("unchecked")
+    Request<JsonElement> request = (Request<JsonElement>) message;
+    Assert.assertNull(request.getId());
+    Assert.assertEquals("onEvent", request.getMethod());
+    Assert.assertEquals("xxxxxxx", request.getSessionId());
+    Assert.assertEquals(JsonParser.parseString("{\"value\":{\"type\":\"E\"}}"),
+        request.getParams());
+  }
+
 }
@@ -0,0 +1,129 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.kurento.jsonrpc.client.WireTracer;
+import org.kurento.jsonrpc.message.Message;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.message.Response;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+public class WireTracerTest {
+
+  /**
+   * Message that records if it has been serialised.
+   */
+  private static class CountingRequest extends Request<JsonObject> {
+
+    private int serialisations;
+
+    CountingRequest(Integer id, String method) {
+      super(id, method, null);
+    }
+
+    @Override
+    public String toString() {
+      serialisations++;
+      return super.toString();
+    }
+  }
+
+  @Test
+  public void nothingIsSerialisedWhenDisabled() {
+
+    WireTracer tracer = new WireTracer(10);
+    tracer.setEnabled(false);
+
+    CountingRequest request = new CountingRequest(1, "invoke");
+    tracer.traceSent("client", request);
+
+    assertEquals(0, request.serialisations);
+    assertTrue(tracer.dump().isEmpty());
+  }
+
+  @Test
+  public void responsesAreTracedWithTheirRequest() {
+
+    WireTracer tracer = new WireTracer(10);
+    tracer.setEnabled(true);
+    tracer.setSampleRate("ping", 0);
+
+    CountingRequest ping = new CountingRequest(1, "ping");
+    tracer.traceSent("client", ping);
+    tracer.traceReceived("client", response(1));
+    tracer.traceSent("client", new Request<JsonObject>(2, "invoke", null));
+    tracer.traceReceived("client", response(2));
+
+    assertEquals(0, ping.serialisations);
+    List<String> lines = tracer.dump();
+    assertEquals(2, lines.size());
+    assertTrue(lines.get(0), lines.get(0).contains("client -> {\"id\":2,\"method\":\"invoke\""));
+    assertTrue(lines.get(1), lines.get(1).contains("client <- {\"id\":2"));
+  }
+
+  @Test
+  public void bufferKeepsLastTruncatedMessages() {
+
+    WireTracer tracer = new WireTracer(3);
+    tracer.setEnabled(true);
+    tracer.setMaxPayload(10);
+
+    for (int i = 0; i < 5; i++) {
+      tracer.traceSent("client", new Request<JsonObject>(null, "event" + i, null));
+    }
+
+    List<String> lines = tracer.dump();
+    assertEquals(3, lines.size());
+    for (String line : lines) {
+      assertTrue(line, line.endsWith("chars)"));
+    }
+  }
+
+  @Test
+  public void sampledIdsAreKeptPerConnection() {
+
+    WireTracer tracer = new WireTracer(10);
+    tracer.setEnabled(true);
+    tracer.setSampleRate("ping", 0);
+
+    // Both connections use id 1: only the response of the sampled request is traced
+    tracer.traceSent("conn1", new Request<JsonObject>(1, "invoke", null));
+    tracer.traceSent("conn2", new CountingRequest(1, "ping"));
+    tracer.traceReceived("conn2", response(1));
+    tracer.traceReceived("conn1", response(1));
+
+    List<String> lines = tracer.dump();
+    assertEquals(2, lines.size());
+    assertTrue(lines.get(0), lines.get(0).contains("conn1 -> "));
+    assertTrue(lines.get(1), lines.get(1).contains("conn1 <- "));
+  }
+
+  private Message response(int id) {
+    return new Response<JsonElement>(id, new JsonPrimitive("OK"));
+  }
+
+}
@@ -17,6 +17,7 @@
 
 package org.kurento.jsonrpc.internal.server;
 
+import static org.kurento.jsonrpc.internal.JsonRpcConstants.ERROR_INVALID_REQUEST;
 import static org.kurento.jsonrpc.internal.JsonRpcConstants.METHOD_CLOSE;
 import static org.kurento.jsonrpc.internal.JsonRpcConstants.METHOD_CONNECT;
 import static org.kurento.jsonrpc.internal.JsonRpcConstants.METHOD_PING;
@@ -53,6 +54,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.core.task.TaskRejectedException;
 import org.springframework.scheduling.TaskScheduler;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonPrimitive;
@@ -131,9 +133,42 @@ public class ProtocolManager {
   public void processMessage(String messageJson, ServerSessionFactory factory,
       ResponseSender responseSender, String internalSessionId) throws IOException {
 
-    JsonObject messagetJsonObject = JsonUtils.fromJson(messageJson, JsonObject.class);
+    JsonElement messageJsonElement = JsonUtils.fromJson(messageJson, JsonElement.class);
 
-    processMessage(messagetJsonObject, factory, responseSender, internalSessionId);
+    if (messageJsonElement != null && messageJsonElement.isJsonArray()) {
+      processBatchMessage(messageJsonElement.getAsJsonArray(), factory, responseSender,
+          internalSessionId);
+    } else {
+      processMessage(messageJsonElement.getAsJsonObject(), factory, responseSender,
+          internalSessionId);
+    }
+  }
+
+  /**
+   * Process a JSON-RPC 2.0 batch. Each message of the batch is processed as if it had been received
+   * alone, so responses to the requests of the batch are sent separately as soon as they are
+   * available. Clients match them with their requests by id.
+   */
+  private void processBatchMessage(JsonArray batch, ServerSessionFactory factory,
+      ResponseSender responseSender, String internalSessionId) throws IOException {
+
+    if (batch.size() == 0) {
+      log.warn("{} Received empty batch (transportId={})", label, internalSessionId);
+      responseSender.sendResponse(new Response<>(null,
+          new ResponseError(ERROR_INVALID_REQUEST, "Invalid Request: empty batch")));
+      return;
+    }
+
+    for (JsonElement message : batch) {
+      if (message.isJsonObject()) {
+        processMessage(message.getAsJsonObject(), factory, responseSender, internalSessionId);
+      } else {
+        log.warn("{} Invalid message {} in batch (transportId={})", label, message,
+            internalSessionId);
+        responseSender.sendResponse(
+            new Response<>(null, new ResponseError(ERROR_INVALID_REQUEST, "Invalid Request")));
+      }
+    }
   }
 
   /**
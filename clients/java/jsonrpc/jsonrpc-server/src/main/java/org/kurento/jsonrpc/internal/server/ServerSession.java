@@ -22,12 +22,11 @@ import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledFuture;
 
 import org.kurento.commons.PropertiesManager;
-import org.kurento.commons.ThreadFactoryCreator;
 import org.kurento.jsonrpc.client.Continuation;
+import org.kurento.jsonrpc.internal.JsonRpcExecutors;
 import org.kurento.jsonrpc.internal.JsonRpcRequestSenderHelper;
 import org.kurento.jsonrpc.internal.client.AbstractSession;
 import org.kurento.jsonrpc.message.Request;
@@ -55,14 +54,24 @@ public abstract class ServerSession extends AbstractSession {
 
   public ServerSession(String sessionId, Object registerInfo, SessionsManager sessionsManager,
       String transportId) {
+    this(sessionId, registerInfo, sessionsManager, transportId, JsonRpcExecutors.getMode());
+  }
+
+  /**
+   * @param executorMode
+   *          threads that run the handlers of this session, instead of the ones configured with
+   *          {@code jsonRpc.executor}
+   */
+  public ServerSession(String sessionId, Object registerInfo, SessionsManager sessionsManager,
+      String transportId, JsonRpcExecutors.Mode executorMode) {
 
     super(sessionId, registerInfo);
 
     this.transportId = transportId;
     this.sessionsManager = sessionsManager;
 
-    this.sessionExecutor = Executors.newSingleThreadExecutor(ThreadFactoryCreator
-        .create("SessionHandler-" + sessionId));
+    this.sessionExecutor = JsonRpcExecutors.newSerialExecutor("SessionHandler-" + sessionId,
+        executorMode);
   }
 
   public abstract void handleResponse(Response<JsonElement> response);
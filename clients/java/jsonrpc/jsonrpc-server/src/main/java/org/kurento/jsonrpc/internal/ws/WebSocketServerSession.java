@@ -110,8 +110,8 @@ public class WebSocketServerSession extends ServerSession {
 
     Future<Response<JsonElement>> responseFuture = null;
 
-    if (request.getId() != null) {
-      responseFuture = pendingRequests.prepareResponse(request.getId());
+    if (request.hasId()) {
+      responseFuture = pendingRequests.prepareResponse(request.getIntId(), TIMEOUT);
     }
 
     try {
@@ -0,0 +1,155 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import org.junit.Test;
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.test.BatchingTest.BatchCountingClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Compares the throughput of a WebSocket client sending requests one by one with the same client
+ * coalescing them into batches, with several threads sending requests concurrently. The number of
+ * requests can be increased with the property {@code batchingBenchmark.requests}.
+ */
+public class BatchingBenchmarkTest {
+
+  private static final Logger log = LoggerFactory.getLogger(BatchingBenchmarkTest.class);
+
+  private static final int REQUESTS =
+      PropertiesManager.getProperty("batchingBenchmark.requests", 40000);
+
+  private static final int THREADS = 8;
+
+  // Requests waiting for their response at the same time in each thread
+  private static final int IN_FLIGHT = 32;
+
+  private static final long BATCH_WINDOW_MICROS = 200;
+  private static final int BATCH_MAX_MESSAGES = 32;
+
+  @Test
+  public void batchedAndUnbatchedThroughput() throws Exception {
+
+    try (EchoServer server = new EchoServer()) {
+
+      // Warm up
+      run(server, false, REQUESTS / 4);
+      run(server, true, REQUESTS / 4);
+
+      long[] unbatched = run(server, false, REQUESTS);
+      long[] batched = run(server, true, REQUESTS);
+
+      log.info("unbatched: {} requests/s, {} frames", unbatched[0], unbatched[1]);
+      log.info("batched: {} requests/s, {} frames ({} requests/frame)", batched[0], batched[1],
+          batched[1] > 0 ? REQUESTS / batched[1] : 0);
+
+      assertTrue("Batching sent " + batched[1] + " frames for " + REQUESTS + " requests",
+          batched[1] < REQUESTS);
+    }
+  }
+
+  // Returns requests per second and frames sent
+  private long[] run(EchoServer server, boolean batching, int requests) throws Exception {
+
+    final BatchCountingClient client = new BatchCountingClient(server.getUrl());
+    if (batching) {
+      client.enableBatching(BATCH_WINDOW_MICROS, BATCH_MAX_MESSAGES);
+    }
+
+    try {
+      // Connect before starting the clock
+      client.sendRequest("echo", new JsonObject());
+      int framesBefore = client.frames.get();
+
+      final int requestsPerThread = requests / THREADS;
+      final AtomicReference<Throwable> error = new AtomicReference<>();
+      final CountDownLatch finished = new CountDownLatch(THREADS);
+
+      long start = System.nanoTime();
+
+      for (int t = 0; t < THREADS; t++) {
+        new Thread("batching-benchmark-" + t) {
+          @Override
+          public void run() {
+            try {
+              sendAll(client, requestsPerThread);
+            } catch (Throwable e) {
+              error.compareAndSet(null, e);
+            } finally {
+              finished.countDown();
+            }
+          }
+        }.start();
+      }
+
+      assertTrue("Requests not answered in time", finished.await(120, TimeUnit.SECONDS));
+      long elapsed = System.nanoTime() - start;
+
+      if (error.get() != null) {
+        throw new AssertionError("Request failed", error.get());
+      }
+
+      long sent = (long) requestsPerThread * THREADS;
+      long frames = client.frames.get() - framesBefore;
+      return new long[] { sent * TimeUnit.SECONDS.toNanos(1) / elapsed, frames };
+
+    } finally {
+      client.close();
+    }
+  }
+
+  private void sendAll(BatchCountingClient client, int requests) throws Throwable {
+
+    final Semaphore inFlight = new Semaphore(IN_FLIGHT);
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    for (int i = 0; i < requests && error.get() == null; i++) {
+      inFlight.acquire();
+
+      JsonObject params = new JsonObject();
+      params.addProperty("request", i);
+      client.sendRequestAsync("echo", params).whenComplete(new BiConsumer<JsonElement, Throwable>() {
+        @Override
+        public void accept(JsonElement result, Throwable e) {
+          if (e != null) {
+            error.compareAndSet(null, e);
+          }
+          inFlight.release();
+        }
+      });
+    }
+
+    inFlight.acquire(IN_FLIGHT);
+    if (error.get() != null) {
+      throw error.get();
+    }
+  }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.kurento.jsonrpc.client.JsonRpcClientNettyWebSocket;
+import org.kurento.jsonrpc.message.Message;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Sends batched requests from a WebSocket client to a server, so they are split by the batch path
+ * of the server protocol manager and answered separately.
+ */
+public class BatchingTest {
+
+  private static final int THREADS = 8;
+  private static final int REQUESTS_PER_THREAD = 100;
+
+  // Counts the frames and batches sent by the client
+  static class BatchCountingClient extends JsonRpcClientNettyWebSocket {
+
+    final AtomicInteger frames = new AtomicInteger();
+    final AtomicInteger batches = new AtomicInteger();
+
+    BatchCountingClient(String url) {
+      super(url);
+    }
+
+    @Override
+    protected void sendMessage(Message message) throws IOException {
+      frames.incrementAndGet();
+      super.sendMessage(message);
+    }
+
+    @Override
+    protected void sendMessages(List<Message> messages) throws IOException {
+      frames.incrementAndGet();
+      batches.incrementAndGet();
+      super.sendMessages(messages);
+    }
+  }
+
+  private static EchoServer server;
+
+  @BeforeClass
+  public static void startServer() {
+    server = new EchoServer();
+  }
+
+  @AfterClass
+  public static void stopServer() {
+    server.close();
+  }
+
+  @Test
+  public void batchedRequestsAreAnsweredSeparately() throws Exception {
+
+    final BatchCountingClient client = new BatchCountingClient(server.getUrl());
+    client.enableBatching(TimeUnit.MILLISECONDS.toMicros(1), 16);
+
+    int requestsBefore = server.getRequests();
+
+    final AtomicReference<Throwable> error = new AtomicReference<>();
+    final CountDownLatch finished = new CountDownLatch(THREADS);
+
+    try {
+      for (int t = 0; t < THREADS; t++) {
+        final int thread = t;
+        new Thread("batching-test-" + t) {
+          @Override
+          public void run() {
+            try {
+              for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                JsonObject params = new JsonObject();
+                params.addProperty("thread", thread);
+                params.addProperty("request", i);
+
+                JsonElement result = client.sendRequest("echo", params);
+                assertEquals(params, result);
+              }
+            } catch (Throwable e) {
+              error.compareAndSet(null, e);
+            } finally {
+              finished.countDown();
+            }
+          }
+        }.start();
+      }
+
+      assertTrue("Requests not answered in time", finished.await(30, TimeUnit.SECONDS));
+      if (error.get() != null) {
+        throw new AssertionError("Request failed", error.get());
+      }
+
+      assertEquals(THREADS * REQUESTS_PER_THREAD, server.getRequests() - requestsBefore);
+      assertTrue("No batch was sent", client.batches.get() > 0);
+
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  public void disablingBatchingSendsPendingRequests() throws Exception {
+
+    BatchCountingClient client = new BatchCountingClient(server.getUrl());
+    try {
+      // Make sure the connection is established before filling the batch
+      client.sendRequest("echo", new JsonObject());
+
+      client.enableBatching(TimeUnit.SECONDS.toMicros(60), 100);
+
+      JsonObject params = new JsonObject();
+      params.addProperty("value", 1);
+      CompletableFuture<JsonElement> first = client.sendRequestAsync("echo", params);
+      CompletableFuture<JsonElement> second = client.sendRequestAsync("echo", params);
+
+      client.disableBatching();
+
+      assertEquals(params, first.get(5, TimeUnit.SECONDS));
+      assertEquals(params, second.get(5, TimeUnit.SECONDS));
+      assertEquals(1, client.batches.get());
+
+    } finally {
+      client.close();
+    }
+  }
+
+}
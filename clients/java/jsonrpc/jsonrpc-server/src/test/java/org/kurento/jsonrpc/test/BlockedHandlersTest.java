@@ -0,0 +1,199 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+import org.kurento.commons.PropertiesManager;
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.internal.JsonRpcExecutors;
+import org.kurento.jsonrpc.internal.JsonRpcExecutors.Mode;
+import org.kurento.jsonrpc.internal.client.TransactionImpl.ResponseSender;
+import org.kurento.jsonrpc.internal.server.ProtocolManager;
+import org.kurento.jsonrpc.internal.server.ProtocolManager.ServerSessionFactory;
+import org.kurento.jsonrpc.internal.server.ServerSession;
+import org.kurento.jsonrpc.internal.server.SessionsManager;
+import org.kurento.jsonrpc.message.Message;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.message.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Sends JSON-RPC requests from many sessions to a server protocol manager whose handler blocks
+ * until all of them have arrived, so they only complete if every session runs its handler at the
+ * same time. It runs with both executor modes: 10000 requests are blocked at the same time in
+ * virtual threads, and 500 in platform threads. The virtual mode is skipped in JVMs without
+ * virtual threads. The number of requests can be changed with
+ * {@code blockedHandlersTest.virtualRequests} and {@code blockedHandlersTest.platformRequests}.
+ */
+@RunWith(Parameterized.class)
+public class BlockedHandlersTest {
+
+  private static final Logger log = LoggerFactory.getLogger(BlockedHandlersTest.class);
+
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> modes() {
+    return Arrays.asList(new Object[][] { { Mode.PLATFORM }, { Mode.VIRTUAL } });
+  }
+
+  private final Mode mode;
+  private final int requests;
+
+  public BlockedHandlersTest(Mode mode) {
+    this.mode = mode;
+    this.requests = mode == Mode.VIRTUAL
+        ? PropertiesManager.getProperty("blockedHandlersTest.virtualRequests", 10000)
+        : PropertiesManager.getProperty("blockedHandlersTest.platformRequests", 500);
+  }
+
+  static class BlockingHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    final CountDownLatch started;
+    final CountDownLatch release = new CountDownLatch(1);
+
+    BlockingHandler(int requests) {
+      started = new CountDownLatch(requests);
+    }
+
+    @Override
+    public void handleRequest(Transaction transaction, Request<JsonObject> request)
+        throws Exception {
+      started.countDown();
+      // As a handler waiting for the response to a request of its own
+      release.await();
+      transaction.sendResponse(request.getParams());
+    }
+  }
+
+  static class LocalServerSession extends ServerSession {
+
+    LocalServerSession(String sessionId, SessionsManager sessionsManager, String transportId,
+        Mode mode) {
+      super(sessionId, null, sessionsManager, transportId, mode);
+    }
+
+    @Override
+    public void handleResponse(Response<JsonElement> response) {
+    }
+
+    @Override
+    public void closeNativeSession(String reason) {
+    }
+  }
+
+  @Test
+  public void blockedHandlersOfAllSessionsRunConcurrently() throws Exception {
+
+    Assume.assumeTrue("Virtual threads are not supported in this JVM",
+        mode == Mode.PLATFORM || JsonRpcExecutors.isVirtualThreadsSupported());
+
+    log.info("Sending {} requests with {} executors", requests, mode);
+
+    ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+    taskScheduler.initialize();
+
+    BlockingHandler handler = new BlockingHandler(requests);
+    SessionsManager sessionsManager = new SessionsManager();
+    ProtocolManager protocolManager =
+        new ProtocolManager(handler, sessionsManager, taskScheduler);
+
+    final ConcurrentMap<String, Response<JsonElement>> responses = new ConcurrentHashMap<>();
+    final CountDownLatch answered = new CountDownLatch(requests);
+
+    try {
+      for (int i = 0; i < requests; i++) {
+        final String transportId = "transport-" + i;
+
+        JsonObject params = new JsonObject();
+        params.addProperty("transport", transportId);
+        Request<JsonObject> request = new Request<>(1, "block", params);
+
+        protocolManager.processMessage(request.toString(), new ServerSessionFactory() {
+          @Override
+          public ServerSession createSession(String sessionId, Object registerInfo,
+              SessionsManager sessionsManager) {
+            return new LocalServerSession(sessionId, sessionsManager, transportId, mode);
+          }
+
+          @Override
+          public void updateSessionOnReconnection(ServerSession session) {
+          }
+        }, new ResponseSender() {
+          @Override
+          @SuppressWarnings("unchecked")
+          public void sendResponse(Message message) throws IOException {
+            responses.put(transportId, (Response<JsonElement>) message);
+            answered.countDown();
+          }
+
+          @Override
+          public void sendPingResponse(Message message) throws IOException {
+            sendResponse(message);
+          }
+        }, transportId);
+      }
+
+      assertTrue("Only " + (requests - handler.started.getCount()) + " of " + requests
+          + " handlers are running at the same time",
+          handler.started.await(60, TimeUnit.SECONDS));
+
+      handler.release.countDown();
+      assertTrue(answered.await(60, TimeUnit.SECONDS));
+
+      for (int i = 0; i < requests; i++) {
+        String transportId = "transport-" + i;
+        Response<JsonElement> response = responses.get(transportId);
+        assertNull(response.getError());
+        assertEquals(transportId,
+            response.getResult().getAsJsonObject().get("transport").getAsString());
+      }
+
+    } finally {
+      handler.release.countDown();
+      for (int i = 0; i < requests; i++) {
+        ServerSession session = sessionsManager.getByTransportId("transport-" + i);
+        if (session != null) {
+          session.close();
+        }
+      }
+      taskScheduler.shutdown();
+    }
+  }
+
+}
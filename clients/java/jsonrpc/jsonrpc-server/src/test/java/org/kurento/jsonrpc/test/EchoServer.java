@@ -0,0 +1,93 @@
+/*
+ * (C) Copyright 2016 Kurento (http://kurento.org/)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.kurento.jsonrpc.test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.kurento.jsonrpc.DefaultJsonRpcHandler;
+import org.kurento.jsonrpc.Transaction;
+import org.kurento.jsonrpc.internal.server.config.JsonRpcConfiguration;
+import org.kurento.jsonrpc.message.Request;
+import org.kurento.jsonrpc.server.JsonRpcConfigurer;
+import org.kurento.jsonrpc.server.JsonRpcHandlerRegistry;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import com.google.gson.JsonObject;
+
+/**
+ * WebSocket JSON-RPC server, listening on a random port, that answers every request with its
+ * params.
+ */
+class EchoServer implements AutoCloseable {
+
+  @Configuration
+  @EnableAutoConfiguration
+  @Import(JsonRpcConfiguration.class)
+  static class EchoServerConfiguration implements JsonRpcConfigurer {
+
+    @Override
+    public void registerJsonRpcHandlers(JsonRpcHandlerRegistry registry) {
+      registry.addHandler(echoHandler(), "/echo");
+    }
+
+    @Bean
+    public EchoHandler echoHandler() {
+      return new EchoHandler();
+    }
+  }
+
+  static class EchoHandler extends DefaultJsonRpcHandler<JsonObject> {
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @Override
+    public void handleRequest(Transaction transaction, Request<JsonObject> request)
+        throws Exception {
+      requests.incrementAndGet();
+      transaction.sendResponse(request.getParams());
+    }
+  }
+
+  private final ConfigurableApplicationContext context;
+
+  EchoServer() {
+    context = SpringApplication.run(EchoServerConfiguration.class, "--server.port=0",
+        "--spring.main.banner-mode=off");
+  }
+
+  String getUrl() {
+    int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+    return "ws://localhost:" + port + "/echo";
+  }
+
+  int getRequests() {
+    return context.getBean(EchoHandler.class).requests.get();
+  }
+
+  @Override
+  public void close() {
+    context.close();
+  }
+
+}